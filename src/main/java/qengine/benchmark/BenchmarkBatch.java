@@ -0,0 +1,152 @@
+package qengine.benchmark;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.StarQueryBatch;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static java.lang.System.exit;
+import static qengine.benchmark.Utils.*;
+
+/**
+ * Benchmark de l'évaluation groupée ({@link StarQueryBatch}) : chaque fichier de requêtes WatDiv est évalué
+ * une fois requête par requête, puis comme un seul lot dont les atomes communs ne sont calculés qu'une fois.
+ * Le taux de partage et le gain de temps sont relevés pour chaque fichier et pour l'ensemble des requêtes.
+ */
+public class BenchmarkBatch {
+
+    public static void main(String[] args) throws IOException {
+        try (Scanner scanner = new Scanner(System.in)) {
+            System.out.println("Benchmarking batch evaluation of querysets");
+            System.out.println("Choose the RDF Data Set to use between : ");
+            System.out.println("1. 100K");
+            System.out.println("2. 500K");
+            System.out.println("3. 2M");
+            System.out.println("Enter the RDF Data Set to use : ");
+            String choice = scanner.nextLine();
+
+            switch (choice) {
+                case "1" -> handleBenchmark(DATA_100K);
+                case "2" -> handleBenchmark(DATA_500K);
+                case "3" -> handleBenchmark(DATA_2M);
+                default -> {
+                    System.out.println("Invalid choice");
+                    exit(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle the benchmarking with the chosen dataset
+     * @param dataset Dataset to use for benchmarking
+     */
+    private static void handleBenchmark(String dataset) throws IOException {
+        System.out.println("## Benchmarking batch evaluation with " + dataset + " dataset ##\n\n");
+
+        List<RDFAtom> rdfAtoms = Utils.parseRDFData(dataset);
+        RDFHexaStore store = new RDFHexaStore();
+        store.addAll(rdfAtoms);
+
+        SortedMap<String, List<StarQuery>> querysets = getQueriesFromDir(QUERIES_DIR_100);
+        List<StarQuery> allQueries = new ArrayList<>();
+        Map<String, BatchResult> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<StarQuery>> entry : querysets.entrySet()) {
+            System.out.println("Processing queryset: " + entry.getKey() + " (" + entry.getValue().size() + " queries)");
+            results.put(entry.getKey(), speedTest(entry.getValue(), store));
+            allQueries.addAll(entry.getValue());
+        }
+        System.out.println("Processing all querysets as one batch (" + allQueries.size() + " queries)");
+        results.put("All querysets", speedTest(allQueries, store));
+
+        String benchmarkResultFile = saveResults(results, dataset);
+        System.out.println("\n\n## Benchmarking Complete and Results saved in the file : " + benchmarkResultFile + " ##");
+    }
+
+    /**
+     * Résultat de la comparaison sur un lot de requêtes.
+     *
+     * @param independent  la durée de l'évaluation requête par requête, en ms
+     * @param batch        la durée de l'évaluation groupée, en ms
+     * @param sharingRatio la part des atomes dont le calcul est partagé
+     */
+    private record BatchResult(long independent, long batch, double sharingRatio) {
+
+        double speedup() {
+            return (double) independent / batch;
+        }
+    }
+
+    /**
+     * Mesure le temps d'évaluation complète des requêtes une par une puis en lot,
+     * et vérifie que les deux donnent le même nombre de réponses.
+     */
+    private static BatchResult speedTest(List<StarQuery> queries, RDFHexaStore store) {
+        long[] independentCounts = new long[queries.size()];
+        long startIndependent = System.currentTimeMillis();
+        for (int i = 0; i < queries.size(); i++) {
+            independentCounts[i] = count(store.match(queries.get(i)));
+        }
+        long independent = Math.max(1, System.currentTimeMillis() - startIndependent);
+
+        long[] batchCounts = new long[queries.size()];
+        long startBatch = System.currentTimeMillis();
+        StarQueryBatch batch = new StarQueryBatch(store, queries);
+        for (int i = 0; i < batch.size(); i++) {
+            batchCounts[i] = count(batch.match(i));
+        }
+        long batched = Math.max(1, System.currentTimeMillis() - startBatch);
+
+        if (!Arrays.equals(independentCounts, batchCounts)) {
+            System.err.println("Warning: independent and batch answer counts differ");
+        }
+        BatchResult result = new BatchResult(independent, batched, batch.sharingRatio());
+        System.out.println("Independent execution: " + independent + " ms, batch execution: " + batched + " ms");
+        System.out.printf("Sharing ratio: %.1f %%, speedup: x%.2f%n", 100 * result.sharingRatio(), result.speedup());
+        return result;
+    }
+
+    private static long count(Iterator<Substitution> results) {
+        long count = 0;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Save the benchmark results to a file
+     * @param results Map of results for each queryset
+     * @param dataset Dataset used for benchmarking
+     * @return Path of the file where the results are saved
+     */
+    private static String saveResults(Map<String, BatchResult> results, String dataset) throws IOException {
+        String formattedDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss"));
+        String formattedDataSetName = dataset.split("/")[2];
+        String benchmarkResultFile = "data/benchmarks/batch_results_" + formattedDataSetName + "_" + formattedDate + ".txt";
+        Files.createDirectories(Paths.get("data/benchmarks"));
+
+        try (FileWriter writer = new FileWriter(benchmarkResultFile)) {
+            writer.append("### Batch Evaluation Benchmark Results ###\n");
+            writer.append(getComputerInfo()).append("\n\n");
+            for (Map.Entry<String, BatchResult> entry : results.entrySet()) {
+                BatchResult result = entry.getValue();
+                writer.append(entry.getKey()).append(": independent ").append(String.valueOf(result.independent()))
+                        .append(" ms, batch ").append(String.valueOf(result.batch()))
+                        .append(String.format(" ms, sharing ratio %.1f %%, speedup x%.2f%n",
+                                100 * result.sharingRatio(), result.speedup()));
+            }
+        }
+        return benchmarkResultFile;
+    }
+}
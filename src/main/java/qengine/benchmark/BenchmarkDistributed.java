@@ -0,0 +1,148 @@
+package qengine.benchmark;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import qengine.distributed.Coordinator;
+import qengine.distributed.LocalCluster;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+import qengine.storage.RDFHexaStore;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static qengine.benchmark.Utils.*;
+
+/**
+ * Benchmark du débit du mode distribué en fonction du nombre de nœuds : pour chaque configuration,
+ * une {@link LocalCluster} de processus locaux est lancée, puis les requêtes WatDiv sont soumises au
+ * {@link Coordinator} par {@value #CLIENTS} clients simultanés. Le nombre de réponses est comparé
+ * à celui d'un HexaStore unique chargé dans ce processus.
+ * Le jeu de données 2M est utilisé par défaut, un autre fichier N-Triples pouvant être passé en argument,
+ * suivi éventuellement du nombre maximal de nœuds.
+ */
+public class BenchmarkDistributed {
+
+    private static final int CLIENTS = 16;
+
+    public static void main(String[] args) throws Exception {
+        String dataset = args.length > 0 ? args[0] : DATA_2M;
+        int maxWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("## Benchmarking distributed mode with " + dataset + " dataset ##\n\n");
+
+        List<RDFAtom> rdfAtoms = Utils.parseRDFData(dataset);
+        List<StarQuery> queries = new ArrayList<>();
+        getQueriesFromDir(QUERIES_DIR_100).values().forEach(queries::addAll);
+        System.out.println(rdfAtoms.size() + " triples, " + queries.size() + " queries\n");
+
+        RDFHexaStore reference = new RDFHexaStore();
+        reference.addAll(rdfAtoms);
+        long referenceAnswers = 0;
+        for (StarQuery query : queries) {
+            referenceAnswers += count(reference.match(query));
+        }
+
+        List<DistributedResult> results = new ArrayList<>();
+        for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+            results.add(speedTest(dataset, workers, queries, referenceAnswers));
+        }
+
+        String benchmarkResultFile = saveResults(dataset, results);
+        System.out.println("\n\n## Benchmarking Complete and Results saved in the file : " + benchmarkResultFile + " ##");
+    }
+
+    /**
+     * Résultat d'une configuration.
+     *
+     * @param workers    le nombre de nœuds
+     * @param startup    la durée du lancement de la grappe (chargement des partitions compris), en ms
+     * @param elapsed    la durée de l'évaluation de toutes les requêtes, en ms
+     * @param throughput le nombre de requêtes évaluées par seconde
+     */
+    private record DistributedResult(int workers, long startup, long elapsed, double throughput) {
+    }
+
+    private static DistributedResult speedTest(String dataset, int workers, List<StarQuery> queries,
+                                               long referenceAnswers) throws Exception {
+        long startCluster = System.currentTimeMillis();
+        try (LocalCluster cluster = LocalCluster.start(dataset, workers);
+             Coordinator coordinator = new Coordinator(cluster.addresses())) {
+            long startup = System.currentTimeMillis() - startCluster;
+
+            // Premier passage : ouverture des connexions et compilation à la volée des nœuds
+            for (StarQuery query : queries) {
+                count(coordinator.match(query));
+            }
+
+            AtomicInteger next = new AtomicInteger();
+            LongAdder answers = new LongAdder();
+            long startQueries = System.currentTimeMillis();
+            try (ExecutorService clients = Executors.newFixedThreadPool(CLIENTS)) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    futures.add(clients.submit(() -> {
+                        int index;
+                        while ((index = next.getAndIncrement()) < queries.size()) {
+                            answers.add(count(coordinator.match(queries.get(index))));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            long elapsed = Math.max(1, System.currentTimeMillis() - startQueries);
+            if (answers.sum() != referenceAnswers) {
+                System.err.println("Warning: " + workers + " workers gave " + answers.sum() + " answers instead of "
+                        + referenceAnswers);
+            }
+            DistributedResult result = new DistributedResult(workers, startup, elapsed,
+                    queries.size() * 1000.0 / elapsed);
+            System.out.printf("%d workers: startup %d ms, queries %d ms, %.1f queries/s%n",
+                    workers, startup, elapsed, result.throughput());
+            return result;
+        }
+    }
+
+    private static long count(Iterator<Substitution> results) {
+        long count = 0;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Save the benchmark results to a file
+     * @param dataset Dataset used for benchmarking
+     * @param results Results for each worker count
+     * @return Path of the file where the results are saved
+     */
+    private static String saveResults(String dataset, List<DistributedResult> results) throws IOException {
+        String formattedDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss"));
+        String formattedDataSetName = Paths.get(dataset).getFileName().toString();
+        String benchmarkResultFile = "data/benchmarks/distributed_results_" + formattedDataSetName + "_" + formattedDate + ".txt";
+        Files.createDirectories(Paths.get("data/benchmarks"));
+
+        try (FileWriter writer = new FileWriter(benchmarkResultFile)) {
+            writer.append("### Distributed Mode Throughput Benchmark Results ###\n");
+            writer.append(getComputerInfo()).append("\n");
+            writer.append("Concurrent clients: ").append(String.valueOf(CLIENTS)).append("\n\n");
+            for (DistributedResult result : results) {
+                writer.append(String.format("%d workers: startup %d ms, queries %d ms, %.1f queries/s%n",
+                        result.workers(), result.startup(), result.elapsed(), result.throughput()));
+            }
+        }
+        return benchmarkResultFile;
+    }
+}
@@ -0,0 +1,148 @@
+package qengine.benchmark;
+
+import qengine.model.RDFAtom;
+import qengine.storage.DurableRDFStorage;
+import qengine.storage.RDFHexaStore;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static qengine.benchmark.Utils.*;
+
+/**
+ * Benchmark du débit d'insertion avec durabilité ({@link DurableRDFStorage}) : le jeu de données est inséré
+ * triplet par triplet avec différentes tailles de lot, avec et sans fsync, puis le store est rouvert pour mesurer
+ * la reprise depuis le journal, et depuis un instantané. La référence est l'insertion dans un HexaStore en mémoire.
+ * Le jeu de données 500K est utilisé par défaut, un autre fichier N-Triples pouvant être passé en argument.
+ */
+public class BenchmarkDurability {
+
+    private static final int[] GROUP_SIZES = {256, 4096, 65536};
+
+    public static void main(String[] args) throws IOException {
+        String dataset = args.length > 0 ? args[0] : DATA_500K;
+        System.out.println("## Benchmarking durable ingest with " + dataset + " dataset ##\n\n");
+
+        List<RDFAtom> rdfAtoms = Utils.parseRDFData(dataset);
+        System.out.println(rdfAtoms.size() + " triples\n");
+
+        long start = System.nanoTime();
+        RDFHexaStore reference = new RDFHexaStore();
+        for (RDFAtom atom : rdfAtoms) {
+            reference.add(atom);
+        }
+        IngestResult baseline = new IngestResult("in-memory", System.nanoTime() - start, 0, 0, 0);
+        print(baseline, rdfAtoms.size());
+
+        List<IngestResult> results = new ArrayList<>();
+        results.add(baseline);
+        for (boolean fsync : new boolean[]{false, true}) {
+            for (int groupSize : GROUP_SIZES) {
+                IngestResult result = ingest(rdfAtoms, groupSize, fsync);
+                print(result, rdfAtoms.size());
+                results.add(result);
+            }
+        }
+
+        String benchmarkResultFile = saveResults(dataset, rdfAtoms.size(), results);
+        System.out.println("\n\n## Benchmarking Complete and Results saved in the file : " + benchmarkResultFile + " ##");
+    }
+
+    /**
+     * Résultat d'une configuration.
+     *
+     * @param label    le nom de la configuration
+     * @param ingest   la durée de l'insertion, en ns
+     * @param logBytes la taille du journal après l'insertion
+     * @param replay   la durée de la reprise depuis le journal, en ns
+     * @param reload   la durée de la reprise depuis un instantané, en ns
+     */
+    private record IngestResult(String label, long ingest, long logBytes, long replay, long reload) {
+
+        double triplesPerSecond(long triples) {
+            return triples * 1e9 / Math.max(1, ingest);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: ingest %d ms, log %d KiB, replay %d ms, snapshot reload %d ms",
+                    label, ingest / 1_000_000, logBytes >> 10, replay / 1_000_000, reload / 1_000_000);
+        }
+    }
+
+    private static void print(IngestResult result, long triples) {
+        System.out.printf("%s, %.0f triples/s%n", result, result.triplesPerSecond(triples));
+    }
+
+    private static IngestResult ingest(List<RDFAtom> rdfAtoms, int groupSize, boolean fsync) throws IOException {
+        Path directory = Files.createTempDirectory("qengine-wal");
+        try {
+            long start = System.nanoTime();
+            long logBytes;
+            long replay;
+            try (DurableRDFStorage storage = new DurableRDFStorage(directory, groupSize, fsync)) {
+                for (RDFAtom atom : rdfAtoms) {
+                    storage.add(atom);
+                }
+                storage.commit();
+                logBytes = storage.logSize();
+            }
+            long ingest = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (DurableRDFStorage storage = new DurableRDFStorage(directory, groupSize, fsync)) {
+                replay = System.nanoTime() - start;
+                storage.checkpoint();
+            }
+
+            start = System.nanoTime();
+            try (DurableRDFStorage storage = new DurableRDFStorage(directory, groupSize, fsync)) {
+                if (storage.size() != rdfAtoms.stream().distinct().count()) {
+                    System.err.println("Warning: snapshot reload lost triples");
+                }
+            }
+            long reload = System.nanoTime() - start;
+            return new IngestResult((fsync ? "fsync" : "no fsync") + ", group " + groupSize,
+                    ingest, logBytes, replay, reload);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the benchmark results to a file
+     * @param dataset Dataset used for benchmarking
+     * @param triples Number of triples inserted
+     * @param results Results for each configuration
+     * @return Path of the file where the results are saved
+     */
+    private static String saveResults(String dataset, long triples, List<IngestResult> results) throws IOException {
+        String formattedDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss"));
+        String formattedDataSetName = Paths.get(dataset).getFileName().toString();
+        String benchmarkResultFile = "data/benchmarks/durability_results_" + formattedDataSetName + "_" + formattedDate + ".txt";
+        Files.createDirectories(Paths.get("data/benchmarks"));
+
+        try (FileWriter writer = new FileWriter(benchmarkResultFile)) {
+            writer.append("### Durable Ingest Benchmark Results ###\n");
+            writer.append(getComputerInfo()).append("\n\n");
+            for (IngestResult result : results) {
+                writer.append(result.toString())
+                        .append(String.format(", %.0f triples/s%n", result.triplesPerSecond(triples)));
+            }
+        }
+        return benchmarkResultFile;
+    }
+}
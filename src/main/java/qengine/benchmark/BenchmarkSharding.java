@@ -0,0 +1,134 @@
+package qengine.benchmark;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.RDFStorage;
+import qengine.storage.ShardedRDFStorage;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static qengine.benchmark.Utils.*;
+
+/**
+ * Benchmark du passage à l'échelle du stockage partitionné ({@link ShardedRDFStorage}) : les requêtes WatDiv
+ * sont évaluées avec un nombre croissant de partitions, chacune interrogée par son propre thread.
+ * La référence est un HexaStore unique ; le nombre de réponses de chaque configuration lui est comparé.
+ * Le jeu de données 2M est utilisé par défaut, un autre fichier N-Triples pouvant être passé en argument.
+ */
+public class BenchmarkSharding {
+
+    public static void main(String[] args) throws IOException {
+        String dataset = args.length > 0 ? args[0] : DATA_2M;
+        System.out.println("## Benchmarking sharded storage with " + dataset + " dataset ##\n\n");
+
+        List<RDFAtom> rdfAtoms = Utils.parseRDFData(dataset);
+        List<StarQuery> queries = new ArrayList<>();
+        getQueriesFromDir(QUERIES_DIR_100).values().forEach(queries::addAll);
+        System.out.println(rdfAtoms.size() + " triples, " + queries.size() + " queries\n");
+
+        RDFHexaStore reference = new RDFHexaStore();
+        long startLoad = System.currentTimeMillis();
+        reference.addAll(rdfAtoms);
+        long referenceLoad = System.currentTimeMillis() - startLoad;
+        long startQueries = System.currentTimeMillis();
+        long referenceAnswers = countAll(reference, queries);
+        long referenceQueries = Math.max(1, System.currentTimeMillis() - startQueries);
+        System.out.println("Single hexastore: load " + referenceLoad + " ms, queries " + referenceQueries
+                + " ms, " + referenceAnswers + " answers");
+
+        List<ShardResult> results = new ArrayList<>();
+        int maxShards = 2 * Runtime.getRuntime().availableProcessors();
+        for (int shards = 1; shards <= maxShards; shards *= 2) {
+            results.add(speedTest(shards, rdfAtoms, queries, referenceAnswers, referenceQueries));
+        }
+
+        String benchmarkResultFile = saveResults(dataset, referenceLoad, referenceQueries, results);
+        System.out.println("\n\n## Benchmarking Complete and Results saved in the file : " + benchmarkResultFile + " ##");
+    }
+
+    /**
+     * Résultat d'une configuration.
+     *
+     * @param shards  le nombre de partitions (et de threads)
+     * @param load    la durée du chargement, en ms
+     * @param queries la durée de l'évaluation de toutes les requêtes, en ms
+     * @param speedup le gain par rapport à l'HexaStore unique
+     */
+    private record ShardResult(int shards, long load, long queries, double speedup) {
+    }
+
+    private static ShardResult speedTest(int shards, List<RDFAtom> rdfAtoms, List<StarQuery> queries,
+                                         long referenceAnswers, long referenceQueries) {
+        ExecutorService executor = Executors.newFixedThreadPool(shards);
+        try {
+            ShardedRDFStorage storage = new ShardedRDFStorage(shards, executor);
+            long startLoad = System.currentTimeMillis();
+            storage.addAll(rdfAtoms);
+            long load = System.currentTimeMillis() - startLoad;
+
+            long startQueries = System.currentTimeMillis();
+            long answers = countAll(storage, queries);
+            long elapsed = Math.max(1, System.currentTimeMillis() - startQueries);
+            if (answers != referenceAnswers) {
+                System.err.println("Warning: " + shards + " shards gave " + answers + " answers instead of "
+                        + referenceAnswers);
+            }
+            ShardResult result = new ShardResult(shards, load, elapsed, (double) referenceQueries / elapsed);
+            System.out.printf("%d shards: load %d ms, queries %d ms, speedup x%.2f%n",
+                    shards, load, elapsed, result.speedup());
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long countAll(RDFStorage storage, List<StarQuery> queries) {
+        long count = 0;
+        for (StarQuery query : queries) {
+            Iterator<Substitution> results = storage.match(query);
+            while (results.hasNext()) {
+                results.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Save the benchmark results to a file
+     * @param dataset Dataset used for benchmarking
+     * @param referenceLoad Loading time of the single hexastore
+     * @param referenceQueries Query time of the single hexastore
+     * @param results Results for each shard count
+     * @return Path of the file where the results are saved
+     */
+    private static String saveResults(String dataset, long referenceLoad, long referenceQueries,
+                                      List<ShardResult> results) throws IOException {
+        String formattedDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss"));
+        String formattedDataSetName = Paths.get(dataset).getFileName().toString();
+        String benchmarkResultFile = "data/benchmarks/sharding_results_" + formattedDataSetName + "_" + formattedDate + ".txt";
+        Files.createDirectories(Paths.get("data/benchmarks"));
+
+        try (FileWriter writer = new FileWriter(benchmarkResultFile)) {
+            writer.append("### Sharded Storage Scaling Benchmark Results ###\n");
+            writer.append(getComputerInfo()).append("\n\n");
+            writer.append("Single hexastore: load ").append(String.valueOf(referenceLoad))
+                    .append(" ms, queries ").append(String.valueOf(referenceQueries)).append(" ms\n");
+            for (ShardResult result : results) {
+                writer.append(String.format("%d shards: load %d ms, queries %d ms, speedup x%.2f%n",
+                        result.shards(), result.load(), result.queries(), result.speedup()));
+            }
+        }
+        return benchmarkResultFile;
+    }
+}
@@ -0,0 +1,285 @@
+package qengine.benchmark;
+
+import fr.boreal.model.formula.api.FOFormula;
+import fr.boreal.model.kb.api.FactBase;
+import fr.boreal.model.logicalElements.api.Atom;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.query.api.Query;
+import fr.boreal.model.queryEvaluation.api.FOQueryEvaluator;
+import fr.boreal.query_evaluation.generic.GenericFOQueryEvaluator;
+import fr.boreal.storage.natives.SimpleInMemoryGraphStore;
+import qengine.model.BGPQuery;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+import qengine.parser.StarQuerySparQLParser;
+import qengine.storage.RDFHexaStore;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.System.exit;
+import static qengine.benchmark.Utils.*;
+
+/**
+ * Benchmark des requêtes en flocon (plusieurs étoiles jointes) sur les templates WatDiv F1 à F5.
+ * Chaque template est instancié en remplaçant ses paramètres par des entités du jeu de données,
+ * puis les requêtes obtenues sont évaluées par l'HexaStore et par Integraal.
+ */
+public class BenchmarkSnowflake {
+    static final String TEMPLATES_DIR = "watdiv-mini-projet/more query templates/testsuite/";
+    static final String[] TEMPLATES = {"F1.txt", "F2.txt", "F3.txt", "F4.txt", "F5.txt"};
+    static final String DATA_MODEL = "watdiv-mini-projet/model/wsdbm-data-model.txt";
+    static final int QUERIES_PER_TEMPLATE = 100;
+
+    private static final Pattern NAMESPACE = Pattern.compile("#namespace\\s+(\\w+)=(\\S+)");
+    private static final Pattern MAPPING = Pattern.compile("#mapping\\s+(\\w+)\\s+(\\w+):(\\w+)\\s+uniform");
+    private static final Pattern PREFIXED_NAME = Pattern.compile("(?<![\\w<])(\\w+):(\\w+)");
+
+    public static void main(String[] args) throws IOException {
+        try (Scanner scanner = new Scanner(System.in)) {
+            System.out.println("Benchmarking RDFHexaStore on snowflake queries");
+            System.out.println("Choose the RDF Data Set to use between : ");
+            System.out.println("1. 100K");
+            System.out.println("2. 500K");
+            System.out.println("3. 2M");
+            System.out.println("Enter the RDF Data Set to use : ");
+            String choice = scanner.nextLine();
+
+            switch (choice) {
+                case "1" -> handleBenchmark(DATA_100K);
+                case "2" -> handleBenchmark(DATA_500K);
+                case "3" -> handleBenchmark(DATA_2M);
+                default -> {
+                    System.out.println("Invalid choice");
+                    exit(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle the benchmarking with the chosen dataset
+     * @param dataset Dataset to use for benchmarking
+     */
+    private static void handleBenchmark(String dataset) throws IOException {
+        System.out.println("## Benchmarking snowflake queries with " + dataset + " dataset ##\n\n");
+
+        List<RDFAtom> rdfAtoms = Utils.parseRDFData(dataset);
+
+        RDFHexaStore store = new RDFHexaStore();
+        FactBase factBase = new SimpleInMemoryGraphStore();
+        store.addAll(rdfAtoms);
+        factBase.addAll(new HashSet<>(rdfAtoms));
+
+        Map<String, String> namespaces = readNamespaces(DATA_MODEL);
+        Map<String, List<String>> instances = instancesByType(store);
+        Random random = new Random(42);
+
+        Map<String, Map<String, Long>> results = new LinkedHashMap<>();
+        for (String template : TEMPLATES) {
+            List<String> lines = Files.readAllLines(Paths.get(TEMPLATES_DIR, template));
+            List<Query> queries = parseQueries(instantiate(lines, namespaces, instances, random, QUERIES_PER_TEMPLATE));
+            System.out.println("Processing template: " + template + " (" + queries.size() + " queries)");
+            results.put(template, speedTest(queries, store, factBase));
+        }
+
+        String benchmarkResultFile = saveResults(results, dataset);
+        System.out.println("\n\n## Benchmarking Complete and Results saved in the file : " + benchmarkResultFile + " ##");
+    }
+
+    /**
+     * Lit les espaces de noms déclarés dans le modèle de données WatDiv.
+     *
+     * @param dataModel le chemin du modèle de données
+     * @return les espaces de noms, par préfixe
+     */
+    static Map<String, String> readNamespaces(String dataModel) throws IOException {
+        Map<String, String> namespaces = new HashMap<>();
+        for (String line : Files.readAllLines(Paths.get(dataModel))) {
+            Matcher matcher = NAMESPACE.matcher(line.trim());
+            if (matcher.matches()) {
+                namespaces.put(matcher.group(1), matcher.group(2));
+            }
+        }
+        return namespaces;
+    }
+
+    /**
+     * Regroupe les entités du store dont l'IRI se termine par un type suivi d'un numéro (par exemple .../Topic12).
+     *
+     * @param store l'HexaStore
+     * @return les IRIs des entités, par préfixe d'IRI du type
+     */
+    private static Map<String, List<String>> instancesByType(RDFHexaStore store) {
+        Pattern instance = Pattern.compile("(.*[/#][A-Za-z]+)\\d+");
+        Map<String, Set<String>> byType = new HashMap<>();
+        for (Atom atom : store.getAtoms()) {
+            for (Term term : atom.getTerms()) {
+                Matcher matcher = instance.matcher(term.label());
+                if (matcher.matches()) {
+                    byType.computeIfAbsent(matcher.group(1), k -> new TreeSet<>()).add(term.label());
+                }
+            }
+        }
+        Map<String, List<String>> instances = new HashMap<>();
+        byType.forEach((type, labels) -> instances.put(type, new ArrayList<>(labels)));
+        return instances;
+    }
+
+    /**
+     * Instancie un template WatDiv : les noms préfixés sont développés et chaque paramètre {@code %vN%}
+     * est remplacé par une entité du type indiqué par sa ligne {@code #mapping}, tirée uniformément.
+     *
+     * @param lines      les lignes du template
+     * @param namespaces les espaces de noms
+     * @param instances  les entités de chaque type
+     * @param random     le générateur aléatoire
+     * @param count      le nombre de requêtes à produire
+     * @return les requêtes SparQL, séparées par une ligne vide
+     */
+    static List<String> instantiate(List<String> lines, Map<String, String> namespaces,
+                                    Map<String, List<String>> instances, Random random, int count) {
+        Map<String, String> mappings = new HashMap<>();
+        StringBuilder body = new StringBuilder();
+        for (String line : lines) {
+            Matcher mapping = MAPPING.matcher(line.trim());
+            if (mapping.matches()) {
+                mappings.put(mapping.group(1), namespaces.get(mapping.group(2)) + mapping.group(3));
+            } else if (!line.isBlank()) {
+                body.append(expand(line, namespaces)).append(System.lineSeparator());
+            }
+        }
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String query = body.toString();
+            for (Map.Entry<String, String> entry : mappings.entrySet()) {
+                List<String> candidates = instances.getOrDefault(entry.getValue(), List.of(entry.getValue() + "0"));
+                String value = candidates.get(random.nextInt(candidates.size()));
+                query = query.replace("%" + entry.getKey() + "%", "<" + value + ">");
+            }
+            queries.add(query);
+            queries.add("");
+        }
+        return queries;
+    }
+
+    private static String expand(String line, Map<String, String> namespaces) {
+        Matcher matcher = PREFIXED_NAME.matcher(line);
+        StringBuilder expanded = new StringBuilder();
+        while (matcher.find()) {
+            String namespace = namespaces.get(matcher.group(1));
+            String replacement = namespace == null ? matcher.group() : "<" + namespace + matcher.group(2) + ">";
+            matcher.appendReplacement(expanded, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(expanded);
+        return expanded.toString();
+    }
+
+    /**
+     * Analyse des requêtes SparQL en passant par un fichier temporaire lu par le parser.
+     *
+     * @param lines les lignes des requêtes
+     * @return les requêtes analysées (en étoile ou conjonctives)
+     */
+    private static List<Query> parseQueries(List<String> lines) throws IOException {
+        Path queryFile = Files.createTempFile("snowflake", ".queryset");
+        try {
+            Files.write(queryFile, lines);
+            List<Query> queries = new ArrayList<>();
+            try (StarQuerySparQLParser parser = new StarQuerySparQLParser(queryFile.toString())) {
+                while (parser.hasNext()) {
+                    queries.add(parser.next());
+                }
+            }
+            return queries;
+        } finally {
+            Files.deleteIfExists(queryFile);
+        }
+    }
+
+    /**
+     * Mesure le temps d'évaluation complète des requêtes par l'HexaStore et par Integraal,
+     * et vérifie que les deux donnent le même nombre de réponses.
+     */
+    private static Map<String, Long> speedTest(List<Query> queries, RDFHexaStore store, FactBase factBase) {
+        Map<String, Long> durations = new HashMap<>();
+        FOQueryEvaluator<FOFormula> evaluator = GenericFOQueryEvaluator.defaultInstance();
+
+        long[] integraalCounts = new long[queries.size()];
+        long startTimeIntegraal = System.currentTimeMillis();
+        for (int i = 0; i < queries.size(); i++) {
+            Iterator<Substitution> results = queries.get(i) instanceof BGPQuery bgpQuery
+                    ? evaluator.evaluate(bgpQuery.asFOQuery(), factBase)
+                    : evaluator.evaluate(((StarQuery) queries.get(i)).asFOQuery(), factBase);
+            integraalCounts[i] = count(results);
+        }
+        durations.put("Integraal", Math.max(1, System.currentTimeMillis() - startTimeIntegraal));
+
+        long[] hexastoreCounts = new long[queries.size()];
+        long startTimeHexastore = System.currentTimeMillis();
+        for (int i = 0; i < queries.size(); i++) {
+            Iterator<Substitution> results = queries.get(i) instanceof BGPQuery bgpQuery
+                    ? store.match(bgpQuery)
+                    : store.match((StarQuery) queries.get(i));
+            hexastoreCounts[i] = count(results);
+        }
+        durations.put("Hexastore", Math.max(1, System.currentTimeMillis() - startTimeHexastore));
+
+        if (!Arrays.equals(integraalCounts, hexastoreCounts)) {
+            System.err.println("Warning: HexaStore and Integraal answer counts differ");
+        }
+        System.out.println("Execution time of Integraal: " + (double) durations.get("Integraal") + " ms");
+        System.out.println("Execution time of our HexaStore: " + (double) durations.get("Hexastore") + " ms");
+        return durations;
+    }
+
+    private static long count(Iterator<Substitution> results) {
+        long count = 0;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Save the benchmark results to a file
+     * @param results Map of results for each template
+     * @param dataset Dataset used for benchmarking
+     * @return Path of the file where the results are saved
+     */
+    private static String saveResults(Map<String, Map<String, Long>> results, String dataset) throws IOException {
+        String formattedDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss"));
+        String formattedDataSetName = dataset.split("/")[2];
+        String benchmarkResultFile = "data/benchmarks/snowflake_results_" + formattedDataSetName + "_" + formattedDate + ".txt";
+        Files.createDirectories(Paths.get("data/benchmarks"));
+
+        try (FileWriter writer = new FileWriter(benchmarkResultFile)) {
+            writer.append("### Snowflake Benchmark Results ###\n");
+            writer.append(getComputerInfo()).append("\n\n");
+            long totalHexastore = 0;
+            long totalIntegraal = 0;
+            for (Map.Entry<String, Map<String, Long>> entry : results.entrySet()) {
+                long hexastore = entry.getValue().get("Hexastore");
+                long integraal = entry.getValue().get("Integraal");
+                totalHexastore += hexastore;
+                totalIntegraal += integraal;
+                writer.append(entry.getKey()).append(": HexaStore ").append(String.valueOf(hexastore))
+                        .append(" ms, Integraal ").append(String.valueOf(integraal)).append(" ms\n");
+            }
+            writer.append("\n# HexaStore Total Time: ").append(String.valueOf(totalHexastore)).append(" ms\n");
+            writer.append("# Integraal Total Time: ").append(String.valueOf(totalIntegraal)).append(" ms\n");
+        }
+        return benchmarkResultFile;
+    }
+}
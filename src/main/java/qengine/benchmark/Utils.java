@@ -17,6 +17,7 @@ import oshi.software.os.OperatingSystem;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import qengine.model.RDFAtom;
 import qengine.model.StarQuery;
+import qengine.parser.QuerysetLoader;
 import qengine.parser.RDFAtomParser;
 import qengine.parser.StarQuerySparQLParser;
 import qengine.storage.RDFHexaStore;
@@ -24,7 +25,9 @@ import qengine.storage.RDFHexaStore;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -51,7 +54,7 @@ public class Utils {
         for (StarQuery starQuery : queries) {
             FOQuery<FOFormulaConjunction> foQuery = starQuery.asFOQuery(); // Conversion en FOQuery
             FOQueryEvaluator<FOFormula> evaluator = GenericFOQueryEvaluator.defaultInstance();
-            evaluator.evaluate(foQuery, factBase); // Évaluer la requête
+            evaluator.evaluate(foQuery, factBase).forEachRemaining(sub -> {}); // Évaluer la requête
         }
         long endTimeIntegraal = System.currentTimeMillis();
         long durationIntegraal = endTimeIntegraal - startTimeIntegraal;
@@ -61,7 +64,8 @@ public class Utils {
         // Mesurer le temps d'exécution de notre HexaStore
         long startTimeHexastore = System.currentTimeMillis();
         for(StarQuery starQuery: queries){
-            store.match(starQuery);
+            // L'évaluation est paresseuse : consommer les réponses pour mesurer le calcul complet
+            store.match(starQuery).forEachRemaining(sub -> {});
         }
         long endTimeHexastore = System.currentTimeMillis();
         long durationHexastore = endTimeHexastore - startTimeHexastore;
@@ -140,17 +144,25 @@ public class Utils {
         }
     }
 
-    public static HashMap<String, List<StarQuery>> getQueriesFromDir(String queriesDir) throws IOException {
-        HashMap<String,List<StarQuery>> hashMap = new HashMap<>();
-        File[] queryFiles = getFilesFromDir(queriesDir);
+    public static SortedMap<String, List<StarQuery>> getQueriesFromDir(String queriesDir) throws IOException {
+        SortedMap<String, List<StarQuery>> queryFiles = new TreeMap<>();
+        if (getFilesFromDir(queriesDir).length == 0) return queryFiles;
 
-        for (File queryFile : queryFiles) {
-            // Charger les requêtes à partir du fichier actuel
-            List<StarQuery> starQueries = parseSparQLQueries(queryFile.getPath());
+        // Les fichiers sont chargés en parallèle, chacun formant sa propre catégorie, triée par nom de fichier
+        SortedMap<String, List<Query>> querysets = QuerysetLoader.loadDirectory(Paths.get(queriesDir), name -> name,
+                ForkJoinPool.commonPool());
+        for (Map.Entry<String, List<Query>> entry : querysets.entrySet()) {
+            List<StarQuery> starQueries = new ArrayList<>();
+            for (Query query : entry.getValue()) {
+                if (query instanceof StarQuery starQuery) {
+                    starQueries.add(starQuery);
+                }
+            }
+            System.out.println("Total Queries parsed: " + starQueries.size());
             if (starQueries.isEmpty()) continue;
-            hashMap.put(queryFile.getName(), starQueries);
+            queryFiles.put(entry.getKey(), starQueries);
         }
-        return hashMap;
+        return queryFiles;
     }
 
     public static HashMap<String, List<RDFAtom>> getRDFFromDir(String dirname) throws IOException {
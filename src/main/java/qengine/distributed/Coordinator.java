@@ -0,0 +1,335 @@
+package qengine.distributed;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.io.BinaryRowReader;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+import qengine.storage.ShardedRDFStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Coordinateur du mode distribué : il répartit les requêtes en étoile entre des {@link WorkerNode},
+ * chacun chargé de la partition des triplets dont le sujet a pour hachage son indice
+ * (voir {@link ShardedRDFStorage#partitionOf(Term, int)}), et rassemble leurs réponses encodées.
+ * <p>
+ * Une étoile de sujet variable est diffusée à tous les nœuds et leurs réponses concaténées, et une étoile de sujet
+ * constant n'interroge que le nœud de ce sujet, comme dans {@link ShardedRDFStorage}. Une étoile dont le centre
+ * n'est pas le sujet (un objet, par exemple) n'est pas évaluable par une seule partition : chacun de ses atomes
+ * est diffusé à tous les nœuds, avec les filtres qui portent sur ses variables, et le coordinateur joint les réponses
+ * par la valeur de la variable centrale. Seules les réponses des atomes transitent, jamais des triplets entiers.
+ * <p>
+ * Les connexions aux nœuds sont conservées et réutilisées d'une requête à l'autre ; le coordinateur
+ * peut être utilisé par plusieurs threads, chaque requête en cours empruntant sa propre connexion.
+ */
+public class Coordinator implements AutoCloseable {
+
+    private final List<InetSocketAddress> workers;
+    private final List<Queue<Connection>> idle = new ArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructeur : les connexions sont ouvertes à la première requête.
+     *
+     * @param workers les adresses des nœuds, le i-ème nœud servant la partition i
+     */
+    public Coordinator(List<InetSocketAddress> workers) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("Le coordinateur doit avoir au moins un nœud");
+        }
+        this.workers = List.copyOf(workers);
+        for (int i = 0; i < workers.size(); i++) {
+            idle.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * @return le nombre de nœuds
+     */
+    public int workerCount() {
+        return workers.size();
+    }
+
+    /**
+     * Évalue une requête en étoile sur les nœuds.
+     *
+     * @param query la requête en étoile
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     * @throws UncheckedIOException  si un nœud est injoignable
+     * @throws IllegalStateException si un nœud signale une erreur
+     */
+    public Iterator<Substitution> match(StarQuery query) {
+        Term subject = ShardedRDFStorage.commonSubject(query.getRdfAtoms());
+        if (subject == null) {
+            return scatterByAtom(query);
+        }
+        if (!subject.isVariable()) {
+            return toList(query(ShardedRDFStorage.partitionOf(subject, workers.size()), query)).iterator();
+        }
+        StarQuery partitionQuery = ShardedRDFStorage.partitionQuery(query, (Variable) subject);
+        return ShardedRDFStorage.gather(query, (Variable) subject,
+                onWorkers(i -> toList(query(i, partitionQuery))));
+    }
+
+    /**
+     * @return le nombre total de triplets des nœuds
+     */
+    public long size() {
+        long size = 0;
+        for (long part : onWorkers(i -> request(i, new byte[]{Protocol.SIZE}, DataInputStream::readLong))) {
+            size += part;
+        }
+        return size;
+    }
+
+    /**
+     * Ferme les connexions aux nœuds ; les nœuds eux-mêmes restent actifs.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Queue<Connection> connections : idle) {
+            Connection connection;
+            while ((connection = connections.poll()) != null) {
+                connection.close();
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Envoie une requête en étoile à un nœud et relit ses réponses.
+     */
+    private Iterator<Substitution> query(int worker, StarQuery query) {
+        byte[] request = encode(out -> {
+            out.writeByte(Protocol.QUERY);
+            Protocol.writeQuery(out, query);
+        });
+        return request(worker, request, in -> {
+            BinaryRowReader reader = new BinaryRowReader(in);
+            if (query.getModifiers().ask()) {
+                return Boolean.TRUE.equals(reader.booleanResult())
+                        ? Collections.singletonList((Substitution) new SubstitutionImpl()).iterator()
+                        : Collections.emptyIterator();
+            }
+            return reader;
+        });
+    }
+
+    /**
+     * Évalue une étoile dont les atomes n'ont pas de sujet commun : chaque atome est diffusé à tous les nœuds
+     * sous forme d'étoile à un atome, puis les réponses des atomes sont jointes par la valeur de la variable centrale,
+     * en partant de l'atome qui en a le moins. Les filtres sont vérifiés par les nœuds.
+     */
+    private Iterator<Substitution> scatterByAtom(StarQuery query) {
+        List<StarQuery> atomQueries = new ArrayList<>();
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            Set<Variable> variables = new LinkedHashSet<>();
+            for (Term term : atom.getTerms()) {
+                if (term.isVariable()) variables.add((Variable) term);
+            }
+            List<ComparisonFilter> filters = query.getFilters().stream()
+                    .filter(filter -> variables.contains(filter.getVariable()))
+                    .toList();
+            atomQueries.add(new StarQuery(query.getLabel(), List.of(atom), List.copyOf(variables), filters));
+        }
+        // Chaque triplet n'est que sur le nœud de son sujet : les réponses d'un atome ne se répètent pas entre nœuds
+        List<List<List<Substitution>>> parts = onWorkers(i -> atomQueries.stream()
+                .map(atomQuery -> toList(query(i, atomQuery)))
+                .toList());
+        List<List<Substitution>> rows = new ArrayList<>();
+        for (int atom = 0; atom < atomQueries.size(); atom++) {
+            List<Substitution> atomRows = new ArrayList<>();
+            for (List<List<Substitution>> part : parts) {
+                atomRows.addAll(part.get(atom));
+            }
+            rows.add(atomRows);
+        }
+        rows.sort(Comparator.comparingInt(List::size));
+
+        Variable center = query.getCentralVariable();
+        List<Map<Term, List<Map<Variable, Term>>>> byCenter = new ArrayList<>();
+        for (List<Substitution> atomRows : rows.subList(1, rows.size())) {
+            Map<Term, List<Map<Variable, Term>>> index = new HashMap<>();
+            for (Substitution row : atomRows) {
+                Map<Variable, Term> bindings = row.toMap();
+                index.computeIfAbsent(bindings.get(center), k -> new ArrayList<>()).add(bindings);
+            }
+            byCenter.add(index);
+        }
+        Set<Substitution> answers = new LinkedHashSet<>();
+        for (Substitution row : rows.get(0)) {
+            join(row.toMap(), center, byCenter, 0, query.getAnswerVariables(), answers);
+        }
+
+        SolutionModifiers modifiers = query.getModifiers();
+        if (modifiers.ask()) {
+            return answers.isEmpty()
+                    ? Collections.emptyIterator()
+                    : Collections.singletonList((Substitution) new SubstitutionImpl()).iterator();
+        }
+        Stream<Substitution> page = answers.stream().skip(modifiers.offset());
+        if (modifiers.hasLimit()) {
+            page = page.limit(modifiers.limit());
+        }
+        return page.iterator();
+    }
+
+    /**
+     * Étend les liaisons d'un atome par les réponses compatibles des atomes suivants, de même valeur centrale,
+     * et ajoute leur projection sur les variables réponses.
+     */
+    private static void join(Map<Variable, Term> bindings, Variable center,
+                             List<Map<Term, List<Map<Variable, Term>>>> byCenter, int next,
+                             Collection<Variable> answerVariables, Set<Substitution> answers) {
+        if (next == byCenter.size()) {
+            Substitution answer = new SubstitutionImpl();
+            for (Variable variable : answerVariables) {
+                answer.add(variable, bindings.get(variable));
+            }
+            answers.add(answer);
+            return;
+        }
+        candidates:
+        for (Map<Variable, Term> candidate : byCenter.get(next).getOrDefault(bindings.get(center), List.of())) {
+            Map<Variable, Term> extended = new HashMap<>(bindings);
+            for (Map.Entry<Variable, Term> binding : candidate.entrySet()) {
+                // Les atomes peuvent partager d'autres variables que la variable centrale
+                Term previous = extended.putIfAbsent(binding.getKey(), binding.getValue());
+                if (previous != null && !previous.equals(binding.getValue())) continue candidates;
+            }
+            join(extended, center, byCenter, next + 1, answerVariables, answers);
+        }
+    }
+
+    /**
+     * Lecture du contenu d'une réponse réussie.
+     */
+    private interface ResponseReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Écriture du contenu d'une requête.
+     */
+    private interface RequestWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(RequestWriter writer) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Envoie une requête à un nœud sur une connexion inoccupée (ouverte au besoin) et lit sa réponse.
+     * La réponse est entièrement reçue avant d'être décodée, et la connexion rendue aussitôt.
+     */
+    private <T> T request(int worker, byte[] request, ResponseReader<T> reader) {
+        if (closed) {
+            throw new IllegalStateException("Coordinateur fermé");
+        }
+        Connection connection = idle.get(worker).poll();
+        byte[] response;
+        try {
+            if (connection == null) {
+                connection = new Connection(workers.get(worker));
+            }
+            Protocol.writeMessage(connection.out, request);
+            response = Protocol.readMessage(connection.in);
+        } catch (IOException e) {
+            if (connection != null) connection.close();
+            throw new UncheckedIOException("Nœud injoignable : " + workers.get(worker), e);
+        }
+        idle.get(worker).add(connection);
+        if (closed) connection.close();
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(response));
+            if (in.readUnsignedByte() == Protocol.ERROR) {
+                throw new IllegalStateException("Erreur du nœud " + workers.get(worker) + " : " + Protocol.readString(in));
+            }
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Réponse invalide du nœud " + workers.get(worker), e);
+        }
+    }
+
+    /**
+     * Exécute une tâche par nœud, chacune sur un thread virtuel, et attend leurs résultats dans l'ordre des nœuds.
+     */
+    private <T> List<T> onWorkers(Function<Integer, T> task) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int i = 0; i < workers.size(); i++) {
+            int worker = i;
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(worker), executor));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        return results;
+    }
+
+    private static List<Substitution> toList(Iterator<Substitution> results) {
+        List<Substitution> list = new ArrayList<>();
+        results.forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Connexion persistante à un nœud.
+     */
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            this.socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
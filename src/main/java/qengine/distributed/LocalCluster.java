@@ -0,0 +1,108 @@
+package qengine.distributed;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grappe de nœuds de travail lancés comme processus locaux, chacun dans sa propre JVM avec le classpath courant,
+ * et écoutant sur l'interface de bouclage. Permet de tester et de mesurer le mode distribué sur une seule machine.
+ */
+public class LocalCluster implements AutoCloseable {
+
+    private static final String HOST = "127.0.0.1";
+
+    private final List<Process> processes = new ArrayList<>();
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+    private LocalCluster() {
+    }
+
+    /**
+     * Lance un nœud par partition d'un fichier N-Triples et attend qu'ils soient tous prêts.
+     * Les nœuds chargent leur partition en parallèle.
+     *
+     * @param dataFile le fichier N-Triples
+     * @param workers  le nombre de nœuds (et de partitions)
+     * @return la grappe démarrée
+     * @throws IOException si un nœud ne peut pas être lancé ou s'arrête avant d'être prêt
+     */
+    public static LocalCluster start(String dataFile, int workers) throws IOException {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Le nombre de nœuds doit être positif : " + workers);
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+        LocalCluster cluster = new LocalCluster();
+        try {
+            for (int i = 0; i < workers; i++) {
+                ProcessBuilder builder = new ProcessBuilder(java, "-cp", classpath, WorkerMain.class.getName(),
+                        "--data", new File(dataFile).getAbsolutePath(),
+                        "--partition", String.valueOf(i), "--partitions", String.valueOf(workers),
+                        "--host", HOST);
+                builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+                cluster.processes.add(builder.start());
+            }
+            for (int i = 0; i < workers; i++) {
+                cluster.addresses.add(new InetSocketAddress(HOST, awaitReady(cluster.processes.get(i), i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+        return cluster;
+    }
+
+    /**
+     * Lit la sortie d'un nœud jusqu'à sa ligne {@value WorkerMain#READY} et retourne le port annoncé.
+     */
+    private static int awaitReady(Process process, int partition) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(WorkerMain.READY + " ")) {
+                // La suite de la sortie est ignorée, pour ne jamais bloquer le nœud sur un tube plein
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        reader.transferTo(Writer.nullWriter());
+                    } catch (IOException ignored) {
+                    }
+                });
+                return Integer.parseInt(line.substring(WorkerMain.READY.length() + 1).trim());
+            }
+        }
+        throw new IOException("Le nœud de la partition " + partition + " s'est arrêté avant d'être prêt");
+    }
+
+    /**
+     * @return les adresses des nœuds, dans l'ordre des partitions
+     */
+    public List<InetSocketAddress> addresses() {
+        return List.copyOf(addresses);
+    }
+
+    /**
+     * Arrête les processus des nœuds et attend leur fin.
+     */
+    @Override
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package qengine.distributed;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Protocole binaire entre le coordinateur et les nœuds de travail.
+ * Chaque message est découpé en trames d'au plus {@link #MAX_FRAME} octets : la longueur de la trame sur 4 octets,
+ * puis son contenu. La dernière trame d'un message est plus courte que la limite (éventuellement vide) : un message
+ * volumineux est lu au fur et à mesure de son arrivée, et une longueur corrompue ne provoque jamais une allocation
+ * démesurée. Une connexion transporte une suite de requêtes, chacune suivie de sa réponse.
+ * <pre>
+ * requête :
+ *   QUERY    requête en étoile                         réponses encodées de la requête
+ *   SIZE                                               nombre de triplets du nœud
+ * réponse :
+ *   OK, puis le flux {@link qengine.io.BinaryRowWriter} des réponses (ou le nombre de triplets pour SIZE)
+ *   ERROR, message
+ * </pre>
+ * Un terme est écrit comme un booléen (variable ou constante) suivi de son libellé ; une chaîne est écrite
+ * comme sa longueur en octets sur 4 octets, puis son encodage UTF-8, sans limite de taille.
+ */
+final class Protocol {
+
+    static final int QUERY = 1;
+    static final int SIZE = 3;
+
+    static final int OK = 0;
+    static final int ERROR = 1;
+
+    // Taille maximale d'une trame, pour rejeter un flux corrompu
+    static final int MAX_FRAME = 4 << 20;
+
+    private static final TermFactory TERMS = SameObjectTermFactory.instance();
+
+    private Protocol() {
+    }
+
+    static void writeMessage(DataOutputStream out, byte[] payload) throws IOException {
+        int offset = 0;
+        int length;
+        do {
+            length = Math.min(MAX_FRAME, payload.length - offset);
+            out.writeInt(length);
+            out.write(payload, offset, length);
+            offset += length;
+        } while (length == MAX_FRAME);
+        out.flush();
+    }
+
+    /**
+     * Lit un message, trame par trame.
+     *
+     * @throws IOException si le flux est interrompu, ou si une longueur de trame est invalide :
+     *                     la connexion ne doit alors plus être utilisée
+     */
+    static byte[] readMessage(DataInputStream in) throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        byte[] frame = new byte[0];
+        int length;
+        do {
+            length = in.readInt();
+            if (length < 0 || length > MAX_FRAME) {
+                throw new IOException("Trame refusée : longueur " + length + " hors de [0, " + MAX_FRAME
+                        + "] octets, flux corrompu ou incompatible");
+            }
+            if (frame.length < length) frame = new byte[length];
+            in.readFully(frame, 0, length);
+            message.write(frame, 0, length);
+        } while (length == MAX_FRAME);
+        return message.toByteArray();
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Lit une chaîne d'un message déjà reçu : sa longueur ne peut pas dépasser ce qui reste du message.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Longueur de chaîne invalide : " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeTerm(DataOutputStream out, Term term) throws IOException {
+        out.writeBoolean(term.isVariable());
+        writeString(out, term.label());
+    }
+
+    static Term readTerm(DataInputStream in) throws IOException {
+        boolean variable = in.readBoolean();
+        String label = readString(in);
+        return variable ? TERMS.createOrGetVariable(label) : TERMS.createOrGetLiteral(label);
+    }
+
+    static void writeAtoms(DataOutputStream out, List<RDFAtom> atoms) throws IOException {
+        out.writeInt(atoms.size());
+        for (RDFAtom atom : atoms) {
+            writeTerm(out, atom.getTripleSubject());
+            writeTerm(out, atom.getTriplePredicate());
+            writeTerm(out, atom.getTripleObject());
+        }
+    }
+
+    static List<RDFAtom> readAtoms(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<RDFAtom> atoms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            atoms.add(new RDFAtom(readTerm(in), readTerm(in), readTerm(in)));
+        }
+        return atoms;
+    }
+
+    static void writeQuery(DataOutputStream out, StarQuery query) throws IOException {
+        writeString(out, query.getLabel());
+        writeAtoms(out, query.getRdfAtoms());
+        out.writeInt(query.getAnswerVariables().size());
+        for (Variable variable : query.getAnswerVariables()) {
+            writeTerm(out, variable);
+        }
+        out.writeInt(query.getFilters().size());
+        for (ComparisonFilter filter : query.getFilters()) {
+            writeTerm(out, filter.getVariable());
+            out.writeByte(filter.getOperator().ordinal());
+            writeTerm(out, filter.getValue());
+        }
+        SolutionModifiers modifiers = query.getModifiers();
+        out.writeLong(modifiers.offset());
+        out.writeLong(modifiers.limit());
+        out.writeBoolean(modifiers.ask());
+    }
+
+    static StarQuery readQuery(DataInputStream in) throws IOException {
+        String label = readString(in);
+        List<RDFAtom> atoms = readAtoms(in);
+        int answers = in.readInt();
+        List<Variable> variables = new ArrayList<>(answers);
+        for (int i = 0; i < answers; i++) {
+            variables.add((Variable) readTerm(in));
+        }
+        int filters = in.readInt();
+        List<ComparisonFilter> comparisons = new ArrayList<>(filters);
+        ComparisonFilter.Operator[] operators = ComparisonFilter.Operator.values();
+        for (int i = 0; i < filters; i++) {
+            Variable variable = (Variable) readTerm(in);
+            ComparisonFilter.Operator operator = operators[in.readUnsignedByte()];
+            comparisons.add(new ComparisonFilter(variable, operator, readTerm(in)));
+        }
+        SolutionModifiers modifiers = new SolutionModifiers(in.readLong(), in.readLong(), in.readBoolean());
+        return new StarQuery(label, atoms, variables, comparisons, modifiers);
+    }
+}
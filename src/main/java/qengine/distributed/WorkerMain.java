@@ -0,0 +1,76 @@
+package qengine.distributed;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import qengine.model.RDFAtom;
+import qengine.parser.RDFAtomParser;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.ShardedRDFStorage;
+
+import java.io.FileReader;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Programme d'un nœud de travail : il charge la partition d'un fichier N-Triples qui lui revient
+ * puis la sert par un {@link WorkerNode}. Une fois prêt, il écrit sur la sortie standard la ligne
+ * {@value #READY} suivie du port écouté, attendue par {@link LocalCluster}.
+ */
+@Command(name = "qengine-worker", mixinStandardHelpOptions = true, version = "qengine-worker 0.0.1",
+        description = "Serves one subject partition of an RDF data file to a distributed coordinator.")
+class WorkerMain implements Callable<Integer> {
+
+    static final String READY = "READY";
+
+    @Option(names = {"-d", "--data"}, required = true, description = "The path of the N-Triples data file.")
+    private String dataFilePath;
+
+    @Option(names = {"--partition"}, required = true, description = "The index of the partition served by this worker.")
+    private int partition;
+
+    @Option(names = {"--partitions"}, required = true, description = "The total number of partitions.")
+    private int partitions;
+
+    @Option(names = {"--host"}, defaultValue = "127.0.0.1", description = "The address to listen on (default: ${DEFAULT-VALUE}).")
+    private String host;
+
+    @Option(names = {"-p", "--port"}, defaultValue = "0", description = "The port to listen on, 0 for any free port (default: ${DEFAULT-VALUE}).")
+    private int port;
+
+    @Override
+    public Integer call() throws Exception {
+        if (partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException("Partition invalide : " + partition + " sur " + partitions);
+        }
+
+        RDFHexaStore store = new RDFHexaStore();
+        try (RDFAtomParser parser = new RDFAtomParser(new FileReader(dataFilePath), RDFFormat.NTRIPLES)) {
+            while (parser.hasNext()) {
+                RDFAtom atom = parser.next();
+                if (ShardedRDFStorage.partitionOf(atom.getTripleSubject(), partitions) == partition) {
+                    store.add(atom);
+                }
+            }
+        }
+
+        WorkerNode node = new WorkerNode(store, new InetSocketAddress(host, port));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            node.close();
+            stopped.countDown();
+        }));
+        System.err.println("Partition " + partition + "/" + partitions + ": " + store.size() + " triples");
+        System.out.println(READY + " " + node.getAddress().getPort());
+        System.out.flush();
+        stopped.await();
+        return 0;
+    }
+
+    public static void main(String... args) {
+        int exitCode = new CommandLine(new WorkerMain()).execute(args);
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,166 @@
+package qengine.distributed;
+
+import qengine.io.BinaryRowWriter;
+import qengine.model.StarQuery;
+import qengine.storage.RDFHexaStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Nœud de travail du mode distribué : un HexaStore contenant une partition des triplets (par sujet),
+ * interrogé par le {@link Coordinator} selon le {@link Protocol}. Chaque connexion est servie par son propre
+ * thread virtuel ; une connexion transporte une suite de requêtes, évaluées l'une après l'autre.
+ * <p>
+ * Les réponses sont renvoyées encodées au format {@link BinaryRowWriter} : les identifiants du dictionnaire
+ * du nœud, chaque terme n'étant écrit en toutes lettres qu'à sa première apparition dans la réponse.
+ */
+public class WorkerNode implements AutoCloseable {
+
+    private final RDFHexaStore store;
+    private final ServerSocket server;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder served = new LongAdder();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructeur : le nœud est lié à l'adresse et accepte aussitôt les connexions.
+     *
+     * @param store   la partition servie par le nœud
+     * @param address l'adresse d'écoute (port 0 pour un port libre)
+     * @throws IOException si le nœud ne peut pas être lié à l'adresse
+     */
+    public WorkerNode(RDFHexaStore store, InetSocketAddress address) throws IOException {
+        this.store = store;
+        this.server = new ServerSocket();
+        this.server.bind(address);
+        Thread.ofPlatform().daemon().name("qengine-worker-" + getAddress().getPort()).start(this::accept);
+    }
+
+    /**
+     * @return l'adresse effectivement écoutée
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * @return le nombre de requêtes servies
+     */
+    public long servedCount() {
+        return served.sum();
+    }
+
+    /**
+     * Arrête le nœud et ferme les connexions ouvertes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket connection;
+            try {
+                connection = server.accept();
+            } catch (IOException e) {
+                // Fermeture du nœud
+                return;
+            }
+            connections.add(connection);
+            Thread.ofVirtual().start(() -> serve(connection));
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (connection) {
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            while (!closed) {
+                byte[] request;
+                try {
+                    request = Protocol.readMessage(in);
+                } catch (EOFException e) {
+                    // Connexion fermée par le coordinateur
+                    return;
+                }
+                byte[] response = answer(request);
+                served.increment();
+                Protocol.writeMessage(out, response);
+            }
+        } catch (IOException ignored) {
+            // Connexion rompue : le coordinateur s'en aperçoit de son côté
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    /**
+     * Évalue une requête et retourne sa réponse ; une erreur d'évaluation est renvoyée au coordinateur.
+     */
+    private byte[] answer(byte[] request) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+            DataOutputStream out = new DataOutputStream(buffer);
+            int operation = in.readUnsignedByte();
+            switch (operation) {
+                case Protocol.QUERY -> {
+                    StarQuery query = Protocol.readQuery(in);
+                    out.writeByte(Protocol.OK);
+                    out.flush();
+                    BinaryRowWriter writer = new BinaryRowWriter(buffer);
+                    Iterator<int[]> rows = store.matchEncoded(query);
+                    if (query.getModifiers().ask()) {
+                        writer.writeBoolean(rows.hasNext());
+                    } else {
+                        writer.write(List.copyOf(query.getAnswerVariables()), rows, store::termOf);
+                    }
+                }
+                case Protocol.SIZE -> {
+                    out.writeByte(Protocol.OK);
+                    out.writeLong(store.size());
+                    out.flush();
+                }
+                default -> throw new IllegalArgumentException("Opération inconnue : " + operation);
+            }
+            return buffer.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            buffer.reset();
+            DataOutputStream out = new DataOutputStream(buffer);
+            try {
+                out.writeByte(Protocol.ERROR);
+                Protocol.writeString(out, String.valueOf(e.getMessage()));
+            } catch (IOException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
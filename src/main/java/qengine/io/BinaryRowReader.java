@@ -0,0 +1,150 @@
+package qengine.io;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Lecteur du format binaire écrit par {@link BinaryRowWriter} : les réponses sont relues une à une
+ * sous forme de substitutions. Les termes définis dans le flux sont conservés pour décoder les lignes suivantes.
+ */
+public class BinaryRowReader implements Iterator<Substitution>, Closeable {
+
+    private final DataInputStream in;
+    private final TermFactory termFactory = SameObjectTermFactory.instance();
+    private final List<Variable> variables;
+    private final Map<Integer, Term> terms = new HashMap<>();
+
+    private Substitution next = null;
+    private Boolean booleanResult = null;
+    private long count = -1;
+
+    /**
+     * Lit l'en-tête du flux.
+     *
+     * @param in le flux à lire
+     * @throws IOException si le flux ne commence pas par un en-tête valide
+     */
+    public BinaryRowReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        byte[] magic = new byte[BinaryRowWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryRowWriter.MAGIC)) {
+            throw new IOException("Signature de flux de résultats invalide");
+        }
+        int size = (int) readVarInt();
+        List<Variable> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(termFactory.createOrGetVariable("?" + readString()));
+        }
+        this.variables = List.copyOf(names);
+    }
+
+    /**
+     * @return les variables réponses, dans l'ordre des colonnes
+     */
+    public List<Variable> variables() {
+        return variables;
+    }
+
+    /**
+     * @return le résultat d'une requête ASK, ou null si le flux contient des réponses
+     */
+    public Boolean booleanResult() {
+        hasNext();
+        return booleanResult;
+    }
+
+    /**
+     * @return le nombre de réponses annoncé en fin de flux, ou -1 si la fin n'a pas encore été lue
+     */
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (count >= 0) return false;
+        try {
+            while (true) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case BinaryRowWriter.TERM -> {
+                        int id = (int) readVarInt();
+                        terms.put(id, termFactory.createOrGetLiteral(readString()));
+                    }
+                    case BinaryRowWriter.ROW -> {
+                        Substitution substitution = new SubstitutionImpl();
+                        for (Variable variable : variables) {
+                            long id = readVarInt();
+                            if (id > 0) substitution.add(variable, term((int) (id - 1)));
+                        }
+                        next = substitution;
+                        return true;
+                    }
+                    case BinaryRowWriter.ASK -> booleanResult = in.readUnsignedByte() != 0;
+                    case BinaryRowWriter.END -> {
+                        count = readVarInt();
+                        return false;
+                    }
+                    default -> throw new IOException("Enregistrement inconnu : " + tag);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Substitution next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Aucune réponse disponible");
+        }
+        Substitution result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Term term(int id) throws IOException {
+        Term term = terms.get(id);
+        if (term == null) {
+            throw new IOException("Terme non défini : " + id);
+        }
+        return term;
+    }
+
+    private long readVarInt() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Entier variable trop long");
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarInt();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
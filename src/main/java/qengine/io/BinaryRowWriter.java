@@ -0,0 +1,117 @@
+package qengine.io;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Écrivain au format binaire compact de qengine, relu par {@link BinaryRowReader}.
+ * Les entiers sont écrits sur un nombre variable d'octets ; chaque terme n'est écrit en toutes lettres
+ * qu'à sa première apparition, les lignes ne contenant ensuite que des identifiants.
+ * <pre>
+ * "QRW1"                                   signature
+ * n, n × (longueur, nom UTF-8)             variables réponses
+ * puis une suite d'enregistrements :
+ *   TERM   id, longueur, libellé UTF-8     définition d'un terme
+ *   ROW    n × (id + 1)                    une réponse (0 pour une variable non liée)
+ *   ASK    0 ou 1                          résultat d'une requête ASK
+ *   END    nombre de réponses              fin des résultats
+ * </pre>
+ */
+public class BinaryRowWriter extends ResultWriter {
+
+    public static final String MEDIA_TYPE = "application/x-qengine-rows";
+
+    static final byte[] MAGIC = {'Q', 'R', 'W', '1'};
+    static final int END = 0;
+    static final int TERM = 1;
+    static final int ROW = 2;
+    static final int ASK = 3;
+
+    // Identifiants déjà définis dans le flux
+    private final BitSet defined = new BitSet();
+
+    public BinaryRowWriter(OutputStream out) {
+        super(out);
+    }
+
+    public BinaryRowWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    public String mediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        begin(List.of());
+        sink.write(ASK);
+        sink.write(value ? 1 : 0);
+        end(0);
+        sink.flush();
+    }
+
+    @Override
+    void begin(List<Variable> variables) throws IOException {
+        defined.clear();
+        sink.write(MAGIC);
+        sink.writeVarInt(variables.size());
+        for (Variable variable : variables) {
+            writeString(variableName(variable));
+        }
+    }
+
+    @Override
+    void writeRow(int[] row) throws IOException {
+        for (int id : row) {
+            if (id >= 0 && !defined.get(id)) {
+                defined.set(id);
+                sink.write(TERM);
+                sink.writeVarInt(id);
+                sink.write(encoded(id));
+            }
+        }
+        sink.write(ROW);
+        for (int id : row) {
+            sink.writeVarInt(id < 0 ? 0 : id + 1L);
+        }
+    }
+
+    @Override
+    void end(long count) throws IOException {
+        sink.write(END);
+        sink.writeVarInt(count);
+    }
+
+    @Override
+    byte[] encodeTerm(Term term) {
+        byte[] label = term.label().getBytes(StandardCharsets.UTF_8);
+        // Longueur puis libellé, sérialisés ensemble pour le cache
+        byte[] length = new byte[5];
+        int size = 0;
+        long value = label.length;
+        while ((value & ~0x7FL) != 0) {
+            length[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        length[size++] = (byte) value;
+        byte[] encoded = new byte[size + label.length];
+        System.arraycopy(length, 0, encoded, 0, size);
+        System.arraycopy(label, 0, encoded, size, label.length);
+        return encoded;
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        sink.writeVarInt(bytes.length);
+        sink.write(bytes);
+    }
+}
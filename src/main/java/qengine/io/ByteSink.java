@@ -0,0 +1,121 @@
+package qengine.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tampon d'octets de taille fixe vidé vers un flux ou un canal.
+ * Les écrivains de résultats y sérialisent leurs lignes sans passer par un {@link java.io.Writer}.
+ */
+final class ByteSink implements Flushable, Closeable {
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer view = ByteBuffer.wrap(buffer);
+    private int size = 0;
+
+    ByteSink(OutputStream out) {
+        this.out = out;
+        this.channel = null;
+    }
+
+    ByteSink(WritableByteChannel channel) {
+        this.out = null;
+        this.channel = channel;
+    }
+
+    void write(int b) throws IOException {
+        if (size == BUFFER_SIZE) drain();
+        buffer[size++] = (byte) b;
+    }
+
+    void write(byte[] bytes) throws IOException {
+        if (bytes.length > BUFFER_SIZE - size) {
+            drain();
+            if (bytes.length > BUFFER_SIZE) {
+                writeThrough(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Écrit une chaîne ne contenant que des caractères ASCII.
+     */
+    void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            write(value.charAt(i));
+        }
+    }
+
+    void writeUtf8(String value) throws IOException {
+        write(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Écrit un entier positif sur un nombre variable d'octets (7 bits par octet, poids faibles d'abord).
+     */
+    void writeVarInt(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        write((int) value);
+    }
+
+    /**
+     * Vide le tampon vers la destination puis force son écriture.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (out != null) out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (out != null) {
+                out.close();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (size == 0) return;
+        if (out != null) {
+            out.write(buffer, 0, size);
+        } else {
+            view.clear().limit(size);
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+        size = 0;
+    }
+
+    private void writeThrough(byte[] bytes) throws IOException {
+        if (out != null) {
+            out.write(bytes);
+        } else {
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package qengine.io;
+
+import fr.boreal.model.logicalElements.api.Term;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Petit cache à correspondance directe des identifiants du dictionnaire vers leur forme sérialisée.
+ * Les réponses d'une requête répètent souvent les mêmes termes (valeur centrale, type, pays...) :
+ * le cache évite de décoder et d'échapper à nouveau un terme déjà écrit récemment, avec une empreinte fixe.
+ */
+final class DecodeCache {
+
+    private final int mask;
+    private final int[] ids;
+    private final byte[][] values;
+    private final IntFunction<Term> decoder;
+    private final Function<Term, byte[]> encoder;
+
+    /**
+     * @param capacity le nombre d'entrées, arrondi à la puissance de deux supérieure
+     * @param decoder  la traduction d'un identifiant en terme
+     * @param encoder  la sérialisation d'un terme
+     */
+    DecodeCache(int capacity, IntFunction<Term> decoder, Function<Term, byte[]> encoder) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.ids = new int[size];
+        this.values = new byte[size][];
+        this.decoder = decoder;
+        this.encoder = encoder;
+        Arrays.fill(ids, -1);
+    }
+
+    /**
+     * @param id un identifiant positif du dictionnaire
+     * @return la forme sérialisée du terme correspondant
+     */
+    byte[] get(int id) {
+        // Mélange des bits : des identifiants proches ne se disputent pas les mêmes entrées
+        int slot = (id * 0x9E3779B9 >>> 16) & mask;
+        if (ids[slot] != id) {
+            values[slot] = encoder.apply(decoder.apply(id));
+            ids[slot] = id;
+        }
+        return values[slot];
+    }
+}
@@ -0,0 +1,192 @@
+package qengine.io;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.storage.Dictionary;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Écrivain de résultats de requêtes en flux : les réponses encodées (identifiants du dictionnaire,
+ * dans l'ordre des variables réponses) sont consommées par lots de {@link #BATCH_SIZE} lignes,
+ * sérialisées dans un tampon de taille fixe puis envoyées vers un {@link OutputStream}
+ * ou un {@link WritableByteChannel}. La mémoire utilisée ne dépend pas du nombre de réponses.
+ * <p>
+ * La sérialisation d'un terme est conservée dans un petit cache indexé par son identifiant (voir {@link DecodeCache}).
+ * Un identifiant négatif désigne une variable non liée.
+ */
+public abstract class ResultWriter implements Flushable, Closeable {
+
+    public static final int BATCH_SIZE = 256;
+    static final int CACHE_SIZE = 4096;
+
+    final ByteSink sink;
+    private DecodeCache cache;
+
+    /**
+     * @param out le flux de destination
+     */
+    ResultWriter(OutputStream out) {
+        this.sink = new ByteSink(out);
+    }
+
+    /**
+     * @param channel le canal de destination
+     */
+    ResultWriter(WritableByteChannel channel) {
+        this.sink = new ByteSink(channel);
+    }
+
+    /**
+     * @return le type de média du format produit
+     */
+    public abstract String mediaType();
+
+    /**
+     * Écrit toutes les réponses encodées d'une requête.
+     *
+     * @param variables les variables réponses, dans l'ordre des colonnes
+     * @param rows      les réponses encodées, consommées au fil de l'écriture
+     * @param decoder   la traduction d'un identifiant en terme (par exemple {@link qengine.storage.RDFHexaStore#termOf(int)})
+     * @return le nombre de réponses écrites
+     * @throws IOException si l'écriture échoue
+     */
+    public long write(List<Variable> variables, Iterator<int[]> rows, IntFunction<Term> decoder) throws IOException {
+        cache = new DecodeCache(CACHE_SIZE, decoder, this::encodeTerm);
+        begin(variables);
+        int[][] batch = new int[BATCH_SIZE][];
+        long count = 0;
+        while (rows.hasNext()) {
+            int size = 0;
+            while (size < BATCH_SIZE && rows.hasNext()) {
+                batch[size++] = rows.next();
+            }
+            for (int i = 0; i < size; i++) {
+                writeRow(batch[i]);
+            }
+            count += size;
+            // Chaque lot est transmis sans attendre la fin de l'évaluation
+            sink.flush();
+        }
+        end(count);
+        sink.flush();
+        return count;
+    }
+
+    /**
+     * Écrit des réponses sous forme de substitutions, pour les stores qui n'exposent pas leurs identifiants.
+     * Les termes rencontrés reçoivent des identifiants locaux : la mémoire croît avec le nombre de termes distincts.
+     *
+     * @param variables les variables réponses, dans l'ordre des colonnes
+     * @param results   les substitutions, consommées au fil de l'écriture
+     * @return le nombre de réponses écrites
+     * @throws IOException si l'écriture échoue
+     */
+    public long writeSubstitutions(List<Variable> variables, Iterator<Substitution> results) throws IOException {
+        Dictionary local = new Dictionary();
+        Iterator<int[]> rows = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return results.hasNext();
+            }
+
+            @Override
+            public int[] next() {
+                Map<Variable, Term> bindings = results.next().toMap();
+                int[] row = new int[variables.size()];
+                for (int i = 0; i < row.length; i++) {
+                    Term term = bindings.get(variables.get(i));
+                    row[i] = term == null || term.isVariable() ? -1 : local.addAndGet(term);
+                }
+                return row;
+            }
+        };
+        return write(variables, rows, local::getKey);
+    }
+
+    /**
+     * Écrit le résultat d'une requête ASK.
+     *
+     * @param value le résultat
+     * @throws IOException                   si l'écriture échoue
+     * @throws UnsupportedOperationException si le format ne prévoit pas de résultat booléen
+     */
+    public void writeBoolean(boolean value) throws IOException {
+        throw new UnsupportedOperationException("Le format " + mediaType() + " ne prévoit pas de résultat booléen");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        sink.flush();
+    }
+
+    /**
+     * Vide le tampon et ferme la destination.
+     */
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+
+    /**
+     * Écrit l'en-tête des résultats.
+     */
+    abstract void begin(List<Variable> variables) throws IOException;
+
+    /**
+     * Écrit une réponse encodée.
+     */
+    abstract void writeRow(int[] row) throws IOException;
+
+    /**
+     * Termine les résultats.
+     *
+     * @param count le nombre de réponses écrites
+     */
+    abstract void end(long count) throws IOException;
+
+    /**
+     * Sérialise un terme tel qu'il apparaît dans une ligne, avant sa mise en cache.
+     */
+    abstract byte[] encodeTerm(Term term);
+
+    /**
+     * @param id l'identifiant d'un terme
+     * @return la sérialisation du terme, mise en cache
+     */
+    final byte[] encoded(int id) {
+        return cache.get(id);
+    }
+
+    /**
+     * @return le nom d'une variable, sans le point d'interrogation
+     */
+    static String variableName(Variable variable) {
+        String label = variable.label();
+        return label.startsWith("?") ? label.substring(1) : label;
+    }
+
+    /**
+     * Les termes du store sont des littéraux bruts : un terme est considéré comme une IRI
+     * s'il commence par un schéma suivi de ':' et ne contient pas d'espace.
+     */
+    static boolean isIri(Term term) {
+        String label = term.label();
+        int colon = label.indexOf(':');
+        if (colon <= 0 || label.indexOf(' ') >= 0 || !Character.isLetter(label.charAt(0))) return false;
+        for (int i = 1; i < colon; i++) {
+            char c = label.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package qengine.io;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Écrivain aux formats SPARQL 1.1 Query Results TSV et CSV.
+ * <ul>
+ *     <li>TSV : les termes sont écrits en syntaxe RDF ({@code <iri>} ou {@code "littéral"}), séparés par des tabulations ;</li>
+ *     <li>CSV : seules les valeurs sont écrites, entre guillemets si nécessaire, et les lignes se terminent par CRLF.</li>
+ * </ul>
+ */
+public class SeparatedValuesWriter extends ResultWriter {
+
+    public static final String TSV_MEDIA_TYPE = "text/tab-separated-values";
+    public static final String CSV_MEDIA_TYPE = "text/csv";
+
+    private final boolean tsv;
+
+    private SeparatedValuesWriter(OutputStream out, boolean tsv) {
+        super(out);
+        this.tsv = tsv;
+    }
+
+    private SeparatedValuesWriter(WritableByteChannel channel, boolean tsv) {
+        super(channel);
+        this.tsv = tsv;
+    }
+
+    public static SeparatedValuesWriter tsv(OutputStream out) {
+        return new SeparatedValuesWriter(out, true);
+    }
+
+    public static SeparatedValuesWriter tsv(WritableByteChannel channel) {
+        return new SeparatedValuesWriter(channel, true);
+    }
+
+    public static SeparatedValuesWriter csv(OutputStream out) {
+        return new SeparatedValuesWriter(out, false);
+    }
+
+    public static SeparatedValuesWriter csv(WritableByteChannel channel) {
+        return new SeparatedValuesWriter(channel, false);
+    }
+
+    @Override
+    public String mediaType() {
+        return tsv ? TSV_MEDIA_TYPE : CSV_MEDIA_TYPE;
+    }
+
+    @Override
+    void begin(List<Variable> variables) throws IOException {
+        for (int i = 0; i < variables.size(); i++) {
+            if (i > 0) sink.write(tsv ? '\t' : ',');
+            if (tsv) sink.write('?');
+            sink.writeUtf8(variableName(variables.get(i)));
+        }
+        endLine();
+    }
+
+    @Override
+    void writeRow(int[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) sink.write(tsv ? '\t' : ',');
+            if (row[i] >= 0) sink.write(encoded(row[i]));
+        }
+        endLine();
+    }
+
+    @Override
+    void end(long count) {
+        // Pas de pied de document
+    }
+
+    @Override
+    byte[] encodeTerm(Term term) {
+        String label = term.label();
+        String value;
+        if (tsv) {
+            value = isIri(term)
+                    ? "<" + label + ">"
+                    : "\"" + label.replace("\\", "\\\\").replace("\"", "\\\"")
+                    .replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r") + "\"";
+        } else {
+            boolean quoted = label.indexOf(',') >= 0 || label.indexOf('"') >= 0
+                    || label.indexOf('\n') >= 0 || label.indexOf('\r') >= 0;
+            value = quoted ? "\"" + label.replace("\"", "\"\"") + "\"" : label;
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void endLine() throws IOException {
+        if (!tsv) sink.write('\r');
+        sink.write('\n');
+    }
+}
@@ -0,0 +1,103 @@
+package qengine.io;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Écrivain au format SPARQL 1.1 Query Results JSON, une réponse par ligne.
+ */
+public class SparqlJsonWriter extends ResultWriter {
+
+    public static final String MEDIA_TYPE = "application/sparql-results+json";
+
+    // Préfixe "nom": de chaque colonne
+    private byte[][] keys;
+    private boolean first;
+
+    public SparqlJsonWriter(OutputStream out) {
+        super(out);
+    }
+
+    public SparqlJsonWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    public String mediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        sink.writeAscii("{\"head\":{},\"boolean\":" + value + "}\n");
+        sink.flush();
+    }
+
+    @Override
+    void begin(List<Variable> variables) throws IOException {
+        keys = new byte[variables.size()][];
+        sink.writeAscii("{\"head\":{\"vars\":[");
+        for (int i = 0; i < variables.size(); i++) {
+            String name = quote(variableName(variables.get(i)));
+            if (i > 0) sink.write(',');
+            sink.writeUtf8(name);
+            keys[i] = (name + ":").getBytes(StandardCharsets.UTF_8);
+        }
+        sink.writeAscii("]},\"results\":{\"bindings\":[");
+        first = true;
+    }
+
+    @Override
+    void writeRow(int[] row) throws IOException {
+        sink.writeAscii(first ? "\n{" : ",\n{");
+        first = false;
+        boolean firstBinding = true;
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] < 0) continue;
+            if (!firstBinding) sink.write(',');
+            firstBinding = false;
+            sink.write(keys[i]);
+            sink.write(encoded(row[i]));
+        }
+        sink.write('}');
+    }
+
+    @Override
+    void end(long count) throws IOException {
+        sink.writeAscii("\n]}}\n");
+    }
+
+    @Override
+    byte[] encodeTerm(Term term) {
+        String json = "{\"type\":" + (isIri(term) ? "\"uri\"" : "\"literal\"") + ",\"value\":" + quote(term.label()) + "}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,237 @@
+package qengine.model;
+
+import fr.boreal.model.formula.api.FOFormulaConjunction;
+import fr.boreal.model.formula.factory.FOFormulaFactory;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.query.api.FOQuery;
+import fr.boreal.model.query.api.Query;
+import fr.boreal.model.query.factory.FOQueryFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Représentation d'une requête conjonctive (Basic Graph Pattern) quelconque.
+ * Les triplets doivent former un graphe connexe par leurs variables partagées :
+ * une requête en flocon ou en chaîne est ainsi une jointure de plusieurs requêtes en étoile.
+ */
+public class BGPQuery implements Query {
+
+    // Label de la requête
+    private final String label;
+
+    // Collection des triplets RDF (les atomes de la requête)
+    private final List<RDFAtom> rdfAtoms;
+
+    // variables réponses
+    private final Collection<Variable> answerVariables;
+
+    // Filtres de comparaison portant sur les variables de la requête
+    private final List<ComparisonFilter> filters;
+
+    // Modificateurs de solutions (LIMIT, OFFSET, ASK)
+    private final SolutionModifiers modifiers;
+
+    /**
+     * Constructeur pour une requête conjonctive.
+     *
+     * @param label           le label de la requête
+     * @param rdfAtoms        la collection des triplets RDF
+     * @param answerVariables les variables réponses
+     * @param filters         les filtres de comparaison
+     * @param modifiers       les modificateurs de solutions (LIMIT, OFFSET, ASK)
+     * @throws NullPointerException     si l'un des paramètres est null
+     * @throws IllegalArgumentException si les triplets ne forment pas un graphe connexe
+     *                                  ou si une variable réponse ou filtrée est absente des triplets
+     */
+    public BGPQuery(String label, List<RDFAtom> rdfAtoms, Collection<Variable> answerVariables,
+                    List<ComparisonFilter> filters, SolutionModifiers modifiers) {
+        this.label = Objects.requireNonNull(label, "Le label ne peut pas être null.");
+        this.rdfAtoms = Objects.requireNonNull(rdfAtoms, "Les triplets RDF ne peuvent pas être null.");
+        this.answerVariables = Objects.requireNonNull(answerVariables, "Les variables réponses ne peuvent pas être null.");
+        this.filters = Objects.requireNonNull(filters, "Les filtres ne peuvent pas être null.");
+        this.modifiers = Objects.requireNonNull(modifiers, "Les modificateurs ne peuvent pas être null.");
+
+        validateConnected(rdfAtoms);
+
+        Set<Variable> variables = variablesOf(rdfAtoms);
+        for (Variable answerVariable : answerVariables) {
+            if (!variables.contains(answerVariable)) {
+                throw new IllegalArgumentException("La variable réponse " + answerVariable +
+                        " n'est pas présente dans les triplets RDF.");
+            }
+        }
+        for (ComparisonFilter filter : filters) {
+            if (!variables.contains(filter.getVariable())) {
+                throw new IllegalArgumentException("La variable filtrée " + filter.getVariable() +
+                        " n'est pas présente dans les triplets RDF.");
+            }
+        }
+    }
+
+    /**
+     * Vérifie que les triplets forment un graphe connexe par leurs variables partagées.
+     *
+     * @param rdfAtoms la collection de triplets RDF
+     * @throws IllegalArgumentException si la requête est vide, si un triplet n'a pas de variable
+     *                                  ou si les triplets ne sont pas tous reliés
+     */
+    private void validateConnected(List<RDFAtom> rdfAtoms) {
+        if (rdfAtoms.isEmpty()) {
+            throw new IllegalArgumentException("La requête ne contient aucun triplet RDF.");
+        }
+        Set<Variable> reached = new HashSet<>(variablesOf(List.of(rdfAtoms.getFirst())));
+        List<RDFAtom> remaining = new ArrayList<>(rdfAtoms.subList(1, rdfAtoms.size()));
+        boolean progress = true;
+        while (!remaining.isEmpty() && progress) {
+            progress = false;
+            for (Iterator<RDFAtom> it = remaining.iterator(); it.hasNext(); ) {
+                Set<Variable> atomVariables = variablesOf(List.of(it.next()));
+                if (!Collections.disjoint(reached, atomVariables)) {
+                    reached.addAll(atomVariables);
+                    it.remove();
+                    progress = true;
+                }
+            }
+        }
+        if (reached.isEmpty() || !remaining.isEmpty()) {
+            throw new IllegalArgumentException("Les triplets RDF ne sont pas reliés par des variables partagées.");
+        }
+    }
+
+    private static Set<Variable> variablesOf(Collection<RDFAtom> atoms) {
+        return atoms.stream()
+                .flatMap(atom -> Arrays.stream(atom.getTerms()))
+                .filter(Term::isVariable)
+                .map(term -> (Variable) term)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Décompose la requête en requêtes en étoile.
+     * Tant qu'il reste des triplets, la variable présente dans le plus grand nombre d'entre eux devient
+     * le centre d'une étoile regroupant ces triplets. Les variables réponses de chaque étoile sont ses variables
+     * réponses de la requête et ses variables de liaison, partagées avec une autre étoile ; les filtres sont
+     * recopiés dans chaque étoile contenant leur variable.
+     *
+     * @return les requêtes en étoile, dans l'ordre de leur construction
+     */
+    public List<StarQuery> decompose() {
+        List<List<RDFAtom>> groups = new ArrayList<>();
+        List<RDFAtom> remaining = new ArrayList<>(rdfAtoms);
+        while (!remaining.isEmpty()) {
+            Map<Variable, Long> occurrences = remaining.stream()
+                    .flatMap(atom -> variablesOf(List.of(atom)).stream())
+                    .collect(Collectors.groupingBy(v -> v, LinkedHashMap::new, Collectors.counting()));
+            Variable center = Collections.max(occurrences.entrySet(), Map.Entry.comparingByValue()).getKey();
+            List<RDFAtom> star = remaining.stream()
+                    .filter(atom -> Arrays.asList(atom.getTerms()).contains(center))
+                    .toList();
+            remaining.removeAll(star);
+            groups.add(star);
+        }
+
+        List<StarQuery> stars = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            Set<Variable> starVariables = variablesOf(groups.get(i));
+            Set<Variable> others = new HashSet<>();
+            for (int j = 0; j < groups.size(); j++) {
+                if (j != i) others.addAll(variablesOf(groups.get(j)));
+            }
+            List<Variable> starAnswers = starVariables.stream()
+                    .filter(v -> answerVariables.contains(v) || others.contains(v))
+                    .toList();
+            List<ComparisonFilter> starFilters = filters.stream()
+                    .filter(f -> starVariables.contains(f.getVariable()))
+                    .toList();
+            stars.add(new StarQuery(label + "#" + i, groups.get(i), starAnswers, starFilters));
+        }
+        return stars;
+    }
+
+    /**
+     * Retourne le label de la requête.
+     *
+     * @return le label
+     */
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Retourne les variables réponses.
+     *
+     * @return les variables réponses
+     */
+    @Override
+    public Collection<Variable> getAnswerVariables() {
+        return answerVariables;
+    }
+
+    /**
+     * Retourne la collection des triplets RDF.
+     *
+     * @return la collection des triplets RDF
+     */
+    public List<RDFAtom> getRdfAtoms() {
+        return rdfAtoms;
+    }
+
+    /**
+     * Retourne les filtres de comparaison de la requête.
+     *
+     * @return les filtres (liste vide si la requête n'en a pas)
+     */
+    public List<ComparisonFilter> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Retourne les modificateurs de solutions de la requête.
+     *
+     * @return les modificateurs ({@link SolutionModifiers#NONE} si la requête n'en a pas)
+     */
+    public SolutionModifiers getModifiers() {
+        return modifiers;
+    }
+
+    /**
+     * Convertit la requête en requête pour Integraal
+     *
+     * @return FOQuery
+     */
+    public FOQuery<FOFormulaConjunction> asFOQuery() {
+        FOFormulaConjunction conjunction = FOFormulaFactory.instance().createOrGetConjunction(this.rdfAtoms);
+        return FOQueryFactory.instance().createOrGetQuery(this.label, conjunction, this.answerVariables);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BGPQuery that = (BGPQuery) o;
+        return label.equals(that.label) &&
+                rdfAtoms.equals(that.rdfAtoms) &&
+                answerVariables.equals(that.answerVariables) &&
+                filters.equals(that.filters) &&
+                modifiers.equals(that.modifiers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(label, rdfAtoms, answerVariables, filters, modifiers);
+    }
+
+    @Override
+    public String toString() {
+        return "BGPQuery{" +
+                "label='" + label + '\'' +
+                ",\n\t rdfAtoms=" + rdfAtoms +
+                ",\n\t answerVariables=" + answerVariables +
+                (filters.isEmpty() ? "" : ",\n\t filters=" + filters) +
+                (modifiers.equals(SolutionModifiers.NONE) ? "" : ",\n\t modifiers=" + modifiers) +
+                '}';
+    }
+}
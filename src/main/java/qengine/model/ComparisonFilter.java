@@ -0,0 +1,122 @@
+package qengine.model;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+
+import java.util.Objects;
+
+/**
+ * Représentation d'un FILTER de comparaison entre une variable et une constante,
+ * par exemple {@code FILTER(?v1 > 20)}.
+ * Un intervalle (BETWEEN) s'exprime par deux filtres sur la même variable.
+ */
+public class ComparisonFilter {
+
+    /**
+     * Opérateurs de comparaison supportés.
+     */
+    public enum Operator {
+        LT("<"),
+        LE("<="),
+        GT(">"),
+        GE(">="),
+        EQ("="),
+        NE("!=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * Retourne l'opérateur équivalent lorsque les deux opérandes sont échangées
+         * (par exemple {@code 20 < ?x} devient {@code ?x > 20}).
+         *
+         * @return l'opérateur inversé
+         */
+        public Operator reverse() {
+            return switch (this) {
+                case LT -> GT;
+                case LE -> GE;
+                case GT -> LT;
+                case GE -> LE;
+                case EQ, NE -> this;
+            };
+        }
+
+        public String symbol() {
+            return symbol;
+        }
+    }
+
+    private final Variable variable;
+    private final Operator operator;
+    private final Term value;
+
+    /**
+     * Constructeur d'un filtre de comparaison.
+     *
+     * @param variable la variable filtrée
+     * @param operator l'opérateur de comparaison
+     * @param value    la constante à laquelle la variable est comparée
+     * @throws NullPointerException     si l'un des paramètres est null
+     * @throws IllegalArgumentException si la valeur est une variable
+     */
+    public ComparisonFilter(Variable variable, Operator operator, Term value) {
+        this.variable = Objects.requireNonNull(variable, "La variable ne peut pas être null.");
+        this.operator = Objects.requireNonNull(operator, "L'opérateur ne peut pas être null.");
+        this.value = Objects.requireNonNull(value, "La valeur ne peut pas être null.");
+        if (value.isVariable()) {
+            throw new IllegalArgumentException("Un filtre de comparaison doit comparer une variable à une constante.");
+        }
+    }
+
+    /**
+     * Vérifie si un terme satisfait le filtre.
+     *
+     * @param candidate le terme associé à la variable filtrée
+     * @return true si le terme satisfait le filtre, false sinon
+     */
+    public boolean test(Term candidate) {
+        int cmp = TermValueComparator.INSTANCE.compare(candidate, value);
+        return switch (operator) {
+            case LT -> cmp < 0;
+            case LE -> cmp <= 0;
+            case GT -> cmp > 0;
+            case GE -> cmp >= 0;
+            case EQ -> cmp == 0;
+            case NE -> cmp != 0;
+        };
+    }
+
+    public Variable getVariable() {
+        return variable;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Term getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ComparisonFilter that = (ComparisonFilter) o;
+        return variable.equals(that.variable) && operator == that.operator && value.equals(that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(variable, operator, value);
+    }
+
+    @Override
+    public String toString() {
+        return "FILTER(" + variable + " " + operator.symbol() + " " + value + ")";
+    }
+}
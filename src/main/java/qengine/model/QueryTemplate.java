@@ -0,0 +1,101 @@
+package qengine.model;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+
+import java.util.*;
+
+/**
+ * Modèle de requête en étoile paramétrée, comme les modèles des jeux de requêtes WatDiv.
+ * Les paramètres sont des variables de la requête qui seront remplacées par des constantes
+ * à chaque instanciation ; ils ne peuvent être ni des variables réponses, ni des variables filtrées.
+ * Une variable qui n'est pas un paramètre doit être partagée par tous les triplets : elle sera la variable
+ * centrale de chaque instance, quelle que soit la variable centrale choisie pour le modèle lui-même.
+ *
+ * @param query      la requête en étoile, dont les paramètres sont des variables
+ * @param parameters les paramètres, dans l'ordre attendu des valeurs
+ */
+public record QueryTemplate(StarQuery query, List<Variable> parameters) {
+
+    /**
+     * Constructeur canonique.
+     *
+     * @throws IllegalArgumentException si un paramètre est absent des triplets, est une variable réponse
+     *                                  ou une variable filtrée, ou si les paramètres couvrent toutes les variables
+     *                                  partagées par les triplets
+     */
+    public QueryTemplate {
+        Objects.requireNonNull(query, "La requête ne peut pas être null.");
+        parameters = List.copyOf(parameters);
+
+        Set<Term> allTerms = new HashSet<>();
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            allTerms.addAll(Arrays.asList(atom.getTerms()));
+        }
+        for (Variable parameter : parameters) {
+            if (!allTerms.contains(parameter)) {
+                throw new IllegalArgumentException("Le paramètre " + parameter + " n'est pas présent dans les triplets RDF.");
+            }
+            if (query.getAnswerVariables().contains(parameter)) {
+                throw new IllegalArgumentException("Le paramètre " + parameter + " ne peut pas être une variable réponse.");
+            }
+            if (query.getFilters().stream().anyMatch(filter -> filter.getVariable().equals(parameter))) {
+                throw new IllegalArgumentException("Le paramètre " + parameter + " ne peut pas être filtré.");
+            }
+        }
+
+        // Une fois les paramètres remplacés par des constantes, les instances doivent rester des requêtes en étoile
+        Set<Term> shared = new HashSet<>(Arrays.asList(query.getRdfAtoms().getFirst().getTerms()));
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            shared.retainAll(Arrays.asList(atom.getTerms()));
+        }
+        shared.removeIf(term -> !term.isVariable());
+        shared.removeAll(parameters);
+        if (shared.isEmpty()) {
+            throw new IllegalArgumentException("Les paramètres " + parameters
+                    + " ne peuvent pas inclure toutes les variables partagées par les triplets.");
+        }
+    }
+
+    /**
+     * Instancie le modèle en remplaçant chaque paramètre par une constante.
+     *
+     * @param values les constantes, dans l'ordre des paramètres
+     * @return la requête en étoile instanciée
+     * @throws IllegalArgumentException si le nombre de valeurs ne correspond pas au nombre de paramètres
+     */
+    public StarQuery instantiate(List<Term> values) {
+        Map<Variable, Term> bindings = bind(values);
+        List<RDFAtom> atoms = new ArrayList<>();
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            Term[] terms = atom.getTerms().clone();
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = bindings.getOrDefault(terms[i], terms[i]);
+            }
+            atoms.add(new RDFAtom(terms));
+        }
+        return new StarQuery(query.getLabel(), atoms, query.getAnswerVariables(), query.getFilters(), query.getModifiers());
+    }
+
+    /**
+     * Associe chaque paramètre à sa valeur.
+     *
+     * @param values les constantes, dans l'ordre des paramètres
+     * @return les valeurs indexées par paramètre
+     * @throws IllegalArgumentException si le nombre de valeurs ne correspond pas au nombre de paramètres
+     */
+    public Map<Variable, Term> bind(List<Term> values) {
+        if (values.size() != parameters.size()) {
+            throw new IllegalArgumentException("Le modèle attend " + parameters.size() + " valeurs, "
+                    + values.size() + " reçues.");
+        }
+        Map<Variable, Term> bindings = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i).isVariable()) {
+                throw new IllegalArgumentException("La valeur du paramètre " + parameters.get(i) + " doit être une constante.");
+            }
+            bindings.put(parameters.get(i), values.get(i));
+        }
+        return bindings;
+    }
+}
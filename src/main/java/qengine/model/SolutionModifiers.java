@@ -0,0 +1,55 @@
+package qengine.model;
+
+/**
+ * Modificateurs de solutions d'une requête : OFFSET, LIMIT et forme ASK.
+ * Une requête ASK ne s'intéresse qu'à l'existence d'une réponse ; elle est évaluée comme une requête
+ * limitée à une seule réponse.
+ *
+ * @param offset le nombre de réponses à ignorer (0 si absent)
+ * @param limit  le nombre maximal de réponses, ou {@link #NO_LIMIT}
+ * @param ask    true si la requête est une requête ASK
+ */
+public record SolutionModifiers(long offset, long limit, boolean ask) {
+
+    public static final long NO_LIMIT = -1;
+
+    public static final SolutionModifiers NONE = new SolutionModifiers(0, NO_LIMIT, false);
+
+    /**
+     * Constructeur canonique.
+     *
+     * @throws IllegalArgumentException si l'offset est négatif ou si la limite est invalide
+     */
+    public SolutionModifiers {
+        if (offset < 0) {
+            throw new IllegalArgumentException("L'offset ne peut pas être négatif : " + offset);
+        }
+        if (limit < NO_LIMIT) {
+            throw new IllegalArgumentException("La limite ne peut pas être négative : " + limit);
+        }
+    }
+
+    /**
+     * Retourne les modificateurs d'une requête ASK.
+     *
+     * @return les modificateurs ASK
+     */
+    public static SolutionModifiers askQuery() {
+        return new SolutionModifiers(0, 1, true);
+    }
+
+    public SolutionModifiers withOffset(long offset) {
+        return new SolutionModifiers(offset, limit, ask);
+    }
+
+    public SolutionModifiers withLimit(long limit) {
+        return new SolutionModifiers(offset, limit, ask);
+    }
+
+    /**
+     * @return true si la requête limite le nombre de réponses
+     */
+    public boolean hasLimit() {
+        return limit != NO_LIMIT;
+    }
+}
@@ -30,6 +30,12 @@ public class StarQuery implements Query {
     // Variable centrale de la requête en étoile
     private final Variable centralVariable;
 
+    // Filtres de comparaison portant sur les variables de la requête
+    private final List<ComparisonFilter> filters;
+
+    // Modificateurs de solutions (LIMIT, OFFSET, ASK)
+    private final SolutionModifiers modifiers;
+
     /**
      * Constructeur pour une requête en étoile.
      *
@@ -40,15 +46,53 @@ public class StarQuery implements Query {
      * @throws IllegalArgumentException si les atomes RDF ne forment pas une requête en étoile
      */
     public StarQuery(String label, List<RDFAtom> rdfAtoms, Collection<Variable> answerVariables) {
+        this(label, rdfAtoms, answerVariables, List.of());
+    }
+
+    /**
+     * Constructeur pour une requête en étoile avec des filtres de comparaison.
+     *
+     * @param label           le label de la requête
+     * @param rdfAtoms        la collection des triplets RDF
+     * @param answerVariables les variables réponses
+     * @param filters         les filtres de comparaison
+     * @throws NullPointerException     si l'un des paramètres est null
+     * @throws IllegalArgumentException si les atomes RDF ne forment pas une requête en étoile
+     *                                  ou si un filtre porte sur une variable absente des triplets
+     */
+    public StarQuery(String label, List<RDFAtom> rdfAtoms, Collection<Variable> answerVariables,
+                     List<ComparisonFilter> filters) {
+        this(label, rdfAtoms, answerVariables, filters, SolutionModifiers.NONE);
+    }
+
+    /**
+     * Constructeur pour une requête en étoile avec des filtres et des modificateurs de solutions.
+     *
+     * @param label           le label de la requête
+     * @param rdfAtoms        la collection des triplets RDF
+     * @param answerVariables les variables réponses
+     * @param filters         les filtres de comparaison
+     * @param modifiers       les modificateurs de solutions (LIMIT, OFFSET, ASK)
+     * @throws NullPointerException     si l'un des paramètres est null
+     * @throws IllegalArgumentException si les atomes RDF ne forment pas une requête en étoile
+     *                                  ou si un filtre porte sur une variable absente des triplets
+     */
+    public StarQuery(String label, List<RDFAtom> rdfAtoms, Collection<Variable> answerVariables,
+                     List<ComparisonFilter> filters, SolutionModifiers modifiers) {
         this.label = Objects.requireNonNull(label, "Le label ne peut pas être null.");
         this.rdfAtoms = Objects.requireNonNull(rdfAtoms, "Les triplets RDF ne peuvent pas être null.");
         this.answerVariables = Objects.requireNonNull(answerVariables, "Les variables réponses ne peuvent pas être null.");
+        this.filters = Objects.requireNonNull(filters, "Les filtres ne peuvent pas être null.");
+        this.modifiers = Objects.requireNonNull(modifiers, "Les modificateurs ne peuvent pas être null.");
 
         // Déterminer la variable centrale
         this.centralVariable = determineCentralVariable(rdfAtoms);
 
         // Vérifier que toutes les variables réponses sont valides
         validateAnswerVariables(answerVariables, rdfAtoms);
+
+        // Vérifier que les filtres portent sur des variables de la requête
+        validateFilters(filters, rdfAtoms);
     }
 
     /**
@@ -96,6 +140,26 @@ public class StarQuery implements Query {
         }
     }
 
+    /**
+     * Valide que tous les filtres portent sur des variables présentes dans les triplets RDF.
+     *
+     * @param filters  les filtres de comparaison
+     * @param rdfAtoms la collection de triplets RDF
+     * @throws IllegalArgumentException si une variable filtrée n'est pas présente
+     */
+    private void validateFilters(Collection<ComparisonFilter> filters, Collection<RDFAtom> rdfAtoms) {
+        Set<Term> allTerms = rdfAtoms.stream()
+                .flatMap(atom -> Arrays.stream(atom.getTerms()))
+                .collect(Collectors.toSet());
+
+        for (ComparisonFilter filter : filters) {
+            if (!allTerms.contains(filter.getVariable())) {
+                throw new IllegalArgumentException("La variable filtrée " + filter.getVariable() +
+                        " n'est pas présente dans les triplets RDF.");
+            }
+        }
+    }
+
     /**
      * Retourne le label de la requête.
      *
@@ -134,6 +198,24 @@ public class StarQuery implements Query {
         return rdfAtoms;
     }
 
+    /**
+     * Retourne les filtres de comparaison de la requête.
+     *
+     * @return les filtres (liste vide si la requête n'en a pas)
+     */
+    public List<ComparisonFilter> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Retourne les modificateurs de solutions de la requête.
+     *
+     * @return les modificateurs ({@link SolutionModifiers#NONE} si la requête n'en a pas)
+     */
+    public SolutionModifiers getModifiers() {
+        return modifiers;
+    }
+
     /**
      * Convertit la requete en étoile en requete pour Integraal
      *
@@ -152,12 +234,14 @@ public class StarQuery implements Query {
         return label.equals(that.label) &&
                 rdfAtoms.equals(that.rdfAtoms) &&
                 answerVariables.equals(that.answerVariables) &&
-                centralVariable.equals(that.centralVariable);
+                centralVariable.equals(that.centralVariable) &&
+                filters.equals(that.filters) &&
+                modifiers.equals(that.modifiers);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(label, rdfAtoms, answerVariables, centralVariable);
+        return Objects.hash(label, rdfAtoms, answerVariables, centralVariable, filters, modifiers);
     }
 
     @Override
@@ -167,6 +251,8 @@ public class StarQuery implements Query {
                 ",\n\t rdfAtoms=" + rdfAtoms +
                 ",\n\t answerVariables=" + answerVariables +
                 ",\n\t centralVariable=" + centralVariable +
+                (filters.isEmpty() ? "" : ",\n\t filters=" + filters) +
+                (modifiers.equals(SolutionModifiers.NONE) ? "" : ",\n\t modifiers=" + modifiers) +
                 '}';
     }
 }
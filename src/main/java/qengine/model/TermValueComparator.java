@@ -0,0 +1,74 @@
+package qengine.model;
+
+import fr.boreal.model.logicalElements.api.Term;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+
+/**
+ * Ordre sur les valeurs des termes utilisé par les FILTER de comparaison.
+ * Les termes dont la forme lexicale est numérique sont comparés par valeur et placés avant
+ * les autres, qui sont comparés selon l'ordre lexicographique de leur forme lexicale.
+ */
+public final class TermValueComparator implements Comparator<Term> {
+
+    public static final TermValueComparator INSTANCE = new TermValueComparator();
+
+    private static final Pattern NUMERIC = Pattern.compile("[+-]?(\\d+(\\.\\d*)?|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private TermValueComparator() {
+    }
+
+    @Override
+    public int compare(Term first, Term second) {
+        return keyOf(first).compareTo(keyOf(second));
+    }
+
+    /**
+     * Calcule la clé de comparaison d'un terme.
+     * Utile pour trier un grand nombre de termes sans réanalyser leur forme lexicale à chaque comparaison.
+     *
+     * @param term le terme
+     * @return la clé de comparaison du terme
+     */
+    public static ValueKey keyOf(Term term) {
+        String lexical = lexicalForm(term.label());
+        BigDecimal number = NUMERIC.matcher(lexical).matches() ? new BigDecimal(lexical) : null;
+        return new ValueKey(number, lexical);
+    }
+
+    /**
+     * Extrait la forme lexicale d'un label de littéral (sans guillemets, type ni langue).
+     *
+     * @param label le label du terme
+     * @return la forme lexicale
+     */
+    private static String lexicalForm(String label) {
+        if (label.length() > 1 && label.charAt(0) == '"') {
+            int end = label.lastIndexOf('"');
+            if (end > 0) {
+                return label.substring(1, end);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * Clé de comparaison d'un terme : sa valeur numérique éventuelle et sa forme lexicale.
+     *
+     * @param number  la valeur numérique, ou null si la forme lexicale n'est pas un nombre
+     * @param lexical la forme lexicale
+     */
+    public record ValueKey(BigDecimal number, String lexical) implements Comparable<ValueKey> {
+        @Override
+        public int compareTo(ValueKey other) {
+            if (number != null && other.number != null) {
+                return number.compareTo(other.number);
+            }
+            if (number != null) return -1;
+            if (other.number != null) return 1;
+            return lexical.compareTo(other.lexical);
+        }
+    }
+}
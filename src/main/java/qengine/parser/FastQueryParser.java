@@ -0,0 +1,199 @@
+package qengine.parser;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import qengine.model.SolutionModifiers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyseur écrit à la main pour le sous-ensemble de SparQL des jeux de requêtes WatDiv :
+ * {@code SELECT ?v... WHERE { triplets }} suivi éventuellement de LIMIT et OFFSET,
+ * dont les termes sont des variables, des IRI absolues entre chevrons ou des littéraux simples entre guillemets.
+ * Tout ce qui sort de ce sous-ensemble (PREFIX, noms préfixés, FILTER, ASK, DISTINCT, littéraux typés ou
+ * échappés, commentaires...) est laissé à l'analyseur RDF4J : l'analyse retourne alors null.
+ */
+final class FastQueryParser {
+
+    /**
+     * Requête analysée, avant sa transformation en requête en étoile ou conjonctive.
+     *
+     * @param triples         les triplets (sujet, prédicat, objet), dans l'ordre du texte
+     * @param answerVariables les variables projetées
+     * @param modifiers       les modificateurs LIMIT et OFFSET
+     */
+    record Result(List<Term[]> triples, List<Variable> answerVariables, SolutionModifiers modifiers) {
+    }
+
+    private final String text;
+    private final TermFactory termFactory;
+    private int position = 0;
+
+    private FastQueryParser(String text, TermFactory termFactory) {
+        this.text = text;
+        this.termFactory = termFactory;
+    }
+
+    /**
+     * Analyse une requête si elle appartient au sous-ensemble reconnu.
+     *
+     * @param text        le texte de la requête
+     * @param termFactory la fabrique des termes
+     * @return la requête analysée, ou null si elle doit être analysée par RDF4J
+     */
+    static Result tryParse(String text, TermFactory termFactory) {
+        return new FastQueryParser(text, termFactory).parse();
+    }
+
+    private Result parse() {
+        if (!keyword("SELECT")) return null;
+
+        List<Variable> answerVariables = new ArrayList<>();
+        while (skipSpaces() && peek() != 'W' && peek() != 'w') {
+            Variable variable = variable();
+            // Une variable projetée deux fois est laissée à RDF4J
+            if (variable == null || answerVariables.contains(variable)) return null;
+            answerVariables.add(variable);
+        }
+        if (answerVariables.isEmpty() || !keyword("WHERE") || !skipSpaces() || text.charAt(position++) != '{') {
+            return null;
+        }
+
+        List<Term[]> triples = new ArrayList<>();
+        while (true) {
+            if (!skipSpaces()) return null;
+            if (peek() == '}') {
+                position++;
+                break;
+            }
+            Term subject = term(true);
+            Term predicate = skipSpaces() && peek() != '"' ? term(false) : null;
+            Term object = skipSpaces() ? term(true) : null;
+            if (subject == null || predicate == null || object == null || !skipSpaces()) return null;
+            triples.add(new Term[]{subject, predicate, object});
+            if (peek() == '.') {
+                position++;
+            } else if (peek() != '}') {
+                return null; // ';' et ',' ne sont pas reconnus
+            }
+        }
+
+        if (triples.isEmpty()) return null;
+
+        SolutionModifiers modifiers = SolutionModifiers.NONE;
+        boolean limit = false;
+        boolean offset = false;
+        while (skipSpaces()) {
+            if (!limit && keyword("LIMIT")) {
+                long value = number();
+                if (value < 0) return null;
+                modifiers = modifiers.withLimit(value);
+                limit = true;
+            } else if (!offset && keyword("OFFSET")) {
+                long value = number();
+                if (value < 0) return null;
+                if (value > 0) modifiers = modifiers.withOffset(value);
+                offset = true;
+            } else {
+                return null;
+            }
+        }
+        return new Result(triples, answerVariables, modifiers);
+    }
+
+    /**
+     * Passe les blancs.
+     *
+     * @return true s'il reste des caractères à lire
+     */
+    private boolean skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position < text.length();
+    }
+
+    private char peek() {
+        return text.charAt(position);
+    }
+
+    /**
+     * Lit un mot-clé, sans tenir compte de la casse, s'il est suivi d'un blanc ou d'un délimiteur.
+     */
+    private boolean keyword(String keyword) {
+        if (!skipSpaces() || !text.regionMatches(true, position, keyword, 0, keyword.length())) return false;
+        int end = position + keyword.length();
+        if (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) return false;
+        position = end;
+        return true;
+    }
+
+    private Variable variable() {
+        char first = peek();
+        if (first != '?' && first != '$') return null;
+        int start = ++position;
+        while (position < text.length() && isNameChar(text.charAt(position))) {
+            position++;
+        }
+        if (position == start) return null;
+        return termFactory.createOrGetVariable("?" + text.substring(start, position));
+    }
+
+    /**
+     * Lit une variable, une IRI absolue ou, si elle est autorisée, un littéral simple.
+     *
+     * @return le terme, ou null s'il sort du sous-ensemble reconnu
+     */
+    private Term term(boolean literalAllowed) {
+        char first = peek();
+        if (first == '?' || first == '$') {
+            return variable();
+        }
+        if (first == '<') {
+            int start = ++position;
+            boolean absolute = false;
+            while (position < text.length() && text.charAt(position) != '>') {
+                char c = text.charAt(position++);
+                if (c <= ' ' || c == '<' || c == '"' || c == '{' || c == '}' || c == '|' || c == '^' || c == '`' || c == '\\') {
+                    return null;
+                }
+                absolute |= c == ':';
+            }
+            if (position == text.length() || !absolute) return null;
+            return termFactory.createOrGetLiteral(text.substring(start, position++));
+        }
+        if (first == '"' && literalAllowed) {
+            int start = ++position;
+            while (position < text.length() && text.charAt(position) != '"') {
+                char c = text.charAt(position++);
+                if (c == '\\' || c == '\n' || c == '\r') return null;
+            }
+            if (position == text.length()) return null;
+            String value = text.substring(start, position++);
+            // Les littéraux avec une langue ou un type sont laissés à RDF4J
+            if (position < text.length() && (peek() == '@' || peek() == '^')) return null;
+            return termFactory.createOrGetLiteral(value);
+        }
+        return null;
+    }
+
+    /**
+     * @return l'entier lu, ou -1 s'il est absent ou trop grand
+     */
+    private long number() {
+        if (!skipSpaces()) return -1;
+        int start = position;
+        while (position < text.length() && text.charAt(position) >= '0' && text.charAt(position) <= '9') {
+            position++;
+        }
+        if (position == start || position - start > 18) return -1;
+        if (position < text.length() && !Character.isWhitespace(peek())) return -1;
+        return Long.parseLong(text, start, position, 10);
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
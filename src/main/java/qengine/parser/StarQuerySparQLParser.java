@@ -6,28 +6,58 @@ import fr.boreal.model.logicalElements.api.Variable;
 import fr.boreal.model.logicalElements.factory.api.TermFactory;
 import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
 import fr.boreal.model.query.api.Query;
+import org.eclipse.rdf4j.query.algebra.And;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Filter;
 import org.eclipse.rdf4j.query.algebra.Projection;
 import org.eclipse.rdf4j.query.algebra.ProjectionElemList;
+import org.eclipse.rdf4j.query.algebra.Slice;
 import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.ValueConstant;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
 import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
 import org.eclipse.rdf4j.query.algebra.helpers.StatementPatternCollector;
+import org.eclipse.rdf4j.query.parser.ParsedBooleanQuery;
 import org.eclipse.rdf4j.query.parser.ParsedQuery;
 import org.eclipse.rdf4j.query.parser.sparql.SPARQLParser;
 
+import qengine.model.BGPQuery;
+import qengine.model.QueryTemplate;
+import qengine.model.ComparisonFilter;
 import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
 import qengine.model.StarQuery;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Un parser pour analyser des requêtes SparQL en requêtes en étoile.
+ * Un parser pour analyser des requêtes SparQL en requêtes en étoile,
+ * ou en requêtes conjonctives lorsque plusieurs étoiles sont reliées par des variables partagées.
+ * Le fichier est lu au fil de l'eau ; les requêtes du sous-ensemble des jeux de requêtes WatDiv sont analysées
+ * par {@link FastQueryParser}, les autres par l'analyseur SparQL de RDF4J.
  */
 public class StarQuerySparQLParser implements Parser<Query> {
 
-    private final Iterator<String> queryIterator;
+    // Fin d'une requête : une accolade fermante éventuellement suivie de LIMIT / OFFSET
+    private static final Pattern QUERY_END = Pattern.compile(".*}(\\s*(LIMIT|OFFSET)\\s+\\d+)*\\s*", Pattern.CASE_INSENSITIVE);
+    // Ligne ne contenant que des modificateurs de solutions
+    private static final Pattern MODIFIERS_LINE = Pattern.compile("(\\s*(LIMIT|OFFSET)\\s+\\d+)+\\s*", Pattern.CASE_INSENSITIVE);
+    // Paramètre d'un modèle de requête : %nom%
+    private static final Pattern PLACEHOLDER = Pattern.compile("%(\\w+)%");
+
+    private final BufferedReader reader;
+    // Ligne lue après la fin d'une requête, qui commence la requête suivante
+    private String pendingLine = null;
+    private final boolean fastPath;
     private final TermFactory termFactory = SameObjectTermFactory.instance();
     private final SPARQLParser sparqlParser = new SPARQLParser();
     private Query nextQuery = null;
@@ -36,11 +66,76 @@ public class StarQuerySparQLParser implements Parser<Query> {
      * Constructeur.
      *
      * @param sparqlFilePath chemin vers le fichier contenant les requêtes SparQL
-     * @throws IOException si le fichier ne peut pas être lu
+     * @throws IOException si le fichier ne peut pas être ouvert
      */
     public StarQuerySparQLParser(String sparqlFilePath) throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(sparqlFilePath));
-        this.queryIterator = lines.iterator();
+        this(Files.newBufferedReader(Paths.get(sparqlFilePath)), true);
+    }
+
+    /**
+     * @param reader   le texte des requêtes
+     * @param fastPath false pour analyser toutes les requêtes avec RDF4J
+     */
+    StarQuerySparQLParser(BufferedReader reader, boolean fastPath) {
+        this.reader = reader;
+        this.fastPath = fastPath;
+    }
+
+    /**
+     * Analyse un modèle de requête en étoile dont les paramètres sont notés {@code %nom%},
+     * comme dans les modèles de requêtes WatDiv. Chaque paramètre devient la variable {@code ?nom}
+     * du modèle ; les paramètres sont ordonnés selon leur première apparition.
+     * Les noms préfixés doivent être déclarés (PREFIX) ou déjà développés en IRI.
+     *
+     * @param template le texte du modèle
+     * @return le modèle de requête
+     * @throws IllegalArgumentException si le modèle n'est pas une requête en étoile ou n'a pas de paramètre valide
+     */
+    public static QueryTemplate parseTemplate(String template) {
+        Set<String> names = new LinkedHashSet<>();
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        String sparql = PLACEHOLDER.matcher(template).replaceAll("?$1");
+
+        StarQuerySparQLParser parser = new StarQuerySparQLParser(new BufferedReader(new StringReader(sparql)), true);
+        if (!parser.hasNext() || !(parser.next() instanceof StarQuery query)) {
+            throw new IllegalArgumentException("Le modèle n'est pas une requête en étoile : " + template);
+        }
+        List<Variable> parameters = names.stream()
+                .map(name -> SameObjectTermFactory.instance().createOrGetVariable("?" + name))
+                .toList();
+        return new QueryTemplate(query, parameters);
+    }
+
+    /**
+     * Analyse une requête SparQL isolée, par exemple reçue par le point d'accès HTTP.
+     *
+     * @param sparql le texte de la requête
+     * @return une instance de {@link StarQuery} ou de {@link BGPQuery}
+     * @throws IllegalArgumentException si le texte ne contient pas exactement une requête valide
+     */
+    public static Query parse(String sparql) {
+        StarQuerySparQLParser parser = new StarQuerySparQLParser(new BufferedReader(new StringReader(sparql)), true);
+        try {
+            if (!parser.hasNext()) {
+                throw new IllegalArgumentException("Aucune requête SparQL trouvée.");
+            }
+            Query query = parser.next();
+            if (parser.hasNext()) {
+                throw new IllegalArgumentException("Une seule requête SparQL est attendue.");
+            }
+            return query;
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) throw e;
+            throw new IllegalArgumentException("Requête SparQL invalide : " + rootMessage(e), e);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) e = e.getCause();
+        return e.getMessage();
     }
 
     @Override
@@ -50,23 +145,31 @@ public class StarQuerySparQLParser implements Parser<Query> {
         }
 
         try {
-            while (queryIterator.hasNext()) {
+            String line;
+            while ((line = nextLine()) != null) {
                 StringBuilder queryBuilder = new StringBuilder();
 
                 // Construire une requête multi-ligne jusqu'à rencontrer "}"
-                while (queryIterator.hasNext()) {
-                    String line = queryIterator.next();
+                do {
                     queryBuilder.append(line).append(System.lineSeparator());
 
-                    if (line.trim().endsWith("}")) {
+                    if (endsQuery(line)) {
                         break;
                     }
+                } while ((line = nextLine()) != null);
+
+                // Rattacher les lignes LIMIT / OFFSET qui suivent l'accolade fermante
+                while ((line = nextLine()) != null) {
+                    if (!isModifiersLine(line)) {
+                        pendingLine = line;
+                        break;
+                    }
+                    queryBuilder.append(line).append(System.lineSeparator());
                 }
 
                 String queryString = queryBuilder.toString().trim();
                 if (!queryString.isEmpty()) {
-                    ParsedQuery parsedQuery = sparqlParser.parseQuery(queryString, null);
-                    this.nextQuery = parseStarQuery(parsedQuery);
+                    this.nextQuery = parseQuery(queryString);
                     return true;
                 }
             }
@@ -89,13 +192,61 @@ public class StarQuerySparQLParser implements Parser<Query> {
     }
 
     /**
-     * Parse une requête en étoile à partir d'une requête SparQL analysée.
+     * Indique si une ligne termine une requête : toute ligne qui se termine par une accolade fermante, éventuellement
+     * suivie de LIMIT / OFFSET, termine la requête en cours, ce qui permet de découper un fichier entre deux requêtes
+     * (voir {@link QuerysetLoader}).
+     *
+     * @param line la ligne
+     * @return true si la ligne termine une requête
+     */
+    static boolean endsQuery(String line) {
+        return line.indexOf('}') >= 0 && QUERY_END.matcher(line.trim()).matches();
+    }
+
+    /**
+     * @param line la ligne
+     * @return true si la ligne ne contient que des modificateurs, rattachés à la requête qui la précède
+     */
+    static boolean isModifiersLine(String line) {
+        return MODIFIERS_LINE.matcher(line).matches();
+    }
+
+    private String nextLine() throws IOException {
+        String line = pendingLine;
+        pendingLine = null;
+        return line != null ? line : reader.readLine();
+    }
+
+    /**
+     * Parse une requête SparQL, avec {@link FastQueryParser} si elle appartient au sous-ensemble qu'il reconnaît,
+     * avec RDF4J sinon.
+     *
+     * @param queryString le texte de la requête
+     * @return une instance de {@link StarQuery} ou de {@link BGPQuery}
+     */
+    private Query parseQuery(String queryString) {
+        FastQueryParser.Result result = fastPath ? FastQueryParser.tryParse(queryString, termFactory) : null;
+        if (result == null) {
+            return parseQuery(sparqlParser.parseQuery(queryString, null));
+        }
+        List<RDFAtom> rdfAtoms = new ArrayList<>(result.triples().size());
+        for (Term[] triple : result.triples()) {
+            rdfAtoms.add(toAtom(triple[0], triple[1], triple[2]));
+        }
+        return buildQuery(queryString, rdfAtoms, result.answerVariables(), List.of(), result.modifiers());
+    }
+
+    /**
+     * Parse une requête à partir d'une requête SparQL analysée.
+     * Si une variable est partagée par tous les triplets, la requête est une requête en étoile ;
+     * sinon c'est une requête conjonctive dont les triplets doivent être reliés par des variables partagées
+     * (requête en flocon ou en chaîne).
      *
      * @param parsedQuery la requête SparQL analysée
-     * @return une instance de {@link StarQuery}
-     * @throws IllegalArgumentException si la requête n'est pas une requête en étoile valide
+     * @return une instance de {@link StarQuery} ou de {@link BGPQuery}
+     * @throws IllegalArgumentException si la requête n'est ni une requête en étoile ni une requête conjonctive valide
      */
-    private StarQuery parseStarQuery(ParsedQuery parsedQuery) {
+    private Query parseQuery(ParsedQuery parsedQuery) {
         List<StatementPattern> patterns = StatementPatternCollector.process(parsedQuery.getTupleExpr());
 
         if (patterns.isEmpty()) {
@@ -105,50 +256,60 @@ public class StarQuerySparQLParser implements Parser<Query> {
         // Extraire les variables et les triplets RDF
         Map<String, Variable> variables = new HashMap<>();
         List<RDFAtom> rdfAtoms = new ArrayList<>();
-        Variable centralVariable = null;
 
         for (StatementPattern pattern : patterns) {
             Term subject = convertToTerm(pattern.getSubjectVar(), variables);
             Term predicate = convertToTerm(pattern.getPredicateVar(), variables);
             Term object = convertToTerm(pattern.getObjectVar(), variables);
 
-            // Identifier la variable centrale
-            if (subject instanceof Variable) {
-                centralVariable = updateCentralVariable(centralVariable, (Variable) subject);
-            } else if (object instanceof Variable) {
-                centralVariable = updateCentralVariable(centralVariable, (Variable) object);
-            } else {
-                throw new IllegalArgumentException("Aucune variable centrale partagée trouvée dans les triplets RDF.");
-            }
-
-            rdfAtoms.add(new RDFAtom(subject, predicate, object));
+            rdfAtoms.add(toAtom(subject, predicate, object));
         }
 
-        if (centralVariable == null) {
-            throw new IllegalArgumentException("Impossible de déterminer une variable centrale dans la requête.");
-        }
+        // Une requête ASK n'a pas de projection : aucune variable réponse
+        boolean ask = parsedQuery instanceof ParsedBooleanQuery;
+        List<Variable> answerVariables = ask ? List.of() : extractAnswerVariables(parsedQuery, variables);
+        List<ComparisonFilter> filters = extractFilters(parsedQuery, variables);
+        SolutionModifiers modifiers = ask ? SolutionModifiers.askQuery() : extractModifiers(parsedQuery);
 
-        List<Variable> answerVariables = extractAnswerVariables(parsedQuery, variables);
+        return buildQuery(parsedQuery.getSourceString(), rdfAtoms, answerVariables, filters, modifiers);
+    }
+
+    /**
+     * Construit un triplet RDF de requête.
+     *
+     * @throws IllegalArgumentException si ni le sujet ni l'objet ne sont des variables
+     */
+    private static RDFAtom toAtom(Term subject, Term predicate, Term object) {
+        if (!(subject instanceof Variable) && !(object instanceof Variable)) {
+            throw new IllegalArgumentException("Aucune variable partagée trouvée dans le triplet RDF " +
+                    subject + " " + predicate + " " + object + ".");
+        }
+        return new RDFAtom(subject, predicate, object);
+    }
 
-        // Construire la requête en étoile
-        return new StarQuery(parsedQuery.getSourceString(), rdfAtoms, answerVariables);
+    /**
+     * Construit une requête en étoile si une variable est partagée par tous les triplets, une requête conjonctive sinon.
+     */
+    private Query buildQuery(String label, List<RDFAtom> rdfAtoms, List<Variable> answerVariables,
+                             List<ComparisonFilter> filters, SolutionModifiers modifiers) {
+        if (hasCentralVariable(rdfAtoms)) {
+            return new StarQuery(label, rdfAtoms, answerVariables, filters, modifiers);
+        }
+        return new BGPQuery(label, rdfAtoms, answerVariables, filters, modifiers);
     }
 
     /**
-     * Met à jour la variable centrale en validant qu'elle est cohérente entre les triplets.
+     * Indique si une variable est partagée par tous les triplets RDF.
      *
-     * @param currentCentral la variable centrale actuelle (peut être null)
-     * @param candidate la variable candidate pour devenir centrale
-     * @return la variable centrale
-     * @throws IllegalArgumentException si plusieurs variables centrales différentes sont détectées
+     * @param rdfAtoms les triplets RDF
+     * @return true si les triplets forment une requête en étoile
      */
-    private Variable updateCentralVariable(Variable currentCentral, Variable candidate) {
-        if (currentCentral == null) {
-            return candidate;
-        } else if (!currentCentral.equals(candidate)) {
-            throw new IllegalArgumentException("Plusieurs variables centrales détectées, ce n'est pas une requête en étoile.");
+    private boolean hasCentralVariable(List<RDFAtom> rdfAtoms) {
+        Set<Term> shared = new HashSet<>(Arrays.asList(rdfAtoms.getFirst().getTerms()));
+        for (RDFAtom atom : rdfAtoms) {
+            shared.retainAll(Arrays.asList(atom.getTerms()));
         }
-        return currentCentral;
+        return shared.stream().anyMatch(Term::isVariable);
     }
 
     /**
@@ -190,6 +351,120 @@ public class StarQuerySparQLParser implements Parser<Query> {
         return projectionElemList[0];
     }
 
+    /**
+     * Extrait les modificateurs LIMIT et OFFSET de la requête SparQL analysée.
+     *
+     * @param parsedQuery la requête SparQL analysée
+     * @return les modificateurs de solutions
+     */
+    private SolutionModifiers extractModifiers(ParsedQuery parsedQuery) {
+        SolutionModifiers[] modifiers = {SolutionModifiers.NONE};
+
+        parsedQuery.getTupleExpr().visit(new AbstractQueryModelVisitor<RuntimeException>() {
+            @Override
+            public void meet(Slice slice) {
+                if (slice.hasOffset()) {
+                    modifiers[0] = modifiers[0].withOffset(slice.getOffset());
+                }
+                if (slice.hasLimit()) {
+                    modifiers[0] = modifiers[0].withLimit(slice.getLimit());
+                }
+                super.meet(slice);
+            }
+        });
+
+        return modifiers[0];
+    }
+
+    /**
+     * Extrait les filtres de comparaison (FILTER) de la requête SparQL analysée.
+     * Les conjonctions ({@code &&}) sont décomposées en plusieurs filtres.
+     *
+     * @param parsedQuery la requête SparQL analysée
+     * @param variables   le dictionnaire des variables
+     * @return la liste des filtres de comparaison
+     * @throws IllegalArgumentException si une expression FILTER n'est pas supportée
+     */
+    private List<ComparisonFilter> extractFilters(ParsedQuery parsedQuery, Map<String, Variable> variables) {
+        List<ComparisonFilter> filters = new ArrayList<>();
+
+        parsedQuery.getTupleExpr().visit(new AbstractQueryModelVisitor<RuntimeException>() {
+            @Override
+            public void meet(Filter filter) {
+                collectComparisons(filter.getCondition(), variables, filters);
+                super.meet(filter);
+            }
+        });
+
+        return filters;
+    }
+
+    /**
+     * Convertit une condition de FILTER en filtres de comparaison.
+     *
+     * @param condition la condition RDF4J
+     * @param variables le dictionnaire des variables
+     * @param filters   la liste dans laquelle ajouter les filtres
+     * @throws IllegalArgumentException si la condition n'est pas une comparaison variable/constante
+     *                                  ou une conjonction de telles comparaisons
+     */
+    private void collectComparisons(ValueExpr condition, Map<String, Variable> variables, List<ComparisonFilter> filters) {
+        if (condition instanceof And and) {
+            collectComparisons(and.getLeftArg(), variables, filters);
+            collectComparisons(and.getRightArg(), variables, filters);
+            return;
+        }
+        if (condition instanceof Compare compare) {
+            ComparisonFilter.Operator operator = convertOperator(compare.getOperator());
+            Term left = convertOperand(compare.getLeftArg(), variables);
+            Term right = convertOperand(compare.getRightArg(), variables);
+
+            if (left instanceof Variable variable && !right.isVariable()) {
+                filters.add(new ComparisonFilter(variable, operator, right));
+                return;
+            }
+            if (right instanceof Variable variable && !left.isVariable()) {
+                filters.add(new ComparisonFilter(variable, operator.reverse(), left));
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Expression FILTER non supportée : " + condition);
+    }
+
+    /**
+     * Convertit une opérande de comparaison RDF4J en une instance de Term.
+     *
+     * @param operand   l'opérande RDF4J
+     * @param variables le dictionnaire des variables
+     * @return une instance de Term correspondante
+     * @throws IllegalArgumentException si l'opérande n'est ni une variable ni une constante
+     */
+    private Term convertOperand(ValueExpr operand, Map<String, Variable> variables) {
+        if (operand instanceof ValueConstant constant) {
+            return termFactory.createOrGetLiteral(constant.getValue().stringValue());
+        }
+        if (operand instanceof Var var) {
+            return convertToTerm(var, variables);
+        }
+        throw new IllegalArgumentException("Opérande de FILTER non supportée : " + operand);
+    }
+
+    /**
+     * Convertit un opérateur de comparaison RDF4J.
+     *
+     * @param operator l'opérateur RDF4J
+     * @return l'opérateur correspondant
+     */
+    private ComparisonFilter.Operator convertOperator(Compare.CompareOp operator) {
+        return switch (operator) {
+            case LT -> ComparisonFilter.Operator.LT;
+            case LE -> ComparisonFilter.Operator.LE;
+            case GT -> ComparisonFilter.Operator.GT;
+            case GE -> ComparisonFilter.Operator.GE;
+            case EQ -> ComparisonFilter.Operator.EQ;
+            case NE -> ComparisonFilter.Operator.NE;
+        };
+    }
 
     /**
      * Convertit une variable de requête RDF4J en une instance de Term.
@@ -198,7 +473,7 @@ public class StarQuerySparQLParser implements Parser<Query> {
      * @param variables un cache des variables déjà rencontrées
      * @return une instance de Term correspondante
      */
-    private Term convertToTerm(org.eclipse.rdf4j.query.algebra.Var var, Map<String, Variable> variables) {
+    private Term convertToTerm(Var var, Map<String, Variable> variables) {
         if (var.hasValue()) {
             return termFactory.createOrGetLiteral(var.getValue().stringValue());
         }
@@ -208,6 +483,10 @@ public class StarQuerySparQLParser implements Parser<Query> {
 
     @Override
     public void close() {
-        // Rien à fermer ici
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,290 @@
+package qengine.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.query.api.Query;
+import qengine.io.BinaryRowWriter;
+import qengine.io.ResultWriter;
+import qengine.io.SeparatedValuesWriter;
+import qengine.io.SparqlJsonWriter;
+import qengine.model.BGPQuery;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+import qengine.parser.StarQuerySparQLParser;
+import qengine.storage.QueryAbortedException;
+import qengine.storage.QueryContext;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.RDFStorage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Point d'accès HTTP suivant le protocole SparQL, construit sur le serveur HTTP du JDK.
+ * Chaque requête HTTP est traitée par un thread virtuel ; le nombre de requêtes évaluées simultanément
+ * est borné, les requêtes excédentaires recevant immédiatement une réponse 503.
+ * <p>
+ * Le chemin {@value #PATH} accepte :
+ * <ul>
+ *     <li>GET avec le paramètre {@code query} ;</li>
+ *     <li>POST avec un corps {@code application/x-www-form-urlencoded} contenant le paramètre {@code query},
+ *     ou avec la requête elle-même en corps ({@code application/sparql-query}).</li>
+ * </ul>
+ * Les résultats sont écrits au format JSON, TSV, CSV ou binaire selon l'en-tête Accept, au fil de l'itérateur
+ * renvoyé par le store (réponse en transfert par morceaux, voir {@link ResultWriter}).
+ * <p>
+ * Chaque requête est évaluée dans un {@link QueryContext} portant le délai et le budget mémoire du point d'accès.
+ * La première réponse est calculée avant l'envoi des en-têtes : une requête interrompue à ce stade reçoit
+ * une réponse 503 ; interrompue plus tard, sa réponse est tronquée.
+ */
+public class SparqlEndpoint implements AutoCloseable {
+
+    public static final String PATH = "/sparql";
+
+    private final RDFStorage storage;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore workers;
+    private final Duration timeout;
+    private final long memoryBudget;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+
+    /**
+     * Constructeur : le serveur est lié à l'adresse mais ne répond qu'après {@link #start()}.
+     *
+     * @param storage    le store interrogé
+     * @param address    l'adresse d'écoute (port 0 pour un port libre)
+     * @param backlog    le nombre maximal de connexions en attente d'acceptation
+     * @param maxWorkers le nombre maximal de requêtes évaluées simultanément
+     * @throws IOException si le serveur ne peut pas être lié à l'adresse
+     */
+    public SparqlEndpoint(RDFStorage storage, InetSocketAddress address, int backlog, int maxWorkers)
+            throws IOException {
+        this(storage, address, backlog, maxWorkers, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructeur avec des limites par requête.
+     *
+     * @param storage      le store interrogé
+     * @param address      l'adresse d'écoute (port 0 pour un port libre)
+     * @param backlog      le nombre maximal de connexions en attente d'acceptation
+     * @param maxWorkers   le nombre maximal de requêtes évaluées simultanément
+     * @param timeout      le délai d'exécution d'une requête, ou null pour aucun délai
+     * @param memoryBudget le budget mémoire des résultats intermédiaires d'une requête, en octets
+     * @throws IOException si le serveur ne peut pas être lié à l'adresse
+     */
+    public SparqlEndpoint(RDFStorage storage, InetSocketAddress address, int backlog, int maxWorkers,
+                          Duration timeout, long memoryBudget) throws IOException {
+        if (maxWorkers <= 0) {
+            throw new IllegalArgumentException("Le nombre de requêtes simultanées doit être positif : " + maxWorkers);
+        }
+        this.storage = storage;
+        this.workers = new Semaphore(maxWorkers);
+        // Validation des limites avant de lier le serveur
+        new QueryContext(timeout, memoryBudget);
+        this.timeout = timeout;
+        this.memoryBudget = memoryBudget;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(address, backlog);
+        this.server.setExecutor(executor);
+        this.server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * Démarre le serveur.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return l'adresse effectivement écoutée
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return le nombre de requêtes SparQL évaluées
+     */
+    public long servedCount() {
+        return served.sum();
+    }
+
+    /**
+     * @return le nombre de requêtes refusées faute de place
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return le nombre de requêtes interrompues par leur délai ou leur budget mémoire
+     */
+    public long abortedCount() {
+        return aborted.sum();
+    }
+
+    /**
+     * Arrête le serveur sans attendre les échanges en cours.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!workers.tryAcquire()) {
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "Trop de requêtes simultanées");
+                return;
+            }
+            try {
+                serve(exchange);
+            } finally {
+                workers.release();
+            }
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String sparql;
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> sparql = parameter(exchange.getRequestURI().getRawQuery(), "query");
+            case "POST" -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                sparql = contentType != null && contentType.startsWith("application/sparql-query")
+                        ? body
+                        : parameter(body, "query");
+            }
+            default -> {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                sendError(exchange, 405, "Méthode non supportée : " + exchange.getRequestMethod());
+                return;
+            }
+        }
+        if (sparql == null || sparql.isBlank()) {
+            sendError(exchange, 400, "Paramètre 'query' manquant");
+            return;
+        }
+
+        Query query;
+        try {
+            query = StarQuerySparQLParser.parse(sparql);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+
+        List<Variable> variables;
+        SolutionModifiers modifiers;
+        if (query instanceof StarQuery starQuery) {
+            variables = List.copyOf(starQuery.getAnswerVariables());
+            modifiers = starQuery.getModifiers();
+        } else {
+            BGPQuery bgpQuery = (BGPQuery) query;
+            variables = List.copyOf(bgpQuery.getAnswerVariables());
+            modifiers = bgpQuery.getModifiers();
+        }
+        served.increment();
+
+        QueryContext context = new QueryContext(timeout, memoryBudget);
+        RDFHexaStore store = storage instanceof RDFHexaStore hexaStore ? hexaStore : null;
+        Iterator<int[]> rows = null;
+        Iterator<Substitution> results = null;
+        boolean hasAnswer;
+        try {
+            if (store != null) {
+                // Les réponses restent encodées jusqu'à l'écriture
+                rows = query instanceof StarQuery starQuery
+                        ? store.matchEncoded(starQuery, context)
+                        : store.matchEncoded((BGPQuery) query, context);
+                hasAnswer = rows.hasNext();
+            } else {
+                results = query instanceof StarQuery starQuery
+                        ? storage.match(starQuery, context)
+                        : storage.match((BGPQuery) query, context);
+                hasAnswer = results.hasNext();
+            }
+        } catch (QueryAbortedException e) {
+            aborted.increment();
+            sendError(exchange, 503, e.getMessage());
+            return;
+        }
+
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        ResultWriter writer = writerFor(accept, modifiers.ask(), exchange.getResponseBody());
+        exchange.getResponseHeaders().set("Content-Type", writer instanceof BinaryRowWriter
+                ? writer.mediaType()
+                : writer.mediaType() + "; charset=utf-8");
+        // Longueur 0 : transfert par morceaux, les résultats partent au fil de l'évaluation
+        exchange.sendResponseHeaders(200, 0);
+        try (writer) {
+            if (modifiers.ask()) {
+                writer.writeBoolean(hasAnswer);
+            } else if (store != null) {
+                writer.write(variables, rows, store::termOf);
+            } else {
+                writer.writeSubstitutions(variables, results);
+            }
+        } catch (QueryAbortedException e) {
+            // Les en-têtes sont partis : la réponse reste tronquée
+            aborted.increment();
+        }
+    }
+
+    /**
+     * Choisit l'écrivain de résultats à partir de l'en-tête Accept (JSON par défaut).
+     * Les formats TSV et CSV ne prévoyant pas de résultat booléen, une requête ASK est toujours servie en JSON.
+     */
+    private static ResultWriter writerFor(String accept, boolean ask, OutputStream out) {
+        if (accept != null && !accept.contains(SparqlJsonWriter.MEDIA_TYPE)) {
+            if (accept.contains(BinaryRowWriter.MEDIA_TYPE)) return new BinaryRowWriter(out);
+            if (!ask && accept.contains(SeparatedValuesWriter.TSV_MEDIA_TYPE)) return SeparatedValuesWriter.tsv(out);
+            if (!ask && accept.contains(SeparatedValuesWriter.CSV_MEDIA_TYPE)) return SeparatedValuesWriter.csv(out);
+        }
+        return new SparqlJsonWriter(out);
+    }
+
+    /**
+     * Extrait un paramètre d'une chaîne {@code application/x-www-form-urlencoded}.
+     */
+    private static String parameter(String encoded, String name) {
+        if (encoded == null) return null;
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
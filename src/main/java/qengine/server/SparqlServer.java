@@ -0,0 +1,81 @@
+package qengine.server;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import qengine.parser.RDFAtomParser;
+import qengine.storage.RDFHexaStore;
+
+import java.io.FileReader;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Programme chargeant un fichier N-Triples dans un HexaStore puis le servant par un {@link SparqlEndpoint}.
+ */
+@Command(name = "qengine-server", mixinStandardHelpOptions = true, version = "qengine-server 0.0.1",
+        description = "Serves a SPARQL endpoint over an RDF data file.")
+class SparqlServer implements Callable<Integer> {
+
+    @Option(names = {"-d", "--data"}, required = true, description = "The path of the N-Triples data file.")
+    private String dataFilePath;
+
+    @Option(names = {"--host"}, defaultValue = "localhost", description = "The address to listen on (default: ${DEFAULT-VALUE}).")
+    private String host;
+
+    @Option(names = {"-p", "--port"}, defaultValue = "8080", description = "The port to listen on (default: ${DEFAULT-VALUE}).")
+    private int port;
+
+    @Option(names = {"--backlog"}, defaultValue = "128", description = "Maximum number of pending connections (default: ${DEFAULT-VALUE}).")
+    private int backlog;
+
+    @Option(names = {"--max-connections"}, defaultValue = "-1", description = "Maximum number of open connections, -1 for no limit (default: ${DEFAULT-VALUE}).")
+    private int maxConnections;
+
+    @Option(names = {"-w", "--max-workers"}, defaultValue = "256", description = "Maximum number of queries evaluated concurrently (default: ${DEFAULT-VALUE}).")
+    private int maxWorkers;
+
+    @Option(names = {"-t", "--timeout"}, defaultValue = "0", description = "Query timeout in milliseconds, 0 for no limit (default: ${DEFAULT-VALUE}).")
+    private long timeoutMillis;
+
+    @Option(names = {"-m", "--memory-budget"}, defaultValue = "0", description = "Intermediate result budget per query in MiB, 0 for no limit (default: ${DEFAULT-VALUE}).")
+    private long memoryBudgetMiB;
+
+    @Override
+    public Integer call() throws Exception {
+        if (maxConnections > 0) {
+            // Lu par le serveur HTTP du JDK à la création du premier serveur
+            System.setProperty("jdk.httpserver.maxConnections", String.valueOf(maxConnections));
+        }
+
+        RDFHexaStore store = new RDFHexaStore();
+        try (RDFAtomParser parser = new RDFAtomParser(new FileReader(dataFilePath), RDFFormat.NTRIPLES)) {
+            while (parser.hasNext()) {
+                store.add(parser.next());
+            }
+        }
+        System.out.println("Loaded " + store.size() + " triples from " + dataFilePath);
+
+        SparqlEndpoint endpoint = new SparqlEndpoint(store, new InetSocketAddress(host, port), backlog, maxWorkers,
+                timeoutMillis > 0 ? Duration.ofMillis(timeoutMillis) : null,
+                memoryBudgetMiB > 0 ? memoryBudgetMiB << 20 : Long.MAX_VALUE);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            endpoint.close();
+            stopped.countDown();
+        }));
+        endpoint.start();
+        System.out.println("SPARQL endpoint listening on http://" + host + ":" + endpoint.getAddress().getPort()
+                + SparqlEndpoint.PATH);
+        stopped.await();
+        return 0;
+    }
+
+    public static void main(String... args) {
+        int exitCode = new CommandLine(new SparqlServer()).execute(args);
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,242 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.BGPQuery;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+
+import java.util.*;
+
+/**
+ * Évaluation d'une requête conjonctive par jointure de requêtes en étoile.
+ * La requête est décomposée en étoiles évaluées par {@link StarQueryIterator}, projetées sur leurs variables
+ * réponses et de liaison. L'étoile la plus sélective est parcourue paresseusement ; chacune des autres est
+ * matérialisée dans une {@link JoinHashTable} indexée sur ses variables de liaison déjà liées,
+ * puis sondée pour chaque ligne partielle. Toute la jointure se fait dans l'espace des identifiants.
+ * Chaque réponse est un tableau donnant l'identifiant lié à chaque variable réponse de la requête.
+ * Les étoiles et la jointure sont soumises au même {@link QueryContext}, auquel chaque table de jointure
+ * réserve la taille de ses lignes pendant sa construction.
+ */
+final class BGPQueryIterator implements Iterator<int[]> {
+
+    private final Iterator<int[]> probe;
+    private final int[] probeSlots;
+    private final JoinHashTable[] tables;
+    private final int[][] keySlots;
+    private final int[][] newColumns;
+    private final int[][] newSlots;
+    private final int[] projection;
+    private final IntTupleHashSet seen;
+    private final QueryContext context;
+
+    private final int[] binding;
+    private final int[] chains;
+    private int depth = -1;
+    private long toSkip;
+    private long remaining;
+    private boolean ready = false;
+    private boolean finished;
+
+    /**
+     * Constructeur. Les étoiles autres que celle parcourue paresseusement sont évaluées immédiatement.
+     *
+     * @param store l'HexaStore interrogé
+     * @param query la requête conjonctive
+     */
+    BGPQueryIterator(RDFHexaStore store, BGPQuery query) {
+        this(store, query, new QueryContext());
+    }
+
+    /**
+     * Constructeur. La construction des tables de jointure est déjà soumise au contexte d'exécution.
+     *
+     * @param store   l'HexaStore interrogé
+     * @param query   la requête conjonctive
+     * @param context le contexte d'exécution de la requête
+     */
+    BGPQueryIterator(RDFHexaStore store, BGPQuery query, QueryContext context) {
+        this.context = context;
+        SolutionModifiers modifiers = query.getModifiers();
+        this.toSkip = modifiers.offset();
+        this.remaining = modifiers.hasLimit() ? modifiers.limit() : Long.MAX_VALUE;
+
+        List<StarQuery> stars = query.decompose();
+        List<StarQueryPlan> plans = new ArrayList<>();
+        for (StarQuery star : stars) {
+            plans.add(new StarQueryPlan(star, store));
+        }
+        List<Integer> order = joinOrder(stars, plans);
+
+        // Indices globaux des variables, dans l'ordre de la jointure
+        List<Variable> variables = new ArrayList<>();
+        int[][] slotsOf = new int[stars.size()][];
+        for (int i : order) {
+            List<Variable> starVariables = List.copyOf(stars.get(i).getAnswerVariables());
+            slotsOf[i] = new int[starVariables.size()];
+            for (int c = 0; c < starVariables.size(); c++) {
+                int slot = variables.indexOf(starVariables.get(c));
+                if (slot < 0) {
+                    slot = variables.size();
+                    variables.add(starVariables.get(c));
+                }
+                slotsOf[i][c] = slot;
+            }
+        }
+        this.binding = new int[variables.size()];
+        this.projection = query.getAnswerVariables().stream().mapToInt(variables::indexOf).toArray();
+        this.seen = projection.length < variables.size() ? new IntTupleHashSet(projection.length) : null;
+
+        int probeStar = order.getFirst();
+        this.probe = new StarQueryIterator(store, plans.get(probeStar), SolutionModifiers.NONE, context);
+        this.probeSlots = slotsOf[probeStar];
+
+        int builds = order.size() - 1;
+        this.tables = new JoinHashTable[builds];
+        this.keySlots = new int[builds][];
+        this.newColumns = new int[builds][];
+        this.newSlots = new int[builds][];
+        this.chains = new int[builds];
+
+        boolean[] bound = new boolean[variables.size()];
+        for (int slot : probeSlots) bound[slot] = true;
+        boolean empty = plans.stream().anyMatch(StarQueryPlan::isEmpty);
+        for (int d = 0; d < builds && !empty; d++) {
+            int star = order.get(d + 1);
+            int[] slots = slotsOf[star];
+            List<Integer> keys = new ArrayList<>();
+            List<Integer> news = new ArrayList<>();
+            for (int c = 0; c < slots.length; c++) {
+                (bound[slots[c]] ? keys : news).add(c);
+            }
+            int[] keyColumns = keys.stream().mapToInt(Integer::intValue).toArray();
+            keySlots[d] = keys.stream().mapToInt(c -> slots[c]).toArray();
+            newColumns[d] = news.stream().mapToInt(Integer::intValue).toArray();
+            newSlots[d] = news.stream().mapToInt(c -> slots[c]).toArray();
+            for (int slot : newSlots[d]) bound[slot] = true;
+
+            tables[d] = new JoinHashTable(slots.length, keyColumns);
+            StarQueryIterator rows = new StarQueryIterator(store, plans.get(star), SolutionModifiers.NONE, context);
+            JoinHashTable table = tables[d];
+            long rowBytes = QueryContext.rowBytes(slots.length);
+            rows.forEachRemaining(row -> {
+                context.reserve(rowBytes);
+                table.add(row);
+            });
+            empty = tables[d].size() == 0;
+        }
+        this.finished = empty || remaining == 0;
+    }
+
+    /**
+     * Ordonne les étoiles : d'abord la plus sélective, puis les étoiles reliées à celles déjà jointes,
+     * de la plus sélective à la moins sélective.
+     */
+    private static List<Integer> joinOrder(List<StarQuery> stars, List<StarQueryPlan> plans) {
+        List<Integer> remaining = new ArrayList<>();
+        for (int i = 0; i < stars.size(); i++) remaining.add(i);
+        Set<Variable> joined = new HashSet<>();
+        List<Integer> order = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            Integer best = null;
+            boolean bestConnected = false;
+            for (Integer i : remaining) {
+                boolean connected = !Collections.disjoint(joined, stars.get(i).getAnswerVariables());
+                if (best == null || (connected && !bestConnected)
+                        || (connected == bestConnected && plans.get(i).estimate() < plans.get(best).estimate())) {
+                    best = i;
+                    bestConnected = connected;
+                }
+            }
+            remaining.remove(best);
+            order.add(best);
+            joined.addAll(stars.get(best).getAnswerVariables());
+        }
+        return order;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready) return true;
+        if (finished) return false;
+
+        while (advance()) {
+            if (seen != null) {
+                if (!seen.add(project())) continue;
+                context.reserve(QueryContext.rowBytes(projection.length));
+            }
+            if (toSkip > 0) {
+                toSkip--;
+                continue;
+            }
+            remaining--;
+            ready = true;
+            return true;
+        }
+        finished = true;
+        return false;
+    }
+
+    @Override
+    public int[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Aucune réponse disponible");
+        }
+        ready = false;
+        if (remaining == 0) {
+            finished = true;
+        }
+        return project();
+    }
+
+    private int[] project() {
+        int[] row = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            row[i] = binding[projection[i]];
+        }
+        return row;
+    }
+
+    /**
+     * Avance jusqu'à la prochaine ligne jointe complète.
+     * La profondeur -1 correspond à l'étoile parcourue paresseusement, la profondeur d à la table d.
+     *
+     * @return true si une ligne complète est disponible dans {@code binding}
+     */
+    private boolean advance() {
+        while (true) {
+            context.checkpoint();
+            if (depth < 0) {
+                if (!probe.hasNext()) return false;
+                int[] row = probe.next();
+                for (int c = 0; c < row.length; c++) {
+                    binding[probeSlots[c]] = row[c];
+                }
+                if (tables.length == 0) return true;
+                depth = 0;
+                chains[0] = tables[0].first(key(0));
+                continue;
+            }
+            int row = chains[depth];
+            if (row < 0) {
+                depth--;
+                continue;
+            }
+            // La chaîne est avancée avant de descendre : remonter suffit à reprendre le parcours
+            chains[depth] = tables[depth].next(row);
+            for (int i = 0; i < newColumns[depth].length; i++) {
+                binding[newSlots[depth][i]] = tables[depth].get(row, newColumns[depth][i]);
+            }
+            if (depth == tables.length - 1) return true;
+            depth++;
+            chains[depth] = tables[depth].first(key(depth));
+        }
+    }
+
+    private int[] key(int d) {
+        int[] key = new int[keySlots[d].length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = binding[keySlots[d][i]];
+        }
+        return key;
+    }
+}
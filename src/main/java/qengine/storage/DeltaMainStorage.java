@@ -0,0 +1,1163 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Atom;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.BGPQuery;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+import qengine.model.TermValueComparator;
+import qengine.model.TermValueComparator.ValueKey;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stockage RDF en deux parties, à la manière d'un arbre LSM : un petit delta modifiable (les index à tables
+ * de hachage de l'HexaStore) reçoit les ajouts, et une partie principale immuable, triée et optimisée pour
+ * la lecture, sert l'essentiel des lectures. Toutes les parties partagent un même dictionnaire,
+ * si bien que leurs triplets encodés se fusionnent directement.
+ * <p>
+ * Le delta est une suite de segments : seul le dernier reçoit les ajouts et il n'est jamais lu par une requête.
+ * Une vue en lecture seule de la version courante le scelle (en temps constant, sans recopie) et le remplace
+ * par un segment vide : une vue ne contient que des parties qui ne seront plus modifiées, et reste valable
+ * jusqu'au prochain ajout. Les curseurs de la vue concatènent ceux des parties, qui sont disjointes.
+ * Le thread de compactage regroupe les segments scellés de tailles voisines, de sorte qu'ils restent
+ * en nombre logarithmique ; les ajouts attendent si des lectures en ont scellé plus qu'il ne peut en regrouper.
+ * <p>
+ * La partie principale est formée de quelques parties triées ({@link SortedLayer}) de tailles décroissantes :
+ * six instantanés triés de triplets encodés, dans lesquels les recherches sont dichotomiques.
+ * Dès que le delta atteint le seuil de compactage, le thread de compactage le trie en une nouvelle partie,
+ * puis la fusionne avec les parties les plus récentes tant qu'elles ne sont pas au moins deux fois plus grandes :
+ * chaque triplet n'est refusionné qu'un nombre logarithmique de fois, et une fusion est un interclassement
+ * de tableaux triés, sans table de hachage. Les fusions se font hors verrou, sur des parties immuables :
+ * les lectures en cours continuent sur l'ancienne version et les ajouts vont dans un nouveau delta.
+ * Si le delta atteint la taille maximale avant d'être pris en charge par le thread de compactage, les ajouts attendent.
+ * <p>
+ * Une suppression est elle aussi une écriture dans le delta : un triplet du segment en cours en est retiré, et un triplet
+ * d'une partie plus ancienne, qui ne peut plus être modifiée, est marqué par une pierre tombale du segment en cours.
+ * Les pierres tombales d'une partie masquent les triplets des parties plus anciennes dans les vues, et sont appliquées
+ * par les fusions : les triplets qu'elles masquent disparaissent de la partie fusionnée, et elles sont abandonnées
+ * lorsque la partie fusionnée devient la plus ancienne. Un triplet a au plus une copie visible.
+ */
+public class DeltaMainStorage implements RDFStorage, AutoCloseable {
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1 << 16;
+    public static final int DEFAULT_MAX_DELTA_SIZE = 1 << 20;
+    // Nombre de segments scellés à partir duquel les ajouts attendent leur regroupement
+    static final int MAX_SEALED_SEGMENTS = 32;
+
+    private final SharedDictionary dictionary = new SharedDictionary();
+    private final int compactionThreshold;
+    private final int maxDeltaSize;
+    private final Object lock = new Object();
+    private final Thread compactor;
+
+    // Protégés par lock
+    // Parties triées, de la plus ancienne (la plus grande) à la plus récente ; jamais vide
+    private List<SortedLayer> main;
+    // Segments du delta en cours de fusion dans la partie principale
+    private List<Layer> frozen = List.of();
+    // Segments scellés du delta, du plus ancien au plus récent, et leur nombre total de triplets
+    private final List<Layer> sealed = new ArrayList<>();
+    private long sealedSize = 0;
+    // Segment en cours de remplissage, jamais publié dans une vue
+    private Layer delta;
+    // Nombre de triplets visibles
+    private long size = 0;
+    private long compactionRequests = 0;
+    private long servedRequests = 0;
+    private long compactions = 0;
+    private boolean closed = false;
+
+    // Vue de la version courante, ou null si elle doit être reconstruite
+    private volatile View view;
+
+    /**
+     * Constructeur avec les seuils par défaut.
+     */
+    public DeltaMainStorage() {
+        this(DEFAULT_COMPACTION_THRESHOLD, DEFAULT_MAX_DELTA_SIZE);
+    }
+
+    /**
+     * Constructeur : le thread de compactage est démarré immédiatement.
+     *
+     * @param compactionThreshold le nombre de triplets du delta à partir duquel il est fusionné dans la partie principale
+     * @param maxDeltaSize        le nombre de triplets du delta à partir duquel les ajouts attendent le thread de compactage
+     */
+    public DeltaMainStorage(int compactionThreshold, int maxDeltaSize) {
+        if (compactionThreshold <= 0 || maxDeltaSize < compactionThreshold) {
+            throw new IllegalArgumentException("Seuils de compactage invalides : " + compactionThreshold
+                    + ", " + maxDeltaSize);
+        }
+        this.compactionThreshold = compactionThreshold;
+        this.maxDeltaSize = maxDeltaSize;
+        this.main = List.of(SortedLayer.of(dictionary, List.of()));
+        this.delta = new Layer(dictionary);
+        this.compactor = Thread.ofPlatform().daemon().name("qengine-compaction").start(this::compactLoop);
+    }
+
+    /**
+     * Ajoute un RDFAtom au delta. Il est visible par les requêtes évaluées après le retour de la méthode.
+     *
+     * @param atom le RDFAtom à ajouter
+     * @return true si l'ajout a réussi, false s'il était déjà présent
+     * @throws IllegalStateException si le store est fermé
+     */
+    @Override
+    public boolean add(RDFAtom atom) {
+        Term subject = atom.getTripleSubject();
+        Term predicate = atom.getTriplePredicate();
+        Term object = atom.getTripleObject();
+        if (subject.isVariable() || predicate.isVariable() || object.isVariable()) return false;
+
+        synchronized (lock) {
+            awaitRoom();
+            int s = dictionary.addAndGet(subject);
+            int p = dictionary.addAndGet(predicate);
+            int o = dictionary.addAndGet(object);
+            if (isVisible(s, p, o)) return false;
+            // Un triplet masqué par une pierre tombale du segment en cours redevient visible
+            if (!delta.cancelRemoval(s, p, o)) {
+                delta.add(s, p, o);
+            }
+            written(1);
+            return true;
+        }
+    }
+
+    /**
+     * Supprime un RDFAtom. S'il a été ajouté au segment en cours, il en est retiré ; sinon, une pierre tombale
+     * du segment en cours le masque dans la partie plus ancienne qui le contient.
+     * La suppression est visible par les requêtes évaluées après le retour de la méthode.
+     *
+     * @param atom le RDFAtom à supprimer
+     * @return true si le RDFAtom a été supprimé, false s'il était absent
+     * @throws IllegalStateException si le store est fermé
+     */
+    @Override
+    public boolean remove(RDFAtom atom) {
+        synchronized (lock) {
+            awaitRoom();
+            Integer s = dictionary.get(atom.getTripleSubject());
+            Integer p = dictionary.get(atom.getTriplePredicate());
+            Integer o = dictionary.get(atom.getTripleObject());
+            if (s == null || p == null || o == null || !isVisible(s, p, o)) return false;
+            if (!delta.remove(s, p, o)) {
+                delta.addRemoval(s, p, o);
+            }
+            written(-1);
+            return true;
+        }
+    }
+
+    /**
+     * Attend que le delta puisse recevoir une écriture (à appeler sous le verrou).
+     *
+     * @throws IllegalStateException si le store est fermé
+     */
+    private void awaitRoom() {
+        while (!closed && (pendingSize() >= maxDeltaSize || sealed.size() >= MAX_SEALED_SEGMENTS)) {
+            awaitUninterruptibly();
+        }
+        if (closed) {
+            throw new IllegalStateException("Store fermé");
+        }
+    }
+
+    /**
+     * Enregistre une écriture dans le segment en cours (à appeler sous le verrou).
+     *
+     * @param delta la variation du nombre de triplets visibles
+     */
+    private void written(int delta) {
+        size += delta;
+        view = null;
+        if (pendingSize() >= compactionThreshold) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Indique si un triplet est visible, en parcourant les parties de la plus récente à la plus ancienne :
+     * une partie qui le contient le rend visible, une pierre tombale le masque dans les parties plus anciennes
+     * (à appeler sous le verrou).
+     */
+    private boolean isVisible(int s, int p, int o) {
+        List<List<? extends RDFHexaStore>> generations = List.of(List.of(delta), sealed, frozen, main);
+        for (List<? extends RDFHexaStore> parts : generations) {
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                RDFHexaStore part = parts.get(i);
+                if (part.estimate(s, p, o) > 0) return true;
+                if (removes(removalsOf(part), s, p, o)) return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return les pierres tombales d'une partie, ou null si elle n'en a pas
+     */
+    private static Layer removalsOf(RDFHexaStore part) {
+        if (part instanceof Layer layer) return layer.removals;
+        return ((SortedLayer) part).removals;
+    }
+
+    /**
+     * @return true si des pierres tombales (éventuellement null) masquent le triplet
+     */
+    private static boolean removes(Layer removals, int s, int p, int o) {
+        return removals != null && removals.estimate(s, p, o) > 0;
+    }
+
+    /**
+     * @return le nombre de triplets du delta qui ne sont pas en cours de fusion (à appeler sous le verrou)
+     */
+    private long pendingSize() {
+        return sealedSize + delta.changes();
+    }
+
+    /**
+     * Fusionne immédiatement le delta dans la partie principale et attend la fin de la fusion.
+     */
+    public void compact() {
+        synchronized (lock) {
+            long ticket = ++compactionRequests;
+            lock.notifyAll();
+            while (!closed && servedRequests < ticket) {
+                awaitUninterruptibly();
+            }
+        }
+    }
+
+    /**
+     * @return le nombre de fusions du delta effectuées
+     */
+    public long compactionCount() {
+        synchronized (lock) {
+            return compactions;
+        }
+    }
+
+    /**
+     * @return le nombre de modifications (triplets ajoutés et pierres tombales) du delta, y compris celui
+     * en cours de fusion
+     */
+    public long deltaSize() {
+        synchronized (lock) {
+            long changes = pendingSize();
+            for (Layer layer : frozen) {
+                changes += layer.changes();
+            }
+            return changes;
+        }
+    }
+
+    /**
+     * @return le nombre de parties triées de la partie principale
+     */
+    int mainLayerCount() {
+        synchronized (lock) {
+            return main.size();
+        }
+    }
+
+    /**
+     * @return le nombre de segments scellés du delta, hors segments en cours de fusion
+     */
+    int sealedSegmentCount() {
+        synchronized (lock) {
+            return sealed.size();
+        }
+    }
+
+    /**
+     * Arrête le thread de compactage ; le store reste lisible mais n'accepte plus d'écritures.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            compactor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Retourne la vue en lecture seule de la version courante. Après une écriture, le segment en cours de remplissage
+     * est scellé en temps constant : la vue ne recopie aucun triplet.
+     *
+     * @return la vue
+     */
+    RDFHexaStore view() {
+        View current = view;
+        if (current != null) return current;
+        synchronized (lock) {
+            if (view == null) {
+                if (delta.changes() > 0) {
+                    sealed.add(delta);
+                    sealedSize += delta.changes();
+                    delta = new Layer(dictionary);
+                    if (consolidationIndex() >= 0) {
+                        lock.notifyAll();
+                    }
+                }
+                List<RDFHexaStore> parts = new ArrayList<>(main.size() + frozen.size() + sealed.size());
+                parts.addAll(main);
+                parts.addAll(frozen);
+                parts.addAll(sealed);
+                view = new View(dictionary, parts, size);
+            }
+            return view;
+        }
+    }
+
+    /**
+     * Cherche deux segments scellés consécutifs de tailles voisines, à regrouper : lorsqu'il n'y en a pas,
+     * les tailles décroissent de facteur deux au moins et les segments sont en nombre logarithmique.
+     *
+     * @return l'indice du plus ancien des deux segments, le plus récent possible, ou -1
+     */
+    private int consolidationIndex() {
+        for (int i = sealed.size() - 2; i >= 0; i--) {
+            if (sealed.get(i).changes() <= 2L * sealed.get(i + 1).changes()) return i;
+        }
+        return -1;
+    }
+
+    private void compactLoop() {
+        while (true) {
+            long ticket = 0;
+            List<SortedLayer> base = null;
+            List<Layer> merging = null;
+            int first = -1;
+            synchronized (lock) {
+                while (!closed && pendingSize() < compactionThreshold && servedRequests == compactionRequests
+                        && consolidationIndex() < 0) {
+                    awaitUninterruptibly();
+                }
+                if (closed) return;
+                if (pendingSize() >= compactionThreshold || servedRequests != compactionRequests) {
+                    ticket = compactionRequests;
+                    base = main;
+                    if (pendingSize() > 0) {
+                        // Le segment en cours est scellé avec les autres, et les ajouts repartent d'un delta vide
+                        if (delta.changes() > 0) sealed.add(delta);
+                        frozen = List.copyOf(sealed);
+                        sealed.clear();
+                        sealedSize = 0;
+                        delta = new Layer(dictionary);
+                        view = null;
+                        lock.notifyAll();
+                    }
+                    merging = frozen;
+                } else {
+                    first = consolidationIndex();
+                    merging = List.of(sealed.get(first), sealed.get(first + 1));
+                }
+            }
+
+            if (base == null) {
+                // Seul le compactage retire des segments scellés : les deux segments n'ont pas bougé
+                Layer merged = Layer.merge(merging.get(0), merging.get(1));
+                synchronized (lock) {
+                    sealed.set(first, merged);
+                    sealed.remove(first + 1);
+                    view = null;
+                    lock.notifyAll();
+                }
+                continue;
+            }
+
+            List<SortedLayer> merged = merging.isEmpty() ? base : SortedLayer.insert(base, SortedLayer.of(dictionary, merging));
+            synchronized (lock) {
+                if (merged != base) {
+                    main = merged;
+                    frozen = List.of();
+                    view = null;
+                    compactions++;
+                }
+                servedRequests = ticket;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void awaitUninterruptibly() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Attente interrompue", e);
+        }
+    }
+
+    @Override
+    public Iterator<Substitution> match(RDFAtom atom) {
+        return view().match(atom);
+    }
+
+    @Override
+    public Iterator<Substitution> match(StarQuery query) {
+        return view().match(query);
+    }
+
+    @Override
+    public Iterator<Substitution> match(BGPQuery query) {
+        return view().match(query);
+    }
+
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query) {
+        return view().matchTriejoin(query);
+    }
+
+    @Override
+    public Iterator<Substitution> match(StarQuery query, QueryContext context) {
+        return view().match(query, context);
+    }
+
+    @Override
+    public Iterator<Substitution> match(BGPQuery query, QueryContext context) {
+        return view().match(query, context);
+    }
+
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query, QueryContext context) {
+        return view().matchTriejoin(query, context);
+    }
+
+    @Override
+    public long estimateCost(StarQuery query) {
+        return view().estimateCost(query);
+    }
+
+    @Override
+    public long size() {
+        return view().size();
+    }
+
+    @Override
+    public Collection<Atom> getAtoms() {
+        return view().getAtoms();
+    }
+
+    /**
+     * Retourne les substitutions d'un atome à partir des curseurs d'une partie ou d'une vue.
+     */
+    private static Iterator<Substitution> matchByCursor(RDFHexaStore store, RDFAtom atom) {
+        Term[] terms = atom.getTerms();
+        int[] pattern = new int[3];
+        for (int i = 0; i < 3; i++) {
+            if (terms[i].isVariable()) {
+                pattern[i] = -1;
+            } else {
+                Integer id = store.idOf(terms[i]);
+                if (id == null) return Collections.emptyIterator();
+                pattern[i] = id;
+            }
+        }
+        List<Substitution> substitutions = new ArrayList<>();
+        TripleCursor cursor = store.cursor(pattern[0], pattern[1], pattern[2]);
+        triples:
+        while (cursor.next()) {
+            Map<Variable, Term> bindings = new HashMap<>();
+            for (int i = 0; i < 3; i++) {
+                if (!terms[i].isVariable()) continue;
+                Term value = store.termOf(cursor.triple()[i]);
+                // Une variable répétée dans l'atome doit être liée au même terme
+                Term previous = bindings.putIfAbsent((Variable) terms[i], value);
+                if (previous != null && !previous.equals(value)) continue triples;
+            }
+            Substitution substitution = new SubstitutionImpl();
+            bindings.forEach(substitution::add);
+            substitutions.add(substitution);
+        }
+        return substitutions.iterator();
+    }
+
+    /**
+     * Retourne les triplets d'une partie ou d'une vue, à partir de ses curseurs.
+     */
+    private static Collection<Atom> atomsByCursor(RDFHexaStore store) {
+        List<Atom> atoms = new ArrayList<>();
+        TripleCursor cursor = store.cursor(-1, -1, -1);
+        while (cursor.next()) {
+            int[] triple = cursor.triple();
+            atoms.add(new RDFAtom(store.termOf(triple[0]), store.termOf(triple[1]), store.termOf(triple[2])));
+        }
+        return atoms;
+    }
+
+    /**
+     * Segment du delta : des index d'HexaStore dont les identifiants sont ceux du dictionnaire partagé,
+     * et les pierres tombales des triplets qu'il supprime des parties plus anciennes.
+     * Un segment scellé n'est plus modifié.
+     */
+    static final class Layer extends RDFHexaStore {
+        private final SharedDictionary dictionary;
+        // Triplets des parties plus anciennes supprimés par ce segment, ou null s'il n'y en a aucun
+        private Layer removals;
+
+        Layer(SharedDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Regroupe deux segments consécutifs : les pierres tombales du plus récent retirent les triplets
+         * du plus ancien qu'elles masquent, et les autres sont conservées avec celles du plus ancien.
+         *
+         * @return un nouveau segment équivalent aux deux segments
+         */
+        static Layer merge(Layer base, Layer delta) {
+            Layer merged = new Layer(base.dictionary);
+            TripleCursor cursor = base.cursor(-1, -1, -1);
+            while (cursor.next()) {
+                int[] triple = cursor.triple();
+                if (!removes(delta.removals, triple[0], triple[1], triple[2])) {
+                    merged.add(triple[0], triple[1], triple[2]);
+                }
+            }
+            cursor = delta.cursor(-1, -1, -1);
+            while (cursor.next()) {
+                int[] triple = cursor.triple();
+                merged.add(triple[0], triple[1], triple[2]);
+            }
+            merged.removals = Layer.unionRemovals(base.dictionary, base.removals, delta.removals, base);
+            return merged;
+        }
+
+        /**
+         * Réunit les pierres tombales de deux parties consécutives, sans celles de la plus récente
+         * qui ne masquaient qu'un triplet de la plus ancienne.
+         *
+         * @return les pierres tombales réunies, ou null s'il n'y en a aucune
+         */
+        static Layer unionRemovals(SharedDictionary dictionary, Layer older, Layer newer, RDFHexaStore olderPart) {
+            Layer union = new Layer(dictionary);
+            if (older != null) {
+                TripleCursor cursor = older.cursor(-1, -1, -1);
+                while (cursor.next()) {
+                    int[] triple = cursor.triple();
+                    union.add(triple[0], triple[1], triple[2]);
+                }
+            }
+            if (newer != null) {
+                TripleCursor cursor = newer.cursor(-1, -1, -1);
+                while (cursor.next()) {
+                    int[] triple = cursor.triple();
+                    if (olderPart.estimate(triple[0], triple[1], triple[2]) == 0) {
+                        union.add(triple[0], triple[1], triple[2]);
+                    }
+                }
+            }
+            return union.size() == 0 ? null : union;
+        }
+
+        /**
+         * @return le nombre de modifications du segment : triplets ajoutés et pierres tombales
+         */
+        long changes() {
+            return size() + (removals == null ? 0 : removals.size());
+        }
+
+        /**
+         * Masque un triplet d'une partie plus ancienne.
+         */
+        void addRemoval(int s, int p, int o) {
+            if (removals == null) {
+                removals = new Layer(dictionary);
+            }
+            removals.add(s, p, o);
+        }
+
+        /**
+         * Retire la pierre tombale d'un triplet, qui redevient visible dans la partie plus ancienne qui le contient.
+         *
+         * @return true si le triplet était masqué par ce segment
+         */
+        boolean cancelRemoval(int s, int p, int o) {
+            return removals != null && removals.remove(s, p, o);
+        }
+
+        @Override
+        Integer idOf(Term term) {
+            return dictionary.get(term);
+        }
+
+        @Override
+        int encode(Term term) {
+            return dictionary.addAndGet(term);
+        }
+
+        @Override
+        int termCount() {
+            return dictionary.size();
+        }
+
+        @Override
+        public Term termOf(int id) {
+            return dictionary.getKey(id);
+        }
+
+        // Le dictionnaire partagé n'attribue jamais deux fois le même identifiant
+        @Override
+        boolean release(int id) {
+            return false;
+        }
+    }
+
+    /**
+     * Partie triée de la partie principale : six instantanés triés (un par ordre des positions) de triplets encodés
+     * avec le dictionnaire partagé, construits une fois pour toutes. Un motif est résolu par recherche dichotomique
+     * dans l'instantané dont le préfixe correspond à ses positions fixées, et l'estimation d'un motif est exacte.
+     * Une partie qui n'est pas la plus ancienne peut porter les pierres tombales des triplets qu'elle masque
+     * dans les parties plus anciennes. Une partie triée est immuable et peut être lue par plusieurs threads à la fois.
+     */
+    static final class SortedLayer extends RDFHexaStore {
+        // Ordre des niveaux de chaque instantané, dans l'ordre des permutations de trie(first, second)
+        private static final int[][] ORDERS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        private static final int SPO = 0, SOP = 1, PSO = 2, POS = 3, OSP = 4;
+        private static final TripleCursor EMPTY = new TripleCursor() {
+            @Override
+            boolean next() {
+                return false;
+            }
+        };
+
+        private final SharedDictionary dictionary;
+        private final SortedTrie[] tries;
+        // Triplets des parties plus anciennes masqués par cette partie, ou null s'il n'y en a aucun
+        private final Layer removals;
+        // Objets de chaque prédicat triés par valeur, construits à la demande par les requêtes à intervalle
+        private final ConcurrentHashMap<Integer, ObjectsByValue> objectsByValue = new ConcurrentHashMap<>();
+
+        private SortedLayer(SharedDictionary dictionary, SortedTrie[] tries, Layer removals) {
+            this.dictionary = dictionary;
+            this.tries = tries;
+            this.removals = removals;
+        }
+
+        /**
+         * Trie des segments consécutifs du delta en une partie.
+         *
+         * @param dictionary le dictionnaire partagé
+         * @param segments   des segments, du plus ancien au plus récent, éventuellement aucun
+         * @return la partie triée équivalente aux segments
+         */
+        static SortedLayer of(SharedDictionary dictionary, List<Layer> segments) {
+            SortedTrie[] empty = new SortedTrie[ORDERS.length];
+            Arrays.fill(empty, SortedTrie.of(new HashMap<>(), 0));
+            SortedLayer layer = new SortedLayer(dictionary, empty, null);
+            for (Layer segment : segments) {
+                SortedTrie[] tries = new SortedTrie[ORDERS.length];
+                for (int permutation = 0; permutation < ORDERS.length; permutation++) {
+                    tries[permutation] = segment.trie(ORDERS[permutation][0], ORDERS[permutation][1]);
+                }
+                layer = merge(layer, new SortedLayer(dictionary, tries, segment.removals));
+            }
+            return layer;
+        }
+
+        /**
+         * Ajoute une partie triée aux plus récentes, en la fusionnant avec chacune d'elles tant que celle-ci
+         * n'est pas au moins deux fois plus grande : les tailles restent décroissantes de facteur deux au moins.
+         *
+         * @param layers les parties triées, de la plus ancienne à la plus récente
+         * @param added  la nouvelle partie
+         * @return les nouvelles parties
+         */
+        static List<SortedLayer> insert(List<SortedLayer> layers, SortedLayer added) {
+            List<SortedLayer> result = new ArrayList<>(layers);
+            SortedLayer merged = added;
+            while (!result.isEmpty() && result.getLast().size() <= 2L * merged.size()) {
+                merged = merge(result.removeLast(), merged);
+            }
+            if (result.isEmpty() && merged.removals != null) {
+                // Aucune partie plus ancienne : les pierres tombales ne masquent plus rien
+                merged = new SortedLayer(merged.dictionary, merged.tries, null);
+            }
+            result.add(merged);
+            return List.copyOf(result);
+        }
+
+        /**
+         * Fusionne deux parties triées consécutives par interclassement de leurs instantanés,
+         * sans les triplets de la plus ancienne masqués par la plus récente.
+         */
+        private static SortedLayer merge(SortedLayer older, SortedLayer newer) {
+            SortedTrie[] tries = new SortedTrie[ORDERS.length];
+            for (int permutation = 0; permutation < ORDERS.length; permutation++) {
+                SortedTrie kept = older.tries[permutation];
+                if (newer.removals != null) {
+                    kept = kept.filter(visible(new Layer[]{newer.removals}, ORDERS[permutation]));
+                }
+                tries[permutation] = SortedTrie.merge(kept, newer.tries[permutation]);
+            }
+            return new SortedLayer(older.dictionary, tries,
+                    Layer.unionRemovals(older.dictionary, older.removals, newer.removals, older));
+        }
+
+        @Override
+        public boolean add(RDFAtom atom) {
+            throw new UnsupportedOperationException("Partie triée en lecture seule");
+        }
+
+        @Override
+        boolean add(int sIndex, int pIndex, int oIndex) {
+            throw new UnsupportedOperationException("Partie triée en lecture seule");
+        }
+
+        @Override
+        public boolean remove(RDFAtom atom) {
+            throw new UnsupportedOperationException("Partie triée en lecture seule");
+        }
+
+        @Override
+        Integer idOf(Term term) {
+            return dictionary.get(term);
+        }
+
+        @Override
+        int encode(Term term) {
+            throw new UnsupportedOperationException("Partie triée en lecture seule");
+        }
+
+        @Override
+        int termCount() {
+            return dictionary.size();
+        }
+
+        @Override
+        public Term termOf(int id) {
+            return dictionary.getKey(id);
+        }
+
+        @Override
+        public long size() {
+            return tries[SPO].keys2.length;
+        }
+
+        @Override
+        public Iterator<Substitution> match(RDFAtom atom) {
+            return matchByCursor(this, atom);
+        }
+
+        @Override
+        public Collection<Atom> getAtoms() {
+            return atomsByCursor(this);
+        }
+
+        @Override
+        TripleCursor cursor(int s, int p, int o) {
+            int[] span = locate(s, p, o);
+            return span == null ? EMPTY : new TrieCursor(tries[span[0]], ORDERS[span[0]], span[1], span[2], span[3], span[4]);
+        }
+
+        @Override
+        long estimate(int s, int p, int o) {
+            int[] span = locate(s, p, o);
+            return span == null ? 0 : span[4] - span[3];
+        }
+
+        /**
+         * Résout un motif encodé dans l'instantané dont le préfixe correspond à ses positions fixées.
+         *
+         * @return la permutation, les positions courantes des deux premiers niveaux et l'intervalle
+         * {@code [from, to)} du dernier niveau, ou null si aucun triplet ne correspond
+         */
+        private int[] locate(int s, int p, int o) {
+            int mask = (s >= 0 ? 4 : 0) | (p >= 0 ? 2 : 0) | (o >= 0 ? 1 : 0);
+            return switch (mask) {
+                case 0 -> span(SPO);
+                case 1 -> span(OSP, o);
+                case 2 -> span(PSO, p);
+                case 3 -> span(POS, p, o);
+                case 4 -> span(SPO, s);
+                case 5 -> span(SOP, s, o);
+                case 6 -> span(SPO, s, p);
+                default -> span(SPO, s, p, o);
+            };
+        }
+
+        private int[] span(int permutation, int... prefix) {
+            SortedTrie trie = tries[permutation];
+            int position0 = 0;
+            int from1 = 0;
+            int to1 = trie.keys1.length;
+            int from2 = 0;
+            int to2 = trie.keys2.length;
+            if (prefix.length >= 1) {
+                position0 = Arrays.binarySearch(trie.keys0, prefix[0]);
+                if (position0 < 0) return null;
+                from1 = trie.starts1[position0];
+                to1 = trie.starts1[position0 + 1];
+                from2 = trie.starts2[from1];
+                to2 = trie.starts2[to1];
+            }
+            if (prefix.length >= 2) {
+                int position1 = Arrays.binarySearch(trie.keys1, from1, to1, prefix[1]);
+                if (position1 < 0) return null;
+                from1 = position1;
+                from2 = trie.starts2[position1];
+                to2 = trie.starts2[position1 + 1];
+            }
+            if (prefix.length == 3) {
+                int position2 = Arrays.binarySearch(trie.keys2, from2, to2, prefix[2]);
+                if (position2 < 0) return null;
+                from2 = position2;
+                to2 = position2 + 1;
+            }
+            return from2 < to2 ? new int[]{permutation, position0, from1, from2, to2} : null;
+        }
+
+        @Override
+        TripleCursor rangeCursor(int p, ValueRange range) {
+            ObjectsByValue objects = objectsOf(p);
+            if (objects == null) return EMPTY;
+            SortedTrie trie = tries[POS];
+            int to = range.toIndex(objects.keys());
+            return new TripleCursor() {
+                private int index = range.fromIndex(objects.keys()) - 1;
+                private int position = 0;
+                private int end = 0;
+
+                @Override
+                boolean next() {
+                    while (position >= end) {
+                        if (++index >= to) return false;
+                        int object = objects.positions()[index];
+                        position = trie.starts2[object];
+                        end = trie.starts2[object + 1];
+                        triple[1] = p;
+                        triple[2] = trie.keys1[object];
+                    }
+                    triple[0] = trie.keys2[position++];
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        long estimateRange(int p, ValueRange range) {
+            ObjectsByValue objects = objectsOf(p);
+            if (objects == null) return 0;
+            long inRange = Math.max(0, range.toIndex(objects.keys()) - range.fromIndex(objects.keys()));
+            return inRange * estimate(-1, p, -1) / objects.positions().length;
+        }
+
+        /**
+         * @return les objets du prédicat dans l'instantané POS, triés par valeur, ou null s'il est absent
+         */
+        private ObjectsByValue objectsOf(int p) {
+            SortedTrie trie = tries[POS];
+            int position0 = Arrays.binarySearch(trie.keys0, p);
+            if (position0 < 0) return null;
+            return objectsByValue.computeIfAbsent(p, key -> {
+                int from = trie.starts1[position0];
+                int to = trie.starts1[position0 + 1];
+                Integer[] positions = new Integer[to - from];
+                ValueKey[] keyByPosition = new ValueKey[to - from];
+                for (int i = from; i < to; i++) {
+                    positions[i - from] = i;
+                    keyByPosition[i - from] = TermValueComparator.keyOf(termOf(trie.keys1[i]));
+                }
+                Arrays.sort(positions, Comparator.comparing(i -> keyByPosition[i - from]));
+                int[] sorted = new int[positions.length];
+                ValueKey[] keys = new ValueKey[positions.length];
+                for (int i = 0; i < positions.length; i++) {
+                    sorted[i] = positions[i];
+                    keys[i] = keyByPosition[positions[i] - from];
+                }
+                return new ObjectsByValue(sorted, keys);
+            });
+        }
+
+        /**
+         * Positions des objets d'un prédicat dans le deuxième niveau de l'instantané POS, triées par valeur,
+         * avec leurs clés de comparaison.
+         */
+        private record ObjectsByValue(int[] positions, ValueKey[] keys) {
+        }
+
+        @Override
+        long distinctValues(int position, int p) {
+            if (p >= 0) {
+                SortedTrie trie = tries[position == 2 ? POS : PSO];
+                int position0 = Arrays.binarySearch(trie.keys0, p);
+                if (position0 < 0) return 0;
+                return position == 1 ? 1 : trie.starts1[position0 + 1] - trie.starts1[position0];
+            }
+            return tries[switch (position) {
+                case 0 -> SPO;
+                case 1 -> PSO;
+                default -> OSP;
+            }].keys0.length;
+        }
+
+        @Override
+        SortedTrie trie(int first, int second) {
+            return tries[first * 2 + (second > first ? second - 1 : second)];
+        }
+    }
+
+    /**
+     * Curseur sur un intervalle du dernier niveau d'un instantané trié : les clés des niveaux supérieurs
+     * suivent la position courante.
+     */
+    private static final class TrieCursor extends TripleCursor {
+        private final SortedTrie trie;
+        private final int[] order;
+        private int position0;
+        private int position1;
+        private int position2;
+        private final int to;
+
+        TrieCursor(SortedTrie trie, int[] order, int position0, int position1, int from, int to) {
+            this.trie = trie;
+            this.order = order;
+            this.position0 = position0;
+            this.position1 = position1;
+            this.position2 = from - 1;
+            this.to = to;
+        }
+
+        @Override
+        boolean next() {
+            if (++position2 >= to) return false;
+            while (trie.starts2[position1 + 1] <= position2) position1++;
+            while (trie.starts1[position0 + 1] <= position1) position0++;
+            triple[order[0]] = trie.keys0[position0];
+            triple[order[1]] = trie.keys1[position1];
+            triple[order[2]] = trie.keys2[position2];
+            return true;
+        }
+    }
+
+    /**
+     * @return un filtre des clés d'un instantané trié, dans l'ordre de niveaux donné, qui écarte les triplets
+     * masqués par des pierres tombales
+     */
+    private static SortedTrie.KeyFilter visible(Layer[] removals, int[] order) {
+        int[] triple = new int[3];
+        return (key0, key1, key2) -> {
+            triple[order[0]] = key0;
+            triple[order[1]] = key1;
+            triple[order[2]] = key2;
+            return !hidden(removals, triple[0], triple[1], triple[2]);
+        };
+    }
+
+    private static boolean hidden(Layer[] removals, int s, int p, int o) {
+        for (Layer layer : removals) {
+            if (layer.estimate(s, p, o) > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Vue en lecture seule de plusieurs parties, de la plus ancienne à la plus récente : les curseurs sont concaténés,
+     * les estimations additionnées et les instantanés triés fusionnés à la demande. Les triplets d'une partie
+     * masqués par les pierres tombales d'une partie plus récente sont écartés ; les estimations partielles
+     * les comptent encore. Les requêtes en étoile y sont évaluées par curseurs, sans instantané trié.
+     */
+    static final class View extends RDFHexaStore {
+        private final SharedDictionary dictionary;
+        private final RDFHexaStore[] layers;
+        // Pierres tombales des parties plus récentes que chaque partie
+        private final Layer[][] hiders;
+        private final long size;
+        private final SortedTrie[] tries = new SortedTrie[6];
+
+        View(SharedDictionary dictionary, List<RDFHexaStore> layers, long size) {
+            this.dictionary = dictionary;
+            this.layers = layers.toArray(new RDFHexaStore[0]);
+            this.size = size;
+            this.hiders = new Layer[this.layers.length][];
+            List<Layer> newer = new ArrayList<>();
+            for (int i = this.layers.length - 1; i >= 0; i--) {
+                hiders[i] = newer.toArray(new Layer[0]);
+                Layer removals = removalsOf(this.layers[i]);
+                if (removals != null) newer.add(removals);
+            }
+        }
+
+        @Override
+        public boolean add(RDFAtom atom) {
+            throw new UnsupportedOperationException("Vue en lecture seule");
+        }
+
+        @Override
+        boolean add(int sIndex, int pIndex, int oIndex) {
+            throw new UnsupportedOperationException("Vue en lecture seule");
+        }
+
+        @Override
+        public boolean remove(RDFAtom atom) {
+            throw new UnsupportedOperationException("Vue en lecture seule");
+        }
+
+        @Override
+        Integer idOf(Term term) {
+            return dictionary.get(term);
+        }
+
+        @Override
+        int encode(Term term) {
+            throw new UnsupportedOperationException("Vue en lecture seule");
+        }
+
+        @Override
+        int termCount() {
+            return dictionary.size();
+        }
+
+        @Override
+        public Term termOf(int id) {
+            return dictionary.getKey(id);
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Substitution> match(RDFAtom atom) {
+            return matchByCursor(this, atom);
+        }
+
+        @Override
+        public Iterator<int[]> matchEncoded(StarQuery query, QueryContext context) {
+            context.check();
+            return new StarQueryIterator(this, new StarQueryPlan(query, this), query.getModifiers(), context);
+        }
+
+        @Override
+        TripleCursor cursor(int s, int p, int o) {
+            TripleCursor[] cursors = new TripleCursor[layers.length];
+            for (int i = 0; i < layers.length; i++) {
+                cursors[i] = visible(layers[i].cursor(s, p, o), i);
+            }
+            return new ConcatCursor(cursors);
+        }
+
+        @Override
+        TripleCursor rangeCursor(int p, ValueRange range) {
+            TripleCursor[] cursors = new TripleCursor[layers.length];
+            for (int i = 0; i < layers.length; i++) {
+                cursors[i] = visible(layers[i].rangeCursor(p, range), i);
+            }
+            return new ConcatCursor(cursors);
+        }
+
+        /**
+         * @return le curseur d'une partie, sans les triplets masqués par les parties plus récentes
+         */
+        private TripleCursor visible(TripleCursor cursor, int layer) {
+            Layer[] removals = hiders[layer];
+            if (removals.length == 0) return cursor;
+            return new TripleCursor() {
+                @Override
+                boolean next() {
+                    while (cursor.next()) {
+                        int[] current = cursor.triple();
+                        if (!hidden(removals, current[0], current[1], current[2])) {
+                            System.arraycopy(current, 0, triple, 0, 3);
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        long estimate(int s, int p, int o) {
+            if (s >= 0 && p >= 0 && o >= 0) {
+                // Estimation exacte d'un triplet : sa copie visible, s'il en a une
+                return cursor(s, p, o).next() ? 1 : 0;
+            }
+            long estimate = 0;
+            for (RDFHexaStore layer : layers) {
+                estimate += layer.estimate(s, p, o);
+            }
+            return estimate;
+        }
+
+        @Override
+        long estimateRange(int p, ValueRange range) {
+            long estimate = 0;
+            for (RDFHexaStore layer : layers) {
+                estimate += layer.estimateRange(p, range);
+            }
+            return estimate;
+        }
+
+        /**
+         * Somme des valeurs distinctes de chaque partie : une majoration, suffisante pour ordonner les atomes.
+         */
+        @Override
+        long distinctValues(int position, int p) {
+            long values = 0;
+            for (RDFHexaStore layer : layers) {
+                values += layer.distinctValues(position, p);
+            }
+            return values;
+        }
+
+        @Override
+        SortedTrie trie(int first, int second) {
+            int permutation = first * 2 + (second > first ? second - 1 : second);
+            SortedTrie trie = tries[permutation];
+            if (trie == null) {
+                int[] order = SortedLayer.ORDERS[permutation];
+                for (int i = 0; i < layers.length; i++) {
+                    SortedTrie layerTrie = layers[i].trie(first, second);
+                    if (hiders[i].length > 0) {
+                        layerTrie = layerTrie.filter(DeltaMainStorage.visible(hiders[i], order));
+                    }
+                    trie = trie == null ? layerTrie : SortedTrie.merge(trie, layerTrie);
+                }
+                tries[permutation] = trie;
+            }
+            return trie;
+        }
+
+        @Override
+        public Collection<Atom> getAtoms() {
+            return atomsByCursor(this);
+        }
+    }
+
+    /**
+     * Concaténation de curseurs sur des parties dont les triplets visibles sont disjoints.
+     */
+    private static final class ConcatCursor extends TripleCursor {
+        private final TripleCursor[] cursors;
+        private int current = 0;
+
+        ConcatCursor(TripleCursor[] cursors) {
+            this.cursors = cursors;
+        }
+
+        @Override
+        boolean next() {
+            while (current < cursors.length) {
+                if (cursors[current].next()) {
+                    System.arraycopy(cursors[current].triple(), 0, triple, 0, 3);
+                    return true;
+                }
+                current++;
+            }
+            return false;
+        }
+    }
+}
@@ -2,8 +2,9 @@ package qengine.storage;
 
 import fr.boreal.model.logicalElements.api.Term;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
 
 /**
  * La classe Dictionary représente un dictionnaire qui associe des termes à des index.
@@ -12,6 +13,10 @@ import java.util.Map;
  */
 public class Dictionary {
     private final HashMap<Term, Integer> dictionary;
+    // Table inverse : l'index d'un terme est sa position dans la liste
+    private final ArrayList<Term> terms;
+    // Index libérés par remove, réattribués avant d'en créer de nouveaux
+    private final ArrayDeque<Integer> freeIndexes = new ArrayDeque<>();
 
     /**
      * Constructeur de la classe Dictionary.
@@ -19,6 +24,7 @@ public class Dictionary {
      */
     public Dictionary() {
         this.dictionary = new HashMap<>();
+        this.terms = new ArrayList<>();
     }
 
     /**
@@ -31,7 +37,7 @@ public class Dictionary {
         if (dictionary.containsKey(term)) {
             return false;
         }
-        dictionary.put(term, dictionary.size());
+        addAndGet(term);
         return true;
     }
 
@@ -55,12 +61,10 @@ public class Dictionary {
      * @return le terme associé à l'index, ou null si l'index n'existe pas
      */
     public Term getKey(Integer index) {
-        for (Map.Entry<Term, Integer> entry : dictionary.entrySet()) {
-            if (entry.getValue().equals(index)) {
-                return entry.getKey();
-            }
+        if (index == null || index < 0 || index >= terms.size()) {
+            return null;
         }
-        return null;
+        return terms.get(index);
     }
 
     /**
@@ -70,6 +74,68 @@ public class Dictionary {
      * @return l'index du terme dans le dictionnaire
      */
     public Integer addAndGet(Term subject) {
-        return dictionary.computeIfAbsent(subject, k -> dictionary.size());
+        Integer index = dictionary.get(subject);
+        if (index == null) {
+            index = freeIndexes.poll();
+            if (index == null) {
+                index = terms.size();
+                terms.add(subject);
+            } else {
+                terms.set(index, subject);
+            }
+            dictionary.put(subject, index);
+        }
+        return index;
+    }
+
+    /**
+     * Associe un terme à un index donné (rechargement d'un instantané ou rejeu d'un journal, où les index
+     * libérés puis réattribués ne sont plus consécutifs). Les index sautés sont considérés comme libérés.
+     *
+     * @param index l'index du terme
+     * @param term  le terme, absent du dictionnaire
+     * @return true si le terme a été associé à l'index, false si l'index est déjà attribué
+     * @throws IllegalArgumentException si le terme est déjà associé à un autre index
+     */
+    public boolean put(int index, Term term) {
+        if (getKey(index) != null) {
+            return false;
+        }
+        if (dictionary.containsKey(term)) {
+            throw new IllegalArgumentException("Terme déjà associé à l'index " + dictionary.get(term) + " : " + term);
+        }
+        while (terms.size() <= index) {
+            freeIndexes.add(terms.size());
+            terms.add(null);
+        }
+        freeIndexes.remove(index);
+        terms.set(index, term);
+        dictionary.put(term, index);
+        return true;
+    }
+
+    /**
+     * Retire un terme du dictionnaire ; son index pourra être attribué à un autre terme.
+     *
+     * @param index l'index du terme à retirer
+     * @return true si le terme a été retiré, false si l'index n'était pas attribué
+     */
+    public boolean remove(int index) {
+        Term term = getKey(index);
+        if (term == null) {
+            return false;
+        }
+        dictionary.remove(term);
+        terms.set(index, null);
+        freeIndexes.push(index);
+        return true;
+    }
+
+    /**
+     * @return le nombre d'index attribués, libérés compris, qui est aussi le prochain index attribué
+     *         tant qu'aucun terme n'a été retiré
+     */
+    public int size() {
+        return terms.size();
     }
 }
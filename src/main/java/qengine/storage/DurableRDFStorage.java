@@ -0,0 +1,441 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Atom;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import qengine.model.BGPQuery;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * HexaStore durable : chaque ajout est consigné dans un {@link WriteAheadLog} sous forme encodée
+ * (les nouvelles entrées du dictionnaire, puis les identifiants du triplet), chaque suppression par les identifiants
+ * du triplet, et un instantané complet du store peut être écrit à tout moment pour vider le journal.
+ * <p>
+ * Les écritures sont validées par groupes : elles sont accumulées en mémoire et écrites dans le journal en un seul lot
+ * tous les {@code groupSize} triplets, à la fin de chaque {@link #addAll(Stream)} et {@link #removeAll(Stream)}
+ * ou lors d'un appel explicite à {@link #commit()}. Avec fsync, chaque lot est forcé sur le disque avant d'être considéré comme validé :
+ * un arrêt brutal ne perd alors que les écritures du lot en cours. Sans fsync, les lots sont confiés au cache
+ * du système, qui survit à l'arrêt du processus mais pas à celui de la machine.
+ * <p>
+ * À l'ouverture, le store est reconstruit à partir du dernier instantané puis du journal rejoué.
+ * Le rejeu est idempotent : un journal déjà repris dans l'instantané (arrêt entre l'écriture de l'instantané
+ * et la remise à zéro du journal) ne change rien. Comme l'HexaStore, cette classe n'est pas thread-safe.
+ * <p>
+ * Chaque terme est consigné avec son identifiant au moment où il est encodé, et l'instantané enregistre
+ * l'identifiant de chaque terme : les identifiants libérés par une purge de l'HexaStore puis réattribués
+ * (voir {@link RDFHexaStore#purge()}) sont retrouvés à l'identique : chaque purge, explicite ou déclenchée
+ * par une suppression, est consignée, et l'instantané est écrit après une purge, sans triplet marqué.
+ */
+public class DurableRDFStorage implements RDFStorage, AutoCloseable {
+
+    static final String SNAPSHOT_FILE = "snapshot.qhs";
+    static final String LOG_FILE = "wal.log";
+
+    // Version 1 : termes consécutifs ; version 2 : chaque terme suivi de son identifiant
+    private static final byte[] MAGIC_V1 = {'Q', 'H', 'S', '1'};
+    private static final byte[] MAGIC = {'Q', 'H', 'S', '2'};
+    private static final int TERM = 1;
+    private static final int TRIPLE = 2;
+    private static final int REMOVE = 3;
+    private static final int PURGE = 4;
+
+    private final TermFactory termFactory = SameObjectTermFactory.instance();
+    private final RDFHexaStore store = new RDFHexaStore();
+    private final Path directory;
+    private final int groupSize;
+    private final WriteAheadLog log;
+
+    // Lot en cours, pas encore écrit dans le journal
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+    private int pendingTriples = 0;
+
+    private final long recoveredBatches;
+    private long committedBatches = 0;
+
+    /**
+     * Ouvre (ou crée) un store durable et le reconstruit à partir de son instantané et de son journal.
+     *
+     * @param directory le répertoire de l'instantané et du journal, créé s'il n'existe pas
+     * @param groupSize le nombre de triplets ajoutés par lot du journal
+     * @param fsync     si chaque lot doit être forcé sur le disque
+     * @throws IOException si l'instantané ou le journal ne peut pas être lu
+     */
+    public DurableRDFStorage(Path directory, int groupSize, boolean fsync) throws IOException {
+        if (groupSize <= 0) {
+            throw new IllegalArgumentException("La taille des lots doit être positive : " + groupSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.groupSize = groupSize;
+
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            loadSnapshot(snapshot);
+        }
+        this.recoveredBatches = WriteAheadLog.replay(directory.resolve(LOG_FILE), this::replay);
+        this.log = new WriteAheadLog(directory.resolve(LOG_FILE), fsync);
+    }
+
+    /**
+     * @return l'HexaStore en mémoire, pour l'interroger directement ; il ne doit pas être modifié
+     */
+    public RDFHexaStore store() {
+        return store;
+    }
+
+    /**
+     * @return le nombre de lots du journal rejoués à l'ouverture
+     */
+    public long recoveredBatches() {
+        return recoveredBatches;
+    }
+
+    /**
+     * @return le nombre de lots écrits dans le journal depuis l'ouverture
+     */
+    public long committedBatches() {
+        return committedBatches;
+    }
+
+    /**
+     * Ajoute un RDFAtom : il est visible aussitôt, et durable une fois son lot validé.
+     *
+     * @param atom le RDFAtom à ajouter
+     * @return true si l'ajout a réussi, false s'il était déjà présent
+     * @throws UncheckedIOException si le lot complété ne peut pas être écrit
+     */
+    @Override
+    public boolean add(RDFAtom atom) {
+        Term subject = atom.getTripleSubject();
+        Term predicate = atom.getTriplePredicate();
+        Term object = atom.getTripleObject();
+        if (subject.isVariable() || predicate.isVariable() || object.isVariable()) return false;
+
+        try {
+            int s = encode(subject);
+            int p = encode(predicate);
+            int o = encode(object);
+            if (!store.add(s, p, o)) return false;
+            pending.writeByte(TRIPLE);
+            pending.writeInt(s);
+            pending.writeInt(p);
+            pending.writeInt(o);
+            if (++pendingTriples >= groupSize) {
+                commit();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encode un terme ; un nouveau terme est consigné avec l'identifiant qui lui est attribué, même si le triplet
+     * est déjà présent, et quel que soit cet identifiant (un identifiant libéré peut être réattribué).
+     */
+    private int encode(Term term) throws IOException {
+        Integer id = store.idOf(term);
+        if (id != null) return id;
+        int encoded = store.encode(term);
+        byte[] label = term.label().getBytes(StandardCharsets.UTF_8);
+        pending.writeByte(TERM);
+        pending.writeInt(encoded);
+        pending.writeInt(label.length);
+        pending.write(label);
+        return encoded;
+    }
+
+    /**
+     * Supprime un RDFAtom : il disparaît aussitôt, et durable une fois son lot validé.
+     * Une purge déclenchée par la suppression est consignée à sa suite.
+     *
+     * @param atom le RDFAtom à supprimer
+     * @return true si la suppression a réussi, false s'il était absent
+     * @throws UncheckedIOException si le lot complété ne peut pas être écrit
+     */
+    @Override
+    public boolean remove(RDFAtom atom) {
+        Integer s = store.idOf(atom.getTripleSubject());
+        Integer p = store.idOf(atom.getTriplePredicate());
+        Integer o = store.idOf(atom.getTripleObject());
+        if (s == null || p == null || o == null || !store.remove(s, p, o)) return false;
+
+        try {
+            pending.writeByte(REMOVE);
+            pending.writeInt(s);
+            pending.writeInt(p);
+            pending.writeInt(o);
+            if (store.tombstoneCount() == 0) {
+                pending.writeByte(PURGE);
+            }
+            if (++pendingTriples >= groupSize) {
+                commit();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Supprime des RDFAtom puis valide le dernier lot : les suppressions sont toutes durables au retour de la méthode.
+     *
+     * @param atoms les RDFAtom à supprimer
+     * @return true si au moins un RDFAtom a été supprimé
+     * @throws UncheckedIOException si un lot ne peut pas être écrit
+     */
+    @Override
+    public boolean removeAll(Stream<RDFAtom> atoms) {
+        boolean removed = false;
+        for (Iterator<RDFAtom> it = atoms.iterator(); it.hasNext(); ) {
+            removed |= remove(it.next());
+        }
+        commit();
+        return removed;
+    }
+
+    /**
+     * Purge l'HexaStore (voir {@link RDFHexaStore#purge()}) et consigne la purge dans le lot en cours.
+     *
+     * @return le nombre de triplets retirés des index
+     */
+    public int purge() {
+        int purged = store.purge();
+        if (purged > 0) {
+            try {
+                pending.writeByte(PURGE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Ajoute des RDFAtom puis valide le dernier lot : ils sont tous durables au retour de la méthode.
+     *
+     * @param atoms les RDFAtom à ajouter
+     * @return true si au moins un RDFAtom a été ajouté
+     * @throws UncheckedIOException si un lot ne peut pas être écrit
+     */
+    @Override
+    public boolean addAll(Stream<RDFAtom> atoms) {
+        boolean added = false;
+        for (Iterator<RDFAtom> it = atoms.iterator(); it.hasNext(); ) {
+            added |= add(it.next());
+        }
+        commit();
+        return added;
+    }
+
+    /**
+     * Écrit le lot en cours dans le journal (et le force sur le disque avec fsync).
+     *
+     * @throws UncheckedIOException si le lot ne peut pas être écrit
+     */
+    public void commit() {
+        if (pendingBytes.size() == 0) return;
+        try {
+            log.append(ByteBuffer.wrap(pendingBytes.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pendingBytes.reset();
+        pendingTriples = 0;
+        committedBatches++;
+    }
+
+    /**
+     * Valide le lot en cours, purge le store, écrit un instantané complet du store puis vide le journal.
+     * L'instantané est écrit dans un fichier temporaire, forcé sur le disque puis renommé,
+     * de sorte qu'un arrêt brutal laisse toujours l'ancien ou le nouvel instantané.
+     *
+     * @throws IOException si l'instantané ne peut pas être écrit
+     */
+    public void checkpoint() throws IOException {
+        // La purge est consignée : si l'instantané ne peut pas être écrit, le journal reste complet
+        purge();
+        commit();
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+            out.write(MAGIC);
+            // Les identifiants libérés par une purge et pas encore réattribués sont sautés
+            int terms = 0;
+            for (int id = 0; id < store.termCount(); id++) {
+                if (store.termOf(id) != null) terms++;
+            }
+            out.writeInt(terms);
+            for (int id = 0; id < store.termCount(); id++) {
+                Term term = store.termOf(id);
+                if (term == null) continue;
+                byte[] label = term.label().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(id);
+                out.writeInt(label.length);
+                out.write(label);
+            }
+            out.writeLong(store.size());
+            TripleCursor cursor = store.cursor(-1, -1, -1);
+            while (cursor.next()) {
+                int[] triple = cursor.triple();
+                out.writeInt(triple[0]);
+                out.writeInt(triple[1]);
+                out.writeInt(triple[2]);
+            }
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.reset();
+    }
+
+    /**
+     * @return la taille du journal, en octets
+     * @throws IOException si la taille ne peut pas être lue
+     */
+    public long logSize() throws IOException {
+        return log.size();
+    }
+
+    /**
+     * Valide le lot en cours et ferme le journal.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            log.close();
+        }
+    }
+
+    private void loadSnapshot(Path snapshot) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot)), crc))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            boolean dense = Arrays.equals(magic, MAGIC_V1);
+            if (!dense && !Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Signature d'instantané invalide : " + snapshot);
+            }
+            int terms = in.readInt();
+            for (int i = 0; i < terms; i++) {
+                int id = dense ? i : in.readInt();
+                store.encodeAt(id, termFactory.createOrGetLiteral(readLabel(in)));
+            }
+            long triples = in.readLong();
+            for (long i = 0; i < triples; i++) {
+                store.add(in.readInt(), in.readInt(), in.readInt());
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Instantané corrompu : " + snapshot);
+            }
+        }
+    }
+
+    /**
+     * Rejoue un lot du journal.
+     */
+    private void replay(ByteBuffer batch) {
+        while (batch.hasRemaining()) {
+            int type = batch.get();
+            switch (type) {
+                case TERM -> {
+                    int id = batch.getInt();
+                    byte[] label = new byte[batch.getInt()];
+                    batch.get(label);
+                    // Un terme déjà repris dans l'instantané est ignoré
+                    if (store.termOf(id) == null) {
+                        store.encodeAt(id, termFactory.createOrGetLiteral(new String(label, StandardCharsets.UTF_8)));
+                    }
+                }
+                case TRIPLE -> store.add(batch.getInt(), batch.getInt(), batch.getInt());
+                case REMOVE -> store.remove(batch.getInt(), batch.getInt(), batch.getInt());
+                case PURGE -> store.purge();
+                default -> throw new IllegalStateException("Enregistrement de journal inconnu : " + type);
+            }
+        }
+    }
+
+    private static String readLabel(DataInputStream in) throws IOException {
+        byte[] label = new byte[in.readInt()];
+        in.readFully(label);
+        return new String(label, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Iterator<Substitution> match(RDFAtom atom) {
+        return store.match(atom);
+    }
+
+    @Override
+    public Iterator<Substitution> match(StarQuery query) {
+        return store.match(query);
+    }
+
+    @Override
+    public Iterator<Substitution> match(BGPQuery query) {
+        return store.match(query);
+    }
+
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query) {
+        return store.matchTriejoin(query);
+    }
+
+    @Override
+    public Iterator<Substitution> match(StarQuery query, QueryContext context) {
+        return store.match(query, context);
+    }
+
+    @Override
+    public Iterator<Substitution> match(BGPQuery query, QueryContext context) {
+        return store.match(query, context);
+    }
+
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query, QueryContext context) {
+        return store.matchTriejoin(query, context);
+    }
+
+    @Override
+    public long estimateCost(StarQuery query) {
+        return store.estimateCost(query);
+    }
+
+    @Override
+    public long size() {
+        return store.size();
+    }
+
+    @Override
+    public Collection<Atom> getAtoms() {
+        return store.getAtoms();
+    }
+}
@@ -0,0 +1,82 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.StarQuery;
+
+import java.util.List;
+
+/**
+ * Requête en étoile encodée pour un HexaStore (voir {@link RDFHexaStore#encode(StarQuery)}) : ses constantes sont
+ * traduites en identifiants du dictionnaire et ses variables en indices une seule fois, puis chaque évaluation
+ * parcourt les index sans manipuler de {@link fr.boreal.model.logicalElements.api.Term}.
+ * Une requête dont une constante est absente du dictionnaire est vide : son évaluation s'arrête immédiatement.
+ * <p>
+ * Le plan encodé est recalculé lorsqu'il ne correspond plus au dictionnaire : après une purge, qui peut réattribuer
+ * les identifiants, ou lorsque de nouveaux termes ont été ajoutés alors qu'une constante était inconnue.
+ */
+public final class EncodedStarQuery {
+
+    private final StarQuery query;
+    private final List<Variable> parameters;
+    private final RDFHexaStore store;
+    private StarQueryPlan plan;
+    // Version du dictionnaire et nombre de termes au moment de l'encodage
+    private int dictionaryVersion;
+    private int termCount;
+
+    /**
+     * Encode une requête, dont certaines variables peuvent être des paramètres (voir {@link StarQueryPlan#bind(int[])}).
+     *
+     * @param query      la requête en étoile
+     * @param parameters les variables jouant le rôle de paramètres
+     * @param store      l'HexaStore interrogé
+     */
+    EncodedStarQuery(StarQuery query, List<Variable> parameters, RDFHexaStore store) {
+        this.query = query;
+        this.parameters = parameters;
+        this.store = store;
+        encode();
+    }
+
+    private void encode() {
+        dictionaryVersion = store.dictionaryVersion();
+        termCount = store.termCount();
+        plan = new StarQueryPlan(query, parameters, store);
+    }
+
+    /**
+     * @param store l'HexaStore interrogé
+     * @return le plan encodé, recalculé s'il ne correspond plus au dictionnaire
+     * @throws IllegalArgumentException si la requête a été encodée pour un autre HexaStore
+     */
+    synchronized StarQueryPlan plan(RDFHexaStore store) {
+        if (store != this.store) {
+            throw new IllegalArgumentException("La requête a été encodée pour un autre HexaStore.");
+        }
+        if (dictionaryVersion != store.dictionaryVersion() || (plan.isEmpty() && termCount != store.termCount())) {
+            encode();
+        }
+        return plan;
+    }
+
+    /**
+     * @return la requête en étoile encodée
+     */
+    public StarQuery query() {
+        return query;
+    }
+
+    /**
+     * @return true si une constante de la requête est absente du dictionnaire (aucune réponse possible)
+     */
+    public boolean isEmpty() {
+        return plan(store).isEmpty();
+    }
+
+    /**
+     * @return les variables de la requête, dans l'ordre de leurs indices
+     */
+    public List<Variable> variables() {
+        return List.copyOf(plan(store).variables());
+    }
+}
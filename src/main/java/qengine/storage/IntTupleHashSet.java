@@ -0,0 +1,95 @@
+package qengine.storage;
+
+import java.util.Arrays;
+
+/**
+ * Ensemble de tuples d'entiers de taille fixe, sans objets intermédiaires.
+ * Les tuples sont copiés les uns à la suite des autres dans un tableau d'entiers et repérés par une table
+ * de hachage à adressage ouvert ; utilisé pour dédupliquer les réponses projetées dans l'espace des identifiants.
+ */
+final class IntTupleHashSet {
+
+    private static final int EMPTY = -1;
+
+    private final int arity;
+    private int[] data;
+    private int[] table;
+    private int size = 0;
+
+    /**
+     * Constructeur.
+     *
+     * @param arity la taille des tuples
+     */
+    IntTupleHashSet(int arity) {
+        this.arity = arity;
+        this.data = new int[Math.max(1, arity) * 16];
+        this.table = new int[32];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Ajoute un tuple à l'ensemble.
+     *
+     * @param tuple le tuple, de taille {@code arity}
+     * @return true si le tuple n'était pas déjà présent
+     */
+    boolean add(int[] tuple) {
+        if (2 * (size + 1) > table.length) {
+            rehash();
+        }
+        int mask = table.length - 1;
+        int slot = hash(tuple, 0) & mask;
+        while (table[slot] != EMPTY) {
+            if (equalsAt(table[slot], tuple)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if ((size + 1) * arity > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        System.arraycopy(tuple, 0, data, size * arity, arity);
+        table[slot] = size++;
+        return true;
+    }
+
+    /**
+     * @return le nombre de tuples distincts
+     */
+    int size() {
+        return size;
+    }
+
+    private boolean equalsAt(int index, int[] tuple) {
+        int offset = index * arity;
+        for (int i = 0; i < arity; i++) {
+            if (data[offset + i] != tuple[i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        Arrays.fill(newTable, EMPTY);
+        int mask = newTable.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hash(data, index * arity) & mask;
+            while (newTable[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = index;
+        }
+        table = newTable;
+    }
+
+    private int hash(int[] values, int offset) {
+        int h = 1;
+        for (int i = 0; i < arity; i++) {
+            h = 31 * h + values[offset + i];
+        }
+        // Mélange des bits de poids fort pour limiter les collisions avec le masque
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
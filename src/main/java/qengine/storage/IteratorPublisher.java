@@ -0,0 +1,142 @@
+package qengine.storage;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publication asynchrone des réponses d'une évaluation paresseuse.
+ * Chaque abonnement ouvre son propre itérateur et n'en tire des éléments, sur l'exécuteur fourni,
+ * qu'à hauteur de la demande de l'abonné : tant que la demande est nulle, aucune tâche n'est planifiée
+ * et le parcours des index est suspendu, sans mise en tampon des réponses.
+ * Pour ne pas monopoliser un thread de l'exécuteur, une demande importante est servie
+ * par tranches de {@link #CHUNK_SIZE} éléments, chaque tranche étant replanifiée.
+ *
+ * @param <T> le type des éléments publiés
+ */
+public final class IteratorPublisher<T> implements Flow.Publisher<T> {
+
+    static final int CHUNK_SIZE = 256;
+
+    private final Supplier<? extends Iterator<? extends T>> source;
+    private final Executor executor;
+
+    /**
+     * @param source   fournit un nouvel itérateur à chaque abonnement ; il n'est appelé que sur l'exécuteur
+     * @param executor l'exécuteur sur lequel l'itérateur est parcouru
+     */
+    public IteratorPublisher(Supplier<? extends Iterator<? extends T>> source, Executor executor) {
+        this.source = Objects.requireNonNull(source);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new IteratorSubscription<>(subscriber, source, executor));
+    }
+
+    /**
+     * Abonnement : le nombre de planifications en attente ({@code wip}) garantit qu'une seule tâche
+     * parcourt l'itérateur à la fois, y compris lorsque l'abonné demande de nouveaux éléments depuis {@code onNext}.
+     */
+    private static final class IteratorSubscription<T> implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Supplier<? extends Iterator<? extends T>> source;
+        private final Executor executor;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable invalidRequest = null;
+        private Iterator<? extends T> iterator = null;
+
+        IteratorSubscription(Flow.Subscriber<? super T> subscriber, Supplier<? extends Iterator<? extends T>> source,
+                             Executor executor) {
+            this.subscriber = subscriber;
+            this.source = source;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("La demande doit être positive : " + n);
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    cancelled = true;
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (cancelled) return;
+                if (invalidRequest != null) {
+                    cancelled = true;
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                long emitted = 0;
+                try {
+                    if (iterator == null) {
+                        iterator = source.get();
+                    }
+                    long requested = demand.get();
+                    while (emitted < requested && emitted < CHUNK_SIZE) {
+                        if (cancelled) return;
+                        if (!iterator.hasNext()) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(iterator.next());
+                        emitted++;
+                    }
+                    if (requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-emitted);
+                    }
+                } catch (Throwable e) {
+                    cancelled = true;
+                    subscriber.onError(e);
+                    return;
+                }
+                if (emitted == CHUNK_SIZE && demand.get() > 0) {
+                    // Tranche suivante replanifiée : la tâche reste l'unique consommatrice (wip > 0)
+                    try {
+                        executor.execute(this);
+                    } catch (RejectedExecutionException e) {
+                        cancelled = true;
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) return;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package qengine.storage;
+
+import java.util.Arrays;
+
+/**
+ * Table de hachage de jointure sur des lignes d'identifiants.
+ * Les lignes sont copiées les unes à la suite des autres dans un tableau d'entiers ; les lignes partageant
+ * la même clé (les valeurs des colonnes de jointure) sont chaînées entre elles, et la table à adressage
+ * ouvert ne référence que la première ligne de chaque chaîne.
+ */
+final class JoinHashTable {
+
+    private static final int EMPTY = -1;
+
+    private final int arity;
+    private final int[] keyColumns;
+    private int[] rows;
+    private int[] next;
+    private int[] table;
+    private int count = 0;
+    private int keys = 0;
+
+    /**
+     * Constructeur.
+     *
+     * @param arity      le nombre de colonnes des lignes
+     * @param keyColumns les colonnes formant la clé de jointure
+     */
+    JoinHashTable(int arity, int[] keyColumns) {
+        this.arity = arity;
+        this.keyColumns = keyColumns;
+        this.rows = new int[Math.max(1, arity) * 16];
+        this.next = new int[16];
+        this.table = new int[32];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Ajoute une ligne à la table.
+     *
+     * @param row la ligne, de taille {@code arity}
+     */
+    void add(int[] row) {
+        if (2 * (keys + 1) > table.length) {
+            rehash();
+        }
+        if (count == next.length) {
+            next = Arrays.copyOf(next, count * 2);
+            rows = Arrays.copyOf(rows, Math.max(1, arity) * count * 2);
+        }
+        System.arraycopy(row, 0, rows, count * arity, arity);
+
+        int mask = table.length - 1;
+        int slot = hashRow(count) & mask;
+        while (table[slot] != EMPTY && !sameKey(table[slot], count)) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot] == EMPTY) keys++;
+        next[count] = table[slot];
+        table[slot] = count++;
+    }
+
+    /**
+     * Retourne la première ligne associée à une clé.
+     *
+     * @param key les valeurs des colonnes de jointure, dans l'ordre de {@code keyColumns}
+     * @return l'indice de la première ligne, ou -1 si aucune ligne n'a cette clé
+     */
+    int first(int[] key) {
+        int mask = table.length - 1;
+        int slot = hashKey(key) & mask;
+        while (table[slot] != EMPTY) {
+            if (matches(table[slot], key)) {
+                return table[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Retourne la ligne suivante de même clé.
+     *
+     * @param row l'indice d'une ligne
+     * @return l'indice de la ligne suivante, ou -1 s'il n'y en a plus
+     */
+    int next(int row) {
+        return next[row];
+    }
+
+    /**
+     * Retourne la valeur d'une colonne d'une ligne.
+     *
+     * @param row    l'indice de la ligne
+     * @param column la colonne
+     * @return la valeur
+     */
+    int get(int row, int column) {
+        return rows[row * arity + column];
+    }
+
+    /**
+     * @return le nombre de lignes de la table
+     */
+    int size() {
+        return count;
+    }
+
+    private boolean sameKey(int first, int second) {
+        for (int column : keyColumns) {
+            if (get(first, column) != get(second, column)) return false;
+        }
+        return true;
+    }
+
+    private boolean matches(int row, int[] key) {
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (get(row, keyColumns[i]) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        Arrays.fill(newTable, EMPTY);
+        int mask = newTable.length - 1;
+        for (int head : table) {
+            if (head == EMPTY) continue;
+            int slot = hashRow(head) & mask;
+            while (newTable[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = head;
+        }
+        table = newTable;
+    }
+
+    private int hashRow(int row) {
+        int h = 1;
+        for (int column : keyColumns) {
+            h = 31 * h + get(row, column);
+        }
+        return mix(h);
+    }
+
+    private static int hashKey(int[] key) {
+        int h = 1;
+        for (int value : key) {
+            h = 31 * h + value;
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,358 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+
+import java.util.*;
+
+/**
+ * Évaluation d'une requête conjonctive par Leapfrog Triejoin, une jointure multi-voies optimale dans le pire cas.
+ * Les variables sont liées une à une selon un ordre global ; pour chaque variable, les atomes qui la contiennent
+ * sont parcourus à travers la permutation de l'HexaStore dont les niveaux suivent cet ordre (constantes en tête),
+ * et leurs clés sont intersectées par sauts successifs ({@code seek}) sans jamais construire de résultat intermédiaire.
+ * Les requêtes cycliques (triangles, etc.) évitent ainsi l'explosion des jointures deux à deux.
+ * <p>
+ * L'ordre des variables est choisi de façon gloutonne à partir des statistiques de l'HexaStore : d'abord les
+ * variables réponses, puis les variables existentielles, en préférant les variables reliées à celles déjà ordonnées
+ * et dont l'atome le plus sélectif a la plus petite cardinalité estimée. Les variables existentielles étant liées
+ * en dernier, elles ne servent qu'à vérifier l'existence d'une extension : chaque réponse est produite une seule fois.
+ * Un atome contenant deux fois la même variable n'est pas pris en charge (voir {@link #supports(List)}).
+ * Chaque pas de la jointure est un point de contrôle du {@link QueryContext} de la requête.
+ */
+final class LeapfrogTriejoin implements Iterator<int[]> {
+
+    private final RDFHexaStore store;
+    private final TrieIterator[][] iterators;
+    private final int[] pointer;
+    private final boolean[] exhausted;
+    private final List<List<ComparisonFilter>> filters = new ArrayList<>();
+    private final int[] binding;
+    private final int[] projection;
+    private final int cut;
+    private final QueryContext context;
+
+    private int depth = 0;
+    private long toSkip;
+    private long remaining;
+    private boolean started = false;
+    private boolean ready = false;
+    private boolean finished;
+
+    /**
+     * Prépare la jointure : choix de l'ordre des variables et positionnement des itérateurs sur les constantes.
+     *
+     * @param store           l'HexaStore interrogé
+     * @param atoms           les atomes de la requête, sans variable répétée dans un même atome
+     * @param answerVariables les variables réponses
+     * @param queryFilters    les filtres de comparaison de la requête
+     * @param modifiers       les modificateurs de solutions
+     */
+    LeapfrogTriejoin(RDFHexaStore store, List<RDFAtom> atoms, Collection<Variable> answerVariables,
+                     List<ComparisonFilter> queryFilters, SolutionModifiers modifiers) {
+        this(store, atoms, answerVariables, queryFilters, modifiers, new QueryContext());
+    }
+
+    /**
+     * Prépare la jointure en la soumettant au contexte d'exécution de la requête.
+     *
+     * @param store           l'HexaStore interrogé
+     * @param atoms           les atomes de la requête, sans variable répétée dans un même atome
+     * @param answerVariables les variables réponses
+     * @param queryFilters    les filtres de comparaison de la requête
+     * @param modifiers       les modificateurs de solutions
+     * @param context         le contexte d'exécution de la requête
+     */
+    LeapfrogTriejoin(RDFHexaStore store, List<RDFAtom> atoms, Collection<Variable> answerVariables,
+                     List<ComparisonFilter> queryFilters, SolutionModifiers modifiers, QueryContext context) {
+        if (!supports(atoms)) {
+            throw new IllegalArgumentException("Un atome contient plusieurs fois la même variable");
+        }
+        this.store = store;
+        this.context = context;
+        this.toSkip = modifiers.offset();
+        this.remaining = modifiers.hasLimit() ? modifiers.limit() : Long.MAX_VALUE;
+
+        // Encodage des atomes : identifiant pour une constante, null pour une variable
+        boolean empty = false;
+        List<Term[]> terms = new ArrayList<>();
+        List<int[]> constants = new ArrayList<>();
+        for (RDFAtom atom : atoms) {
+            Term[] triple = {atom.getTripleSubject(), atom.getTriplePredicate(), atom.getTripleObject()};
+            int[] ids = new int[3];
+            for (int i = 0; i < 3; i++) {
+                ids[i] = -1;
+                if (!triple[i].isVariable()) {
+                    Integer id = store.idOf(triple[i]);
+                    if (id == null) {
+                        empty = true;
+                    } else {
+                        ids[i] = id;
+                    }
+                }
+            }
+            terms.add(triple);
+            constants.add(ids);
+        }
+
+        List<Variable> order = variableOrder(store, terms, constants, answerVariables);
+        this.binding = new int[order.size()];
+        this.projection = answerVariables.stream().mapToInt(order::indexOf).toArray();
+        this.cut = projection.length == 0 ? -1 : Arrays.stream(projection).max().getAsInt();
+        this.pointer = new int[order.size()];
+        this.exhausted = new boolean[order.size()];
+        for (Variable variable : order) {
+            List<ComparisonFilter> onVariable = new ArrayList<>();
+            for (ComparisonFilter filter : queryFilters) {
+                if (filter.getVariable().equals(variable)) onVariable.add(filter);
+            }
+            filters.add(onVariable);
+        }
+
+        // Un itérateur par atome, sur la permutation dont les niveaux suivent l'ordre des variables
+        List<List<TrieIterator>> byDepth = new ArrayList<>();
+        for (int d = 0; d < order.size(); d++) byDepth.add(new ArrayList<>());
+        for (int a = 0; a < terms.size() && !empty; a++) {
+            Term[] triple = terms.get(a);
+            int[] ids = constants.get(a);
+            Integer[] positions = {0, 1, 2};
+            Arrays.sort(positions, Comparator.comparingInt(i -> triple[i].isVariable() ? order.indexOf(triple[i]) : -1));
+
+            TrieIterator iterator = store.trie(positions[0], positions[1]).iterator();
+            for (int position : positions) {
+                if (triple[position].isVariable()) {
+                    byDepth.get(order.indexOf(triple[position])).add(iterator);
+                    continue;
+                }
+                iterator.open();
+                iterator.seek(ids[position]);
+                if (iterator.atEnd() || iterator.key() != ids[position]) {
+                    empty = true;
+                    break;
+                }
+            }
+        }
+        this.iterators = new TrieIterator[order.size()][];
+        for (int d = 0; d < order.size(); d++) {
+            iterators[d] = byDepth.get(d).toArray(new TrieIterator[0]);
+        }
+        this.finished = empty || remaining == 0;
+    }
+
+    /**
+     * Indique si des atomes peuvent être évalués par Leapfrog Triejoin :
+     * aucune variable ne doit apparaître deux fois dans un même atome.
+     *
+     * @param atoms les atomes de la requête
+     * @return true si la jointure peut être utilisée
+     */
+    static boolean supports(List<RDFAtom> atoms) {
+        for (RDFAtom atom : atoms) {
+            Set<Term> variables = new HashSet<>();
+            for (Term term : atom.getTerms()) {
+                if (term.isVariable() && !variables.add(term)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ordonne les variables de façon gloutonne : variables réponses d'abord, puis reliées aux variables déjà
+     * ordonnées, puis de plus petite cardinalité estimée, puis présentes dans le plus d'atomes.
+     */
+    private static List<Variable> variableOrder(RDFHexaStore store, List<Term[]> terms, List<int[]> constants,
+                                                Collection<Variable> answerVariables) {
+        Map<Variable, Long> estimates = new LinkedHashMap<>();
+        Map<Variable, Integer> occurrences = new HashMap<>();
+        for (int a = 0; a < terms.size(); a++) {
+            int[] ids = constants.get(a);
+            long estimate = store.estimate(ids[0], ids[1], ids[2]);
+            for (Term term : terms.get(a)) {
+                if (term.isVariable()) {
+                    estimates.merge((Variable) term, estimate, Math::min);
+                    occurrences.merge((Variable) term, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Variable> order = new ArrayList<>();
+        List<Variable> candidates = new ArrayList<>(estimates.keySet());
+        while (!candidates.isEmpty()) {
+            Variable best = null;
+            int bestRank = Integer.MAX_VALUE;
+            for (Variable variable : candidates) {
+                int rank = (answerVariables.contains(variable) ? 0 : 2) + (isConnected(variable, order, terms) ? 0 : 1);
+                if (best == null || rank < bestRank
+                        || (rank == bestRank && estimates.get(variable) < estimates.get(best))
+                        || (rank == bestRank && estimates.get(variable).equals(estimates.get(best))
+                            && occurrences.get(variable) > occurrences.get(best))) {
+                    best = variable;
+                    bestRank = rank;
+                }
+            }
+            candidates.remove(best);
+            order.add(best);
+        }
+        return order;
+    }
+
+    private static boolean isConnected(Variable variable, List<Variable> ordered, List<Term[]> terms) {
+        for (Term[] triple : terms) {
+            List<Term> atom = Arrays.asList(triple);
+            if (atom.contains(variable) && !Collections.disjoint(atom, ordered)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready) return true;
+        if (finished) return false;
+
+        while (advance()) {
+            if (toSkip > 0) {
+                toSkip--;
+                continue;
+            }
+            remaining--;
+            ready = true;
+            return true;
+        }
+        finished = true;
+        return false;
+    }
+
+    @Override
+    public int[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Aucune réponse disponible");
+        }
+        ready = false;
+        if (remaining == 0) {
+            finished = true;
+        }
+        int[] row = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            row[i] = binding[projection[i]];
+        }
+        return row;
+    }
+
+    /**
+     * Avance jusqu'à la prochaine liaison complète des variables.
+     * Après une réponse, le parcours reprend à la dernière variable réponse : les variables existentielles
+     * suivantes ont seulement prouvé l'existence d'une extension.
+     *
+     * @return true si une liaison complète est disponible dans {@code binding}
+     */
+    private boolean advance() {
+        if (binding.length == 0) {
+            // Requête sans variable : les constantes ont déjà été vérifiées
+            boolean first = !started;
+            started = true;
+            return first;
+        }
+        if (!started) {
+            started = true;
+            open(0);
+        } else {
+            if (cut < 0) return false;
+            while (depth > cut) {
+                up(depth--);
+            }
+            leapfrogNext(depth);
+        }
+
+        while (true) {
+            context.checkpoint();
+            if (exhausted[depth]) {
+                up(depth);
+                if (depth == 0) return false;
+                leapfrogNext(--depth);
+                continue;
+            }
+            int key = iterators[depth][pointer[depth]].key();
+            if (!accept(depth, key)) {
+                leapfrogNext(depth);
+                continue;
+            }
+            binding[depth] = key;
+            if (depth == binding.length - 1) return true;
+            open(++depth);
+        }
+    }
+
+    /**
+     * Descend tous les itérateurs de la variable d'une profondeur et cherche leur première clé commune.
+     */
+    private void open(int d) {
+        TrieIterator[] its = iterators[d];
+        exhausted[d] = false;
+        for (TrieIterator it : its) {
+            it.open();
+            if (it.atEnd()) exhausted[d] = true;
+        }
+        if (exhausted[d]) return;
+
+        // Tri par insertion selon la clé courante : les atomes d'une variable sont peu nombreux
+        for (int i = 1; i < its.length; i++) {
+            TrieIterator it = its[i];
+            int j = i - 1;
+            while (j >= 0 && its[j].key() > it.key()) {
+                its[j + 1] = its[j];
+                j--;
+            }
+            its[j + 1] = it;
+        }
+        pointer[d] = 0;
+        leapfrogSearch(d);
+    }
+
+    private void up(int d) {
+        for (TrieIterator it : iterators[d]) {
+            it.up();
+        }
+    }
+
+    /**
+     * Fait avancer à tour de rôle l'itérateur de plus petite clé jusqu'à la plus grande clé courante,
+     * jusqu'à ce que tous les itérateurs s'accordent sur une clé.
+     */
+    private void leapfrogSearch(int d) {
+        TrieIterator[] its = iterators[d];
+        int k = its.length;
+        int max = its[(pointer[d] + k - 1) % k].key();
+        while (true) {
+            context.checkpoint();
+            TrieIterator it = its[pointer[d]];
+            if (it.key() == max) return;
+            it.seek(max);
+            if (it.atEnd()) {
+                exhausted[d] = true;
+                return;
+            }
+            max = it.key();
+            pointer[d] = (pointer[d] + 1) % k;
+        }
+    }
+
+    private void leapfrogNext(int d) {
+        TrieIterator it = iterators[d][pointer[d]];
+        it.next();
+        if (it.atEnd()) {
+            exhausted[d] = true;
+            return;
+        }
+        pointer[d] = (pointer[d] + 1) % iterators[d].length;
+        leapfrogSearch(d);
+    }
+
+    private boolean accept(int d, int id) {
+        for (ComparisonFilter filter : filters.get(d)) {
+            if (!filter.test(store.termOf(id))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,24 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Requête préparée à partir d'un {@link qengine.model.QueryTemplate} : le modèle est analysé et planifié
+ * une seule fois, chaque exécution ne reçoit que les constantes des paramètres.
+ */
+@FunctionalInterface
+public interface PreparedQuery {
+
+    /**
+     * Exécute la requête pour des valeurs des paramètres.
+     *
+     * @param values les constantes, dans l'ordre des paramètres du modèle
+     * @return un itérateur de substitutions décrivant les réponses à la requête instanciée
+     * @throws IllegalArgumentException si le nombre de valeurs ne correspond pas au nombre de paramètres
+     */
+    Iterator<Substitution> execute(List<Term> values);
+}
@@ -0,0 +1,33 @@
+package qengine.storage;
+
+/**
+ * Exception levée lorsqu'une évaluation est interrompue par son {@link QueryContext} :
+ * annulation explicite, délai dépassé ou budget mémoire des résultats intermédiaires épuisé.
+ */
+public class QueryAbortedException extends RuntimeException {
+
+    /**
+     * Cause de l'interruption.
+     */
+    public enum Reason {
+        CANCELLED, TIMEOUT, MEMORY
+    }
+
+    private final Reason reason;
+
+    /**
+     * @param reason  la cause de l'interruption
+     * @param message le message d'erreur
+     */
+    public QueryAbortedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * @return la cause de l'interruption
+     */
+    public Reason reason() {
+        return reason;
+    }
+}
@@ -0,0 +1,205 @@
+package qengine.storage;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contexte d'exécution d'une requête : annulation coopérative, délai d'exécution et budget mémoire
+ * des résultats intermédiaires.
+ * <p>
+ * Les boucles d'évaluation appellent {@link #checkpoint()} à chaque pas ; le délai et l'annulation n'y sont
+ * vérifiés que tous les {@link #CHECK_INTERVAL} appels, pour un coût négligeable dans les boucles internes.
+ * Les structures matérialisées pendant l'évaluation (tables de jointure, ensembles de déduplication,
+ * tampons de sondage) réservent leur taille estimée par {@link #reserve(long)} ; les réservations sont cumulées
+ * sur toute la durée de la requête. Le dépassement de l'une des limites lève une {@link QueryAbortedException},
+ * comptée une seule fois par requête dans des compteurs globaux.
+ * <p>
+ * Un contexte est parcouru par un seul thread à la fois ; seule {@link #cancel()} peut être appelée
+ * depuis un autre thread.
+ */
+public final class QueryContext {
+
+    static final int CHECK_INTERVAL = 1024;
+
+    private static final Map<QueryAbortedException.Reason, LongAdder> ABORTED =
+            new EnumMap<>(QueryAbortedException.Reason.class);
+
+    static {
+        for (QueryAbortedException.Reason reason : QueryAbortedException.Reason.values()) {
+            ABORTED.put(reason, new LongAdder());
+        }
+    }
+
+    private final long start = System.nanoTime();
+    private final long timeoutNanos;
+    private final long memoryBudget;
+
+    private volatile boolean cancelled = false;
+    private long reserved = 0;
+    // Le premier point de contrôle vérifie immédiatement les limites
+    private int countdown = 1;
+    private QueryAbortedException abort = null;
+
+    /**
+     * Contexte sans délai ni budget, qui ne peut être interrompu que par {@link #cancel()}.
+     */
+    public QueryContext() {
+        this(null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructeur : le délai court à partir de la création du contexte.
+     *
+     * @param timeout      le délai d'exécution, ou null pour aucun délai
+     * @param memoryBudget le nombre maximal d'octets de résultats intermédiaires
+     */
+    public QueryContext(Duration timeout, long memoryBudget) {
+        if (timeout != null && timeout.isNegative()) {
+            throw new IllegalArgumentException("Le délai doit être positif : " + timeout);
+        }
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Le budget mémoire doit être positif : " + memoryBudget);
+        }
+        this.timeoutNanos = timeout == null ? Long.MAX_VALUE : saturatedNanos(timeout);
+        this.memoryBudget = memoryBudget;
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Demande l'arrêt de la requête : l'évaluation s'interrompt à son prochain point de contrôle.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true si l'annulation a été demandée
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return le nombre d'octets réservés par les résultats intermédiaires
+     */
+    public long reservedBytes() {
+        return reserved;
+    }
+
+    /**
+     * Point de contrôle amorti, appelé à chaque pas des boucles d'évaluation.
+     *
+     * @throws QueryAbortedException si la requête est annulée ou a dépassé son délai
+     */
+    public void checkpoint() {
+        if (--countdown > 0) return;
+        countdown = CHECK_INTERVAL;
+        check();
+    }
+
+    /**
+     * Vérifie immédiatement l'annulation et le délai.
+     *
+     * @throws QueryAbortedException si la requête est annulée ou a dépassé son délai
+     */
+    public void check() {
+        if (abort != null) {
+            // Une requête interrompue le reste : chaque point de contrôle suivant relève l'exception
+            countdown = 0;
+            throw abort;
+        }
+        if (cancelled) {
+            throw abort(QueryAbortedException.Reason.CANCELLED, "Requête annulée");
+        }
+        if (timeoutNanos != Long.MAX_VALUE && System.nanoTime() - start > timeoutNanos) {
+            throw abort(QueryAbortedException.Reason.TIMEOUT,
+                    "Délai d'exécution dépassé : " + Duration.ofNanos(timeoutNanos));
+        }
+    }
+
+    /**
+     * Réserve de la mémoire pour des résultats intermédiaires.
+     *
+     * @param bytes le nombre d'octets
+     * @throws QueryAbortedException si le budget mémoire est dépassé
+     */
+    public void reserve(long bytes) {
+        reserved += bytes;
+        if (reserved > memoryBudget) {
+            throw abort(QueryAbortedException.Reason.MEMORY,
+                    "Budget mémoire dépassé : " + reserved + " octets pour " + memoryBudget + " autorisés");
+        }
+    }
+
+    /**
+     * Taille estimée d'une ligne d'identifiants copiée dans une table de hachage : les valeurs,
+     * le chaînage et deux cases de table (taux de remplissage d'au plus 1/2).
+     *
+     * @param arity le nombre de colonnes
+     * @return le nombre d'octets
+     */
+    static long rowBytes(int arity) {
+        return Integer.BYTES * (arity + 3L);
+    }
+
+    /**
+     * Soumet un itérateur quelconque au contexte : un point de contrôle précède chaque élément.
+     *
+     * @param iterator l'itérateur à surveiller
+     * @param <T>      le type des éléments
+     * @return un itérateur produisant les mêmes éléments
+     */
+    <T> Iterator<T> guard(Iterator<T> iterator) {
+        check();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                checkpoint();
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    private QueryAbortedException abort(QueryAbortedException.Reason reason, String message) {
+        if (abort == null) {
+            abort = new QueryAbortedException(reason, message);
+            ABORTED.get(reason).increment();
+        }
+        countdown = 0;
+        return abort;
+    }
+
+    /**
+     * @param reason une cause d'interruption
+     * @return le nombre de requêtes interrompues pour cette cause depuis le démarrage
+     */
+    public static long abortedCount(QueryAbortedException.Reason reason) {
+        return ABORTED.get(reason).sum();
+    }
+
+    /**
+     * @return le nombre total de requêtes interrompues depuis le démarrage
+     */
+    public static long abortedCount() {
+        long total = 0;
+        for (LongAdder counter : ABORTED.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,280 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import qengine.model.StarQuery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ordonnanceur de requêtes en étoile placé devant un {@link RDFStorage}, avec contrôle d'admission selon le coût.
+ * Le coût de chaque requête est estimé à partir des statistiques du store ({@link RDFStorage#estimateCost(StarQuery)}) :
+ * les requêtes dont le coût ne dépasse pas le seuil passent par la voie des requêtes légères, les autres par celle
+ * des requêtes lourdes. Chaque voie a son propre nombre de threads d'évaluation, de sorte qu'une requête lourde
+ * en cours n'occupe jamais les threads des requêtes légères.
+ * <p>
+ * Dans une voie, les requêtes en attente sont servies par priorité décroissante, puis dans l'ordre d'arrivée.
+ * Le temps passé en file et le temps d'évaluation sont mesurés séparément, par requête et par voie.
+ * Chaque requête est évaluée dans son propre {@link QueryContext} : annuler son résultat l'interrompt,
+ * qu'elle soit encore en file ou déjà en cours d'évaluation.
+ */
+public class QueryScheduler implements AutoCloseable {
+
+    /**
+     * Voie d'exécution d'une requête.
+     */
+    public enum Lane {
+        CHEAP, EXPENSIVE
+    }
+
+    /**
+     * Résultat d'une requête ordonnancée.
+     *
+     * @param answers   les réponses, matérialisées par le thread de la voie
+     * @param lane      la voie empruntée
+     * @param cost      le coût estimé de la requête
+     * @param queueing  le temps passé en file d'attente
+     * @param execution le temps d'évaluation
+     */
+    public record Execution(List<Substitution> answers, Lane lane, long cost, Duration queueing,
+                            Duration execution) {
+    }
+
+    /**
+     * Statistiques cumulées d'une voie.
+     *
+     * @param completed le nombre de requêtes évaluées (avec ou sans succès)
+     * @param queued    le nombre de requêtes en attente
+     * @param queueing  le temps total passé en file par les requêtes évaluées
+     * @param execution le temps total d'évaluation
+     */
+    public record LaneStatistics(long completed, int queued, Duration queueing, Duration execution) {
+
+        /**
+         * @return le temps moyen passé en file par requête
+         */
+        public Duration meanQueueing() {
+            return completed == 0 ? Duration.ZERO : queueing.dividedBy(completed);
+        }
+
+        /**
+         * @return le temps moyen d'évaluation par requête
+         */
+        public Duration meanExecution() {
+            return completed == 0 ? Duration.ZERO : execution.dividedBy(completed);
+        }
+    }
+
+    private final RDFStorage storage;
+    private final long costThreshold;
+    private final LaneExecutor[] lanes = new LaneExecutor[Lane.values().length];
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructeur : les threads des deux voies sont démarrés immédiatement.
+     *
+     * @param storage          le store interrogé
+     * @param costThreshold    le coût estimé au-delà duquel une requête est considérée comme lourde
+     * @param cheapWorkers     le nombre de requêtes légères évaluées simultanément
+     * @param expensiveWorkers le nombre de requêtes lourdes évaluées simultanément
+     */
+    public QueryScheduler(RDFStorage storage, long costThreshold, int cheapWorkers, int expensiveWorkers) {
+        if (cheapWorkers <= 0 || expensiveWorkers <= 0) {
+            throw new IllegalArgumentException("Le nombre de requêtes simultanées doit être positif : "
+                    + cheapWorkers + ", " + expensiveWorkers);
+        }
+        this.storage = Objects.requireNonNull(storage);
+        this.costThreshold = costThreshold;
+        lanes[Lane.CHEAP.ordinal()] = new LaneExecutor(Lane.CHEAP, cheapWorkers);
+        lanes[Lane.EXPENSIVE.ordinal()] = new LaneExecutor(Lane.EXPENSIVE, expensiveWorkers);
+    }
+
+    /**
+     * @param query une requête en étoile
+     * @return la voie que prendrait la requête
+     */
+    public Lane laneOf(StarQuery query) {
+        return laneFor(storage.estimateCost(query));
+    }
+
+    private Lane laneFor(long cost) {
+        return cost <= costThreshold ? Lane.CHEAP : Lane.EXPENSIVE;
+    }
+
+    /**
+     * Soumet une requête de priorité normale (0).
+     *
+     * @param query la requête en étoile
+     * @return le résultat à venir
+     * @see #submit(StarQuery, int)
+     */
+    public CompletableFuture<Execution> submit(StarQuery query) {
+        return submit(query, 0);
+    }
+
+    /**
+     * Soumet une requête : son coût est estimé immédiatement, puis elle est placée dans la file de sa voie.
+     * Le résultat échoue avec une {@link QueryAbortedException} si la requête est interrompue.
+     *
+     * @param query    la requête en étoile
+     * @param priority la priorité de la requête (les plus grandes sont servies d'abord)
+     * @return le résultat à venir ; l'annuler interrompt la requête
+     * @throws RejectedExecutionException si l'ordonnanceur est fermé
+     */
+    public CompletableFuture<Execution> submit(StarQuery query, int priority) {
+        if (closed) {
+            throw new RejectedExecutionException("Ordonnanceur fermé");
+        }
+        long cost = storage.estimateCost(query);
+        Lane lane = laneFor(cost);
+        Task task = new Task(query, priority, sequence.getAndIncrement(), lane, cost);
+        LaneExecutor executor = lanes[lane.ordinal()];
+        task.result.whenComplete((execution, error) -> {
+            if (error instanceof CancellationException) {
+                task.context.cancel();
+                executor.queue.remove(task);
+            }
+        });
+        executor.queue.add(task);
+        if (closed) {
+            // Fermeture concurrente : la tâche n'a peut-être pas été vue par les threads arrêtés
+            task.result.cancel(false);
+        }
+        return task.result;
+    }
+
+    /**
+     * @param lane une voie
+     * @return les statistiques cumulées de la voie
+     */
+    public LaneStatistics statistics(Lane lane) {
+        LaneExecutor executor = lanes[lane.ordinal()];
+        return new LaneStatistics(executor.completed.sum(), executor.queue.size(),
+                Duration.ofNanos(executor.queueingNanos.sum()), Duration.ofNanos(executor.executionNanos.sum()));
+    }
+
+    /**
+     * Arrête les threads des voies : les requêtes en attente sont annulées, celles en cours interrompues.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (LaneExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Requête en attente, ordonnée par priorité décroissante puis par ordre d'arrivée.
+     */
+    private static final class Task implements Comparable<Task> {
+        final StarQuery query;
+        final int priority;
+        final long sequence;
+        final Lane lane;
+        final long cost;
+        final long submitted = System.nanoTime();
+        final QueryContext context = new QueryContext();
+        final CompletableFuture<Execution> result = new CompletableFuture<>();
+
+        Task(StarQuery query, int priority, long sequence, Lane lane, long cost) {
+            this.query = query;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.lane = lane;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = Integer.compare(other.priority, priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Voie d'exécution : une file à priorités consommée par un nombre fixe de threads.
+     */
+    private final class LaneExecutor {
+        final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+        final List<Thread> workers = new ArrayList<>();
+        final Set<Task> running = ConcurrentHashMap.newKeySet();
+        final LongAdder completed = new LongAdder();
+        final LongAdder queueingNanos = new LongAdder();
+        final LongAdder executionNanos = new LongAdder();
+
+        LaneExecutor(Lane lane, int size) {
+            for (int i = 0; i < size; i++) {
+                workers.add(Thread.ofPlatform().daemon()
+                        .name("qengine-" + lane.name().toLowerCase() + "-" + i)
+                        .start(this::work));
+            }
+        }
+
+        private void work() {
+            while (!closed) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                run(task);
+            }
+        }
+
+        private void run(Task task) {
+            if (task.result.isDone()) return;
+            long started = System.nanoTime();
+            long queueing = started - task.submitted;
+            running.add(task);
+            if (closed) {
+                // Tâche retirée de la file pendant la fermeture
+                task.result.cancel(false);
+            }
+            try {
+                List<Substitution> answers = new ArrayList<>();
+                storage.match(task.query, task.context).forEachRemaining(answers::add);
+                long execution = System.nanoTime() - started;
+                record(queueing, execution);
+                task.result.complete(new Execution(answers, task.lane, task.cost,
+                        Duration.ofNanos(queueing), Duration.ofNanos(execution)));
+            } catch (RuntimeException e) {
+                record(queueing, System.nanoTime() - started);
+                task.result.completeExceptionally(e);
+            } finally {
+                running.remove(task);
+            }
+        }
+
+        private void record(long queueing, long execution) {
+            completed.increment();
+            queueingNanos.add(queueing);
+            executionNanos.add(execution);
+        }
+
+        void shutdown() {
+            Task task;
+            while ((task = queue.poll()) != null) {
+                task.result.cancel(false);
+            }
+            for (Task active : running) {
+                active.result.cancel(false);
+            }
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+    }
+}
@@ -3,29 +3,120 @@ package qengine.storage;
 import fr.boreal.model.logicalElements.api.*;
 import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
 import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.BGPQuery;
+import qengine.model.QueryTemplate;
 import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
 import qengine.model.StarQuery;
+import qengine.model.TermValueComparator;
+import qengine.model.TermValueComparator.ValueKey;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 /**
  * Implémentation d'un HexaStore pour stocker des RDFAtom.
  * Cette classe utilise six index pour optimiser les recherches.
  * Les index sont basés sur les combinaisons (Sujet, Prédicat, Objet), (Sujet, Objet, Prédicat),
  * (Prédicat, Sujet, Objet), (Prédicat, Objet, Sujet), (Objet, Sujet, Prédicat) et (Objet, Prédicat, Sujet).
+ * Les cinq index secondaires peuvent être construits en arrière-plan après un chargement groupé
+ * (voir {@link #RDFHexaStore(Executor)}), et n'être maintenus que s'ils sont utilisés par la charge de requêtes
+ * et tiennent dans un budget mémoire (voir {@link #setIndexBudget(long)}).
  */
 public class RDFHexaStore implements RDFStorage {
-    // Indexes
+    // Taille estimée d'une substitution fusionnée par mergeGeneral, et de chacune de ses liaisons
+    static final long SUBSTITUTION_BYTES = 64;
+    static final long BINDING_BYTES = 48;
+    // Nombre minimal de triplets supprimés avant une purge automatique des index
+    private static final int PURGE_MIN_TOMBSTONES = 1024;
+    // Taille estimée d'une entrée de hashmap (nœud, clé encapsulée, case de la table) et d'une hashmap imbriquée
+    private static final long ENTRY_BYTES = 56;
+    private static final long MAP_BYTES = 64;
+    // Nombre d'accès manqués à une permutation retirée entre deux sélections des index
+    private static final int ADAPT_INTERVAL = 256;
+    // Nombre de requêtes en étoile sans écriture au-delà duquel les tries triés manquants sont construits
+    static final int TRIE_BUILD_READS = 16;
+
+    // Indexes : les index secondaires valent null pendant leur construction en arrière-plan, ou s'ils sont retirés
     private final HashMap<Integer, HashMap<Integer, Set<Integer>>> spo = new HashMap<>();
-    private final HashMap<Integer, HashMap<Integer, Set<Integer>>> pso = new HashMap<>();
-    private final HashMap<Integer, HashMap<Integer, Set<Integer>>> osp = new HashMap<>();
-    private final HashMap<Integer, HashMap<Integer, Set<Integer>>> pos = new HashMap<>();
-    private final HashMap<Integer, HashMap<Integer, Set<Integer>>> sop = new HashMap<>();
-    private final HashMap<Integer, HashMap<Integer, Set<Integer>>> ops = new HashMap<>();
+    private volatile HashMap<Integer, HashMap<Integer, Set<Integer>>> pso = new HashMap<>();
+    private volatile HashMap<Integer, HashMap<Integer, Set<Integer>>> osp = new HashMap<>();
+    private volatile HashMap<Integer, HashMap<Integer, Set<Integer>>> pos = new HashMap<>();
+    private volatile HashMap<Integer, HashMap<Integer, Set<Integer>>> sop = new HashMap<>();
+    private volatile HashMap<Integer, HashMap<Integer, Set<Integer>>> ops = new HashMap<>();
+
+    // Exécuteur des constructions différées des index secondaires, ou null s'ils sont remplis à chaque ajout
+    private final Executor indexBuilder;
+    // Constructions différées en cours, attendues par les écritures
+    private volatile CompletableFuture<Void> pendingIndexes = CompletableFuture.completedFuture(null);
+
+    // Permutations retirées par la sélection des index, qui ne sont plus maintenues (un bit par permutation)
+    private volatile int droppedIndexes = 0;
+    // Sélection demandée par les accès manqués, appliquée sur l'exécuteur ou par l'écriture suivante
+    private volatile boolean adaptRequested = false;
+    // Budget mémoire des index, en octets
+    private volatile long indexBudget = Long.MAX_VALUE;
+    // Nombre d'exécutions de chaque forme d'atome, et d'accès à chaque permutation
+    private final LongAdder[] shapeHits = adders(AtomMatchType.values().length);
+    private final LongAdder[] indexHits = adders(6);
+    // Accès de chaque permutation lors de la sélection précédente, et score décroissant de ces accès
+    // (gardés par selectionLock, comme le choix des permutations retirées)
+    private final Object selectionLock = new Object();
+    private final long[] selectedHits = new long[6];
+    private final long[] indexScores = new long[6];
+    private final AtomicLong misses = new AtomicLong();
+
+    // Objets de chaque prédicat triés par valeur, construits à la demande pour les FILTER
+    // (table concurrente : un store qui n'est plus modifié peut être lu par plusieurs threads)
+    private final Map<Integer, SortedObjects> sortedObjects = new ConcurrentHashMap<>();
+
+    // Nombre de triplets de chaque prédicat, utilisé pour ordonner les atomes d'une requête
+    private final HashMap<Integer, Integer> predicateCardinality = new HashMap<>();
+
+    // Instantanés triés des index (Leapfrog Triejoin, évaluation par blocs), construits à la demande et invalidés
+    // à chaque modification ; chacun est construit une seule fois sous trieLock, même par des lectures concurrentes
+    private final AtomicReferenceArray<SortedTrie> sortedTries = new AtomicReferenceArray<>(6);
+    private final Object trieLock = new Object();
+    // Requêtes en étoile évaluées depuis la dernière modification sans que leurs tries soient à jour
+    private final AtomicInteger readsSinceWrite = new AtomicInteger();
+
+    // Triplets supprimés mais encore présents dans les index (ordre SPO), ignorés par les lectures jusqu'à la purge
+    private final HashMap<Integer, HashMap<Integer, Set<Integer>>> tombstones = new HashMap<>();
+    private int tombstoneCount = 0;
+    // Incrémenté par chaque purge qui libère des identifiants du dictionnaire
+    private int dictionaryVersion = 0;
 
     private final Dictionary dict = new Dictionary();
     private int size = 0;
 
+    /**
+     * Construit un HexaStore dont les six index sont remplis à chaque ajout.
+     */
+    public RDFHexaStore() {
+        this(null);
+    }
+
+    /**
+     * Construit un HexaStore dont les chargements groupés ({@link #addAll(Stream)}) ne remplissent que l'index SPO :
+     * le store est interrogeable dès leur retour, et les index secondaires maintenus sont reconstruits en parallèle
+     * sur l'exécuteur, en commençant par l'index POS des requêtes en étoile. En attendant, les lectures qui auraient
+     * besoin d'un index en construction parcourent l'index SPO, et les écritures suivantes attendent la fin
+     * des constructions (voir {@link #secondaryIndexes()}).
+     *
+     * @param indexBuilder l'exécuteur des constructions des index secondaires, ou null pour les remplir à chaque ajout
+     */
+    public RDFHexaStore(Executor indexBuilder) {
+        this.indexBuilder = indexBuilder;
+    }
+
     /**
      * Ajoute un RDFAtom à l'HexaStore.
      * @param atom le RDFAtom à ajouter
@@ -39,22 +130,485 @@ public class RDFHexaStore implements RDFStorage {
 
         if (subject.isVariable() || predicate.isVariable() || object.isVariable()) return false;
 
-        Integer sIndex = dict.addAndGet(subject);
-        Integer pIndex = dict.addAndGet(predicate);
-        Integer oIndex = dict.addAndGet(object);
+        return add(encode(subject), encode(predicate), encode(object));
+    }
+
+    /**
+     * Ajoute des RDFAtom. Si le store a été construit avec un exécuteur, seuls le dictionnaire et l'index SPO
+     * sont remplis avant le retour, puis les index secondaires sont reconstruits en arrière-plan. Avec un budget
+     * mémoire, seuls les index retenus par la sélection (voir {@link #adaptIndexes()}) sont reconstruits.
+     *
+     * @param atoms les RDFAtom à ajouter
+     * @return true si au moins un RDFAtom a été ajouté, false s'ils sont tous déjà présents
+     */
+    @Override
+    public boolean addAll(Stream<RDFAtom> atoms) {
+        if (indexBuilder == null && indexBudget == Long.MAX_VALUE) {
+            return RDFStorage.super.addAll(atoms);
+        }
+        beginWrite();
+        // Les index secondaires maintenus sont retirés pendant le chargement, puis reconstruits
+        boolean[] rebuilt = new boolean[6];
+        for (int permutation = 1; permutation < 6; permutation++) {
+            rebuilt[permutation] = index(permutation) != null;
+            setIndex(permutation, null);
+        }
+        try {
+            return atoms.map(this::add).reduce(Boolean::logicalOr).orElse(false);
+        } finally {
+            synchronized (selectionLock) {
+                boolean[] selected = indexBudget == Long.MAX_VALUE ? rebuilt : selectIndexes();
+                setDropped(selected);
+                pendingIndexes = buildIndexes(selected);
+            }
+        }
+    }
+
+    /**
+     * Retourne l'achèvement des constructions en arrière-plan des index secondaires.
+     *
+     * @return un futur complété lorsque les six index sont disponibles
+     */
+    public CompletableFuture<Void> secondaryIndexes() {
+        return pendingIndexes;
+    }
+
+    private void awaitSecondaryIndexes() {
+        pendingIndexes.join();
+    }
+
+    /**
+     * Prépare une écriture : attend les constructions en cours, puis applique la sélection des index
+     * demandée par les lectures si aucun exécuteur ne s'en est chargé.
+     */
+    private void beginWrite() {
+        if (adaptRequested && indexBuilder == null) {
+            adaptIndexes();
+        }
+        awaitSecondaryIndexes();
+    }
+
+    /**
+     * Reconstruit des index secondaires à partir de l'index SPO, sur l'exécuteur s'il y en a un.
+     * Chaque index est publié dès qu'il est complet.
+     *
+     * @param permutations les permutations à reconstruire, dans l'ordre de {@link #trie(int, int)}
+     * @return l'achèvement des constructions
+     */
+    private CompletableFuture<Void> buildIndexes(boolean[] permutations) {
+        List<CompletableFuture<Void>> builds = new ArrayList<>();
+        for (int permutation : BUILD_ORDER) {
+            if (!permutations[permutation]) continue;
+            Runnable build = () -> setIndex(permutation, permute(ORDERS[permutation]));
+            if (indexBuilder == null) {
+                build.run();
+            } else {
+                builds.add(CompletableFuture.runAsync(build, indexBuilder));
+            }
+        }
+        return CompletableFuture.allOf(builds.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * @param selected les permutations maintenues ; les autres sont marquées comme retirées
+     */
+    private void setDropped(boolean[] selected) {
+        int mask = 0;
+        for (int permutation = 1; permutation < 6; permutation++) {
+            if (!selected[permutation]) mask |= 1 << permutation;
+        }
+        droppedIndexes = mask;
+    }
+
+    /**
+     * Fixe le budget mémoire des index, puis sélectionne les index maintenus (voir {@link #adaptIndexes()}).
+     *
+     * @param bytes le budget en octets, ou {@link Long#MAX_VALUE} pour maintenir les six index
+     */
+    public void setIndexBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Le budget des index doit être positif ou nul : " + bytes);
+        }
+        indexBudget = bytes;
+        adaptIndexes();
+    }
+
+    /**
+     * Sélectionne les index secondaires maintenus d'après les accès récents de la charge de requêtes :
+     * les permutations sont retenues de la plus utilisée à la moins utilisée tant que leur taille estimée
+     * tient dans le budget mémoire, l'index SPO étant toujours maintenu. Les permutations écartées sont retirées
+     * et les lectures qui en auraient besoin parcourent l'index SPO ; celles qui redeviennent utiles sont
+     * reconstruites. La sélection est aussi relancée après chaque chargement groupé ({@link #addAll(Stream)}),
+     * qui ne remplit alors que les index retenus, et lorsque les accès manqués s'accumulent : elle est alors
+     * exécutée sur l'exécuteur des index, ou à défaut par l'écriture suivante, jamais par une lecture.
+     * Comme une écriture, cette méthode ne doit pas être appelée pendant des lectures concurrentes.
+     */
+    public void adaptIndexes() {
+        awaitSecondaryIndexes();
+        pendingIndexes = reselectIndexes();
+    }
+
+    /**
+     * Sélectionne les index maintenus, retire les permutations écartées et lance la reconstruction
+     * des permutations retenues qui ne sont pas disponibles.
+     *
+     * @return l'achèvement des reconstructions
+     */
+    private CompletableFuture<Void> reselectIndexes() {
+        synchronized (selectionLock) {
+            adaptRequested = false;
+            boolean[] selected = selectIndexes();
+            boolean[] rebuilt = new boolean[6];
+            for (int permutation = 1; permutation < 6; permutation++) {
+                if (!selected[permutation]) {
+                    setIndex(permutation, null);
+                }
+                rebuilt[permutation] = selected[permutation] && index(permutation) == null;
+            }
+            setDropped(selected);
+            return buildIndexes(rebuilt);
+        }
+    }
+
+    /**
+     * Demande une nouvelle sélection des index. Avec un exécuteur, elle y est enchaînée après les constructions
+     * en cours, et les écritures l'attendent comme une construction ; sinon, l'écriture suivante l'applique.
+     */
+    private void requestAdaptation() {
+        if (indexBuilder == null) {
+            adaptRequested = true;
+            return;
+        }
+        synchronized (selectionLock) {
+            if (adaptRequested) return;
+            adaptRequested = true;
+            pendingIndexes = pendingIndexes.thenComposeAsync(done -> reselectIndexes(), indexBuilder);
+        }
+    }
+
+    /**
+     * Choisit les permutations secondaires qui tiennent dans le budget mémoire, par score d'accès décroissant.
+     * Le score d'une permutation est la moitié de son score précédent plus ses accès depuis la sélection précédente,
+     * pour suivre les changements de charge. Appelée sous {@code selectionLock}.
+     *
+     * @return les permutations retenues, dans l'ordre de {@link #trie(int, int)}
+     */
+    private boolean[] selectIndexes() {
+        for (int permutation = 0; permutation < 6; permutation++) {
+            long hits = indexHits[permutation].sum();
+            indexScores[permutation] = indexScores[permutation] / 2 + hits - selectedHits[permutation];
+            selectedHits[permutation] = hits;
+        }
+        // Une permutation retirée est estimée à la taille de l'index SPO, qui contient les mêmes triplets
+        long spoBytes = memoryOf(spo);
+        long used = spoBytes;
+        boolean[] selected = new boolean[6];
+        selected[0] = true;
+        Integer[] candidates = Arrays.stream(BUILD_ORDER).boxed().toArray(Integer[]::new);
+        Arrays.sort(candidates, Comparator.comparingLong((Integer permutation) -> indexScores[permutation]).reversed());
+        for (int permutation : candidates) {
+            HashMap<Integer, HashMap<Integer, Set<Integer>>> index = index(permutation);
+            long bytes = index == null ? spoBytes : memoryOf(index);
+            if (indexBudget == Long.MAX_VALUE || used + bytes <= indexBudget) {
+                selected[permutation] = true;
+                used += bytes;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Enregistre un accès à une permutation et la retourne. Les accès manqués à une permutation retirée
+     * demandent périodiquement une nouvelle sélection des index, qui peut la reconstruire ; la lecture
+     * se contente de les compter et ne modifie jamais les index.
+     *
+     * @param shape la forme de l'atome évalué, ou null si l'accès ne correspond pas à un atome
+     * @param permutation la permutation, dans l'ordre de {@link #trie(int, int)}
+     * @return l'index, ou null s'il est en construction ou retiré
+     */
+    private HashMap<Integer, HashMap<Integer, Set<Integer>>> access(AtomMatchType shape, int permutation) {
+        if (shape != null) shapeHits[shape.ordinal()].increment();
+        indexHits[permutation].increment();
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = index(permutation);
+        if (index == null && (droppedIndexes & 1 << permutation) != 0
+                && misses.incrementAndGet() % ADAPT_INTERVAL == 0) {
+            requestAdaptation();
+        }
+        return index;
+    }
+
+    /**
+     * @return les noms des permutations disponibles
+     */
+    public Set<String> indexes() {
+        Set<String> names = new LinkedHashSet<>();
+        for (int permutation = 0; permutation < 6; permutation++) {
+            if (index(permutation) != null) names.add(INDEX_NAMES[permutation]);
+        }
+        return names;
+    }
 
+    /**
+     * @return le nombre d'accès à chaque permutation, disponible ou non
+     */
+    public Map<String, Long> indexHits() {
+        Map<String, Long> hits = new LinkedHashMap<>();
+        for (int permutation = 0; permutation < 6; permutation++) {
+            hits.put(INDEX_NAMES[permutation], indexHits[permutation].sum());
+        }
+        return hits;
+    }
+
+    /**
+     * @return le nombre d'atomes évalués pour chaque forme (constante ou variable en sujet, prédicat et objet)
+     */
+    public Map<String, Long> shapeHits() {
+        Map<String, Long> hits = new LinkedHashMap<>();
+        for (AtomMatchType shape : AtomMatchType.values()) {
+            hits.put(shape.name(), shapeHits[shape.ordinal()].sum());
+        }
+        return hits;
+    }
+
+    /**
+     * @return la taille estimée en octets de chaque permutation disponible
+     */
+    public Map<String, Long> indexMemory() {
+        Map<String, Long> memory = new LinkedHashMap<>();
+        for (int permutation = 0; permutation < 6; permutation++) {
+            HashMap<Integer, HashMap<Integer, Set<Integer>>> index = index(permutation);
+            if (index != null) memory.put(INDEX_NAMES[permutation], memoryOf(index));
+        }
+        return memory;
+    }
+
+    /**
+     * Estime la taille d'un index à partir du nombre d'entrées de chacun de ses niveaux.
+     */
+    private long memoryOf(HashMap<Integer, HashMap<Integer, Set<Integer>>> index) {
+        long second = 0;
+        for (HashMap<Integer, Set<Integer>> level : index.values()) {
+            second += level.size();
+        }
+        return MAP_BYTES + (index.size() + second) * (ENTRY_BYTES + MAP_BYTES) + (size + tombstoneCount) * ENTRY_BYTES;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @param permutation la permutation, dans l'ordre de {@link #trie(int, int)}
+     * @return l'index, ou null s'il est en construction ou retiré
+     */
+    private HashMap<Integer, HashMap<Integer, Set<Integer>>> index(int permutation) {
+        return switch (permutation) {
+            case 0 -> spo;
+            case 1 -> sop;
+            case 2 -> pso;
+            case 3 -> pos;
+            case 4 -> osp;
+            default -> ops;
+        };
+    }
+
+    private void setIndex(int permutation, HashMap<Integer, HashMap<Integer, Set<Integer>>> index) {
+        switch (permutation) {
+            case 1 -> sop = index;
+            case 2 -> pso = index;
+            case 3 -> pos = index;
+            case 4 -> osp = index;
+            case 5 -> ops = index;
+            default -> throw new IllegalArgumentException("L'index SPO ne peut pas être remplacé");
+        }
+    }
+
+    /**
+     * Construit un index à partir de l'index SPO, en parcourant ses triplets.
+     *
+     * @param order la position dans le triplet de chaque niveau de l'index
+     * @return l'index
+     */
+    private HashMap<Integer, HashMap<Integer, Set<Integer>>> permute(int[] order) {
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = new HashMap<>();
+        TripleCursor cursor = new IndexCursor(spo, SPO, 0, -1, -1, -1);
+        while (cursor.next()) {
+            int[] triple = cursor.triple();
+            addToIndex(index, triple[order[0]], triple[order[1]], triple[order[2]]);
+        }
+        return index;
+    }
 
-        if (spo.containsKey(sIndex) && spo.get(sIndex).containsKey(pIndex) && spo.get(sIndex).get(pIndex).contains(oIndex))
+    /**
+     * Ajoute un triplet déjà encodé, dont les termes sont dans le dictionnaire
+     * (rechargement d'un instantané, rejeu d'un journal).
+     *
+     * @param sIndex l'index du sujet
+     * @param pIndex l'index du prédicat
+     * @param oIndex l'index de l'objet
+     * @return true si le triplet a été ajouté, false s'il était déjà présent
+     */
+    boolean add(int sIndex, int pIndex, int oIndex) {
+        beginWrite();
+        boolean indexed = contains(spo, sIndex, pIndex, oIndex);
+        if (indexed && !(tombstoneCount > 0 && removeFromIndex(tombstones, sIndex, pIndex, oIndex)))
             return false;
 
         size++;
+        predicateCardinality.merge(pIndex, 1, Integer::sum);
+        invalidateTries();
+        if (indexed) {
+            // Triplet supprimé puis ajouté de nouveau avant la purge : seule sa marque est retirée
+            tombstoneCount--;
+            return true;
+        }
+        sortedObjects.remove(pIndex);
 
         return addToAllIndex(sIndex, pIndex, oIndex);
     }
 
+    /**
+     * Supprime un RDFAtom de l'HexaStore. La suppression est différée : le triplet est marqué comme supprimé
+     * et ignoré par les lectures, puis retiré des six index par la purge suivante (voir {@link #purge()}),
+     * déclenchée automatiquement dès que les triplets marqués représentent un huitième du store, et au moins
+     * {@value #PURGE_MIN_TOMBSTONES} triplets : en dessous de ce plancher, ils restent marqués jusqu'à une purge
+     * explicite.
+     *
+     * @param atom le RDFAtom à supprimer
+     * @return true si le RDFAtom a été supprimé, false s'il était absent
+     */
+    @Override
+    public boolean remove(RDFAtom atom) {
+        Integer sIndex = idOf(atom.getTripleSubject());
+        Integer pIndex = idOf(atom.getTriplePredicate());
+        Integer oIndex = idOf(atom.getTripleObject());
+        if (sIndex == null || pIndex == null || oIndex == null) return false;
+
+        return remove(sIndex, pIndex, oIndex);
+    }
+
+    /**
+     * Supprime un triplet déjà encodé (voir {@link #remove(RDFAtom)}).
+     *
+     * @param sIndex l'index du sujet
+     * @param pIndex l'index du prédicat
+     * @param oIndex l'index de l'objet
+     * @return true si le triplet a été supprimé, false s'il était absent
+     */
+    boolean remove(int sIndex, int pIndex, int oIndex) {
+        beginWrite();
+        if (!contains(spo, sIndex, pIndex, oIndex) || isRemoved(sIndex, pIndex, oIndex)) return false;
+
+        addToIndex(tombstones, sIndex, pIndex, oIndex);
+        tombstoneCount++;
+        size--;
+        predicateCardinality.merge(pIndex, -1, Integer::sum);
+        invalidateTries();
+
+        if (tombstoneCount >= Math.max(PURGE_MIN_TOMBSTONES, size / 8)) {
+            purge();
+        }
+        return true;
+    }
+
+    /**
+     * Retire des six index les triplets supprimés, puis retire du dictionnaire les termes qui n'apparaissent
+     * plus dans aucun triplet, pour que leurs identifiants soient réattribués. Les requêtes préparées
+     * sont replanifiées à leur exécution suivante si des identifiants ont été libérés.
+     *
+     * @return le nombre de triplets purgés
+     */
+    public int purge() {
+        if (tombstoneCount == 0) return 0;
+        beginWrite();
+
+        Set<Integer> terms = new HashSet<>();
+        for (Map.Entry<Integer, HashMap<Integer, Set<Integer>>> entry : tombstones.entrySet()) {
+            Integer sIndex = entry.getKey();
+            terms.add(sIndex);
+            for (Map.Entry<Integer, Set<Integer>> entry1 : entry.getValue().entrySet()) {
+                Integer pIndex = entry1.getKey();
+                terms.add(pIndex);
+                sortedObjects.remove(pIndex);
+                for (Integer oIndex : entry1.getValue()) {
+                    terms.add(oIndex);
+                    removeFromAllIndex(sIndex, pIndex, oIndex);
+                }
+            }
+        }
+        int purged = tombstoneCount;
+        tombstones.clear();
+        tombstoneCount = 0;
+        invalidateTries();
+
+        // Sans index OSP, les termes encore utilisés comme objet sont cherchés dans l'index SPO
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> ospIndex = osp;
+        Set<Integer> objects = new HashSet<>();
+        if (ospIndex == null) {
+            for (HashMap<Integer, Set<Integer>> level : spo.values()) {
+                for (Set<Integer> values : level.values()) {
+                    for (Integer oIndex : values) {
+                        if (terms.contains(oIndex)) objects.add(oIndex);
+                    }
+                }
+            }
+        }
+        boolean released = false;
+        for (Integer id : terms) {
+            boolean object = ospIndex == null ? objects.contains(id) : ospIndex.containsKey(id);
+            if (!spo.containsKey(id) && predicateCardinality.getOrDefault(id, 0) == 0 && !object) {
+                predicateCardinality.remove(id);
+                released |= release(id);
+            }
+        }
+        if (released) dictionaryVersion++;
+        return purged;
+    }
+
+    /**
+     * Retire du dictionnaire un terme qui n'apparaît plus dans aucun triplet.
+     *
+     * @param id l'identifiant du terme
+     * @return true si l'identifiant pourra être réattribué
+     */
+    boolean release(int id) {
+        return dict.remove(id);
+    }
+
+    /**
+     * @return le nombre de triplets supprimés en attente de purge
+     */
+    int tombstoneCount() {
+        return tombstoneCount;
+    }
+
+    /**
+     * Indique si un triplet est marqué comme supprimé, en attente de purge.
+     */
+    private boolean isRemoved(int sIndex, int pIndex, int oIndex) {
+        return tombstoneCount > 0 && contains(tombstones, sIndex, pIndex, oIndex);
+    }
+
+    /**
+     * Indique si la substitution d'un atome correspond à un triplet marqué comme supprimé.
+     */
+    private boolean isRemoved(RDFAtom atom, Substitution substitution) {
+        Map<Variable, Term> bindings = substitution.toMap();
+        Term[] terms = {atom.getTripleSubject(), atom.getTriplePredicate(), atom.getTripleObject()};
+        int[] ids = new int[3];
+        for (int i = 0; i < 3; i++) {
+            ids[i] = idOf(terms[i].isVariable() ? bindings.get((Variable) terms[i]) : terms[i]);
+        }
+        return isRemoved(ids[0], ids[1], ids[2]);
+    }
+
 
     /**
-     * Méthode pour ajouter un sujet, un prédicat et un objet à tous les index.
+     * Méthode pour ajouter un sujet, un prédicat et un objet à tous les index maintenus.
      * Méthode utilisée dans la méthode add (RDFAtom atom) pour ajouter un RDFAtom à l'HexaStore.
      *
      * @param sIndex l'index du sujet
@@ -63,12 +617,63 @@ public class RDFHexaStore implements RDFStorage {
      * @return true si l'ajout a réussi pour tous les index, false sinon
      */
     private boolean addToAllIndex(Integer sIndex, Integer pIndex, Integer oIndex) {
-        return addToIndex(spo, sIndex, pIndex, oIndex) &&
-                addToIndex(pso, pIndex, sIndex, oIndex) &&
-                addToIndex(osp, oIndex, sIndex, pIndex) &&
-                addToIndex(pos, pIndex, oIndex, sIndex) &&
-                addToIndex(sop, sIndex, oIndex, pIndex) &&
-                addToIndex(ops, oIndex, pIndex, sIndex);
+        Integer[] triple = {sIndex, pIndex, oIndex};
+        boolean added = addToIndex(spo, sIndex, pIndex, oIndex);
+        for (int permutation = 1; permutation < 6 && added; permutation++) {
+            HashMap<Integer, HashMap<Integer, Set<Integer>>> index = index(permutation);
+            if (index == null) continue; // Index retiré, ou retiré pendant un chargement groupé
+            int[] order = ORDERS[permutation];
+            added = addToIndex(index, triple[order[0]], triple[order[1]], triple[order[2]]);
+        }
+        return added;
+    }
+
+    /**
+     * Méthode pour retirer un triplet des six index, en supprimant les niveaux devenus vides.
+     * Méthode utilisée par la purge des triplets supprimés.
+     *
+     * @param sIndex l'index du sujet
+     * @param pIndex l'index du prédicat
+     * @param oIndex l'index de l'objet
+     */
+    private void removeFromAllIndex(Integer sIndex, Integer pIndex, Integer oIndex) {
+        Integer[] triple = {sIndex, pIndex, oIndex};
+        for (int permutation = 0; permutation < 6; permutation++) {
+            HashMap<Integer, HashMap<Integer, Set<Integer>>> index = index(permutation);
+            if (index == null) continue;
+            int[] order = ORDERS[permutation];
+            removeFromIndex(index, triple[order[0]], triple[order[1]], triple[order[2]]);
+        }
+    }
+
+    /**
+     * Méthode pour retirer un index d'une hashmap de l'HexaStore, en supprimant les niveaux devenus vides.
+     *
+     * @param hashMap la hashmap de laquelle retirer l'index
+     * @param firstIndex l'index du premier terme
+     * @param secondIndex l'index du deuxième terme
+     * @param thirdIndex l'index du troisième terme
+     * @return true si l'index était présent, false sinon
+     */
+    private static boolean removeFromIndex(HashMap<Integer, HashMap<Integer, Set<Integer>>> hashMap, Integer firstIndex,
+                                           Integer secondIndex, Integer thirdIndex) {
+        HashMap<Integer, Set<Integer>> level = hashMap.get(firstIndex);
+        if (level == null) return false;
+        Set<Integer> values = level.get(secondIndex);
+        if (values == null || !values.remove(thirdIndex)) return false;
+        if (values.isEmpty()) {
+            level.remove(secondIndex);
+            if (level.isEmpty()) hashMap.remove(firstIndex);
+        }
+        return true;
+    }
+
+    private static boolean contains(HashMap<Integer, HashMap<Integer, Set<Integer>>> hashMap, int firstIndex,
+                                    int secondIndex, int thirdIndex) {
+        HashMap<Integer, Set<Integer>> level = hashMap.get(firstIndex);
+        if (level == null) return false;
+        Set<Integer> values = level.get(secondIndex);
+        return values != null && values.contains(thirdIndex);
     }
 
     /**
@@ -111,40 +716,96 @@ public class RDFHexaStore implements RDFStorage {
 
         List<Substitution> substitutions = new ArrayList<>();
 
-        Integer sIndex = dict.get(subject);
-        Integer pIndex = dict.get(predicate);
-        Integer oIndex = dict.get(object);
+        Integer sIndex = idOf(subject);
+        Integer pIndex = idOf(predicate);
+        Integer oIndex = idOf(object);
+        if ((sIndex == null && !subject.isVariable()) || (pIndex == null && !predicate.isVariable())
+                || (oIndex == null && !object.isVariable())) {
+            // Une constante absente du dictionnaire : aucun triplet ne peut correspondre
+            return Collections.emptyIterator();
+        }
+        // Les variables sont résolues une seule fois, et non pour chaque substitution
+        Variable sVar = variableOf(subject);
+        Variable pVar = variableOf(predicate);
+        Variable oVar = variableOf(object);
+
+        AtomMatchType type = determineTermType(subject, predicate, object);
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = access(type, switch (type) {
+            case CONST_VAR_CONST -> 1; // sop
+            case VAR_CONST_CONST -> 3; // pos
+            case VAR_CONST_VAR -> 2; // pso
+            case VAR_VAR_CONST -> 5; // ops
+            default -> 0; // spo
+        });
+        if (index == null) {
+            // Index en construction ou retiré : les triplets sont parcourus dans l'index SPO
+            type = null;
+            matchByScan(new int[]{sIndex == null ? -1 : sIndex, pIndex == null ? -1 : pIndex, oIndex == null ? -1 : oIndex},
+                    new Variable[]{sVar, pVar, oVar}, substitutions);
+        }
 
-        switch (determineTermType(subject, predicate, object)) {
+        switch (type) {
             case CONST_CONST_CONST ->  // Subject: Constant, Predicate: Constant, Object: Constant
                     matchExact(spo, sIndex, pIndex, oIndex, substitutions);
 
             case CONST_CONST_VAR -> // Subject: Constant, Predicate: Constant, Object: Variable
-                    match1Var(spo, sIndex, pIndex, object, substitutions);
+                    match1Var(spo, sIndex, pIndex, oVar, substitutions);
 
             case CONST_VAR_CONST ->  // Subject: Constant, Predicate: Variable, Object: Constant
-                    match1Var(sop, sIndex, oIndex, predicate, substitutions);
+                    match1Var(index, sIndex, oIndex, pVar, substitutions);
 
             case CONST_VAR_VAR ->  // Subject: Constant, Predicate: Variable, Object: Variable
-                    match2Var(spo, sIndex, predicate, object, substitutions);
+                    match2Var(spo, sIndex, pVar, oVar, substitutions);
 
             case VAR_CONST_CONST ->  // Subject: Variable, Predicate: Constant, Object: Constant
-                    match1Var(pos, pIndex, oIndex, subject, substitutions);
+                    match1Var(index, pIndex, oIndex, sVar, substitutions);
 
             case VAR_CONST_VAR -> // Subject: Variable, Predicate: Constant, Object: Variable
-                    match2Var(pso, pIndex, subject, object, substitutions);
+                    match2Var(index, pIndex, sVar, oVar, substitutions);
 
             case VAR_VAR_CONST ->  // Subject: Variable, Predicate: Variable, Object: Constant
-                    match2Var(ops, oIndex, predicate, subject, substitutions);
+                    match2Var(index, oIndex, pVar, sVar, substitutions);
 
             case VAR_VAR_VAR -> // Subject: Variable, Predicate: Variable, Object: Variable
-                    match3Var(spo, subject, predicate, object, substitutions);
+                    match3Var(spo, sVar, pVar, oVar, substitutions);
 
             case null, default -> {}
         }
+        if (tombstoneCount > 0) {
+            substitutions.removeIf(substitution -> isRemoved(atom, substitution));
+        }
         return substitutions.iterator();
     }
 
+    /**
+     * Méthode pour matcher un atome par un parcours de l'index SPO, utilisée dans la méthode 'match' lorsque
+     * l'index adapté est en construction ou retiré.
+     *
+     * @param pattern le motif encodé de l'atome, -1 pour une variable
+     * @param variables les variables de l'atome, null pour une constante
+     * @param substitutions la liste de substitutions
+     */
+    private void matchByScan(int[] pattern, Variable[] variables, List<Substitution> substitutions) {
+        TripleCursor cursor = scanCursor(pattern[0], pattern[1], pattern[2]);
+        while (cursor.next()) {
+            Substitution sub = new SubstitutionImpl();
+            for (int i = 0; i < 3; i++) {
+                if (variables[i] != null) {
+                    sub.add(variables[i], termOf(cursor.triple()[i]));
+                }
+            }
+            substitutions.add(sub);
+        }
+    }
+
+    /**
+     * @param term un terme de l'atome
+     * @return la variable du terme, ou null si c'est une constante
+     */
+    private static Variable variableOf(Term term) {
+        return term.isVariable() ? SameObjectTermFactory.instance().createOrGetVariable(term.label()) : null;
+    }
+
     /**
      * Méthode pour matcher un atome avec des termes constants utilisée dans la méthode 'match'.
      *
@@ -168,15 +829,15 @@ public class RDFHexaStore implements RDFStorage {
      * @param hashMap HashMap de l'HexaStore à matcher
      * @param firstIndex l'index du premier terme
      * @param secondIndex l'index du deuxième terme
-     * @param firstTerm le premier terme
+     * @param firstVar la variable du premier terme
      * @param substitutions la liste de substitutions
      */
     private void match1Var(HashMap<Integer, HashMap<Integer, Set<Integer>>> hashMap, Integer firstIndex, Integer secondIndex,
-                           Term firstTerm, List<Substitution> substitutions) {
+                           Variable firstVar, List<Substitution> substitutions) {
         if (hashMap.containsKey(firstIndex) && hashMap.get(firstIndex).containsKey(secondIndex)) {
             for (Integer varIndex : hashMap.get(firstIndex).get(secondIndex)) {
                 Substitution sub = new SubstitutionImpl();
-                sub.add(SameObjectTermFactory.instance().createOrGetVariable(firstTerm.label()), dict.getKey(varIndex));
+                sub.add(firstVar, termOf(varIndex));
                 substitutions.add(sub);
             }
         }
@@ -187,19 +848,19 @@ public class RDFHexaStore implements RDFStorage {
      *
      * @param hashMap HashMap de l'HexaStore à matcher
      * @param firstIndex l'index du premier terme
-     * @param firstTerm le premier terme
-     * @param secondTerm le deuxième terme
+     * @param firstVar la variable du premier terme
+     * @param secondVar la variable du deuxième terme
      * @param substitutions la liste de substitutions
      */
     private void match2Var(HashMap<Integer, HashMap<Integer, Set<Integer>>> hashMap, Integer firstIndex,
-                           Term firstTerm, Term secondTerm, List<Substitution> substitutions) {
+                           Variable firstVar, Variable secondVar, List<Substitution> substitutions) {
         if (hashMap.containsKey(firstIndex)) {
             for (Map.Entry<Integer, Set<Integer>> entry : hashMap.get(firstIndex).entrySet()) {
                 Integer firstVarIndex = entry.getKey();
                 for (Integer secondVarIndex : entry.getValue()) {
                     Substitution sub = new SubstitutionImpl();
-                    sub.add(SameObjectTermFactory.instance().createOrGetVariable(firstTerm.label()), dict.getKey(firstVarIndex));
-                    sub.add(SameObjectTermFactory.instance().createOrGetVariable(secondTerm.label()), dict.getKey(secondVarIndex));
+                    sub.add(firstVar, termOf(firstVarIndex));
+                    sub.add(secondVar, termOf(secondVarIndex));
                     substitutions.add(sub);
                 }
             }
@@ -210,22 +871,22 @@ public class RDFHexaStore implements RDFStorage {
      * Méthode pour matcher un atome avec trois variables utilisée dans la méthode 'match'.
      *
      * @param hashMap HashMap de l'HexaStore à matcher
-     * @param firstTerm le premier terme
-     * @param secondTerm le deuxième terme
-     * @param thirdTerm le troisième terme
+     * @param firstVar la variable du premier terme
+     * @param secondVar la variable du deuxième terme
+     * @param thirdVar la variable du troisième terme
      * @param substitutions la liste de substitutions
      */
     private void match3Var(HashMap<Integer, HashMap<Integer, Set<Integer>>> hashMap,
-                           Term firstTerm, Term secondTerm, Term thirdTerm, List<Substitution> substitutions) {
+                           Variable firstVar, Variable secondVar, Variable thirdVar, List<Substitution> substitutions) {
         for (Map.Entry<Integer, HashMap<Integer, Set<Integer>>> entry : hashMap.entrySet()) {
             Integer s = entry.getKey();
             for (Map.Entry<Integer, Set<Integer>> entry1 : entry.getValue().entrySet()) {
                 Integer p = entry1.getKey();
                 for (Integer o : entry1.getValue()) {
                     Substitution sub = new SubstitutionImpl();
-                    sub.add(SameObjectTermFactory.instance().createOrGetVariable(firstTerm.label()), dict.getKey(s));
-                    sub.add(SameObjectTermFactory.instance().createOrGetVariable(secondTerm.label()), dict.getKey(p));
-                    sub.add(SameObjectTermFactory.instance().createOrGetVariable(thirdTerm.label()), dict.getKey(o));
+                    sub.add(firstVar, termOf(s));
+                    sub.add(secondVar, termOf(p));
+                    sub.add(thirdVar, termOf(o));
                     substitutions.add(sub);
                 }
             }
@@ -281,27 +942,808 @@ public class RDFHexaStore implements RDFStorage {
 
     /**
      * Retourne un itérateur de substitutions correspondant au match des atomes d'une requête en étoile.
+     * L'évaluation est paresseuse : les atomes sont parcourus en profondeur, du plus sélectif au moins sélectif,
+     * et chaque réponse n'est calculée qu'au moment où elle est demandée. Le LIMIT et l'OFFSET sont appliqués
+     * pendant le parcours, qui s'arrête dès que le nombre de réponses demandé est atteint ; une requête ASK
+     * s'arrête à la première réponse et produit une substitution vide si elle est satisfaite.
+     * Les filtres de comparaison portant sur l'objet d'un atome (?x, p, ?y) sont transformés en parcours
+     * d'intervalle sur les objets triés du prédicat ; les autres filtres sont vérifiés dès que leur variable est liée.
+     * Les substitutions sont projetées sur les variables réponses et ne contiennent pas de doublons :
+     * les variables existentielles ne sont vérifiées que jusqu'à la première extension trouvée.
+     * Les requêtes sans filtre dont seule la variable centrale est partagée sont évaluées par blocs
+     * d'identifiants sur les tries triés des index (voir {@link StarQueryBlockIterator}), lorsque ces tries
+     * sont à jour ou que le store est lu sans être modifié depuis {@link #TRIE_BUILD_READS} requêtes.
      *
      * @param query la requête en étoile à matcher
      * @return un itérateur de substitutions
      */
     @Override
     public Iterator<Substitution> match(StarQuery query) {
-        List<Substitution> substitutions = new ArrayList<>();
+        return match(query, new QueryContext());
+    }
+
+    /**
+     * Évalue une requête en étoile comme {@link #match(StarQuery)}, sous le contrôle d'un contexte d'exécution :
+     * chaque pas du parcours des index est un point de contrôle et les ensembles de déduplication
+     * réservent leur taille dans le budget mémoire de la requête.
+     *
+     * @param query   la requête en étoile à matcher
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    @Override
+    public Iterator<Substitution> match(StarQuery query, QueryContext context) {
+        return decode(matchEncoded(query, context), query.getAnswerVariables(), query.getModifiers());
+    }
+
+    /**
+     * Évalue une requête en étoile comme {@link #match(StarQuery)}, sans traduire les réponses en substitutions :
+     * chaque réponse est le tableau des identifiants des variables réponses, dans leur ordre
+     * (voir {@link #termOf(int)}). Une requête ASK satisfaite produit au moins une réponse.
+     *
+     * @param query la requête en étoile à matcher
+     * @return un itérateur de réponses encodées
+     */
+    public Iterator<int[]> matchEncoded(StarQuery query) {
+        return matchEncoded(query, new QueryContext());
+    }
+
+    /**
+     * Évalue une requête en étoile comme {@link #matchEncoded(StarQuery)}, sous le contrôle d'un contexte d'exécution.
+     *
+     * @param query   la requête en étoile à matcher
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de réponses encodées
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    public Iterator<int[]> matchEncoded(StarQuery query, QueryContext context) {
+        context.check();
+        if (StarQueryBlockIterator.supports(query) && triesWorthUsing(query)) {
+            return new StarQueryBlockIterator(this, query, null, context);
+        }
+        return new StarQueryIterator(this, new StarQueryPlan(query, this), query.getModifiers(), context);
+    }
+
+    /**
+     * Indique si l'évaluation par blocs vaut le coût de ses tries triés : soit ils sont déjà à jour, soit
+     * {@link #TRIE_BUILD_READS} requêtes ont été évaluées depuis la dernière modification. Tant que les écritures
+     * alternent avec les lectures, les requêtes parcourent les index sans reconstruire de trie.
+     */
+    private boolean triesWorthUsing(StarQuery query) {
+        if (StarQueryBlockIterator.hasTries(this, query)) return true;
+        return readsSinceWrite.get() >= TRIE_BUILD_READS || readsSinceWrite.incrementAndGet() >= TRIE_BUILD_READS;
+    }
+
+    /**
+     * Encode une requête en étoile pour l'évaluer plusieurs fois : les constantes sont traduites en identifiants
+     * et les atomes ordonnés une seule fois (voir {@link EncodedStarQuery}).
+     *
+     * @param query la requête en étoile
+     * @return la requête encodée
+     */
+    public EncodedStarQuery encode(StarQuery query) {
+        return new EncodedStarQuery(query, List.of(), this);
+    }
+
+    /**
+     * Évalue une requête encodée comme {@link #match(StarQuery)}. L'évaluation est pipelinée sur le plan encodé
+     * (voir {@link StarQueryIterator}) ; une requête dont une constante est inconnue ne produit aucune réponse
+     * sans parcourir les index.
+     *
+     * @param query la requête encodée pour cet HexaStore
+     * @return un itérateur de substitutions
+     * @throws IllegalArgumentException si la requête a été encodée pour un autre HexaStore
+     */
+    public Iterator<Substitution> match(EncodedStarQuery query) {
+        return match(query, new QueryContext());
+    }
+
+    /**
+     * Évalue une requête encodée comme {@link #match(EncodedStarQuery)}, sous le contrôle d'un contexte d'exécution.
+     *
+     * @param query   la requête encodée pour cet HexaStore
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    public Iterator<Substitution> match(EncodedStarQuery query, QueryContext context) {
+        SolutionModifiers modifiers = query.query().getModifiers();
+        return decode(matchEncoded(query, context), query.query().getAnswerVariables(), modifiers);
+    }
+
+    /**
+     * Évalue une requête encodée sans traduire les réponses en substitutions (voir {@link #matchEncoded(StarQuery)}).
+     *
+     * @param query   la requête encodée pour cet HexaStore
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de réponses encodées
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    public Iterator<int[]> matchEncoded(EncodedStarQuery query, QueryContext context) {
+        StarQueryPlan plan = query.plan(this);
+        if (plan.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        context.check();
+        return new StarQueryIterator(this, plan, query.query().getModifiers(), context);
+    }
+
+    /**
+     * Estime le coût d'une requête en étoile à partir des statistiques des index : le nombre de triplets
+     * de l'atome le plus sélectif, multiplié par le nombre d'atomes vérifiés pour chacun d'eux.
+     * Une requête dont une constante est absente du store a un coût nul.
+     *
+     * @param query la requête en étoile
+     * @return le coût estimé
+     */
+    @Override
+    public long estimateCost(StarQuery query) {
+        return new StarQueryPlan(query, this).cost();
+    }
+
+    /**
+     * Retourne un itérateur de substitutions correspondant au match d'une requête conjonctive.
+     * La requête est décomposée en requêtes en étoile, jointes par hachage sur leurs variables de liaison
+     * dans l'espace des identifiants. Comme pour une requête en étoile, les substitutions sont projetées
+     * sur les variables réponses, sans doublons, et le LIMIT, l'OFFSET et l'ASK sont appliqués au fil de l'eau.
+     *
+     * @param query la requête conjonctive à matcher
+     * @return un itérateur de substitutions
+     */
+    @Override
+    public Iterator<Substitution> match(BGPQuery query) {
+        return match(query, new QueryContext());
+    }
+
+    /**
+     * Évalue une requête conjonctive comme {@link #match(BGPQuery)}, sous le contrôle d'un contexte d'exécution :
+     * les tables de jointure réservent la taille de leurs lignes dans le budget mémoire de la requête.
+     *
+     * @param query   la requête conjonctive à matcher
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    @Override
+    public Iterator<Substitution> match(BGPQuery query, QueryContext context) {
+        return decode(matchEncoded(query, context), query.getAnswerVariables(), query.getModifiers());
+    }
+
+    /**
+     * Évalue une requête conjonctive comme {@link #match(BGPQuery)}, sans traduire les réponses en substitutions.
+     *
+     * @param query la requête conjonctive à matcher
+     * @return un itérateur de réponses encodées, dans l'ordre des variables réponses
+     * @see #matchEncoded(StarQuery)
+     */
+    public Iterator<int[]> matchEncoded(BGPQuery query) {
+        return matchEncoded(query, new QueryContext());
+    }
+
+    /**
+     * Évalue une requête conjonctive comme {@link #matchEncoded(BGPQuery)}, sous le contrôle d'un contexte d'exécution.
+     *
+     * @param query   la requête conjonctive à matcher
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de réponses encodées
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    public Iterator<int[]> matchEncoded(BGPQuery query, QueryContext context) {
+        context.check();
+        return new BGPQueryIterator(this, query, context);
+    }
+
+    /**
+     * Publie les réponses encodées d'une requête en étoile au rythme de la demande de l'abonné
+     * (voir {@link #publish(StarQuery, Executor)} et {@link #matchEncoded(StarQuery)}).
+     *
+     * @param query    la requête en étoile
+     * @param executor l'exécuteur sur lequel la requête est évaluée
+     * @return un éditeur de réponses encodées
+     */
+    public Flow.Publisher<int[]> publishEncoded(StarQuery query, Executor executor) {
+        return new IteratorPublisher<>(() -> matchEncoded(query), executor);
+    }
+
+    /**
+     * Publie les réponses encodées d'une requête conjonctive au rythme de la demande de l'abonné.
+     *
+     * @param query    la requête conjonctive
+     * @param executor l'exécuteur sur lequel la requête est évaluée
+     * @return un éditeur de réponses encodées
+     */
+    public Flow.Publisher<int[]> publishEncoded(BGPQuery query, Executor executor) {
+        return new IteratorPublisher<>(() -> matchEncoded(query), executor);
+    }
 
-        for (RDFAtom atom : query.getRdfAtoms()) {
-            Iterator<Substitution> matchedAtoms = this.match(atom);
-            if (!matchedAtoms.hasNext()) {
-                return Collections.emptyIterator();
+    /**
+     * Prépare un modèle de requête en étoile : les atomes sont encodés et ordonnés une seule fois,
+     * les paramètres étant considérés comme des constantes de fréquence moyenne. Chaque exécution
+     * se contente de traduire les valeurs des paramètres en identifiants avant de parcourir l'HexaStore.
+     * Le plan reste valide après des ajouts, mais son ordre d'atomes repose sur les statistiques
+     * du moment de la préparation ; il est réencodé après une purge ou si une constante du modèle
+     * était inconnue (voir {@link EncodedStarQuery}).
+     *
+     * @param template le modèle de requête
+     * @return la requête préparée
+     */
+    @Override
+    public PreparedQuery prepare(QueryTemplate template) {
+        StarQuery query = template.query();
+        EncodedStarQuery encoded = new EncodedStarQuery(query, template.parameters(), this);
+        return values -> {
+            Map<Variable, Term> bindings = template.bind(values);
+            int[] ids = new int[bindings.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Integer id = idOf(bindings.get(template.parameters().get(i)));
+                ids[i] = id == null ? -1 : id;
             }
+            StarQueryIterator rows = new StarQueryIterator(this, encoded.plan(this).bind(ids), query.getModifiers());
+            return decode(rows, query.getAnswerVariables(), query.getModifiers());
+        };
+    }
+
+    /**
+     * Retourne un itérateur de substitutions correspondant au match d'une requête conjonctive évaluée
+     * par Leapfrog Triejoin sur des instantanés triés des six index. Contrairement aux jointures deux à deux,
+     * aucun résultat intermédiaire n'est matérialisé, ce qui convient aux requêtes cycliques ou denses.
+     * Les substitutions sont projetées sur les variables réponses, sans doublons, et le LIMIT, l'OFFSET
+     * et l'ASK sont appliqués au fil de l'eau. Une requête dont un atome contient deux fois la même variable
+     * est évaluée par {@link #match(BGPQuery)}.
+     *
+     * @param query la requête conjonctive à matcher
+     * @return un itérateur de substitutions
+     */
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query) {
+        return matchTriejoin(query, new QueryContext());
+    }
+
+    /**
+     * Évalue une requête conjonctive comme {@link #matchTriejoin(BGPQuery)}, sous le contrôle d'un contexte
+     * d'exécution : chaque pas de la jointure est un point de contrôle.
+     *
+     * @param query   la requête conjonctive à matcher
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query, QueryContext context) {
+        if (!LeapfrogTriejoin.supports(query.getRdfAtoms())) {
+            return match(query, context);
+        }
+        context.check();
+        LeapfrogTriejoin rows = new LeapfrogTriejoin(this, query.getRdfAtoms(), query.getAnswerVariables(),
+                query.getFilters(), query.getModifiers(), context);
+        return decode(rows, query.getAnswerVariables(), query.getModifiers());
+    }
 
-            List<Substitution> matchedList = new ArrayList<>();
-            matchedAtoms.forEachRemaining(matchedList::add);
-            substitutions = mergeGeneral(substitutions, matchedList);
-            if(substitutions.isEmpty()) return Collections.emptyIterator();
+    /**
+     * Traduit les réponses encodées d'une requête en substitutions.
+     * Une requête ASK produit une substitution vide si elle est satisfaite, et aucune sinon.
+     *
+     * @param rows            les réponses encodées, dans l'ordre des variables réponses
+     * @param answerVariables les variables réponses
+     * @param modifiers       les modificateurs de solutions de la requête
+     * @return un itérateur de substitutions
+     */
+    Iterator<Substitution> decode(Iterator<int[]> rows, Collection<Variable> answerVariables,
+                                  SolutionModifiers modifiers) {
+        if (modifiers.ask()) {
+            return rows.hasNext()
+                    ? Collections.singletonList((Substitution) new SubstitutionImpl()).iterator()
+                    : Collections.emptyIterator();
+        }
+
+        List<Variable> variables = List.copyOf(answerVariables);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Substitution next() {
+                int[] row = rows.next();
+                Substitution sub = new SubstitutionImpl();
+                for (int slot = 0; slot < row.length; slot++) {
+                    sub.add(variables.get(slot), termOf(row[slot]));
+                }
+                return sub;
+            }
+        };
+    }
+
+    /**
+     * Retourne l'identifiant d'un terme dans le dictionnaire.
+     *
+     * @param term le terme
+     * @return l'identifiant du terme, ou null s'il est absent
+     */
+    Integer idOf(Term term) {
+        return dict.get(term);
+    }
+
+    /**
+     * Ajoute un terme au dictionnaire s'il n'y est pas déjà.
+     *
+     * @param term le terme
+     * @return son identifiant
+     */
+    int encode(Term term) {
+        return dict.addAndGet(term);
+    }
+
+    /**
+     * Associe un terme à un identifiant donné du dictionnaire (voir {@link Dictionary#put(int, Term)}).
+     *
+     * @param id   l'identifiant
+     * @param term le terme
+     * @return true si le terme a été associé, false si l'identifiant est déjà attribué
+     */
+    boolean encodeAt(int id, Term term) {
+        return dict.put(id, term);
+    }
+
+    /**
+     * @return la version du dictionnaire, incrémentée par chaque purge qui libère des identifiants
+     */
+    int dictionaryVersion() {
+        return dictionaryVersion;
+    }
+
+    /**
+     * @return le nombre de termes du dictionnaire, qui est aussi le prochain identifiant attribué
+     */
+    int termCount() {
+        return dict.size();
+    }
+
+    /**
+     * Retourne le terme associé à un identifiant du dictionnaire.
+     *
+     * @param id l'identifiant
+     * @return le terme
+     */
+    public Term termOf(int id) {
+        return dict.getKey(id);
+    }
+
+    /**
+     * Ouvre un curseur sur les triplets correspondant à un motif encodé.
+     * L'index utilisé est celui dont le préfixe correspond exactement aux positions fixées du motif.
+     *
+     * @param s l'identifiant du sujet, ou -1 s'il est libre
+     * @param p l'identifiant du prédicat, ou -1 s'il est libre
+     * @param o l'identifiant de l'objet, ou -1 s'il est libre
+     * @return un curseur sur les triplets correspondants
+     */
+    TripleCursor cursor(int s, int p, int o) {
+        int mask = (s >= 0 ? 4 : 0) | (p >= 0 ? 2 : 0) | (o >= 0 ? 1 : 0);
+        // Les formes sont rangées de la plus contrainte à la moins contrainte, à l'inverse du masque
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = access(SHAPES[7 - mask], switch (mask) {
+            case 1 -> 4; // osp
+            case 2 -> 2; // pso
+            case 3 -> 3; // pos
+            case 5 -> 1; // sop
+            default -> 0; // spo
+        });
+        TripleCursor cursor;
+        if (index == null) {
+            cursor = scanCursor(s, p, o);
+        } else {
+            cursor = switch (mask) {
+                case 0 -> new IndexCursor(spo, SPO, 0, -1, -1, -1);
+                case 1 -> new IndexCursor(index, OSP, 1, o, -1, -1);
+                case 2 -> new IndexCursor(index, PSO, 1, p, -1, -1);
+                case 3 -> new IndexCursor(index, POS, 2, p, o, -1);
+                case 4 -> new IndexCursor(spo, SPO, 1, s, -1, -1);
+                case 5 -> new IndexCursor(index, SOP, 2, s, o, -1);
+                case 6 -> new IndexCursor(spo, SPO, 2, s, p, -1);
+                default -> new IndexCursor(spo, SPO, 3, s, p, o);
+            };
+        }
+        return tombstoneCount == 0 ? cursor : new LiveCursor(cursor);
+    }
+
+    /**
+     * Ouvre un curseur sur un motif encodé dont l'index est en construction ou retiré : l'index SPO est parcouru,
+     * à partir du sujet s'il est fixé, et les triplets qui ne correspondent pas au motif sont écartés.
+     */
+    private TripleCursor scanCursor(int s, int p, int o) {
+        TripleCursor scan = s >= 0
+                ? new IndexCursor(spo, SPO, 1, s, -1, -1)
+                : new IndexCursor(spo, SPO, 0, -1, -1, -1);
+        return new TripleCursor() {
+            @Override
+            boolean next() {
+                while (scan.next()) {
+                    int[] current = scan.triple();
+                    if ((p < 0 || current[1] == p) && (o < 0 || current[2] == o)) {
+                        System.arraycopy(current, 0, triple, 0, 3);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Ouvre un curseur sur les triplets (?x, p, ?y) dont l'objet appartient à un intervalle de valeurs,
+     * en ne parcourant que les objets de p compris dans l'intervalle.
+     *
+     * @param p     l'identifiant du prédicat
+     * @param range l'intervalle de valeurs de l'objet
+     * @return un curseur sur les triplets correspondants
+     */
+    TripleCursor rangeCursor(int p, ValueRange range) {
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = access(AtomMatchType.VAR_CONST_VAR, 3);
+        if (index == null) {
+            // Index POS en construction ou retiré : les objets du prédicat sont vérifiés un à un
+            TripleCursor scan = cursor(-1, p, -1);
+            return new TripleCursor() {
+                @Override
+                boolean next() {
+                    while (scan.next()) {
+                        int[] current = scan.triple();
+                        if (range.contains(TermValueComparator.keyOf(termOf(current[2])))) {
+                            System.arraycopy(current, 0, triple, 0, 3);
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+        if (!index.containsKey(p)) {
+            return cursor(-1, p, -1); // Aucun triplet pour ce prédicat
+        }
+        TripleCursor cursor = new RangeCursor(index, p, range);
+        return tombstoneCount == 0 ? cursor : new LiveCursor(cursor);
+    }
+
+    /**
+     * Estime le nombre de triplets correspondant à un motif encodé.
+     * L'estimation est exacte lorsque deux positions au plus sont fixées dont le prédicat,
+     * ou lorsque les trois positions sont fixées ; sinon elle somme les tailles des listes concernées,
+     * qui comptent encore les triplets supprimés en attente de purge.
+     *
+     * @param s l'identifiant du sujet, ou -1 s'il est libre
+     * @param p l'identifiant du prédicat, ou -1 s'il est libre
+     * @param o l'identifiant de l'objet, ou -1 s'il est libre
+     * @return le nombre estimé de triplets
+     */
+    long estimate(int s, int p, int o) {
+        int mask = (s >= 0 ? 4 : 0) | (p >= 0 ? 2 : 0) | (o >= 0 ? 1 : 0);
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = switch (mask) {
+            case 1 -> osp;
+            case 3 -> pos;
+            case 5 -> sop;
+            default -> spo;
+        };
+        if (index == null) {
+            // Index en construction : majoration par une liste de l'index SPO ou par la taille du prédicat
+            return switch (mask) {
+                case 1 -> size;
+                case 3 -> predicateCardinality.getOrDefault(p, 0);
+                default -> sumSizes(spo.get(s));
+            };
+        }
+        return switch (mask) {
+            case 0 -> size;
+            case 1 -> sumSizes(index.get(o));
+            case 2 -> predicateCardinality.getOrDefault(p, 0);
+            case 3 -> sizeOf(index, p, o);
+            case 4 -> sumSizes(spo.get(s));
+            case 5 -> sizeOf(index, s, o);
+            case 6 -> sizeOf(spo, s, p);
+            default -> contains(spo, s, p, o) && !isRemoved(s, p, o) ? 1 : 0;
+        };
+    }
+
+    /**
+     * Estime le nombre de triplets (?x, p, ?y) dont l'objet appartient à un intervalle de valeurs,
+     * en supposant que les sujets sont répartis uniformément entre les objets.
+     *
+     * @param p     l'identifiant du prédicat
+     * @param range l'intervalle de valeurs de l'objet
+     * @return le nombre estimé de triplets
+     */
+    long estimateRange(int p, ValueRange range) {
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = pos;
+        if (index == null) return predicateCardinality.getOrDefault(p, 0);
+        if (!index.containsKey(p)) return 0;
+        SortedObjects sorted = sortedObjectsOf(index, p);
+        long objects = Math.max(0, range.toIndex(sorted.keys()) - range.fromIndex(sorted.keys()));
+        return objects * predicateCardinality.get(p) / sorted.ids().length;
+    }
+
+    /**
+     * Retourne l'instantané trié de l'index dont les deux premiers niveaux sont aux positions données,
+     * en le construisant au premier appel suivant une modification. Des lectures concurrentes attendent
+     * la construction en cours plutôt que de reconstruire le même instantané.
+     *
+     * @param first  la position (0 = sujet, 1 = prédicat, 2 = objet) du premier niveau
+     * @param second la position du deuxième niveau
+     * @return le trie trié de l'index
+     */
+    SortedTrie trie(int first, int second) {
+        int permutation = permutation(first, second);
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> index = access(null, permutation);
+        SortedTrie current = sortedTries.get(permutation);
+        if (current != null) return current;
+        synchronized (trieLock) {
+            current = sortedTries.get(permutation);
+            if (current != null) return current;
+            if (index == null) {
+                // Index en construction ou retiré : l'instantané est construit à partir de l'index SPO
+                index = permute(ORDERS[permutation]);
+            }
+            SortedTrie trie;
+            if (tombstoneCount == 0) {
+                trie = SortedTrie.of(index, size);
+            } else {
+                // Les triplets supprimés sont écartés pendant la construction, sans second passage
+                int[] order = ORDERS[permutation];
+                int[] triple = new int[3];
+                trie = SortedTrie.of(index, size + tombstoneCount, (key0, key1, key2) -> {
+                    triple[order[0]] = key0;
+                    triple[order[1]] = key1;
+                    triple[order[2]] = key2;
+                    return !isRemoved(triple[0], triple[1], triple[2]);
+                });
+            }
+            sortedTries.set(permutation, trie);
+            return trie;
+        }
+    }
+
+    /**
+     * @param first  la position du premier niveau
+     * @param second la position du deuxième niveau
+     * @return true si l'instantané trié de cet index est à jour, sans le construire
+     */
+    boolean hasTrie(int first, int second) {
+        return sortedTries.get(permutation(first, second)) != null;
+    }
+
+    /**
+     * @return la permutation dont les deux premiers niveaux sont aux positions données, dans l'ordre de {@link #ORDERS}
+     */
+    private static int permutation(int first, int second) {
+        return first * 2 + (second > first ? second - 1 : second);
+    }
+
+    /**
+     * Invalide les instantanés triés après une modification.
+     */
+    private void invalidateTries() {
+        for (int permutation = 0; permutation < 6; permutation++) {
+            sortedTries.set(permutation, null);
+        }
+        readsSinceWrite.set(0);
+    }
+
+    /**
+     * Compte les valeurs distinctes d'une position parmi les triplets d'un prédicat, ou parmi tous les triplets.
+     *
+     * @param position la position (0 = sujet, 1 = prédicat, 2 = objet)
+     * @param p        l'identifiant du prédicat, ou -1 s'il est libre
+     * @return le nombre de valeurs distinctes
+     */
+    long distinctValues(int position, int p) {
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> psoIndex = pso;
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> posIndex = pos;
+        HashMap<Integer, HashMap<Integer, Set<Integer>>> ospIndex = osp;
+        if (p >= 0) {
+            if (psoIndex == null || posIndex == null) {
+                // Index en construction : majoration par le nombre de triplets du prédicat
+                return position == 1 ? 1 : predicateCardinality.getOrDefault(p, 0);
+            }
+            if (!psoIndex.containsKey(p)) return 0;
+            return switch (position) {
+                case 0 -> psoIndex.get(p).size();
+                case 1 -> 1;
+                default -> posIndex.get(p).size();
+            };
+        }
+        return switch (position) {
+            case 0 -> spo.size();
+            case 1 -> predicateCardinality.size();
+            default -> ospIndex == null ? size : ospIndex.size();
+        };
+    }
+
+    private static long sizeOf(HashMap<Integer, HashMap<Integer, Set<Integer>>> index, int first, int second) {
+        HashMap<Integer, Set<Integer>> level = index.get(first);
+        if (level == null || !level.containsKey(second)) return 0;
+        return level.get(second).size();
+    }
+
+    private static long sumSizes(HashMap<Integer, Set<Integer>> level) {
+        if (level == null) return 0;
+        long total = 0;
+        for (Set<Integer> values : level.values()) {
+            total += values.size();
+        }
+        return total;
+    }
+
+    // Position (0 = sujet, 1 = prédicat, 2 = objet) de chaque niveau des index
+    private static final int[] SPO = {0, 1, 2};
+    private static final int[] PSO = {1, 0, 2};
+    private static final int[] OSP = {2, 0, 1};
+    private static final int[] POS = {1, 2, 0};
+    private static final int[] SOP = {0, 2, 1};
+    private static final int[] OPS = {2, 1, 0};
+    // Ordre des niveaux de chaque instantané trié, dans l'ordre des permutations de trie(first, second)
+    private static final int[][] ORDERS = {SPO, SOP, PSO, POS, OSP, OPS};
+    private static final String[] INDEX_NAMES = {"spo", "sop", "pso", "pos", "osp", "ops"};
+    // Permutations secondaires, dans l'ordre de construction : l'index POS des requêtes en étoile d'abord
+    private static final int[] BUILD_ORDER = {3, 2, 4, 1, 5};
+    private static final AtomMatchType[] SHAPES = AtomMatchType.values();
+
+    /**
+     * Curseur sur un index à trois niveaux dont les premiers niveaux sont fixés.
+     * Les niveaux libres sont parcourus à la demande avec des itérateurs imbriqués.
+     */
+    private static final class IndexCursor extends TripleCursor {
+        private final int[] order;
+        private final int[] values = new int[3];
+        private Iterator<Map.Entry<Integer, HashMap<Integer, Set<Integer>>>> firstLevel;
+        private Iterator<Map.Entry<Integer, Set<Integer>>> secondLevel;
+        private Iterator<Integer> thirdLevel;
+
+        /**
+         * @param index l'index parcouru
+         * @param order la position dans le triplet de chaque niveau de l'index
+         * @param fixed le nombre de niveaux fixés (0 à 3)
+         * @param first la valeur du premier niveau, si elle est fixée
+         * @param second la valeur du deuxième niveau, si elle est fixée
+         * @param third la valeur du troisième niveau, si elle est fixée
+         */
+        IndexCursor(HashMap<Integer, HashMap<Integer, Set<Integer>>> index, int[] order, int fixed,
+                    int first, int second, int third) {
+            this.order = order;
+            values[0] = first;
+            values[1] = second;
+            switch (fixed) {
+                case 0 -> firstLevel = index.entrySet().iterator();
+                case 1 -> {
+                    HashMap<Integer, Set<Integer>> level = index.get(first);
+                    if (level != null) secondLevel = level.entrySet().iterator();
+                }
+                case 2 -> {
+                    HashMap<Integer, Set<Integer>> level = index.get(first);
+                    if (level != null && level.containsKey(second)) thirdLevel = level.get(second).iterator();
+                }
+                default -> {
+                    HashMap<Integer, Set<Integer>> level = index.get(first);
+                    if (level != null && level.containsKey(second) && level.get(second).contains(third)) {
+                        thirdLevel = List.of(third).iterator();
+                    }
+                }
+            }
+        }
+
+        @Override
+        boolean next() {
+            while (true) {
+                if (thirdLevel != null && thirdLevel.hasNext()) {
+                    values[2] = thirdLevel.next();
+                    for (int i = 0; i < 3; i++) {
+                        triple[order[i]] = values[i];
+                    }
+                    return true;
+                }
+                if (secondLevel != null && secondLevel.hasNext()) {
+                    Map.Entry<Integer, Set<Integer>> entry = secondLevel.next();
+                    values[1] = entry.getKey();
+                    thirdLevel = entry.getValue().iterator();
+                    continue;
+                }
+                if (firstLevel != null && firstLevel.hasNext()) {
+                    Map.Entry<Integer, HashMap<Integer, Set<Integer>>> entry = firstLevel.next();
+                    values[0] = entry.getKey();
+                    secondLevel = entry.getValue().entrySet().iterator();
+                    continue;
+                }
+                return false;
+            }
         }
-        return substitutions.iterator();
     }
+
+    /**
+     * Curseur ignorant les triplets marqués comme supprimés, en attente de purge.
+     */
+    private final class LiveCursor extends TripleCursor {
+        private final TripleCursor cursor;
+
+        LiveCursor(TripleCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean next() {
+            while (cursor.next()) {
+                int[] current = cursor.triple();
+                if (!isRemoved(current[0], current[1], current[2])) {
+                    System.arraycopy(current, 0, triple, 0, 3);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Curseur sur les triplets (?x, p, ?y) dont l'objet appartient à un intervalle,
+     * parcourant les objets triés du prédicat puis leurs sujets dans l'index POS.
+     */
+    private final class RangeCursor extends TripleCursor {
+        private final SortedObjects sorted;
+        private final HashMap<Integer, Set<Integer>> subjectsByObject;
+        private final int to;
+        private int position;
+        private Iterator<Integer> subjects = Collections.emptyIterator();
+
+        RangeCursor(HashMap<Integer, HashMap<Integer, Set<Integer>>> index, int p, ValueRange range) {
+            this.sorted = sortedObjectsOf(index, p);
+            this.subjectsByObject = index.get(p);
+            this.position = range.fromIndex(sorted.keys());
+            this.to = range.toIndex(sorted.keys());
+            triple[1] = p;
+        }
+
+        @Override
+        boolean next() {
+            while (!subjects.hasNext()) {
+                if (position >= to) return false;
+                triple[2] = sorted.ids()[position++];
+                subjects = subjectsByObject.get(triple[2]).iterator();
+            }
+            triple[0] = subjects.next();
+            return true;
+        }
+    }
+
+    /**
+     * Retourne les objets d'un prédicat triés par valeur, en construisant le tableau au premier appel.
+     * Le tableau est invalidé à chaque ajout d'un triplet portant sur ce prédicat.
+     *
+     * @param index l'index POS
+     * @param pIndex l'index du prédicat
+     * @return les objets triés et leurs clés de comparaison
+     */
+    private SortedObjects sortedObjectsOf(HashMap<Integer, HashMap<Integer, Set<Integer>>> index, Integer pIndex) {
+        return sortedObjects.computeIfAbsent(pIndex, p -> {
+            Set<Integer> objects = index.get(p).keySet();
+            Integer[] ids = objects.toArray(new Integer[0]);
+            Map<Integer, ValueKey> keyById = new HashMap<>();
+            for (Integer id : ids) {
+                keyById.put(id, TermValueComparator.keyOf(termOf(id)));
+            }
+            Arrays.sort(ids, Comparator.comparing(keyById::get));
+
+            int[] sortedIds = new int[ids.length];
+            ValueKey[] keys = new ValueKey[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                sortedIds[i] = ids[i];
+                keys[i] = keyById.get(ids[i]);
+            }
+            return new SortedObjects(sortedIds, keys);
+        });
+    }
+
+    /**
+     * Objets d'un prédicat triés par valeur, avec leurs clés de comparaison.
+     */
+    private record SortedObjects(int[] ids, ValueKey[] keys) {
+    }
+
     /**
      * Méthode pour fusionner des substitutions.
      * Méthode utilisée dans la méthode 'match(query)'.
@@ -311,12 +1753,29 @@ public class RDFHexaStore implements RDFStorage {
      * @return la liste de substitutions fusionnée
      */
     public List<Substitution> mergeGeneral(List<Substitution> substitutions, List<Substitution> subFromAtom) {
+        return mergeGeneral(substitutions, subFromAtom, new QueryContext());
+    }
+
+    /**
+     * Méthode pour fusionner des substitutions sous le contrôle d'un contexte d'exécution :
+     * chaque combinaison examinée est un point de contrôle et chaque substitution fusionnée
+     * réserve sa taille estimée dans le budget mémoire de la requête.
+     *
+     * @param substitutions la liste de substitutions
+     * @param subFromAtom la liste de substitutions à fusionner
+     * @param context le contexte d'exécution de la requête
+     * @return la liste de substitutions fusionnée
+     * @throws QueryAbortedException si le contexte interrompt la fusion
+     */
+    public List<Substitution> mergeGeneral(List<Substitution> substitutions, List<Substitution> subFromAtom,
+                                           QueryContext context) {
         ArrayList<Substitution> res = new ArrayList<>();
         // Cas trivial :
         if (substitutions.isEmpty()) return subFromAtom;
         // Parcourir toutes les combinaisons
         for (Substitution subA : subFromAtom) {
             for (Substitution subB : substitutions) {
+                context.checkpoint();
 
                 Map<Variable, Term> mapSubA = subA.toMap();
                 Map<Variable, Term> mapSubB = subB.toMap();
@@ -345,6 +1804,7 @@ public class RDFHexaStore implements RDFStorage {
                     // Créer une nouvelle substitution à partir de la fusion
                     Substitution mergedSub = new SubstitutionImpl();
                     mergedMap.forEach(mergedSub::add);
+                    context.reserve(SUBSTITUTION_BYTES + BINDING_BYTES * mergedMap.size());
                     res.add(mergedSub);
                 }
             }
@@ -363,12 +1823,13 @@ public class RDFHexaStore implements RDFStorage {
         List<Atom> atoms = new ArrayList<>();
         for (Map.Entry<Integer, HashMap<Integer, Set<Integer>>> entry : spo.entrySet()) {
             int sIndex = entry.getKey();
-            Term subject = dict.getKey(sIndex);
+            Term subject = termOf(sIndex);
             for (Map.Entry<Integer, Set<Integer>> entry1 : entry.getValue().entrySet()) {
                 Integer pIndex = entry1.getKey();
-                Term predicate = dict.getKey(pIndex);
+                Term predicate = termOf(pIndex);
                 for (Integer oIndex : entry1.getValue()) {
-                    Term object = dict.getKey(oIndex);
+                    if (isRemoved(sIndex, pIndex, oIndex)) continue;
+                    Term object = termOf(oIndex);
                     atoms.add(new RDFAtom(subject, predicate, object));
                 }
             }
@@ -2,10 +2,14 @@ package qengine.storage;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.stream.Stream;
 
 import fr.boreal.model.logicalElements.api.Atom;
 import fr.boreal.model.logicalElements.api.Substitution;
+import qengine.model.BGPQuery;
+import qengine.model.QueryTemplate;
 import qengine.model.RDFAtom;
 import qengine.model.StarQuery;
 
@@ -22,6 +26,14 @@ public interface RDFStorage {
      */
     boolean add(RDFAtom a);
 
+    /**
+     * Supprime un RDFAtom du store.
+     *
+     * @param a le RDFAtom à supprimer
+     * @return true si le RDFAtom a été supprimé, false s'il était absent
+     */
+    boolean remove(RDFAtom a);
+
     /**
      * @param a atom
      * @return un itérateur de substitutions correspondant aux match des atomes
@@ -36,6 +48,104 @@ public interface RDFStorage {
      */
     Iterator<Substitution> match(StarQuery q);
 
+    /**
+     * @param q requête conjonctive (plusieurs étoiles reliées par des variables partagées)
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     */
+    Iterator<Substitution> match(BGPQuery q);
+
+    /**
+     * Évalue une requête conjonctive par une jointure multi-voies optimale dans le pire cas (Leapfrog Triejoin),
+     * adaptée aux requêtes cycliques ou denses.
+     *
+     * @param q requête conjonctive
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     */
+    Iterator<Substitution> matchTriejoin(BGPQuery q);
+
+    /**
+     * Évalue une requête en étoile sous le contrôle d'un contexte d'exécution (annulation, délai, budget mémoire).
+     * L'implémentation par défaut ne vérifie le contexte qu'entre deux réponses.
+     *
+     * @param q       star query
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     * @throws QueryAbortedException pendant le parcours, si le contexte interrompt la requête
+     */
+    default Iterator<Substitution> match(StarQuery q, QueryContext context) {
+        return context.guard(match(q));
+    }
+
+    /**
+     * Évalue une requête conjonctive sous le contrôle d'un contexte d'exécution.
+     *
+     * @param q       requête conjonctive
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     * @see #match(StarQuery, QueryContext)
+     */
+    default Iterator<Substitution> match(BGPQuery q, QueryContext context) {
+        return context.guard(match(q));
+    }
+
+    /**
+     * Évalue une requête conjonctive par Leapfrog Triejoin sous le contrôle d'un contexte d'exécution.
+     *
+     * @param q       requête conjonctive
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     * @see #match(StarQuery, QueryContext)
+     */
+    default Iterator<Substitution> matchTriejoin(BGPQuery q, QueryContext context) {
+        return context.guard(matchTriejoin(q));
+    }
+
+    /**
+     * Estime le coût d'évaluation d'une requête en étoile, en nombre d'accès aux triplets.
+     * Sans statistiques, l'implémentation par défaut majore chaque atome par la taille du store.
+     *
+     * @param q star query
+     * @return le coût estimé
+     */
+    default long estimateCost(StarQuery q) {
+        return size() * q.getRdfAtoms().size();
+    }
+
+    /**
+     * Prépare un modèle de requête en étoile pour l'exécuter avec différentes valeurs de ses paramètres.
+     * L'implémentation par défaut instancie le modèle à chaque exécution.
+     *
+     * @param template le modèle de requête
+     * @return la requête préparée
+     */
+    default PreparedQuery prepare(QueryTemplate template) {
+        return values -> match(template.instantiate(values));
+    }
+
+    /**
+     * Publie les réponses d'une requête en étoile de manière asynchrone : elles sont produites sur l'exécuteur
+     * au rythme de la demande de l'abonné, l'évaluation restant suspendue tant que celui-ci n'en demande pas d'autres.
+     *
+     * @param q        star query
+     * @param executor l'exécuteur sur lequel la requête est évaluée
+     * @return un éditeur de substitutions, qui évalue la requête à chaque abonnement
+     */
+    default Flow.Publisher<Substitution> publish(StarQuery q, Executor executor) {
+        return new IteratorPublisher<>(() -> match(q), executor);
+    }
+
+    /**
+     * Publie les réponses d'une requête conjonctive de manière asynchrone.
+     *
+     * @param q        requête conjonctive
+     * @param executor l'exécuteur sur lequel la requête est évaluée
+     * @return un éditeur de substitutions, qui évalue la requête à chaque abonnement
+     * @see #publish(StarQuery, Executor)
+     */
+    default Flow.Publisher<Substitution> publish(BGPQuery q, Executor executor) {
+        return new IteratorPublisher<>(() -> match(q), executor);
+    }
+
     /**
      * Retourne le nombre d'atomes dans le Store.
      *
@@ -70,4 +180,24 @@ public interface RDFStorage {
     default boolean addAll(Collection<RDFAtom> atoms) {
         return this.addAll(atoms.stream());
     }
+
+    /**
+     * Supprime des RDFAtom du store.
+     *
+     * @param atoms les RDFAtom à supprimer
+     * @return true si au moins un RDFAtom a été supprimé, false s'ils étaient tous absents
+     */
+    default boolean removeAll(Stream<RDFAtom> atoms) {
+        return atoms.map(this::remove).reduce(Boolean::logicalOr).orElse(false);
+    }
+
+    /**
+     * Supprime des RDFAtom du store.
+     *
+     * @param atoms les RDFAtom à supprimer
+     * @return true si au moins un RDFAtom a été supprimé, false s'ils étaient tous absents
+     */
+    default boolean removeAll(Collection<RDFAtom> atoms) {
+        return this.removeAll(atoms.stream());
+    }
 }
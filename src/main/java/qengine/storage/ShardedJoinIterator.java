@@ -0,0 +1,309 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+
+import java.util.*;
+
+/**
+ * Évaluation en pipeline d'une requête dont les atomes portent sur des sujets différents, sur un stockage
+ * partitionné par sujet : jointure par boucles imbriquées indexées, en profondeur, dans l'espace des termes.
+ * À chaque profondeur, l'atome est instancié par les liaisons courantes puis cherché dans les partitions :
+ * celle de son sujet s'il est lié, toutes sinon, en traduisant ses constantes dans le dictionnaire de chacune.
+ * Les triplets correspondants sont parcourus directement par les curseurs des partitions, sans être copiés.
+ * <p>
+ * Les atomes sont ordonnés de sorte que chacun partage si possible une variable avec les précédents,
+ * en commençant par les plus contraints. Les filtres sont vérifiés dès la liaison de leur variable.
+ * Si une variable n'est pas projetée, les réponses sont dédupliquées, et l'ensemble de déduplication réserve
+ * sa taille dans le budget mémoire du {@link QueryContext}. Chaque pas du parcours est un point de contrôle,
+ * et l'annulation et le délai sont vérifiés à chaque changement de partition.
+ */
+final class ShardedJoinIterator implements Iterator<Substitution> {
+
+    private final ShardedRDFStorage storage;
+    private final Term[][] atoms;
+    // Indice de variable de chaque position d'atome (-1 pour une constante)
+    private final int[][] slots;
+    // Vrai si la position lie sa variable à cette profondeur
+    private final boolean[][] binds;
+    // Vrai si la variable de la position est liée par une position précédente du même atome
+    private final boolean[][] repeated;
+    private final List<List<ComparisonFilter>> filters;
+    private final Term[] binding;
+    private final List<Variable> answerVariables;
+    private final int[] projection;
+    private final Set<List<Term>> seen;
+    private final ShardCursor[] cursors;
+    private final QueryContext context;
+
+    private int depth = 0;
+    private long toSkip;
+    private long remaining;
+    private Substitution next = null;
+    private boolean finished;
+
+    /**
+     * Constructeur.
+     *
+     * @param storage         le stockage partitionné interrogé
+     * @param rdfAtoms        les atomes de la requête
+     * @param answerVariables les variables réponses
+     * @param filters         les filtres de comparaison
+     * @param modifiers       les modificateurs LIMIT / OFFSET
+     * @param context         le contexte d'exécution de la requête
+     */
+    ShardedJoinIterator(ShardedRDFStorage storage, List<RDFAtom> rdfAtoms, Collection<Variable> answerVariables,
+                        List<ComparisonFilter> filters, SolutionModifiers modifiers, QueryContext context) {
+        this.storage = storage;
+        this.context = context;
+        this.toSkip = modifiers.offset();
+        this.remaining = modifiers.hasLimit() ? modifiers.limit() : Long.MAX_VALUE;
+
+        List<RDFAtom> ordered = joinOrder(rdfAtoms);
+        List<Variable> variables = new ArrayList<>();
+        this.atoms = new Term[ordered.size()][];
+        this.slots = new int[ordered.size()][3];
+        this.binds = new boolean[ordered.size()][3];
+        this.repeated = new boolean[ordered.size()][3];
+        for (int d = 0; d < atoms.length; d++) {
+            atoms[d] = ordered.get(d).getTerms();
+            int known = variables.size();
+            for (int i = 0; i < 3; i++) {
+                if (!atoms[d][i].isVariable()) {
+                    slots[d][i] = -1;
+                    continue;
+                }
+                int slot = variables.indexOf((Variable) atoms[d][i]);
+                if (slot < 0) {
+                    slot = variables.size();
+                    variables.add((Variable) atoms[d][i]);
+                    binds[d][i] = true;
+                } else if (slot >= known) {
+                    repeated[d][i] = true;
+                }
+                slots[d][i] = slot;
+            }
+        }
+        this.filters = new ArrayList<>();
+        for (int slot = 0; slot < variables.size(); slot++) {
+            this.filters.add(new ArrayList<>());
+        }
+        for (ComparisonFilter filter : filters) {
+            this.filters.get(variables.indexOf(filter.getVariable())).add(filter);
+        }
+        this.binding = new Term[variables.size()];
+        this.answerVariables = List.copyOf(answerVariables);
+        this.projection = this.answerVariables.stream().mapToInt(variables::indexOf).toArray();
+        this.seen = projection.length < variables.size() ? new HashSet<>() : null;
+        this.cursors = new ShardCursor[atoms.length];
+        this.finished = atoms.length == 0 || remaining == 0;
+        context.check();
+    }
+
+    /**
+     * Ordonne les atomes : le plus contraint d'abord, puis à chaque pas celui qui a le plus de positions
+     * constantes ou déjà liées, de préférence relié aux précédents par une variable.
+     */
+    private static List<RDFAtom> joinOrder(List<RDFAtom> rdfAtoms) {
+        List<RDFAtom> remaining = new ArrayList<>(rdfAtoms);
+        List<RDFAtom> ordered = new ArrayList<>();
+        Set<Term> bound = new HashSet<>();
+        while (!remaining.isEmpty()) {
+            RDFAtom best = null;
+            int bestScore = -1;
+            for (RDFAtom atom : remaining) {
+                int score = 0;
+                boolean connected = ordered.isEmpty();
+                for (Term term : atom.getTerms()) {
+                    if (!term.isVariable()) {
+                        score++;
+                    } else if (bound.contains(term)) {
+                        score++;
+                        connected = true;
+                    }
+                }
+                // Un atome sans variable commune avec les précédents produirait un produit cartésien
+                score = connected ? score + 4 : score;
+                if (score > bestScore) {
+                    best = atom;
+                    bestScore = score;
+                }
+            }
+            remaining.remove(best);
+            ordered.add(best);
+            for (Term term : best.getTerms()) {
+                if (term.isVariable()) bound.add(term);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (finished) return false;
+
+        while (advance()) {
+            List<Term> row = new ArrayList<>(projection.length);
+            for (int slot : projection) {
+                row.add(binding[slot]);
+            }
+            if (seen != null) {
+                if (!seen.add(row)) continue;
+                context.reserve(RDFHexaStore.SUBSTITUTION_BYTES + RDFHexaStore.BINDING_BYTES * projection.length);
+            }
+            if (toSkip > 0) {
+                toSkip--;
+                continue;
+            }
+            Substitution substitution = new SubstitutionImpl();
+            for (int i = 0; i < projection.length; i++) {
+                substitution.add(answerVariables.get(i), row.get(i));
+            }
+            next = substitution;
+            if (--remaining == 0) {
+                finished = true;
+            }
+            return true;
+        }
+        finished = true;
+        return false;
+    }
+
+    @Override
+    public Substitution next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Aucune réponse disponible");
+        }
+        Substitution result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Avance jusqu'à la prochaine liaison satisfaisant tous les atomes.
+     *
+     * @return true si une liaison complète est disponible dans {@code binding}
+     */
+    private boolean advance() {
+        if (depth == atoms.length) {
+            depth--;
+        }
+        while (depth >= 0) {
+            context.checkpoint();
+            if (cursors[depth] == null) {
+                cursors[depth] = new ShardCursor(instantiate(depth));
+            }
+            Term[] triple = cursors[depth].next();
+            if (triple == null) {
+                cursors[depth] = null;
+                depth--;
+                continue;
+            }
+            if (!bind(depth, triple)) {
+                continue;
+            }
+            depth++;
+            if (depth == atoms.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return le motif de l'atome à une profondeur, ses variables déjà liées remplacées par leur terme
+     * (null pour une position libre)
+     */
+    private Term[] instantiate(int d) {
+        Term[] pattern = new Term[3];
+        for (int i = 0; i < 3; i++) {
+            if (slots[d][i] < 0) {
+                pattern[i] = atoms[d][i];
+            } else if (!binds[d][i] && !repeated[d][i]) {
+                pattern[i] = binding[slots[d][i]];
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Lie les variables introduites par l'atome d'une profondeur, en vérifiant les variables répétées
+     * dans l'atome et les filtres.
+     */
+    private boolean bind(int d, Term[] triple) {
+        for (int i = 0; i < 3; i++) {
+            int slot = slots[d][i];
+            if (slot < 0) continue;
+            if (binds[d][i]) {
+                binding[slot] = triple[i];
+                for (ComparisonFilter filter : filters.get(slot)) {
+                    if (!filter.test(triple[i])) return false;
+                }
+            } else if (!triple[i].equals(binding[slot])) {
+                // Variable répétée dans l'atome : (?x, p, ?x)
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parcours des triplets correspondant à un motif dans les partitions concernées, une partition après l'autre.
+     */
+    private final class ShardCursor {
+        private final Term[] pattern;
+        private final int lastShard;
+        private int shard;
+        private RDFHexaStore store = null;
+        private TripleCursor cursor = null;
+
+        ShardCursor(Term[] pattern) {
+            this.pattern = pattern;
+            if (pattern[0] != null) {
+                // Sujet connu : une seule partition peut contenir le triplet
+                this.shard = storage.shardOf(pattern[0]);
+                this.lastShard = shard;
+            } else {
+                this.shard = 0;
+                this.lastShard = storage.shardCount() - 1;
+            }
+        }
+
+        /**
+         * @return le triplet suivant, traduit en termes, ou null si le parcours est terminé
+         */
+        Term[] next() {
+            while (cursor == null || !cursor.next()) {
+                if (shard > lastShard) return null;
+                cursor = open(storage.shard(shard++));
+            }
+            int[] triple = cursor.triple();
+            return new Term[]{store.termOf(triple[0]), store.termOf(triple[1]), store.termOf(triple[2])};
+        }
+
+        /**
+         * Ouvre le curseur d'une partition, ou retourne null si une constante est absente de son dictionnaire.
+         */
+        private TripleCursor open(RDFHexaStore shard) {
+            context.check();
+            int[] ids = new int[3];
+            for (int i = 0; i < 3; i++) {
+                if (pattern[i] == null) {
+                    ids[i] = -1;
+                } else {
+                    Integer id = shard.idOf(pattern[i]);
+                    if (id == null) return null;
+                    ids[i] = id;
+                }
+            }
+            store = shard;
+            return shard.cursor(ids[0], ids[1], ids[2]);
+        }
+    }
+}
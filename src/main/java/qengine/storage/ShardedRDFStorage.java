@@ -0,0 +1,426 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Atom;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.BGPQuery;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Stockage RDF partitionné par sujet entre plusieurs HexaStores en mémoire, chacun avec son propre dictionnaire.
+ * Un triplet est rangé dans la partition donnée par le hachage du libellé de son sujet.
+ * <p>
+ * Une requête en étoile dont tous les atomes ont la même variable pour sujet ne touche que les triplets
+ * d'un même sujet : elle est diffusée à toutes les partitions, évaluées en parallèle sur l'exécuteur,
+ * et leurs réponses sont simplement concaténées, sans jointure entre partitions. Seules les réponses qui
+ * ne contiennent pas la variable sujet peuvent se répéter d'une partition à l'autre et sont alors dédupliquées.
+ * Une étoile de sujet constant n'interroge que la partition de ce sujet.
+ * <p>
+ * Les autres requêtes (étoiles centrées sur un objet, requêtes conjonctives) sont évaluées par une jointure
+ * en pipeline à travers les partitions (voir {@link ShardedJoinIterator}) : chaque atome instancié n'est cherché
+ * que dans la partition de son sujet lorsqu'il est lié, et les triplets sont lus directement dans les partitions.
+ * <p>
+ * Sous un {@link QueryContext}, qui n'est parcouru que par un seul thread, les partitions sont interrogées
+ * l'une après l'autre par le thread appelant : le contexte est transmis à chacune, l'annulation et le délai sont
+ * vérifiés entre deux partitions, et les réponses retenues pour la déduplication réservent leur taille
+ * dans le budget mémoire de la requête.
+ */
+public class ShardedRDFStorage implements RDFStorage {
+
+    private final RDFHexaStore[] shards;
+    private final Executor executor;
+
+    /**
+     * Constructeur : les partitions sont évaluées sur le pool commun.
+     *
+     * @param shardCount le nombre de partitions
+     */
+    public ShardedRDFStorage(int shardCount) {
+        this(shardCount, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructeur.
+     *
+     * @param shardCount le nombre de partitions
+     * @param executor   l'exécuteur sur lequel les partitions sont chargées et interrogées en parallèle
+     */
+    public ShardedRDFStorage(int shardCount, Executor executor) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Le nombre de partitions doit être positif : " + shardCount);
+        }
+        this.shards = new RDFHexaStore[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new RDFHexaStore();
+        }
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * @return le nombre de partitions
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Retourne la partition d'un sujet. Le hachage porte sur le libellé, stable d'une exécution à l'autre.
+     *
+     * @param subject le sujet d'un triplet
+     * @return l'indice de la partition
+     */
+    public int shardOf(Term subject) {
+        return partitionOf(subject, shards.length);
+    }
+
+    /**
+     * Retourne la partition d'un sujet parmi un nombre donné de partitions, selon le hachage de son libellé.
+     * La même fonction répartit les triplets entre les nœuds du mode distribué.
+     *
+     * @param subject    le sujet d'un triplet
+     * @param partitions le nombre de partitions
+     * @return l'indice de la partition
+     */
+    public static int partitionOf(Term subject, int partitions) {
+        return Math.floorMod(subject.label().hashCode(), partitions);
+    }
+
+    /**
+     * @param index l'indice d'une partition
+     * @return la partition
+     */
+    RDFHexaStore shard(int index) {
+        return shards[index];
+    }
+
+    @Override
+    public boolean add(RDFAtom atom) {
+        return shards[shardOf(atom.getTripleSubject())].add(atom);
+    }
+
+    /**
+     * Ajoute des RDFAtom : ils sont répartis entre les partitions, puis chaque partition est chargée en parallèle.
+     *
+     * @param atoms les RDFAtom à ajouter
+     * @return true si au moins un RDFAtom a été ajouté, false s'ils sont tous déjà présents
+     */
+    @Override
+    public boolean addAll(Stream<RDFAtom> atoms) {
+        List<List<RDFAtom>> partitions = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        atoms.forEachOrdered(atom -> partitions.get(shardOf(atom.getTripleSubject())).add(atom));
+        List<Boolean> added = onShards(i -> shards[i].addAll(partitions.get(i)));
+        return added.contains(true);
+    }
+
+    @Override
+    public boolean remove(RDFAtom atom) {
+        return shards[shardOf(atom.getTripleSubject())].remove(atom);
+    }
+
+    /**
+     * Supprime des RDFAtom : ils sont répartis entre les partitions, puis chaque partition est traitée en parallèle.
+     *
+     * @param atoms les RDFAtom à supprimer
+     * @return true si au moins un RDFAtom a été supprimé, false s'ils étaient tous absents
+     */
+    @Override
+    public boolean removeAll(Stream<RDFAtom> atoms) {
+        List<List<RDFAtom>> partitions = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        atoms.forEachOrdered(atom -> partitions.get(shardOf(atom.getTripleSubject())).add(atom));
+        List<Boolean> removed = onShards(i -> shards[i].removeAll(partitions.get(i)));
+        return removed.contains(true);
+    }
+
+    @Override
+    public Iterator<Substitution> match(RDFAtom atom) {
+        Term subject = atom.getTripleSubject();
+        if (!subject.isVariable()) {
+            return shards[shardOf(subject)].match(atom);
+        }
+        return onShards(i -> toList(shards[i].match(atom))).stream().flatMap(List::stream).iterator();
+    }
+
+    /**
+     * Évalue une requête en étoile : diffusion à toutes les partitions si tous les atomes ont la même variable
+     * pour sujet, partition unique si le sujet est une constante commune, jointure à travers les partitions sinon.
+     *
+     * @param query la requête en étoile
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     */
+    @Override
+    public Iterator<Substitution> match(StarQuery query) {
+        Term subject = commonSubject(query.getRdfAtoms());
+        if (subject == null) {
+            return join(query.getRdfAtoms(), query.getAnswerVariables(), query.getFilters(), query.getModifiers(),
+                    new QueryContext());
+        }
+        if (!subject.isVariable()) {
+            return shards[shardOf(subject)].match(query);
+        }
+        return broadcast(query, (Variable) subject);
+    }
+
+    /**
+     * Évalue une requête en étoile comme {@link #match(StarQuery)}, sous le contrôle d'un contexte d'exécution :
+     * les partitions sont interrogées l'une après l'autre, chacune sous ce contexte.
+     *
+     * @param query   la requête en étoile
+     * @param context le contexte d'exécution de la requête
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     * @throws QueryAbortedException si le contexte interrompt la requête
+     */
+    @Override
+    public Iterator<Substitution> match(StarQuery query, QueryContext context) {
+        Term subject = commonSubject(query.getRdfAtoms());
+        if (subject == null) {
+            return join(query.getRdfAtoms(), query.getAnswerVariables(), query.getFilters(), query.getModifiers(),
+                    context);
+        }
+        if (!subject.isVariable()) {
+            return shards[shardOf(subject)].match(query, context);
+        }
+        return broadcast(query, (Variable) subject, context);
+    }
+
+    @Override
+    public Iterator<Substitution> match(BGPQuery query) {
+        return match(query, new QueryContext());
+    }
+
+    @Override
+    public Iterator<Substitution> match(BGPQuery query, QueryContext context) {
+        return join(query.getRdfAtoms(), query.getAnswerVariables(), query.getFilters(), query.getModifiers(), context);
+    }
+
+    /**
+     * Les partitions n'ayant pas de dictionnaire commun, la jointure multi-voies est remplacée par la même jointure
+     * en pipeline que {@link #match(BGPQuery)}, qui produit les mêmes réponses.
+     */
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query) {
+        return match(query);
+    }
+
+    @Override
+    public Iterator<Substitution> matchTriejoin(BGPQuery query, QueryContext context) {
+        return match(query, context);
+    }
+
+    @Override
+    public long estimateCost(StarQuery query) {
+        long cost = 0;
+        for (RDFHexaStore shard : shards) {
+            cost += shard.estimateCost(query);
+        }
+        return cost;
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (RDFHexaStore shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public Collection<Atom> getAtoms() {
+        List<Atom> atoms = new ArrayList<>();
+        for (RDFHexaStore shard : shards) {
+            atoms.addAll(shard.getAtoms());
+        }
+        return atoms;
+    }
+
+    /**
+     * @param atoms les atomes d'une requête
+     * @return le sujet commun à tous les atomes, ou null s'ils n'en ont pas
+     */
+    public static Term commonSubject(List<RDFAtom> atoms) {
+        Term subject = null;
+        for (RDFAtom atom : atoms) {
+            if (subject == null) {
+                subject = atom.getTripleSubject();
+            } else if (!subject.equals(atom.getTripleSubject())) {
+                return null;
+            }
+        }
+        return subject;
+    }
+
+    /**
+     * Diffuse une étoile de sujet variable à toutes les partitions et concatène leurs réponses.
+     */
+    private Iterator<Substitution> broadcast(StarQuery query, Variable subject) {
+        StarQuery shardQuery = partitionQuery(query, subject);
+        return gather(query, subject, onShards(i -> toList(shards[i].match(shardQuery))));
+    }
+
+    /**
+     * Diffuse une étoile de sujet variable à toutes les partitions sous un contexte d'exécution : les partitions
+     * sont parcourues au fil de la demande, la suivante n'étant interrogée qu'une fois la précédente épuisée.
+     */
+    private Iterator<Substitution> broadcast(StarQuery query, Variable subject, QueryContext context) {
+        StarQuery shardQuery = partitionQuery(query, subject);
+        SolutionModifiers modifiers = query.getModifiers();
+        Set<Substitution> seen = query.getAnswerVariables().contains(subject) ? null : new HashSet<>();
+        long bytes = RDFHexaStore.SUBSTITUTION_BYTES + RDFHexaStore.BINDING_BYTES * query.getAnswerVariables().size();
+        Iterator<Substitution> answers = new Iterator<>() {
+            private int shard = 0;
+            private Iterator<Substitution> current = Collections.emptyIterator();
+            private Substitution next = null;
+            private long toSkip = modifiers.offset();
+            private long remaining = modifiers.hasLimit() ? modifiers.limit() : Long.MAX_VALUE;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && remaining > 0) {
+                    while (!current.hasNext()) {
+                        if (shard == shards.length) return false;
+                        context.check();
+                        current = shards[shard++].match(shardQuery, context);
+                    }
+                    Substitution candidate = current.next();
+                    if (seen != null) {
+                        if (!seen.add(candidate)) continue;
+                        context.reserve(bytes);
+                    }
+                    if (toSkip > 0) {
+                        toSkip--;
+                        continue;
+                    }
+                    remaining--;
+                    next = candidate;
+                }
+                return next != null;
+            }
+
+            @Override
+            public Substitution next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("Aucune réponse disponible");
+                }
+                Substitution result = next;
+                next = null;
+                return result;
+            }
+        };
+        if (modifiers.ask()) {
+            return answers.hasNext()
+                    ? Collections.singletonList((Substitution) new SubstitutionImpl()).iterator()
+                    : Collections.emptyIterator();
+        }
+        return answers;
+    }
+
+    /**
+     * Retourne la requête à évaluer sur chaque partition pour une étoile de sujet variable.
+     * Le LIMIT n'est transmis aux partitions que si les réponses ne peuvent pas se répéter entre elles.
+     *
+     * @param query   l'étoile de sujet variable
+     * @param subject la variable sujet commune à ses atomes
+     * @return la requête des partitions
+     */
+    public static StarQuery partitionQuery(StarQuery query, Variable subject) {
+        SolutionModifiers modifiers = query.getModifiers();
+        SolutionModifiers shardModifiers = SolutionModifiers.NONE;
+        if (modifiers.ask()) {
+            shardModifiers = SolutionModifiers.askQuery();
+        } else if (query.getAnswerVariables().contains(subject) && modifiers.hasLimit()) {
+            shardModifiers = SolutionModifiers.NONE.withLimit(modifiers.offset() + modifiers.limit());
+        }
+        return new StarQuery(query.getLabel(), query.getRdfAtoms(), query.getAnswerVariables(),
+                query.getFilters(), shardModifiers);
+    }
+
+    /**
+     * Rassemble les réponses des partitions à une étoile de sujet variable : elles sont concaténées,
+     * dédupliquées si elles ne contiennent pas la variable sujet, puis l'OFFSET et le LIMIT sont appliqués.
+     *
+     * @param query   l'étoile de sujet variable
+     * @param subject la variable sujet commune à ses atomes
+     * @param parts   les réponses de chaque partition à {@link #partitionQuery(StarQuery, Variable)}
+     * @return les réponses à la requête
+     */
+    public static Iterator<Substitution> gather(StarQuery query, Variable subject, List<List<Substitution>> parts) {
+        SolutionModifiers modifiers = query.getModifiers();
+        if (modifiers.ask()) {
+            return parts.stream().anyMatch(part -> !part.isEmpty())
+                    ? Collections.singletonList((Substitution) new SubstitutionImpl()).iterator()
+                    : Collections.emptyIterator();
+        }
+        Stream<Substitution> answers = parts.stream().flatMap(List::stream);
+        if (!query.getAnswerVariables().contains(subject)) {
+            answers = answers.distinct();
+        }
+        answers = answers.skip(modifiers.offset());
+        if (modifiers.hasLimit()) {
+            answers = answers.limit(modifiers.limit());
+        }
+        return answers.iterator();
+    }
+
+    /**
+     * Évalue une requête dont les atomes n'ont pas de sujet commun par une jointure en pipeline
+     * à travers les partitions.
+     */
+    private Iterator<Substitution> join(List<RDFAtom> atoms, Collection<Variable> answerVariables,
+                                        List<ComparisonFilter> filters, SolutionModifiers modifiers,
+                                        QueryContext context) {
+        Iterator<Substitution> answers = new ShardedJoinIterator(this, atoms, answerVariables, filters, modifiers,
+                context);
+        if (modifiers.ask()) {
+            return answers.hasNext()
+                    ? Collections.singletonList((Substitution) new SubstitutionImpl()).iterator()
+                    : Collections.emptyIterator();
+        }
+        return answers;
+    }
+
+    /**
+     * Exécute une tâche par partition sur l'exécuteur et attend leurs résultats, dans l'ordre des partitions.
+     */
+    private <T> List<T> onShards(Function<Integer, T> task) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(shard), executor));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        return results;
+    }
+
+    private static List<Substitution> toList(Iterator<Substitution> results) {
+        List<Substitution> list = new ArrayList<>();
+        results.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,68 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionnaire en ajout seul, lisible par plusieurs threads pendant qu'un autre y ajoute des termes.
+ * Les termes sont rangés dans des blocs de taille fixe qui ne sont jamais recopiés : un identifiant
+ * publié (par exemple à travers une version de store volatile) se lit sans verrou.
+ */
+final class SharedDictionary {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final ConcurrentHashMap<Term, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Term[][] chunks = new Term[0][];
+    private volatile int size = 0;
+
+    /**
+     * @param term un terme
+     * @return son identifiant, ou null s'il est absent
+     */
+    Integer get(Term term) {
+        return ids.get(term);
+    }
+
+    /**
+     * @param id un identifiant attribué
+     * @return le terme correspondant, ou null si l'identifiant n'est pas attribué
+     */
+    Term getKey(int id) {
+        if (id < 0 || id >= size) return null;
+        return chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Ajoute un terme s'il est absent. Les ajouts sont sérialisés entre eux.
+     *
+     * @param term le terme
+     * @return son identifiant
+     */
+    synchronized int addAndGet(Term term) {
+        Integer id = ids.get(term);
+        if (id != null) return id;
+        int next = size;
+        Term[][] current = chunks;
+        if ((next >>> CHUNK_BITS) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new Term[CHUNK_SIZE];
+            chunks = current;
+        }
+        current[next >>> CHUNK_BITS][next & (CHUNK_SIZE - 1)] = term;
+        // Le terme est écrit avant la publication de la nouvelle taille
+        size = next + 1;
+        ids.put(term, next);
+        return next;
+    }
+
+    /**
+     * @return le nombre de termes, qui est aussi le prochain identifiant attribué
+     */
+    int size() {
+        return size;
+    }
+}
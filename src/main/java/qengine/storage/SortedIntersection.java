@@ -0,0 +1,119 @@
+package qengine.storage;
+
+/**
+ * Noyaux d'intersection de listes triées d'identifiants, utilisés pour filtrer les blocs de valeurs centrales
+ * des requêtes en étoile.
+ * La stratégie est choisie selon le rapport entre la taille de la liste et celle du bloc :
+ * <ul>
+ *     <li>fusion, lorsque les deux listes ont des tailles comparables ;</li>
+ *     <li>comparaison par vecteurs ({@link VectorIntersection}), lorsque la liste est plus longue que le bloc
+ *     sans l'être démesurément ;</li>
+ *     <li>recherche galopante, lorsque la liste est beaucoup plus longue que le bloc.</li>
+ * </ul>
+ * La version vectorielle repose sur le module incubateur {@code jdk.incubator.vector} ; s'il n'est pas chargé
+ * (option {@code --add-modules jdk.incubator.vector} absente), la recherche galopante la remplace.
+ */
+final class SortedIntersection {
+
+    // Rapport taille de la liste / taille du bloc en dessous duquel la fusion est utilisée
+    static final int MERGE_RATIO = 4;
+    // Rapport au-delà duquel la recherche galopante est utilisée
+    static final int GALLOP_RATIO = 64;
+
+    static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private SortedIntersection() {
+    }
+
+    /**
+     * Ne conserve dans un bloc trié que les valeurs présentes dans une portion de liste triée,
+     * en choisissant la stratégie selon le rapport des tailles.
+     *
+     * @param block le bloc de valeurs triées, compacté sur place
+     * @param size  le nombre de valeurs du bloc
+     * @param keys  la liste triée
+     * @param from  le début de la portion (inclus)
+     * @param to    la fin de la portion (exclue)
+     * @return le nombre de valeurs conservées
+     */
+    static int retain(int[] block, int size, int[] keys, int from, int to) {
+        long length = to - from;
+        if (length < (long) MERGE_RATIO * size) {
+            return merge(block, size, keys, from, to);
+        }
+        if (length < (long) GALLOP_RATIO * size && VECTOR_AVAILABLE) {
+            return VectorIntersection.retain(block, size, keys, from, to);
+        }
+        return gallop(block, size, keys, from, to);
+    }
+
+    /**
+     * Intersection par fusion des deux listes, sans branchement dans la boucle principale.
+     *
+     * @see #retain(int[], int, int[], int, int)
+     */
+    static int merge(int[] block, int size, int[] keys, int from, int to) {
+        int i = 0;
+        int j = from;
+        int kept = 0;
+        while (i < size && j < to) {
+            int a = block[i];
+            int b = keys[j];
+            block[kept] = a;
+            kept += a == b ? 1 : 0;
+            i += a <= b ? 1 : 0;
+            j += a >= b ? 1 : 0;
+        }
+        return kept;
+    }
+
+    /**
+     * Intersection par recherche galopante de chaque valeur du bloc dans la liste.
+     *
+     * @see #retain(int[], int, int[], int, int)
+     */
+    static int gallop(int[] block, int size, int[] keys, int from, int to) {
+        int j = from;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int value = block[i];
+            j = lowerBound(keys, j, to, value);
+            if (j == to) break;
+            block[kept] = value;
+            kept += keys[j] == value ? 1 : 0;
+        }
+        return kept;
+    }
+
+    /**
+     * Retourne la position de la première clé supérieure ou égale à une valeur,
+     * par recherche exponentielle depuis {@code from} puis dichotomique.
+     *
+     * @param keys  la liste triée
+     * @param from  la position de départ
+     * @param to    la fin de la liste (exclue)
+     * @param value la valeur recherchée
+     * @return la position trouvée, ou {@code to} si toutes les clés sont inférieures
+     */
+    static int lowerBound(int[] keys, int from, int to, int value) {
+        int low = from;
+        if (low >= to || keys[low] >= value) return low;
+
+        int step = 1;
+        while (low + step < to && keys[low + step] < value) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(to, low + step + 1);
+        low++;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
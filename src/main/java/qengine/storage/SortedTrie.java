@@ -0,0 +1,230 @@
+package qengine.storage;
+
+import java.util.*;
+
+/**
+ * Instantané trié d'un index de l'HexaStore, sous forme de trie à trois niveaux stocké dans des tableaux d'entiers.
+ * Les clés de chaque niveau sont triées ; les enfants de la clé {@code i} d'un niveau occupent l'intervalle
+ * {@code [starts[i], starts[i + 1])} du niveau suivant. Cette représentation permet le parcours ordonné
+ * et la recherche ({@code seek}) nécessaires à la Leapfrog Triejoin.
+ */
+final class SortedTrie {
+
+    final int[] keys0;
+    final int[] starts1;
+    final int[] keys1;
+    final int[] starts2;
+    final int[] keys2;
+
+    private SortedTrie(int[] keys0, int[] starts1, int[] keys1, int[] starts2, int[] keys2) {
+        this.keys0 = keys0;
+        this.starts1 = starts1;
+        this.keys1 = keys1;
+        this.starts2 = starts2;
+        this.keys2 = keys2;
+    }
+
+    /**
+     * Construit l'instantané trié d'un index.
+     *
+     * @param index l'index de l'HexaStore
+     * @param size  le nombre de triplets de l'index
+     * @return le trie trié
+     */
+    static SortedTrie of(HashMap<Integer, HashMap<Integer, Set<Integer>>> index, int size) {
+        int[] keys0 = sortedKeys(index.keySet());
+        int[] starts1 = new int[keys0.length + 1];
+        for (int i = 0; i < keys0.length; i++) {
+            starts1[i + 1] = starts1[i] + index.get(keys0[i]).size();
+        }
+
+        int[] keys1 = new int[starts1[keys0.length]];
+        int[] starts2 = new int[keys1.length + 1];
+        int[] keys2 = new int[size];
+        int position1 = 0;
+        for (int key0 : keys0) {
+            HashMap<Integer, Set<Integer>> level = index.get(key0);
+            int[] sorted1 = sortedKeys(level.keySet());
+            for (int key1 : sorted1) {
+                int[] sorted2 = sortedKeys(level.get(key1));
+                keys1[position1] = key1;
+                starts2[position1 + 1] = starts2[position1] + sorted2.length;
+                System.arraycopy(sorted2, 0, keys2, starts2[position1], sorted2.length);
+                position1++;
+            }
+        }
+        return new SortedTrie(keys0, starts1, keys1, starts2, keys2);
+    }
+
+    /**
+     * Construit le trie trié d'un index en une passe, sans les triplets refusés par un filtre.
+     *
+     * @param index l'index de l'HexaStore
+     * @param size  le nombre de triplets de l'index
+     * @param keep  le filtre des triplets conservés, exprimés par leurs clés dans l'ordre des niveaux
+     * @return le trie trié des triplets conservés
+     */
+    static SortedTrie of(HashMap<Integer, HashMap<Integer, Set<Integer>>> index, int size, KeyFilter keep) {
+        Builder builder = new Builder(size);
+        for (int key0 : sortedKeys(index.keySet())) {
+            HashMap<Integer, Set<Integer>> level = index.get(key0);
+            for (int key1 : sortedKeys(level.keySet())) {
+                for (int key2 : sortedKeys(level.get(key1))) {
+                    if (keep.test(key0, key1, key2)) {
+                        builder.append(key0, key1, key2);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Fusionne deux tries triés en un seul, contenant l'union de leurs triplets (sans doublons).
+     * Les triplets sont parcourus dans l'ordre lexicographique et le résultat est construit en une passe.
+     *
+     * @param a le premier trie
+     * @param b le second trie
+     * @return le trie fusionné
+     */
+    static SortedTrie merge(SortedTrie a, SortedTrie b) {
+        if (b.keys2.length == 0) return a;
+        if (a.keys2.length == 0) return b;
+        Builder builder = new Builder(a.keys2.length + b.keys2.length);
+        Triples left = new Triples(a);
+        Triples right = new Triples(b);
+        while (left.valid() || right.valid()) {
+            int order = !right.valid() ? -1 : !left.valid() ? 1 : left.compareTo(right);
+            Triples next = order <= 0 ? left : right;
+            builder.append(next.key0(), next.key1(), next.key2());
+            next.advance();
+            if (order == 0) right.advance();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Construit le trie des seuls triplets acceptés par un filtre, dans le même ordre.
+     *
+     * @param keep le filtre, appliqué aux clés des trois niveaux
+     * @return le trie filtré
+     */
+    SortedTrie filter(KeyFilter keep) {
+        Builder builder = new Builder(keys2.length);
+        for (Triples triples = new Triples(this); triples.valid(); triples.advance()) {
+            if (keep.test(triples.key0(), triples.key1(), triples.key2())) {
+                builder.append(triples.key0(), triples.key1(), triples.key2());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Filtre sur les triplets d'un trie, exprimés par leurs clés dans l'ordre des niveaux.
+     */
+    @FunctionalInterface
+    interface KeyFilter {
+        boolean test(int key0, int key1, int key2);
+    }
+
+    /**
+     * Construction d'un trie à partir de triplets ajoutés dans l'ordre lexicographique, sans doublons.
+     */
+    private static final class Builder {
+        private final int[] keys0;
+        private final int[] starts1;
+        private final int[] keys1;
+        private final int[] starts2;
+        private final int[] keys2;
+        private int size0 = 0, size1 = 0, size2 = 0;
+
+        Builder(int capacity) {
+            keys0 = new int[capacity];
+            keys1 = new int[capacity];
+            keys2 = new int[capacity];
+            starts1 = new int[capacity + 1];
+            starts2 = new int[capacity + 1];
+        }
+
+        void append(int k0, int k1, int k2) {
+            if (size0 == 0 || keys0[size0 - 1] != k0) {
+                keys0[size0++] = k0;
+                starts1[size0] = size1;
+            }
+            if (size1 == starts1[size0 - 1] || keys1[size1 - 1] != k1) {
+                keys1[size1++] = k1;
+                starts2[size1] = size2;
+            }
+            keys2[size2++] = k2;
+            starts1[size0] = size1;
+            starts2[size1] = size2;
+        }
+
+        SortedTrie build() {
+            return new SortedTrie(Arrays.copyOf(keys0, size0), Arrays.copyOf(starts1, size0 + 1),
+                    Arrays.copyOf(keys1, size1), Arrays.copyOf(starts2, size1 + 1), Arrays.copyOf(keys2, size2));
+        }
+    }
+
+    /**
+     * Parcours des triplets d'un trie dans l'ordre lexicographique.
+     */
+    private static final class Triples {
+        private final SortedTrie trie;
+        private int position0 = 0, position1 = 0, position2 = 0;
+
+        Triples(SortedTrie trie) {
+            this.trie = trie;
+        }
+
+        boolean valid() {
+            return position2 < trie.keys2.length;
+        }
+
+        int key0() {
+            return trie.keys0[position0];
+        }
+
+        int key1() {
+            return trie.keys1[position1];
+        }
+
+        int key2() {
+            return trie.keys2[position2];
+        }
+
+        int compareTo(Triples other) {
+            int order = Integer.compare(key0(), other.key0());
+            if (order == 0) order = Integer.compare(key1(), other.key1());
+            if (order == 0) order = Integer.compare(key2(), other.key2());
+            return order;
+        }
+
+        void advance() {
+            position2++;
+            while (position1 < trie.keys1.length && position2 >= trie.starts2[position1 + 1]) {
+                position1++;
+            }
+            while (position0 < trie.keys0.length && position1 >= trie.starts1[position0 + 1]) {
+                position0++;
+            }
+        }
+    }
+
+    private static int[] sortedKeys(Collection<Integer> keys) {
+        int[] sorted = new int[keys.size()];
+        int i = 0;
+        for (Integer key : keys) {
+            sorted[i++] = key;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @return un nouvel itérateur positionné à la racine du trie
+     */
+    TrieIterator iterator() {
+        return new TrieIterator(this);
+    }
+}
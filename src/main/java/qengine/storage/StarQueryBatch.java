@@ -0,0 +1,149 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+
+import java.util.*;
+
+/**
+ * Évaluation groupée d'un lot de requêtes en étoile (par exemple tout un fichier de requêtes WatDiv).
+ * Les atomes dont la seule variable est la variable centrale sont reconnus d'une requête à l'autre,
+ * quel que soit le nom de cette variable : l'ensemble des valeurs centrales qui satisfont un tel atome
+ * n'est calculé qu'une fois pour tout le lot, de même que l'intersection de ces ensembles pour une combinaison
+ * d'atomes donnée. Chaque requête repart ensuite de ces valeurs partagées (voir {@link StarQueryBlockIterator}).
+ * Les requêtes non prises en charge par l'évaluation vectorisée, ou sans atome partageable,
+ * sont évaluées indépendamment par {@link RDFHexaStore#match(StarQuery)}.
+ */
+public class StarQueryBatch {
+
+    /**
+     * Atome normalisé : la position de la variable centrale est marquée par null.
+     */
+    private record AtomKey(Term subject, Term predicate, Term object) {
+
+        static AtomKey of(RDFAtom atom, Variable center) {
+            return new AtomKey(normalize(atom.getTripleSubject(), center),
+                    normalize(atom.getTriplePredicate(), center),
+                    normalize(atom.getTripleObject(), center));
+        }
+
+        private static Term normalize(Term term, Variable center) {
+            return term.equals(center) ? null : term;
+        }
+    }
+
+    private final RDFHexaStore store;
+    private final List<StarQuery> queries;
+
+    // Atomes partageables de chaque requête (null si la requête est évaluée indépendamment)
+    private final List<Set<AtomKey>> sharedKeys = new ArrayList<>();
+    private final Map<AtomKey, RDFAtom> representatives = new HashMap<>();
+    private final Map<AtomKey, int[]> atomCandidates = new HashMap<>();
+    private final Map<Set<AtomKey>, int[]> combinedCandidates = new HashMap<>();
+    private int totalAtoms = 0;
+
+    /**
+     * @param store   l'HexaStore interrogé
+     * @param queries les requêtes du lot
+     */
+    public StarQueryBatch(RDFHexaStore store, List<StarQuery> queries) {
+        this.store = Objects.requireNonNull(store);
+        this.queries = List.copyOf(queries);
+        for (StarQuery query : this.queries) {
+            Set<AtomKey> keys = null;
+            if (StarQueryBlockIterator.supports(query)) {
+                Variable center = query.getCentralVariable();
+                for (RDFAtom atom : query.getRdfAtoms()) {
+                    if (!StarQueryBlockIterator.isCenterOnly(atom, center)) continue;
+                    if (keys == null) keys = new HashSet<>();
+                    AtomKey key = AtomKey.of(atom, center);
+                    representatives.putIfAbsent(key, atom);
+                    keys.add(key);
+                    totalAtoms++;
+                }
+            }
+            sharedKeys.add(keys == null ? null : Set.copyOf(keys));
+        }
+    }
+
+    /**
+     * @return le nombre de requêtes du lot
+     */
+    public int size() {
+        return queries.size();
+    }
+
+    /**
+     * Évalue une requête du lot en réutilisant les valeurs centrales déjà calculées pour les autres requêtes.
+     *
+     * @param index la position de la requête dans le lot
+     * @return un itérateur de substitutions
+     */
+    public Iterator<Substitution> match(int index) {
+        StarQuery query = queries.get(index);
+        Set<AtomKey> keys = sharedKeys.get(index);
+        if (keys == null) {
+            return store.match(query);
+        }
+        int[] candidates = combinedCandidates.computeIfAbsent(keys, this::intersect);
+        Iterator<int[]> rows = new StarQueryBlockIterator(store, query, candidates);
+        return store.decode(rows, query.getAnswerVariables(), query.getModifiers());
+    }
+
+    /**
+     * Évalue toutes les requêtes du lot.
+     *
+     * @return un itérateur de substitutions par requête, dans l'ordre du lot
+     */
+    public List<Iterator<Substitution>> matchAll() {
+        List<Iterator<Substitution>> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(match(i));
+        }
+        return results;
+    }
+
+    /**
+     * @return le nombre d'occurrences d'atomes dont les valeurs centrales sont reprises d'une autre requête
+     * plutôt que recalculées
+     */
+    public int sharedAtoms() {
+        return totalAtoms - representatives.size();
+    }
+
+    /**
+     * @return la part des occurrences d'atomes partageables dont le calcul est évité (entre 0 et 1)
+     */
+    public double sharingRatio() {
+        return totalAtoms == 0 ? 0 : (double) sharedAtoms() / totalAtoms;
+    }
+
+    /**
+     * Intersecte les valeurs centrales d'une combinaison d'atomes, de la plus courte à la plus longue liste.
+     */
+    private int[] intersect(Set<AtomKey> keys) {
+        List<int[]> lists = new ArrayList<>(keys.size());
+        for (AtomKey key : keys) {
+            lists.add(atomCandidates.computeIfAbsent(key, k ->
+                    StarQueryBlockIterator.centerValues(store, representatives.get(k), centerOf(representatives.get(k)))));
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        int[] result = lists.getFirst().clone();
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            int[] list = lists.get(i);
+            size = SortedIntersection.retain(result, size, list, 0, list.length);
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static Variable centerOf(RDFAtom atom) {
+        for (Term term : atom.getTerms()) {
+            if (term.isVariable()) return (Variable) term;
+        }
+        throw new IllegalStateException("Atome sans variable : " + atom);
+    }
+}
@@ -0,0 +1,451 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+
+import java.util.*;
+
+/**
+ * Évaluation vectorisée d'une requête en étoile : les opérateurs s'échangent des blocs de {@link #BLOCK_SIZE}
+ * identifiants plutôt que des substitutions une à une.
+ * <ul>
+ *     <li>parcours : les valeurs de la variable centrale compatibles avec l'atome le plus sélectif
+ *     sont copiées par blocs depuis le trie trié de l'index adapté ;</li>
+ *     <li>intersection : chaque autre atome ne conserve du bloc que les valeurs présentes dans sa propre liste triée,
+ *     par fusion, comparaison vectorielle ou recherche galopante selon les tailles (voir {@link SortedIntersection}) ;</li>
+ *     <li>sondage : pour chaque valeur centrale restante, les atomes portant d'autres variables réponses
+ *     donnent leurs valeurs, combinées en lignes écrites par colonnes dans un bloc de sortie ;</li>
+ *     <li>projection et décodage : les lignes du bloc sont lues dans l'ordre des variables réponses,
+ *     puis traduites en substitutions par l'HexaStore.</li>
+ * </ul>
+ * Les variables existentielles autres que la variable centrale ne sont jamais énumérées : leur atome ne sert
+ * qu'à l'intersection. Seules les requêtes sans filtre, dont la variable centrale apparaît une fois par atome
+ * et dont les autres variables n'apparaissent qu'une fois, sont prises en charge (voir {@link #supports(StarQuery)}).
+ * Les valeurs centrales peuvent aussi être fournies déjà calculées, par exemple partagées entre les requêtes
+ * d'un lot ({@link StarQueryBatch}) : les atomes dont la seule variable est la variable centrale sont alors ignorés.
+ * Les tampons de sondage réservent leur croissance auprès du {@link QueryContext} de la requête.
+ */
+final class StarQueryBlockIterator implements Iterator<int[]> {
+
+    static final int BLOCK_SIZE = 1024;
+
+    private final TrieIterator driver;
+    private final int[] candidates;
+    private int candidatePosition = 0;
+    private final TrieIterator[] filters;
+    private final TrieIterator[] expanders;
+    private final int[] arity;
+    private final int[] sourceExpander;
+    private final int[] sourceComponent;
+    private final IntTupleHashSet seen;
+    private final QueryContext context;
+
+    // Bloc de valeurs centrales
+    private final int[] centers = new int[BLOCK_SIZE];
+    private int centerCount = 0;
+    private int centerIndex = 0;
+
+    // Valeurs de chaque atome sondé pour la valeur centrale courante, et combinaison en cours
+    private final int[][] tuples;
+    private final int[] tupleCount;
+    private final int[] digits;
+    private boolean expanding = false;
+
+    // Bloc de sortie, rangé par colonnes (une par variable réponse)
+    private final int[][] columns;
+    private int rowCount = 0;
+    private int rowIndex = 0;
+
+    private long toSkip;
+    private long remaining;
+    private boolean ready = false;
+    private boolean exhausted;
+    private boolean finished;
+
+    /**
+     * Prépare les opérateurs : positionne un itérateur par atome au niveau de la variable centrale.
+     *
+     * @param store l'HexaStore interrogé
+     * @param query la requête en étoile, prise en charge par {@link #supports(StarQuery)}
+     */
+    StarQueryBlockIterator(RDFHexaStore store, StarQuery query) {
+        this(store, query, null);
+    }
+
+    /**
+     * Prépare les opérateurs à partir de valeurs centrales déjà calculées.
+     *
+     * @param store      l'HexaStore interrogé
+     * @param query      la requête en étoile, prise en charge par {@link #supports(StarQuery)}
+     * @param candidates les valeurs centrales triées satisfaisant tous les atomes dont la seule variable
+     *                   est la variable centrale, ou null pour les calculer à partir de ces atomes
+     */
+    StarQueryBlockIterator(RDFHexaStore store, StarQuery query, int[] candidates) {
+        this(store, query, candidates, new QueryContext());
+    }
+
+    /**
+     * Prépare les opérateurs, en les soumettant au contexte d'exécution de la requête.
+     *
+     * @param store      l'HexaStore interrogé
+     * @param query      la requête en étoile, prise en charge par {@link #supports(StarQuery)}
+     * @param candidates les valeurs centrales déjà calculées, ou null
+     * @param context    le contexte d'exécution de la requête
+     */
+    StarQueryBlockIterator(RDFHexaStore store, StarQuery query, int[] candidates, QueryContext context) {
+        if (!supports(query)) {
+            throw new IllegalArgumentException("Requête non prise en charge par l'évaluation vectorisée : " + query);
+        }
+        this.context = context;
+        SolutionModifiers modifiers = query.getModifiers();
+        this.toSkip = modifiers.offset();
+        this.remaining = modifiers.hasLimit() ? modifiers.limit() : Long.MAX_VALUE;
+
+        Variable center = query.getCentralVariable();
+        List<Variable> answers = List.copyOf(query.getAnswerVariables());
+        this.sourceExpander = new int[answers.size()];
+        this.sourceComponent = new int[answers.size()];
+        Arrays.fill(sourceExpander, -1);
+
+        boolean empty = false;
+        List<TrieIterator> lists = new ArrayList<>();
+        List<TrieIterator> probes = new ArrayList<>();
+        List<Integer> arities = new ArrayList<>();
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            if (candidates != null && isCenterOnly(atom, center)) continue;
+            Term[] triple = {atom.getTripleSubject(), atom.getTriplePredicate(), atom.getTripleObject()};
+            Integer[] positions = levels(triple, center, answers);
+            int[] ids = new int[3];
+            for (int i = 0; i < 3; i++) {
+                if (triple[i].isVariable()) continue;
+                Integer id = store.idOf(triple[i]);
+                if (id == null) {
+                    empty = true;
+                    break;
+                }
+                ids[i] = id;
+            }
+            if (empty) break;
+
+            SortedTrie trie = store.trie(positions[0], positions[1]);
+            TrieIterator list = openCenter(trie, triple, ids, positions);
+            if (list == null) {
+                empty = true;
+                break;
+            }
+            lists.add(list);
+
+            int answersInAtom = 0;
+            for (Integer position : positions) {
+                int column = answers.indexOf(triple[position]);
+                if (column >= 0 && !triple[position].equals(center)) {
+                    sourceExpander[column] = probes.size();
+                    sourceComponent[column] = answersInAtom++;
+                }
+            }
+            if (answersInAtom > 0) {
+                probes.add(openCenter(trie, triple, ids, positions));
+                arities.add(answersInAtom);
+            }
+        }
+
+        // L'atome dont la liste est la plus courte alimente le parcours, les autres filtrent ses blocs ;
+        // des valeurs centrales fournies alimentent le parcours à sa place
+        lists.sort(Comparator.comparingInt(TrieIterator::remaining));
+        this.candidates = candidates;
+        if (empty) {
+            this.driver = null;
+            this.filters = new TrieIterator[0];
+        } else if (candidates != null) {
+            this.driver = null;
+            this.filters = lists.toArray(new TrieIterator[0]);
+        } else {
+            this.driver = lists.getFirst();
+            this.filters = lists.subList(1, lists.size()).toArray(new TrieIterator[0]);
+        }
+        this.expanders = probes.toArray(new TrieIterator[0]);
+        this.arity = arities.stream().mapToInt(Integer::intValue).toArray();
+        this.tuples = new int[expanders.length][16];
+        this.tupleCount = new int[expanders.length];
+        this.digits = new int[expanders.length];
+        this.columns = new int[answers.size()][BLOCK_SIZE];
+        // Sans la variable centrale parmi les réponses, deux valeurs centrales peuvent donner la même ligne
+        this.seen = answers.contains(center) || answers.isEmpty() ? null : new IntTupleHashSet(answers.size());
+        this.exhausted = empty;
+        this.finished = empty || remaining == 0;
+    }
+
+    /**
+     * Indique si une requête en étoile peut être évaluée par blocs : aucun filtre, la variable centrale
+     * apparaît une fois dans chaque atome et chaque autre variable n'apparaît qu'une fois dans la requête.
+     *
+     * @param query la requête en étoile
+     * @return true si l'évaluation vectorisée peut être utilisée
+     */
+    static boolean supports(StarQuery query) {
+        if (!query.getFilters().isEmpty()) return false;
+        Variable center = query.getCentralVariable();
+        Set<Term> others = new HashSet<>();
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            int occurrences = 0;
+            for (Term term : atom.getTerms()) {
+                if (term.equals(center)) {
+                    occurrences++;
+                } else if (term.isVariable() && !others.add(term)) {
+                    return false;
+                }
+            }
+            if (occurrences != 1) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param store l'HexaStore interrogé
+     * @param query une requête prise en charge par {@link #supports(StarQuery)}
+     * @return true si les tries triés parcourus par la requête sont à jour, c'est-à-dire si son évaluation
+     * ne construit aucun trie
+     */
+    static boolean hasTries(RDFHexaStore store, StarQuery query) {
+        Variable center = query.getCentralVariable();
+        List<Variable> answers = List.copyOf(query.getAnswerVariables());
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            Integer[] positions = levels(new Term[]{atom.getTripleSubject(), atom.getTriplePredicate(),
+                    atom.getTripleObject()}, center, answers);
+            if (!store.hasTrie(positions[0], positions[1])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Ordonne les niveaux du trie d'un atome : constantes, variable centrale, variables réponses,
+     * variables existentielles.
+     *
+     * @return les positions de l'atome, dans l'ordre des niveaux
+     */
+    private static Integer[] levels(Term[] triple, Variable center, List<Variable> answers) {
+        Integer[] positions = {0, 1, 2};
+        Arrays.sort(positions, Comparator.comparingInt(i -> triple[i].isVariable()
+                ? (triple[i].equals(center) ? 0 : answers.contains(triple[i]) ? 1 : 2) : -1));
+        return positions;
+    }
+
+    /**
+     * @param atom   un atome de la requête
+     * @param center la variable centrale
+     * @return true si la seule variable de l'atome est la variable centrale
+     */
+    static boolean isCenterOnly(RDFAtom atom, Variable center) {
+        for (Term term : atom.getTerms()) {
+            if (term.isVariable() && !term.equals(center)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Calcule les valeurs centrales satisfaisant un atome dont la seule variable est la variable centrale.
+     *
+     * @param store  l'HexaStore interrogé
+     * @param atom   l'atome
+     * @param center la variable centrale
+     * @return les valeurs centrales triées
+     */
+    static int[] centerValues(RDFHexaStore store, RDFAtom atom, Variable center) {
+        Term[] triple = {atom.getTripleSubject(), atom.getTriplePredicate(), atom.getTripleObject()};
+        Integer[] positions = {0, 1, 2};
+        Arrays.sort(positions, Comparator.comparingInt(i -> triple[i].isVariable() ? 0 : -1));
+        int[] ids = new int[3];
+        for (int i = 0; i < 3; i++) {
+            if (triple[i].isVariable()) continue;
+            Integer id = store.idOf(triple[i]);
+            if (id == null) return new int[0];
+            ids[i] = id;
+        }
+        TrieIterator iterator = openCenter(store.trie(positions[0], positions[1]), triple, ids, positions);
+        if (iterator == null) return new int[0];
+        int[] values = new int[iterator.remaining()];
+        iterator.fill(values, values.length);
+        return values;
+    }
+
+    /**
+     * Ouvre un itérateur sur le trie d'un atome, positionné sur le niveau de la variable centrale.
+     *
+     * @return l'itérateur, ou null si les constantes de l'atome n'ont aucun triplet
+     */
+    private static TrieIterator openCenter(SortedTrie trie, Term[] triple, int[] ids, Integer[] positions) {
+        TrieIterator iterator = trie.iterator();
+        for (int position : positions) {
+            iterator.open();
+            if (triple[position].isVariable()) return iterator;
+            iterator.seek(ids[position]);
+            if (iterator.atEnd() || iterator.key() != ids[position]) return null;
+        }
+        return iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready) return true;
+        if (finished) return false;
+
+        while (true) {
+            context.checkpoint();
+            if (rowIndex == rowCount && !fillRows()) {
+                finished = true;
+                return false;
+            }
+            int row = rowIndex;
+            if (seen != null) {
+                if (!seen.add(rowAt(row))) {
+                    rowIndex++;
+                    continue;
+                }
+                context.reserve(QueryContext.rowBytes(columns.length));
+            }
+            if (toSkip > 0) {
+                toSkip--;
+                rowIndex++;
+                continue;
+            }
+            remaining--;
+            ready = true;
+            return true;
+        }
+    }
+
+    @Override
+    public int[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Aucune réponse disponible");
+        }
+        ready = false;
+        if (remaining == 0) {
+            finished = true;
+        }
+        return rowAt(rowIndex++);
+    }
+
+    /**
+     * Projection : lit une ligne du bloc de sortie dans l'ordre des variables réponses.
+     */
+    private int[] rowAt(int row) {
+        int[] values = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            values[c] = columns[c][row];
+        }
+        return values;
+    }
+
+    /**
+     * Sondage : remplit le bloc de sortie avec les combinaisons des valeurs de chaque atome sondé,
+     * pour les valeurs centrales successives.
+     *
+     * @return true si au moins une ligne a été produite
+     */
+    private boolean fillRows() {
+        rowCount = 0;
+        rowIndex = 0;
+        while (rowCount < BLOCK_SIZE) {
+            context.checkpoint();
+            if (!expanding) {
+                if (centerIndex == centerCount && !nextCenters()) break;
+                probe(centers[centerIndex]);
+                expanding = true;
+            }
+            int center = centers[centerIndex];
+            for (int c = 0; c < columns.length; c++) {
+                int expander = sourceExpander[c];
+                columns[c][rowCount] = expander < 0 ? center
+                        : tuples[expander][digits[expander] * arity[expander] + sourceComponent[c]];
+            }
+            rowCount++;
+
+            // Combinaison suivante, à la manière d'un compteur
+            int e = expanders.length - 1;
+            while (e >= 0 && ++digits[e] == tupleCount[e]) {
+                digits[e] = 0;
+                e--;
+            }
+            if (e < 0) {
+                expanding = false;
+                centerIndex++;
+            }
+        }
+        return rowCount > 0;
+    }
+
+    /**
+     * Parcours et intersection : produit le prochain bloc non vide de valeurs centrales.
+     *
+     * @return false si toutes les valeurs centrales ont été parcourues
+     */
+    private boolean nextCenters() {
+        centerIndex = 0;
+        centerCount = 0;
+        while (centerCount == 0) {
+            context.checkpoint();
+            if (exhausted) return false;
+            if (candidates != null) {
+                centerCount = Math.min(BLOCK_SIZE, candidates.length - candidatePosition);
+                System.arraycopy(candidates, candidatePosition, centers, 0, centerCount);
+                candidatePosition += centerCount;
+            } else {
+                centerCount = driver.fill(centers, BLOCK_SIZE);
+            }
+            if (centerCount == 0) {
+                exhausted = true;
+                return false;
+            }
+            for (TrieIterator filter : filters) {
+                centerCount = filter.retain(centers, centerCount);
+                if (filter.atEnd()) exhausted = true;
+                if (centerCount == 0) break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sondage des atomes portant des variables réponses pour une valeur centrale, présente dans chacun d'eux.
+     */
+    private void probe(int center) {
+        for (int e = 0; e < expanders.length; e++) {
+            TrieIterator it = expanders[e];
+            it.seek(center);
+            it.open();
+            int count = 0;
+            while (!it.atEnd()) {
+                context.checkpoint();
+                if (arity[e] == 1) {
+                    count = append(e, count, it.key());
+                } else {
+                    int first = it.key();
+                    it.open();
+                    while (!it.atEnd()) {
+                        count = append(e, count, first);
+                        count = append(e, count, it.key());
+                        it.next();
+                    }
+                    it.up();
+                }
+                it.next();
+            }
+            it.up();
+            tupleCount[e] = count / arity[e];
+            digits[e] = 0;
+        }
+    }
+
+    private int append(int expander, int count, int value) {
+        if (count == tuples[expander].length) {
+            context.reserve((long) Integer.BYTES * count);
+            tuples[expander] = Arrays.copyOf(tuples[expander], count * 2);
+        }
+        tuples[expander][count] = value;
+        return count + 1;
+    }
+}
@@ -0,0 +1,259 @@
+package qengine.storage;
+
+import qengine.model.ComparisonFilter;
+import qengine.model.SolutionModifiers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Évaluation en pipeline d'un plan de requête en étoile.
+ * Les atomes sont parcourus en profondeur, avec un curseur paresseux par atome : une réponse est produite
+ * dès que tous les atomes sont satisfaits, sans calculer les suivantes.
+ * L'OFFSET et le LIMIT sont appliqués au fil de l'eau, de sorte que le parcours s'arrête
+ * dès que le nombre de réponses demandé est atteint.
+ * <p>
+ * Chaque réponse est un tableau donnant l'identifiant lié à chaque variable réponse, dans l'ordre de la projection.
+ * Les atomes évalués après la liaison de la dernière variable réponse ne servent qu'à vérifier l'existence
+ * d'une extension : le parcours reprend dès qu'une extension est trouvée, sans énumérer les suivantes.
+ * Si une variable existentielle est liée avant cette profondeur, plusieurs liaisons peuvent donner la même
+ * réponse projetée ; les réponses sont alors dédupliquées dans l'espace des identifiants.
+ * Chaque pas du parcours est un point de contrôle du {@link QueryContext} de la requête, auquel l'ensemble
+ * de déduplication réserve sa taille.
+ */
+final class StarQueryIterator implements Iterator<int[]> {
+
+    // Nature d'une position d'atome à une profondeur donnée
+    private static final int CONSTANT = 0;
+    private static final int BOUND = 1;
+    private static final int NEW = 2;
+    private static final int REPEATED = 3;
+
+    private final RDFHexaStore store;
+    private final StarQueryPlan plan;
+    private final int[][] atoms;
+    private final int[][] kinds;
+    private final TripleCursor[] cursors;
+    private final int[] binding;
+    private final int[] projection;
+    // Profondeur à laquelle la dernière variable réponse est liée (-1 si aucune)
+    private final int cutDepth;
+    // Réponses déjà produites, lorsque des doublons sont possibles
+    private final IntTupleHashSet seen;
+    private final QueryContext context;
+
+    private int depth = 0;
+    private boolean resume = false;
+    private long toSkip;
+    private long remaining;
+    private boolean ready = false;
+    private boolean finished;
+
+    /**
+     * Constructeur.
+     *
+     * @param store     l'HexaStore interrogé
+     * @param plan      le plan de la requête
+     * @param modifiers les modificateurs LIMIT / OFFSET à appliquer
+     */
+    StarQueryIterator(RDFHexaStore store, StarQueryPlan plan, SolutionModifiers modifiers) {
+        this(store, plan, modifiers, new QueryContext());
+    }
+
+    /**
+     * Constructeur.
+     *
+     * @param store     l'HexaStore interrogé
+     * @param plan      le plan de la requête
+     * @param modifiers les modificateurs LIMIT / OFFSET à appliquer
+     * @param context   le contexte d'exécution de la requête
+     */
+    StarQueryIterator(RDFHexaStore store, StarQueryPlan plan, SolutionModifiers modifiers, QueryContext context) {
+        this.store = store;
+        this.context = context;
+        this.plan = plan;
+        this.atoms = plan.atoms();
+        this.kinds = new int[atoms.length][3];
+        this.cursors = new TripleCursor[atoms.length];
+        this.binding = new int[plan.variables().size()];
+        this.projection = plan.projection();
+        this.toSkip = modifiers.offset();
+        this.remaining = modifiers.hasLimit() ? modifiers.limit() : Long.MAX_VALUE;
+        this.finished = plan.isEmpty() || atoms.length == 0 || remaining == 0;
+
+        // Les variables liées à chaque profondeur ne dépendent que de l'ordre des atomes
+        boolean[] bound = new boolean[binding.length];
+        boolean[] projected = new boolean[binding.length];
+        for (int slot : projection) {
+            projected[slot] = true;
+        }
+        int cut = -1;
+        boolean existentialBeforeCut = false;
+        boolean[] existentialAt = new boolean[atoms.length];
+        for (int d = 0; d < atoms.length; d++) {
+            boolean[] boundHere = new boolean[binding.length];
+            for (int i = 0; i < 3; i++) {
+                int code = atoms[d][i];
+                if (code >= 0) {
+                    kinds[d][i] = CONSTANT;
+                } else if (bound[StarQueryPlan.slotOf(code)]) {
+                    kinds[d][i] = BOUND;
+                } else if (boundHere[StarQueryPlan.slotOf(code)]) {
+                    kinds[d][i] = REPEATED;
+                } else {
+                    kinds[d][i] = NEW;
+                    boundHere[StarQueryPlan.slotOf(code)] = true;
+                    if (projected[StarQueryPlan.slotOf(code)]) {
+                        cut = d;
+                    } else {
+                        existentialAt[d] = true;
+                    }
+                }
+            }
+            for (int slot = 0; slot < binding.length; slot++) {
+                bound[slot] |= boundHere[slot];
+            }
+        }
+        for (int d = 0; d <= cut; d++) {
+            existentialBeforeCut |= existentialAt[d];
+        }
+        this.cutDepth = cut;
+        this.seen = existentialBeforeCut ? new IntTupleHashSet(projection.length) : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready) return true;
+        if (finished) return false;
+
+        while (advance()) {
+            if (seen != null) {
+                if (!seen.add(project())) continue;
+                context.reserve(QueryContext.rowBytes(projection.length));
+            }
+            if (toSkip > 0) {
+                toSkip--;
+                continue;
+            }
+            remaining--;
+            ready = true;
+            return true;
+        }
+        finished = true;
+        return false;
+    }
+
+    @Override
+    public int[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Aucune réponse disponible");
+        }
+        ready = false;
+        if (remaining == 0) {
+            finished = true;
+        }
+        return project();
+    }
+
+    private int[] project() {
+        int[] row = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            row[i] = binding[projection[i]];
+        }
+        return row;
+    }
+
+    /**
+     * Avance jusqu'à la prochaine liaison satisfaisant tous les atomes.
+     *
+     * @return true si une liaison complète est disponible dans {@code binding}
+     */
+    private boolean advance() {
+        if (resume) {
+            // Les atomes au-delà de la dernière variable réponse ont déjà prouvé l'existence d'une extension
+            for (int d = cutDepth + 1; d < atoms.length; d++) {
+                cursors[d] = null;
+            }
+            depth = cutDepth;
+            resume = false;
+        }
+        while (depth >= 0) {
+            context.checkpoint();
+            if (cursors[depth] == null) {
+                cursors[depth] = open(depth);
+            }
+            if (!cursors[depth].next()) {
+                cursors[depth] = null;
+                depth--;
+                continue;
+            }
+            if (!bind(depth, cursors[depth].triple())) {
+                continue;
+            }
+            if (depth == atoms.length - 1) {
+                resume = true;
+                return true;
+            }
+            depth++;
+        }
+        return false;
+    }
+
+    /**
+     * Ouvre le curseur de l'atome d'une profondeur donnée, en fixant ses constantes et ses variables déjà liées.
+     * Un atome (?x, p, ?y) dont le sujet n'est pas lié et dont l'objet a un intervalle est parcouru
+     * sur les objets triés de p.
+     */
+    private TripleCursor open(int d) {
+        int[] pattern = new int[3];
+        for (int i = 0; i < 3; i++) {
+            int code = atoms[d][i];
+            pattern[i] = switch (kinds[d][i]) {
+                case CONSTANT -> code;
+                case BOUND -> binding[StarQueryPlan.slotOf(code)];
+                default -> -1;
+            };
+        }
+        if (kinds[d][0] == NEW && kinds[d][1] <= BOUND && kinds[d][2] == NEW) {
+            ValueRange range = plan.rangeOf(StarQueryPlan.slotOf(atoms[d][2]));
+            if (range != null) {
+                return store.rangeCursor(pattern[1], range);
+            }
+        }
+        return store.cursor(pattern[0], pattern[1], pattern[2]);
+    }
+
+    /**
+     * Lie les nouvelles variables d'un atome au triplet courant et vérifie les variables répétées et les filtres.
+     *
+     * @return true si la liaison est cohérente
+     */
+    private boolean bind(int d, int[] triple) {
+        for (int i = 0; i < 3; i++) {
+            if (kinds[d][i] == NEW) {
+                binding[StarQueryPlan.slotOf(atoms[d][i])] = triple[i];
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            int slot = StarQueryPlan.slotOf(atoms[d][i]);
+            if (kinds[d][i] == REPEATED && binding[slot] != triple[i]) {
+                return false;
+            }
+            if (kinds[d][i] == NEW && !accept(slot, triple[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean accept(int slot, int id) {
+        List<ComparisonFilter> filters = plan.filtersOf(slot);
+        for (ComparisonFilter filter : filters) {
+            if (!filter.test(store.termOf(id))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,302 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+
+import java.util.*;
+
+/**
+ * Plan d'exécution d'une requête en étoile sur l'HexaStore.
+ * Les atomes sont encodés avec les identifiants du dictionnaire : une valeur positive ou nulle est une constante,
+ * une valeur négative {@code -(slot + 1)} désigne la variable d'indice {@code slot}.
+ * Les atomes sont ordonnés de façon gloutonne : d'abord l'atome le plus sélectif, puis les atomes
+ * partageant une variable déjà liée, du plus sélectif au moins sélectif.
+ * Les réponses sont projetées sur les variables réponses de la requête ; les autres variables sont existentielles.
+ * Un plan peut être préparé pour un modèle de requête : ses paramètres sont encodés comme des variables,
+ * considérés comme des constantes pour ordonner les atomes, puis remplacés par leurs identifiants par {@link #bind(int[])}.
+ */
+final class StarQueryPlan {
+
+    private final List<Variable> variables = new ArrayList<>();
+    private final int[][] atoms;
+    private final ValueRange[] ranges;
+    private final int[] projection;
+    private final List<List<ComparisonFilter>> filters;
+    private final int[] parameters;
+    private boolean empty = false;
+    private long estimate = 0;
+
+    /**
+     * Construit le plan d'une requête.
+     *
+     * @param query la requête en étoile
+     * @param store l'HexaStore interrogé (dictionnaire et statistiques)
+     */
+    StarQueryPlan(StarQuery query, RDFHexaStore store) {
+        this(query, List.of(), store);
+    }
+
+    /**
+     * Construit le plan d'un modèle de requête dont certaines variables sont des paramètres.
+     *
+     * @param query      la requête en étoile
+     * @param parameters les variables jouant le rôle de paramètres
+     * @param store      l'HexaStore interrogé (dictionnaire et statistiques)
+     */
+    StarQueryPlan(StarQuery query, List<Variable> parameters, RDFHexaStore store) {
+        this.filters = new ArrayList<>();
+        List<int[]> encoded = new ArrayList<>();
+        for (RDFAtom atom : query.getRdfAtoms()) {
+            int[] triple = new int[3];
+            Term[] terms = {atom.getTripleSubject(), atom.getTriplePredicate(), atom.getTripleObject()};
+            for (int i = 0; i < 3; i++) {
+                triple[i] = encode(terms[i], store);
+            }
+            encoded.add(triple);
+        }
+
+        Map<Variable, ValueRange> rangeByVariable = ValueRange.fromFilters(query.getFilters());
+        this.ranges = new ValueRange[variables.size()];
+        for (int slot = 0; slot < variables.size(); slot++) {
+            ranges[slot] = rangeByVariable.get(variables.get(slot));
+            filters.add(new ArrayList<>());
+        }
+        for (ComparisonFilter filter : query.getFilters()) {
+            filters.get(variables.indexOf(filter.getVariable())).add(filter);
+        }
+
+        this.projection = query.getAnswerVariables().stream()
+                .mapToInt(variables::indexOf)
+                .toArray();
+        this.parameters = parameters.stream().mapToInt(variables::indexOf).toArray();
+
+        this.atoms = empty ? new int[0][] : order(encoded, store);
+    }
+
+    /**
+     * Copie un plan préparé en remplaçant ses atomes, déjà ordonnés.
+     */
+    private StarQueryPlan(StarQueryPlan template, int[][] atoms, boolean empty) {
+        this.variables.addAll(template.variables);
+        this.ranges = template.ranges;
+        this.projection = template.projection;
+        this.filters = template.filters;
+        this.parameters = template.parameters;
+        this.estimate = template.estimate;
+        this.atoms = atoms;
+        this.empty = empty;
+    }
+
+    /**
+     * Instancie un plan préparé : les paramètres sont remplacés par les identifiants donnés,
+     * sans recalculer l'ordre des atomes.
+     *
+     * @param ids l'identifiant de chaque paramètre, ou -1 si la constante est absente du dictionnaire
+     * @return le plan instancié
+     */
+    StarQueryPlan bind(int[] ids) {
+        boolean unknown = empty;
+        for (int id : ids) {
+            if (id < 0) unknown = true;
+        }
+        if (unknown) {
+            return new StarQueryPlan(this, new int[0][], true);
+        }
+
+        int[][] bound = new int[atoms.length][];
+        for (int d = 0; d < atoms.length; d++) {
+            bound[d] = atoms[d].clone();
+            for (int i = 0; i < 3; i++) {
+                int parameter = parameterOf(bound[d][i]);
+                if (parameter >= 0) bound[d][i] = ids[parameter];
+            }
+        }
+        return new StarQueryPlan(this, bound, false);
+    }
+
+    /**
+     * @return l'indice du paramètre correspondant à un code, ou -1 si le code n'est pas un paramètre
+     */
+    private int parameterOf(int code) {
+        if (code >= 0) return -1;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] == slotOf(code)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Encode un terme : identifiant du dictionnaire pour une constante, code négatif pour une variable.
+     * Une constante absente du dictionnaire rend la requête vide.
+     */
+    private int encode(Term term, RDFHexaStore store) {
+        if (term.isVariable()) {
+            Variable variable = (Variable) term;
+            int slot = variables.indexOf(variable);
+            if (slot < 0) {
+                slot = variables.size();
+                variables.add(variable);
+            }
+            return -(slot + 1);
+        }
+        Integer id = store.idOf(term);
+        if (id == null) {
+            empty = true;
+            return 0;
+        }
+        return id;
+    }
+
+    /**
+     * Ordonne les atomes encodés de façon gloutonne selon leur cardinalité estimée.
+     * Un atome connecté qui n'introduit aucune variable réponse est reporté tant qu'il reste des variables
+     * réponses à lier : placé après elles, il ne sert plus qu'à vérifier l'existence d'une extension.
+     */
+    private int[][] order(List<int[]> encoded, RDFHexaStore store) {
+        List<int[]> remaining = new ArrayList<>(encoded);
+        Map<int[], Long> estimates = new IdentityHashMap<>();
+        for (int[] atom : encoded) {
+            estimates.put(atom, estimate(atom, store));
+        }
+
+        Set<Integer> bound = new HashSet<>();
+        Set<Integer> unboundAnswers = new HashSet<>();
+        for (int slot : projection) {
+            unboundAnswers.add(slot);
+        }
+        int[][] ordered = new int[encoded.size()][];
+        for (int depth = 0; depth < ordered.length; depth++) {
+            int[] best = null;
+            int bestRank = Integer.MAX_VALUE;
+            for (int[] atom : remaining) {
+                boolean connected = isConnected(atom, bound);
+                boolean deferred = connected && !unboundAnswers.isEmpty() && !bindsAny(atom, unboundAnswers);
+                int rank = (connected ? 0 : 2) + (deferred ? 1 : 0);
+                if (best == null || rank < bestRank
+                        || (rank == bestRank && estimates.get(atom) < estimates.get(best))) {
+                    best = atom;
+                    bestRank = rank;
+                }
+            }
+            remaining.remove(best);
+            ordered[depth] = best;
+            if (depth == 0) estimate = estimates.get(best);
+            for (int code : best) {
+                if (code < 0 && parameterOf(code) < 0) {
+                    bound.add(slotOf(code));
+                    unboundAnswers.remove(slotOf(code));
+                }
+            }
+        }
+        return ordered;
+    }
+
+    private boolean bindsAny(int[] atom, Set<Integer> slots) {
+        for (int code : atom) {
+            if (code < 0 && slots.contains(slotOf(code))) return true;
+        }
+        return false;
+    }
+
+    private boolean isConnected(int[] atom, Set<Integer> bound) {
+        for (int code : atom) {
+            if (code < 0 && parameterOf(code) < 0 && bound.contains(slotOf(code))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Estime le nombre de triplets correspondant à un atome en ne tenant compte que de ses constantes
+     * et de l'intervalle éventuel sur son objet. Chaque paramètre divise l'estimation par le nombre
+     * de valeurs distinctes de sa position, comme le ferait une constante de fréquence moyenne.
+     */
+    private long estimate(int[] atom, RDFHexaStore store) {
+        int s = Math.max(atom[0], -1);
+        int p = Math.max(atom[1], -1);
+        int o = Math.max(atom[2], -1);
+        long estimate;
+        if (s < 0 && p >= 0 && o < 0 && ranges[slotOf(atom[2])] != null && atom[0] != atom[2]) {
+            estimate = store.estimateRange(p, ranges[slotOf(atom[2])]);
+        } else {
+            estimate = store.estimate(s, p, o);
+        }
+        for (int i = 0; i < 3; i++) {
+            if (parameterOf(atom[i]) >= 0 && estimate > 0) {
+                estimate = Math.max(1, estimate / Math.max(1, store.distinctValues(i, p)));
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Retourne l'indice de variable correspondant à un code négatif.
+     *
+     * @param code le code d'une variable
+     * @return l'indice de la variable
+     */
+    static int slotOf(int code) {
+        return -code - 1;
+    }
+
+    /**
+     * @return true si une constante de la requête est absente du dictionnaire (aucune réponse possible)
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return le nombre estimé de triplets de l'atome le plus sélectif, utilisé pour ordonner les jointures
+     */
+    long estimate() {
+        return estimate;
+    }
+
+    /**
+     * @return le coût estimé de l'évaluation : chaque triplet de l'atome le plus sélectif est prolongé
+     * par un accès à l'index pour chacun des autres atomes
+     */
+    long cost() {
+        return empty ? 0 : estimate * Math.max(1, atoms.length);
+    }
+
+    /**
+     * @return les variables de la requête, dans l'ordre de leurs indices
+     */
+    List<Variable> variables() {
+        return variables;
+    }
+
+    /**
+     * @return les indices des variables réponses, dans l'ordre des variables réponses de la requête
+     */
+    int[] projection() {
+        return projection;
+    }
+
+    /**
+     * @return les atomes encodés, dans l'ordre d'évaluation
+     */
+    int[][] atoms() {
+        return atoms;
+    }
+
+    /**
+     * @param slot l'indice d'une variable
+     * @return l'intervalle de valeurs de la variable, ou null
+     */
+    ValueRange rangeOf(int slot) {
+        return ranges[slot];
+    }
+
+    /**
+     * @param slot l'indice d'une variable
+     * @return les filtres portant sur la variable
+     */
+    List<ComparisonFilter> filtersOf(int slot) {
+        return filters.get(slot);
+    }
+}
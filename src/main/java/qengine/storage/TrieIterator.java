@@ -0,0 +1,129 @@
+package qengine.storage;
+
+/**
+ * Itérateur sur un {@link SortedTrie}, tel que décrit pour la Leapfrog Triejoin.
+ * À chaque profondeur, l'itérateur parcourt dans l'ordre croissant les clés enfants de la clé courante
+ * du niveau supérieur ; {@link #seek(int)} avance jusqu'à la première clé supérieure ou égale à une valeur
+ * par recherche exponentielle puis dichotomique. {@link #fill(int[], int)} et {@link #retain(int[], int)}
+ * opèrent sur des blocs d'identifiants pour l'évaluation vectorisée des requêtes en étoile.
+ */
+final class TrieIterator {
+
+    private final SortedTrie trie;
+    private final int[] position = new int[3];
+    private final int[] end = new int[3];
+    private int depth = -1;
+
+    TrieIterator(SortedTrie trie) {
+        this.trie = trie;
+    }
+
+    /**
+     * Descend au niveau suivant, positionné sur la première clé enfant de la clé courante.
+     */
+    void open() {
+        depth++;
+        switch (depth) {
+            case 0 -> {
+                position[0] = 0;
+                end[0] = trie.keys0.length;
+            }
+            case 1 -> {
+                position[1] = trie.starts1[position[0]];
+                end[1] = trie.starts1[position[0] + 1];
+            }
+            default -> {
+                position[2] = trie.starts2[position[1]];
+                end[2] = trie.starts2[position[1] + 1];
+            }
+        }
+    }
+
+    /**
+     * Remonte au niveau précédent, qui retrouve sa clé courante.
+     */
+    void up() {
+        depth--;
+    }
+
+    /**
+     * @return true si toutes les clés du niveau courant ont été parcourues
+     */
+    boolean atEnd() {
+        return position[depth] >= end[depth];
+    }
+
+    /**
+     * @return la clé courante
+     */
+    int key() {
+        return keys()[position[depth]];
+    }
+
+    /**
+     * Avance à la clé suivante du niveau courant.
+     */
+    void next() {
+        position[depth]++;
+    }
+
+    /**
+     * Avance jusqu'à la première clé supérieure ou égale à une valeur (ou jusqu'à la fin du niveau).
+     *
+     * @param key la valeur recherchée
+     */
+    void seek(int key) {
+        position[depth] = SortedIntersection.lowerBound(keys(), position[depth], end[depth], key);
+    }
+
+    /**
+     * @return le nombre de clés restant à parcourir au niveau courant
+     */
+    int remaining() {
+        return end[depth] - position[depth];
+    }
+
+    /**
+     * Copie les clés suivantes du niveau courant dans un bloc et avance d'autant.
+     *
+     * @param block le bloc à remplir
+     * @param max   le nombre maximal de clés à copier
+     * @return le nombre de clés copiées
+     */
+    int fill(int[] block, int max) {
+        int count = Math.min(max, end[depth] - position[depth]);
+        System.arraycopy(keys(), position[depth], block, 0, count);
+        position[depth] += count;
+        return count;
+    }
+
+    /**
+     * Ne conserve dans un bloc trié que les valeurs présentes au niveau courant (voir {@link SortedIntersection}).
+     * L'itérateur avance jusqu'à la dernière valeur du bloc : les blocs suivants doivent contenir des valeurs plus grandes.
+     *
+     * @param block le bloc de valeurs triées, compacté sur place
+     * @param size  le nombre de valeurs du bloc
+     * @return le nombre de valeurs conservées
+     */
+    int retain(int[] block, int size) {
+        if (size == 0) return 0;
+        // Seule la portion de la liste couverte par le bloc est intersectée : son rapport de taille
+        // avec le bloc détermine la stratégie
+        int[] keys = keys();
+        int last = block[size - 1];
+        int from = position[depth];
+        int bound = SortedIntersection.lowerBound(keys, from, end[depth], last);
+        int to = bound < end[depth] && keys[bound] == last ? bound + 1 : bound;
+        int kept = SortedIntersection.retain(block, size, keys, from, to);
+        position[depth] = bound;
+        return kept;
+    }
+
+    private int[] keys() {
+        return switch (depth) {
+            case 0 -> trie.keys0;
+            case 1 -> trie.keys1;
+            default -> trie.keys2;
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package qengine.storage;
+
+/**
+ * Curseur paresseux sur les triplets encodés (identifiants du dictionnaire) correspondant à un motif.
+ * Chaque appel à {@link #next()} avance d'un triplet sans matérialiser le reste du parcours,
+ * ce qui permet d'interrompre l'évaluation dès que suffisamment de réponses ont été produites.
+ */
+abstract class TripleCursor {
+
+    // Triplet courant, dans l'ordre (sujet, prédicat, objet)
+    protected final int[] triple = new int[3];
+
+    /**
+     * Avance au triplet suivant.
+     *
+     * @return true si un triplet est disponible dans {@link #triple()}, false si le parcours est terminé
+     */
+    abstract boolean next();
+
+    /**
+     * Retourne le triplet courant. Le tableau est réutilisé d'un appel à l'autre.
+     *
+     * @return le triplet courant (sujet, prédicat, objet)
+     */
+    final int[] triple() {
+        return triple;
+    }
+}
@@ -0,0 +1,140 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.ComparisonFilter;
+import qengine.model.TermValueComparator;
+import qengine.model.TermValueComparator.ValueKey;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Intervalle de valeurs obtenu en combinant les filtres de comparaison portant sur une même variable.
+ * Utilisé pour transformer les FILTER en parcours d'intervalle sur les objets triés d'un prédicat.
+ * Les filtres {@code !=} ne sont pas représentables par un intervalle et restent à appliquer après coup.
+ */
+final class ValueRange {
+    private ValueKey lower;
+    private boolean lowerInclusive;
+    private ValueKey upper;
+    private boolean upperInclusive;
+
+    /**
+     * Construit les intervalles de chaque variable filtrée.
+     *
+     * @param filters les filtres de la requête
+     * @return l'intervalle de chaque variable ayant au moins un filtre {@code <, <=, >, >=, =}
+     */
+    static Map<Variable, ValueRange> fromFilters(List<ComparisonFilter> filters) {
+        Map<Variable, ValueRange> ranges = new HashMap<>();
+        for (ComparisonFilter filter : filters) {
+            if (filter.getOperator() == ComparisonFilter.Operator.NE) continue;
+            ranges.computeIfAbsent(filter.getVariable(), v -> new ValueRange()).restrict(filter);
+        }
+        return ranges;
+    }
+
+    /**
+     * Indique si un filtre est entièrement pris en compte par un intervalle.
+     *
+     * @param filter le filtre
+     * @return true si le filtre est couvert par l'intervalle de sa variable
+     */
+    static boolean isRangeFilter(ComparisonFilter filter) {
+        return filter.getOperator() != ComparisonFilter.Operator.NE;
+    }
+
+    /**
+     * Restreint l'intervalle avec un filtre de comparaison.
+     *
+     * @param filter le filtre à intégrer
+     */
+    private void restrict(ComparisonFilter filter) {
+        ValueKey key = TermValueComparator.keyOf(filter.getValue());
+        switch (filter.getOperator()) {
+            case LT -> restrictUpper(key, false);
+            case LE -> restrictUpper(key, true);
+            case GT -> restrictLower(key, false);
+            case GE -> restrictLower(key, true);
+            case EQ -> {
+                restrictLower(key, true);
+                restrictUpper(key, true);
+            }
+            default -> throw new IllegalArgumentException("Le filtre " + filter + " ne définit pas un intervalle.");
+        }
+    }
+
+    private void restrictLower(ValueKey key, boolean inclusive) {
+        int cmp = lower == null ? 1 : key.compareTo(lower);
+        if (cmp > 0 || (cmp == 0 && !inclusive)) {
+            lower = key;
+            lowerInclusive = inclusive;
+        }
+    }
+
+    private void restrictUpper(ValueKey key, boolean inclusive) {
+        int cmp = upper == null ? -1 : key.compareTo(upper);
+        if (cmp < 0 || (cmp == 0 && !inclusive)) {
+            upper = key;
+            upperInclusive = inclusive;
+        }
+    }
+
+    /**
+     * Vérifie si une valeur appartient à l'intervalle.
+     *
+     * @param key la clé de la valeur
+     * @return true si la valeur est dans l'intervalle
+     */
+    boolean contains(ValueKey key) {
+        if (lower != null) {
+            int cmp = key.compareTo(lower);
+            if (cmp < 0 || (cmp == 0 && !lowerInclusive)) return false;
+        }
+        if (upper != null) {
+            int cmp = key.compareTo(upper);
+            if (cmp > 0 || (cmp == 0 && !upperInclusive)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Retourne la première position de l'intervalle dans un tableau de clés triées.
+     *
+     * @param keys les clés triées
+     * @return l'indice du premier élément de l'intervalle
+     */
+    int fromIndex(ValueKey[] keys) {
+        return lower == null ? 0 : boundary(keys, lower, !lowerInclusive);
+    }
+
+    /**
+     * Retourne la position qui suit le dernier élément de l'intervalle dans un tableau de clés triées.
+     *
+     * @param keys les clés triées
+     * @return l'indice suivant le dernier élément de l'intervalle
+     */
+    int toIndex(ValueKey[] keys) {
+        return upper == null ? keys.length : boundary(keys, upper, upperInclusive);
+    }
+
+    /**
+     * Recherche dichotomique du premier indice dont la clé est supérieure (strict)
+     * ou supérieure ou égale (non strict) à la clé donnée.
+     */
+    private static int boundary(ValueKey[] keys, ValueKey key, boolean strict) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[mid].compareTo(key);
+            if (cmp < 0 || (strict && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
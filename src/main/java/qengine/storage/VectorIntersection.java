@@ -0,0 +1,47 @@
+package qengine.storage;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Intersection de listes triées par comparaison vectorielle (API Vector, module incubateur).
+ * Pour chaque valeur du bloc, la liste est parcourue par tranches de la largeur d'un vecteur jusqu'à la tranche
+ * dont la dernière clé n'est pas inférieure à la valeur ; la valeur est alors comparée en une instruction
+ * à toutes les clés de la tranche. Cette classe n'est chargée que si le module est disponible
+ * (voir {@link SortedIntersection#VECTOR_AVAILABLE}).
+ */
+final class VectorIntersection {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorIntersection() {
+    }
+
+    /**
+     * @see SortedIntersection#retain(int[], int, int[], int, int)
+     */
+    static int retain(int[] block, int size, int[] keys, int from, int to) {
+        int lanes = SPECIES.length();
+        int j = from;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int value = block[i];
+            while (j + lanes <= to && keys[j + lanes - 1] < value) {
+                j += lanes;
+            }
+            if (j + lanes <= to) {
+                // Toutes les clés avant j sont inférieures : la valeur, si elle est présente, est dans la tranche
+                IntVector slice = IntVector.fromArray(SPECIES, keys, j);
+                block[kept] = value;
+                kept += slice.eq(value).anyTrue() ? 1 : 0;
+            } else {
+                // Fin de liste plus courte qu'un vecteur
+                while (j < to && keys[j] < value) j++;
+                if (j == to) break;
+                block[kept] = value;
+                kept += keys[j] == value ? 1 : 0;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,148 @@
+package qengine.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal d'écriture anticipée, en ajout seul : une suite de lots, chacun écrit en une seule fois
+ * et éventuellement forcé sur le disque (groupe de validation). Un lot est précédé de sa longueur
+ * et de la somme de contrôle CRC-32C de son contenu.
+ * <pre>
+ * longueur (4 octets), CRC-32C (4 octets), contenu
+ * </pre>
+ * Après un arrêt brutal, le dernier lot peut être incomplet : la relecture s'arrête au premier lot
+ * tronqué ou corrompu, et le journal est coupé à cet endroit avant de recevoir de nouveaux lots.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+    /**
+     * Ouvre le journal en écriture, à la suite des lots existants.
+     * Le journal doit avoir été relu par {@link #replay(Path, Consumer)} s'il peut contenir un lot incomplet.
+     *
+     * @param file  le fichier du journal, créé s'il n'existe pas
+     * @param fsync si chaque lot doit être forcé sur le disque avant que {@link #append(ByteBuffer)} ne rende la main
+     * @throws IOException si le fichier ne peut pas être ouvert
+     */
+    public WriteAheadLog(Path file, boolean fsync) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.fsync = fsync;
+    }
+
+    /**
+     * Ajoute un lot au journal. Une fois la méthode terminée, le lot est dans le cache du système,
+     * et sur le disque si le journal a été ouvert avec fsync.
+     *
+     * @param batch le contenu du lot, de sa position à sa limite
+     * @throws IOException si l'écriture échoue
+     */
+    public void append(ByteBuffer batch) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(batch.duplicate());
+        header.clear();
+        header.putInt(batch.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] buffers = {header, batch};
+        while (header.hasRemaining() || batch.hasRemaining()) {
+            channel.write(buffers);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Force sur le disque les lots déjà écrits.
+     *
+     * @throws IOException si l'écriture échoue
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Vide le journal, une fois son contenu repris dans un instantané.
+     *
+     * @throws IOException si le fichier ne peut pas être tronqué
+     */
+    public void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    /**
+     * @return la taille du journal, en octets
+     * @throws IOException si la taille ne peut pas être lue
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Relit les lots complets d'un journal, dans l'ordre d'écriture, puis coupe le journal après le dernier d'entre eux.
+     *
+     * @param file    le fichier du journal ; s'il n'existe pas, aucun lot n'est relu
+     * @param visitor reçoit le contenu de chaque lot
+     * @return le nombre de lots relus
+     * @throws IOException si le fichier ne peut pas être lu
+     */
+    public static long replay(Path file, Consumer<ByteBuffer> visitor) throws IOException {
+        if (!Files.exists(file)) return 0;
+        long batches = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || position + HEADER_BYTES + length > size) break;
+
+                ByteBuffer batch = ByteBuffer.allocate(length);
+                readFully(channel, batch, position + HEADER_BYTES);
+                batch.flip();
+                CRC32C crc = new CRC32C();
+                crc.update(batch.duplicate());
+                if ((int) crc.getValue() != checksum) break;
+
+                visitor.accept(batch);
+                batches++;
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                // Lot interrompu par un arrêt brutal : il n'a jamais été validé
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+        return batches;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fin de journal inattendue");
+            }
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package qengine_concurrent.benchmark;
 
 import com.github.jsonldjava.shaded.com.google.common.collect.Iterators;
+import fr.boreal.model.query.api.Query;
 import qengine_concurrent.model.StarQuery;
+import qengine_concurrent.parser.QuerysetLoader;
 import qengine_concurrent.parser.RDFAtomParser;
-import qengine_concurrent.parser.StarQuerySparQLParser;
 import qengine_concurrent.storage.RDFHexaStore;
 
 import java.io.*;
@@ -11,6 +12,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class CleanQueryset {
 
@@ -38,33 +40,21 @@ public class CleanQueryset {
             throw new IllegalArgumentException("Le répertoire des fichiers queryset n'existe pas ou n'est pas un dossier.");
         }
 
-        File[] querysetFiles = dir.listFiles((d, name) -> name.endsWith(".queryset"));
-        if (querysetFiles == null) {
-            throw new IOException("Aucun fichier queryset trouvé dans le répertoire spécifié.");
-        }
-
         int totalQueries = 0;
         int totalDuplicates = 0;
 
-        for (File file : querysetFiles) {
+        for (Map.Entry<String, List<StarQuery>> file : loadQuerysets().entrySet()) {
             Set<StarQuery> uniqueQueries = new HashSet<>();
-            List<StarQuery> allQueries = new ArrayList<>();
-
-            try (StarQuerySparQLParser parser = new StarQuerySparQLParser(file.getAbsolutePath())) {
-                while (parser.hasNext()) {
-                    StarQuery query = (StarQuery) parser.next();
-                    allQueries.add(query);
-
-                    if (!uniqueQueries.add(query)) {
-                        System.out.println("Doublon détecté : " + query.getLabel());
-                        totalDuplicates++;
-                    }
 
+            for (StarQuery query : file.getValue()) {
+                if (!uniqueQueries.add(query)) {
+                    System.out.println("Doublon détecté : " + query.getLabel());
+                    totalDuplicates++;
                 }
             }
 
-            totalQueries += allQueries.size();
-            writeQueriesToFile(uniqueQueries, file.getName());
+            totalQueries += file.getValue().size();
+            writeQueriesToFile(uniqueQueries, file.getKey());
         }
 
         System.out.println("Nombre total de requêtes : " + totalQueries);
@@ -75,33 +65,30 @@ public class CleanQueryset {
 
     public void garderCinqPourcentDesRequeteZero() throws IOException {
         RDFHexaStore store = loadDataset(); // Charger les données du dataset
-        File[] querysetFiles = new File(querysetDirPath).listFiles((d, name) -> name.endsWith(".queryset"));
+        SortedMap<String, List<StarQuery>> querysets = loadQuerysets();
 
-        if (querysetFiles == null || querysetFiles.length == 0) {
+        if (querysets.isEmpty()) {
             throw new FileNotFoundException("Aucun fichier queryset trouvé dans : " + querysetDirPath);
         }
 
         List<StarQuery> zeroResponseQueries = new ArrayList<>();
-        Map<File, List<StarQuery>> fileToNonZeroQueries = new HashMap<>();
+        Map<String, List<StarQuery>> fileToNonZeroQueries = new HashMap<>();
 
         // Collecter toutes les requêtes zéro et non zéro
-        for (File file : querysetFiles) {
+        for (Map.Entry<String, List<StarQuery>> file : querysets.entrySet()) {
             List<StarQuery> nonZeroResponseQueries = new ArrayList<>();
 
-            try (StarQuerySparQLParser parser = new StarQuerySparQLParser(file.getAbsolutePath())) {
-                while (parser.hasNext()) {
-                    StarQuery query = (StarQuery) parser.next();
-                    long responseCount = Iterators.size(store.match(query)); // Compter les réponses
+            for (StarQuery query : file.getValue()) {
+                long responseCount = Iterators.size(store.match(query)); // Compter les réponses
 
-                    if (responseCount == 0) {
-                        zeroResponseQueries.add(query);
-                    } else {
-                        nonZeroResponseQueries.add(query);
-                    }
+                if (responseCount == 0) {
+                    zeroResponseQueries.add(query);
+                } else {
+                    nonZeroResponseQueries.add(query);
                 }
             }
 
-            fileToNonZeroQueries.put(file, nonZeroResponseQueries);
+            fileToNonZeroQueries.put(file.getKey(), nonZeroResponseQueries);
         }
 
         System.out.println("Total des requêtes zéro collectées : " + zeroResponseQueries.size());
@@ -115,7 +102,7 @@ public class CleanQueryset {
         List<StarQuery> selectedZeroQueries = zeroResponseQueries.subList(0, Math.min(zeroToKeep, zeroResponseQueries.size()));
 
         // Réécrire les fichiers
-        for (File file : querysetFiles) {
+        for (String file : querysets.keySet()) {
             List<StarQuery> finalQueries = new ArrayList<>(fileToNonZeroQueries.get(file));
 
             // Ajouter les requêtes zéro sélectionnées appartenant à ce fichier
@@ -125,11 +112,25 @@ public class CleanQueryset {
                 }
             }
 
-            writeQueriesToFile(finalQueries, file.getName());
+            writeQueriesToFile(finalQueries, file);
         }
     }
 
 
+    /**
+     * Charge en parallèle les fichiers queryset du répertoire courant (voir {@link QuerysetLoader}).
+     *
+     * @return les requêtes de chaque fichier, triées par nom de fichier
+     */
+    private SortedMap<String, List<StarQuery>> loadQuerysets() throws IOException {
+        SortedMap<String, List<StarQuery>> querysets = new TreeMap<>();
+        for (Map.Entry<String, List<Query>> file : QuerysetLoader.loadDirectory(Paths.get(querysetDirPath),
+                name -> name, ForkJoinPool.commonPool()).entrySet()) {
+            querysets.put(file.getKey(), file.getValue().stream().map(StarQuery.class::cast).toList());
+        }
+        return querysets;
+    }
+
     private RDFHexaStore loadDataset() throws IOException {
         RDFHexaStore store = new RDFHexaStore();
         File datasetFile = new File(datasetPath);
@@ -0,0 +1,154 @@
+package qengine_concurrent.parser;
+
+import fr.boreal.model.query.api.Query;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Chargement parallèle de jeux de requêtes (fichiers {@code .queryset}) : les fichiers sont lus et analysés
+ * en même temps, et les gros fichiers sont découpés entre deux requêtes en morceaux analysés séparément.
+ * Les requêtes sont rendues dans l'ordre des noms de fichiers, puis dans l'ordre du texte, quel que soit
+ * l'ordre d'achèvement des analyses.
+ */
+public final class QuerysetLoader {
+
+    // Taille, en caractères, au-delà de laquelle un fichier est découpé
+    static final int CHUNK_CHARS = 1 << 18;
+
+    private QuerysetLoader() {
+    }
+
+    /**
+     * Charge les fichiers {@code .queryset} d'un répertoire et regroupe leurs requêtes par catégorie.
+     *
+     * @param directory  le répertoire
+     * @param categoryOf la catégorie d'un fichier, à partir de son nom
+     * @param executor   l'exécuteur des lectures et des analyses
+     * @return les requêtes de chaque catégorie, triées par catégorie
+     * @throws IOException si le répertoire ou un fichier ne peut pas être lu
+     * @throws RuntimeException si une requête ne peut pas être analysée
+     */
+    public static SortedMap<String, List<Query>> loadDirectory(Path directory, Function<String, String> categoryOf,
+                                                               Executor executor) throws IOException {
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(directory)) {
+            files = entries.filter(file -> file.getFileName().toString().endsWith(".queryset")).sorted().toList();
+        }
+
+        List<CompletableFuture<List<Query>>> loads = new ArrayList<>();
+        for (Path file : files) {
+            loads.add(loadAsync(file, CHUNK_CHARS, executor));
+        }
+        SortedMap<String, List<Query>> categories = new TreeMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            categories.computeIfAbsent(categoryOf.apply(files.get(i).getFileName().toString()), k -> new ArrayList<>())
+                    .addAll(join(loads.get(i)));
+        }
+        return categories;
+    }
+
+    /**
+     * Charge un fichier de requêtes, en analysant ses morceaux en parallèle.
+     *
+     * @param file     le fichier
+     * @param executor l'exécuteur des analyses
+     * @return les requêtes, dans l'ordre du fichier
+     * @throws IOException si le fichier ne peut pas être lu
+     * @throws RuntimeException si une requête ne peut pas être analysée
+     */
+    public static List<Query> load(Path file, Executor executor) throws IOException {
+        return load(file, CHUNK_CHARS, executor);
+    }
+
+    static List<Query> load(Path file, int chunkChars, Executor executor) throws IOException {
+        return join(loadAsync(file, chunkChars, executor));
+    }
+
+    /**
+     * Lit un fichier sur l'exécuteur, puis analyse chacun de ses morceaux sur l'exécuteur,
+     * sans bloquer de thread en attendant les morceaux.
+     */
+    private static CompletableFuture<List<Query>> loadAsync(Path file, int chunkChars, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> split(read(file), chunkChars), executor).thenCompose(chunks -> {
+            List<CompletableFuture<List<Query>>> parses = new ArrayList<>();
+            for (List<String> chunk : chunks) {
+                parses.add(CompletableFuture.supplyAsync(() -> parse(chunk), executor));
+            }
+            return CompletableFuture.allOf(parses.toArray(CompletableFuture[]::new)).thenApply(done -> {
+                List<Query> queries = new ArrayList<>();
+                for (CompletableFuture<List<Query>> parse : parses) {
+                    queries.addAll(parse.join());
+                }
+                return queries;
+            });
+        });
+    }
+
+    private static List<String> read(Path file) {
+        try {
+            return Files.readAllLines(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Query> parse(List<String> chunk) {
+        List<Query> queries = new ArrayList<>();
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(chunk)) {
+            while (parser.hasNext()) {
+                queries.add(parser.next());
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Attend un chargement et relance l'exception d'origine en cas d'échec.
+     */
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    /**
+     * Découpe les lignes d'un fichier de requêtes en morceaux d'environ {@code chunkChars} caractères.
+     * Chaque coupure suit une ligne qui termine une requête : analyser les morceaux l'un après l'autre
+     * donne les mêmes requêtes qu'analyser le fichier entier.
+     *
+     * @param lines      les lignes du fichier
+     * @param chunkChars la taille visée des morceaux
+     * @return les morceaux, dans l'ordre du fichier
+     */
+    static List<List<String>> split(List<String> lines, int chunkChars) {
+        List<List<String>> chunks = new ArrayList<>();
+        int start = 0;
+        long chars = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            chars += lines.get(i).length() + 1;
+            if (chars > chunkChars && StarQuerySparQLParser.endsQuery(lines.get(i)) && i + 1 < lines.size()) {
+                chunks.add(lines.subList(start, i + 1));
+                start = i + 1;
+                chars = 0;
+            }
+        }
+        chunks.add(lines.subList(start, lines.size()));
+        return chunks;
+    }
+}
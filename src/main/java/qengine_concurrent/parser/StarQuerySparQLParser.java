@@ -39,7 +39,16 @@ public class StarQuerySparQLParser implements Parser<Query> {
      * @throws IOException si le fichier ne peut pas être lu
      */
     public StarQuerySparQLParser(String sparqlFilePath) throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(sparqlFilePath));
+        this(Files.readAllLines(Paths.get(sparqlFilePath)));
+    }
+
+    /**
+     * Constructeur à partir des lignes d'un fichier de requêtes, ou d'un morceau de fichier coupé entre deux
+     * requêtes (voir {@link QuerysetLoader}).
+     *
+     * @param lines les lignes contenant les requêtes SparQL
+     */
+    StarQuerySparQLParser(List<String> lines) {
         this.queryIterator = lines.iterator();
     }
 
@@ -58,7 +67,7 @@ public class StarQuerySparQLParser implements Parser<Query> {
                     String line = queryIterator.next();
                     queryBuilder.append(line).append(System.lineSeparator());
 
-                    if (line.trim().endsWith("}")) {
+                    if (endsQuery(line)) {
                         break;
                     }
                 }
@@ -88,6 +97,14 @@ public class StarQuerySparQLParser implements Parser<Query> {
         return result;
     }
 
+    /**
+     * @param line la ligne
+     * @return true si la ligne termine une requête, c'est-à-dire se termine par une accolade fermante
+     */
+    static boolean endsQuery(String line) {
+        return line.trim().endsWith("}");
+    }
+
     /**
      * Parse une requête en étoile à partir d'une requête SparQL analysée.
      *
@@ -0,0 +1,136 @@
+package qengine_concurrent.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine_concurrent.model.RDFAtom;
+import qengine_concurrent.model.StarQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Requête en étoile encodée pour un HexaStore (voir {@link RDFHexaStore#encode(StarQuery)}).
+ * Les constantes sont traduites une seule fois en identifiants du dictionnaire (un identifiant est strictement
+ * positif) et les variables en indices, codés {@code -(indice + 1)} : l'évaluation parcourt les index sans
+ * manipuler de {@link Term}. Les atomes sont ordonnés du plus sélectif au moins sélectif.
+ * Une requête dont une constante est absente du dictionnaire est vide : son évaluation s'arrête immédiatement.
+ * <p>
+ * Une requête encodée est immuable et peut être évaluée par plusieurs threads à la fois.
+ */
+public final class EncodedStarQuery {
+
+    private final StarQuery query;
+    private final RDFHexaStore store;
+    private final List<Variable> variables = new ArrayList<>();
+    private final int[][] atoms;
+    private final boolean empty;
+    // Nombre de termes du dictionnaire au moment de l'encodage
+    private final int termCount;
+
+    /**
+     * Encode une requête.
+     *
+     * @param query     la requête en étoile
+     * @param store     l'HexaStore interrogé
+     * @param termCount le nombre de termes du dictionnaire avant l'encodage
+     */
+    EncodedStarQuery(StarQuery query, RDFHexaStore store, int termCount) {
+        this.query = query;
+        this.store = store;
+        this.termCount = termCount;
+
+        List<RDFAtom> rdfAtoms = query.getRdfAtoms();
+        int[][] encoded = new int[rdfAtoms.size()][];
+        boolean unknown = false;
+        for (int a = 0; a < encoded.length; a++) {
+            Term[] terms = rdfAtoms.get(a).getTerms();
+            encoded[a] = new int[3];
+            for (int i = 0; i < 3; i++) {
+                if (terms[i].isVariable()) {
+                    int slot = variables.indexOf((Variable) terms[i]);
+                    if (slot < 0) {
+                        slot = variables.size();
+                        variables.add((Variable) terms[i]);
+                    }
+                    encoded[a][i] = -(slot + 1);
+                } else {
+                    Integer id = store.idOf(terms[i]);
+                    if (id == null) {
+                        unknown = true;
+                        break;
+                    }
+                    encoded[a][i] = id;
+                }
+            }
+            if (unknown) break;
+        }
+        this.empty = unknown;
+
+        if (empty) {
+            this.atoms = new int[0][];
+        } else {
+            // Les atomes sont évalués du plus sélectif au moins sélectif : dans une requête en étoile,
+            // la variable centrale est liée dès le premier atome
+            long[] estimates = new long[encoded.length];
+            for (int a = 0; a < encoded.length; a++) {
+                estimates[a] = store.estimate(encoded[a]);
+            }
+            Integer[] order = new Integer[encoded.length];
+            Arrays.setAll(order, a -> a);
+            Arrays.sort(order, Comparator.comparingLong(a -> estimates[a]));
+            this.atoms = Arrays.stream(order).map(a -> encoded[a]).toArray(int[][]::new);
+        }
+    }
+
+    /**
+     * @return la requête en étoile encodée
+     */
+    public StarQuery query() {
+        return query;
+    }
+
+    /**
+     * @return true si une constante de la requête était absente du dictionnaire lors de l'encodage
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return les variables de la requête, dans l'ordre de leurs indices
+     */
+    public List<Variable> variables() {
+        return List.copyOf(variables);
+    }
+
+    /**
+     * @return les atomes encodés, dans l'ordre d'évaluation
+     */
+    int[][] atoms() {
+        return atoms;
+    }
+
+    /**
+     * @return l'HexaStore pour lequel la requête a été encodée
+     */
+    RDFHexaStore store() {
+        return store;
+    }
+
+    /**
+     * @return le nombre de termes du dictionnaire au moment de l'encodage
+     */
+    int termCount() {
+        return termCount;
+    }
+
+    /**
+     * @param slot l'indice d'une variable
+     * @return la variable
+     */
+    Variable variable(int slot) {
+        return variables.get(slot);
+    }
+}
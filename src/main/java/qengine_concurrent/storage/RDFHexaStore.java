@@ -2,41 +2,116 @@ package qengine_concurrent.storage;
 
 import fr.boreal.model.logicalElements.api.*;
 import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
-import org.apache.commons.collections4.BidiMap;
-import org.apache.commons.collections4.bidimap.DualHashBidiMap;
 import qengine_concurrent.model.RDFAtom;
 import qengine_concurrent.model.StarQuery;
 import qengine_concurrent.storage.RDFStorage;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 /**
  * Implémentation d'un HexaStore pour stocker des RDFAtom.
  * Cette classe utilise six index pour optimiser les recherches.
  * Les index sont basés sur les combinaisons (Sujet, Prédicat, Objet), (Sujet, Objet, Prédicat),
  * (Prédicat, Sujet, Objet), (Prédicat, Objet, Sujet), (Objet, Sujet, Prédicat) et (Objet, Prédicat, Sujet).
+ * <p>
+ * Les lectures et les écritures peuvent être concurrentes (contrôle de concurrence multi-versions) :
+ * chaque lecture s'épingle sur la dernière version publiée (voir {@link #snapshot()}) et ne voit que les triplets
+ * de cette version, même si des ajouts ont lieu pendant qu'elle parcourt les index. Les écritures sont sérialisées
+ * entre elles ; chacune insère ses triplets dans les index concurrents puis publie atomiquement une nouvelle version.
+ * Les lectures ne prennent aucun verrou et n'attendent jamais les écritures.
+ * <p>
+ * Les versions ne sont pas recopiées : un triplet récent porte l'époque de la version qui l'a publié, et cette
+ * marque est oubliée dès qu'aucune lecture épinglée sur une version antérieure n'est en cours.
  */
 public class RDFHexaStore implements RDFStorage {
 
-    private BidiMap<Integer, Term> dict = new DualHashBidiMap<>();
-    private Map<Integer, Map<Integer, Set<Integer>>> atomIndexesSPO = new HashMap<>();
-    private Map<Integer, Map<Integer, Set<Integer>>> atomIndexesSOP = new HashMap<>();
-    private Map<Integer, Map<Integer, Set<Integer>>> atomIndexesPSO = new HashMap<>();
-    private Map<Integer, Map<Integer, Set<Integer>>> atomIndexesPOS = new HashMap<>();
-    private Map<Integer, Map<Integer, Set<Integer>>> atomIndexesOSP = new HashMap<>();
-    private Map<Integer, Map<Integer, Set<Integer>>> atomIndexesOPS = new HashMap<>();
+    private final Map<Integer, Term> dict = new ConcurrentHashMap<>();
+    private final Map<Term, Integer> inverseDict = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Set<Integer>>> atomIndexesSPO = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Set<Integer>>> atomIndexesSOP = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Set<Integer>>> atomIndexesPSO = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Set<Integer>>> atomIndexesPOS = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Set<Integer>>> atomIndexesOSP = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Set<Integer>>> atomIndexesOPS = new ConcurrentHashMap<>();
     private int dictIndex = 1;
-    private int size = 0;
+
+    // Dernière version publiée
+    private volatile Version published = new Version(0, 0);
+    // Époque des triplets que des lectures épinglées sur une version antérieure ne doivent pas voir
+    private final Map<Triple, Long> epochs = new ConcurrentHashMap<>();
+    // Triplets marqués, dans l'ordre de leur époque
+    private final Queue<Triple> marked = new ConcurrentLinkedQueue<>();
+    // Nombre de lectures épinglées sur chaque époque
+    private final ConcurrentSkipListMap<Long, Integer> pins = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean reclaiming = new AtomicBoolean();
+    private final Object writeLock = new Object();
+
+    /**
+     * Version publiée du store.
+     *
+     * @param epoch l'époque de la version
+     * @param size  le nombre de triplets de la version
+     */
+    private record Version(long epoch, long size) {
+    }
+
+    /**
+     * Triplet encodé, clé des marques d'époque.
+     */
+    private record Triple(int subject, int predicate, int object) {
+    }
 
     @Override
     public boolean add(RDFAtom atom) {
+        synchronized (writeLock) {
+            Version version = published;
+            long epoch = version.epoch() + 1;
+            if (!insert(atom, epoch)) {
+                return false;
+            }
+            publish(new Version(epoch, version.size() + 1));
+            return true;
+        }
+    }
+
+    /**
+     * Ajoute des RDFAtom dans une seule nouvelle version : une lecture voit tous les RDFAtom ajoutés ou aucun.
+     *
+     * @param atoms les RDFAtom à ajouter
+     * @return true si au moins un RDFAtom a été ajouté, false s'ils sont tous déjà présents
+     */
+    @Override
+    public boolean addAll(Stream<RDFAtom> atoms) {
+        synchronized (writeLock) {
+            Version version = published;
+            long epoch = version.epoch() + 1;
+            long added = atoms.filter(atom -> insert(atom, epoch)).count();
+            if (added == 0) {
+                return false;
+            }
+            publish(new Version(epoch, version.size() + added));
+            return true;
+        }
+    }
+
+    /**
+     * Insère un triplet dans les index, marqué de l'époque de la version qui le publiera.
+     * Appelée sous le verrou d'écriture.
+     */
+    private boolean insert(RDFAtom atom, long epoch) {
         var terms = List.of(atom.getTripleSubject(), atom.getTriplePredicate(), atom.getTripleObject());
         Integer[] indexes = new Integer[3];
         for (int i = 0; i < 3; i++) {
-            if (dict.containsValue(terms.get(i))) {
-                indexes[i] = dict.inverseBidiMap().get(terms.get(i));
-            } else {
+            indexes[i] = inverseDict.get(terms.get(i));
+            if (indexes[i] == null) {
+                // Le terme est lisible par son index avant d'être publié dans la table inverse
                 dict.put(dictIndex, terms.get(i));
+                inverseDict.put(terms.get(i), dictIndex);
                 indexes[i] = dictIndex;
                 dictIndex++;
             }
@@ -47,7 +122,10 @@ public class RDFHexaStore implements RDFStorage {
             return false;
         }
 
-        size++;
+        // La marque précède l'insertion : une lecture ne trouve jamais le triplet sans son époque
+        Triple triple = new Triple(indexes[0], indexes[1], indexes[2]);
+        epochs.put(triple, epoch);
+        marked.add(triple);
 
         // S = 0 | P = 1 | O = 2
         addIndex(atomIndexesSPO, indexes[0], indexes[1], indexes[2]);
@@ -60,13 +138,160 @@ public class RDFHexaStore implements RDFStorage {
         return true;
     }
 
+    private void publish(Version version) {
+        published = version;
+        reclaim();
+    }
+
+    /**
+     * Oublie les marques d'époque qu'aucune lecture en cours ou future ne peut plus exclure,
+     * c'est-à-dire celles qui ne dépassent pas la plus ancienne époque épinglée.
+     * Un seul thread à la fois s'en charge ; les autres n'attendent pas, et celui qui s'en charge
+     * recommence si l'horizon a avancé entre-temps.
+     */
+    private void reclaim() {
+        while (reclaiming.compareAndSet(false, true)) {
+            long horizon = horizon();
+            try {
+                Triple triple;
+                while ((triple = marked.peek()) != null && epochs.get(triple) <= horizon) {
+                    epochs.remove(triple);
+                    marked.poll();
+                }
+            } finally {
+                reclaiming.set(false);
+            }
+            if (horizon() == horizon) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return la plus ancienne époque épinglée, ou celle de la dernière version publiée
+     */
+    private long horizon() {
+        Map.Entry<Long, Integer> oldest = pins.firstEntry();
+        return oldest == null ? published.epoch() : oldest.getKey();
+    }
+
+    /**
+     * Épingle la dernière version publiée. Les lectures faites à travers l'instantané voient toutes cette version,
+     * quels que soient les ajouts ultérieurs ; l'instantané doit être fermé pour que ses marques soient oubliées.
+     *
+     * @return l'instantané de la dernière version publiée
+     */
+    public Snapshot snapshot() {
+        while (true) {
+            Version version = published;
+            pins.merge(version.epoch(), 1, Integer::sum);
+            // Une publication intercalée a pu oublier des marques avant de voir l'épinglage : on recommence
+            if (published == version) {
+                return new Snapshot(version);
+            }
+            unpin(version.epoch());
+        }
+    }
+
+    /**
+     * @return le nombre de triplets dont la marque d'époque n'a pas encore été oubliée
+     */
+    int markedCount() {
+        return epochs.size();
+    }
+
+    private void unpin(long epoch) {
+        pins.computeIfPresent(epoch, (e, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Lecture épinglée sur une version du store.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private final Version version;
+        private boolean closed = false;
+
+        private Snapshot(Version version) {
+            this.version = version;
+        }
+
+        /**
+         * @return l'époque de la version épinglée
+         */
+        public long epoch() {
+            return version.epoch();
+        }
+
+        /**
+         * @return le nombre de triplets de la version épinglée
+         */
+        public long size() {
+            return version.size();
+        }
+
+        /**
+         * @param atom l'atome à matcher
+         * @return les substitutions de l'atome dans la version épinglée
+         */
+        public Iterator<Substitution> match(RDFAtom atom) {
+            return RDFHexaStore.this.match(atom, version.epoch());
+        }
+
+        /**
+         * @param query la requête en étoile à matcher
+         * @return les réponses de la requête dans la version épinglée
+         */
+        public Iterator<Substitution> match(StarQuery query) {
+            return RDFHexaStore.this.match(query, version.epoch());
+        }
+
+        /**
+         * @param query la requête encodée pour ce store
+         * @return les réponses de la requête dans la version épinglée
+         */
+        public Iterator<Substitution> match(EncodedStarQuery query) {
+            return RDFHexaStore.this.match(query, version.epoch());
+        }
+
+        /**
+         * @return les atomes de la version épinglée
+         */
+        public List<Atom> getAtoms() {
+            return RDFHexaStore.this.getAtoms(version.epoch());
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unpin(version.epoch());
+                reclaim();
+            }
+        }
+    }
+
+    /**
+     * Indique si un triplet présent dans les index appartient à la version d'une époque donnée.
+     */
+    private boolean visible(int subject, int predicate, int object, long epoch) {
+        if (epochs.isEmpty()) return true;
+        Long added = epochs.get(new Triple(subject, predicate, object));
+        return added == null || added <= epoch;
+    }
+
     @Override
     public long size() {
-        return size;
+        return published.size();
     }
 
     @Override
     public Iterator<Substitution> match(RDFAtom atom) {
+        try (Snapshot snapshot = snapshot()) {
+            return snapshot.match(atom);
+        }
+    }
+
+    private Iterator<Substitution> match(RDFAtom atom, long epoch) {
         Term subject = atom.getTripleSubject();
         Term predicate = atom.getTriplePredicate();
         Term object = atom.getTripleObject();
@@ -78,8 +303,8 @@ public class RDFHexaStore implements RDFStorage {
         switch (matchAtomCase) {
             case CONST_CONST_CONST -> {}
             case CONST_CONST_VAR -> {
-                Integer subjectIndex = dict.inverseBidiMap().get(subject);
-                Integer predicateIndex = dict.inverseBidiMap().get(predicate);
+                Integer subjectIndex = inverseDict.get(subject);
+                Integer predicateIndex = inverseDict.get(predicate);
 
                 // Vérifie que les index existent dans atomIndexesSPO
                 if (subjectIndex != null && predicateIndex != null &&
@@ -91,6 +316,7 @@ public class RDFHexaStore implements RDFStorage {
 
                     // Créer des substitutions pour chaque objet trouvé
                     for (Integer objectIndex : objectIndexes) {
+                        if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                         Term matchedObject = dict.get(objectIndex);
                         Substitution substitution = new SubstitutionImpl();
                         substitution.add((Variable) object, matchedObject); // Associer la variable objet avec la valeur trouvée
@@ -99,8 +325,8 @@ public class RDFHexaStore implements RDFStorage {
                 }
             }
             case CONST_VAR_CONST -> {
-                Integer subjectIndex = dict.inverseBidiMap().get(subject);
-                Integer objectIndex = dict.inverseBidiMap().get(object);
+                Integer subjectIndex = inverseDict.get(subject);
+                Integer objectIndex = inverseDict.get(object);
 
                 // Vérifie que les index existent dans atomIndexesSOP
                 if (subjectIndex != null && objectIndex != null &&
@@ -112,6 +338,7 @@ public class RDFHexaStore implements RDFStorage {
 
                     // Créer des substitutions pour chaque prédicat trouvé
                     for (Integer predicateIndex : predicateIndexes) {
+                        if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                         Term matchedPredicate = dict.get(predicateIndex);
                         Substitution substitution = new SubstitutionImpl();
                         substitution.add((Variable) predicate, matchedPredicate); // Associer la variable prédicat avec la valeur trouvée
@@ -120,7 +347,7 @@ public class RDFHexaStore implements RDFStorage {
                 }
             }
             case CONST_VAR_VAR -> {
-                Integer subjectIndex = dict.inverseBidiMap().get(subject);
+                Integer subjectIndex = inverseDict.get(subject);
 
                 // Vérifie que l'index existe dans atomIndexesSPO pour le sujet donné
                 if (subjectIndex != null && atomIndexesSPO.containsKey(subjectIndex)) {
@@ -133,6 +360,7 @@ public class RDFHexaStore implements RDFStorage {
 
                         // Parcourir tous les objets pour chaque prédicat
                         for (Integer objectIndex : objectIndexes) {
+                            if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                             Term matchedPredicate = dict.get(predicateIndex);
                             Term matchedObject = dict.get(objectIndex);
 
@@ -146,8 +374,8 @@ public class RDFHexaStore implements RDFStorage {
                 }
             }
             case VAR_CONST_CONST -> {
-                Integer predicateIndex = dict.inverseBidiMap().get(predicate);
-                Integer objectIndex = dict.inverseBidiMap().get(object);
+                Integer predicateIndex = inverseDict.get(predicate);
+                Integer objectIndex = inverseDict.get(object);
 
                 // Vérifie que les index existent dans atomIndexesPOS
                 if (predicateIndex != null && objectIndex != null &&
@@ -159,6 +387,7 @@ public class RDFHexaStore implements RDFStorage {
 
                     // Créer des substitutions pour chaque sujet trouvé
                     for (Integer subjectIndex : subjectIndexes) {
+                        if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                         Term matchedSubject = dict.get(subjectIndex);
                         Substitution substitution = new SubstitutionImpl();
                         substitution.add((Variable) subject, matchedSubject); // Associer la variable sujet avec la valeur trouvée
@@ -167,7 +396,7 @@ public class RDFHexaStore implements RDFStorage {
                 }
             }
             case VAR_CONST_VAR -> {
-                Integer predicateIndex = dict.inverseBidiMap().get(predicate);
+                Integer predicateIndex = inverseDict.get(predicate);
 
                 // Vérifie que l'index existe dans atomIndexesPSO pour le prédicat donné
                 if (predicateIndex != null && atomIndexesPSO.containsKey(predicateIndex)) {
@@ -180,6 +409,7 @@ public class RDFHexaStore implements RDFStorage {
 
                         // Parcourir tous les objets pour chaque sujet
                         for (Integer objectIndex : objectIndexes) {
+                            if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                             Term matchedSubject = dict.get(subjectIndex);
                             Term matchedObject = dict.get(objectIndex);
 
@@ -193,7 +423,7 @@ public class RDFHexaStore implements RDFStorage {
                 }
             }
             case VAR_VAR_CONST -> {
-                Integer objectIndex = dict.inverseBidiMap().get(object);
+                Integer objectIndex = inverseDict.get(object);
 
                 // Vérifie que l'index existe dans atomIndexesOSP pour l'objet donné
                 if (objectIndex != null && atomIndexesOSP.containsKey(objectIndex)) {
@@ -206,6 +436,7 @@ public class RDFHexaStore implements RDFStorage {
 
                         // Parcourir tous les prédicats pour chaque sujet
                         for (Integer predicateIndex : predicateIndexes) {
+                            if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                             Term matchedSubject = dict.get(subjectIndex);
                             Term matchedPredicate = dict.get(predicateIndex);
 
@@ -231,6 +462,7 @@ public class RDFHexaStore implements RDFStorage {
 
                         // Parcourir tous les objets pour chaque prédicat
                         for (Integer objectIndex : predicateEntry.getValue()) {
+                            if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                             Term matchedObject = dict.get(objectIndex);
 
                             // Créer une substitution pour chaque triplet (sujet, prédicat, objet) trouvé
@@ -251,26 +483,219 @@ public class RDFHexaStore implements RDFStorage {
 
     @Override
     public Iterator<Substitution> match(StarQuery q) {
+        try (Snapshot snapshot = snapshot()) {
+            return snapshot.match(q);
+        }
+    }
+
+    private Iterator<Substitution> match(StarQuery q, long epoch) {
+        return match(encode(q), epoch);
+    }
+
+    /**
+     * Encode une requête en étoile pour l'évaluer plusieurs fois : ses constantes sont traduites en identifiants
+     * et ses atomes ordonnés une seule fois (voir {@link EncodedStarQuery}).
+     *
+     * @param query la requête en étoile
+     * @return la requête encodée
+     */
+    public EncodedStarQuery encode(StarQuery query) {
+        return new EncodedStarQuery(query, this, inverseDict.size());
+    }
+
+    /**
+     * Évalue une requête encodée dans la dernière version publiée.
+     *
+     * @param query la requête encodée pour ce store
+     * @return un itérateur de substitutions décrivant les réponses à la requête
+     * @throws IllegalArgumentException si la requête a été encodée pour un autre store
+     */
+    public Iterator<Substitution> match(EncodedStarQuery query) {
+        try (Snapshot snapshot = snapshot()) {
+            return snapshot.match(query);
+        }
+    }
+
+    /**
+     * Évalue une requête encodée dans l'espace des identifiants : les atomes sont parcourus en profondeur,
+     * chacun étant restreint par les variables déjà liées, et seules les réponses complètes sont traduites
+     * en substitutions sur les variables de la requête.
+     */
+    private Iterator<Substitution> match(EncodedStarQuery query, long epoch) {
+        if (query.store() != this) {
+            throw new IllegalArgumentException("La requête a été encodée pour un autre store.");
+        }
+        if (query.isEmpty()) {
+            if (query.termCount() == inverseDict.size()) {
+                return Collections.emptyIterator();
+            }
+            // Des termes ont été ajoutés depuis l'encodage : la constante inconnue est peut-être apparue
+            query = encode(query.query());
+            if (query.isEmpty()) {
+                return Collections.emptyIterator();
+            }
+        }
+
+        int[][] atoms = query.atoms();
+        int[] binding = new int[query.variables().size()];
         Set<Substitution> substitutions = new HashSet<>();
+        EncodedStarQuery encoded = query;
+        join(atoms, 0, binding, epoch, () -> {
+            Substitution substitution = new SubstitutionImpl();
+            for (int slot = 0; slot < binding.length; slot++) {
+                substitution.add(encoded.variable(slot), dict.get(binding[slot]));
+            }
+            substitutions.add(substitution);
+        });
+        return substitutions.iterator();
+    }
 
-        for (RDFAtom atom : q.getRdfAtoms()) {
-            Iterator<Substitution> matchIterator = match(atom);
-            Set<Substitution> intersectedSubstitutions = new HashSet<>();
+    /**
+     * Prolonge une liaison partielle par les triplets visibles de l'atome d'une profondeur donnée.
+     * Une variable non liée vaut 0, les identifiants du dictionnaire étant strictement positifs.
+     */
+    private void join(int[][] atoms, int depth, int[] binding, long epoch, Runnable answer) {
+        if (depth == atoms.length) {
+            answer.run();
+            return;
+        }
+        int[] atom = atoms[depth];
+        int[] pattern = new int[3];
+        // Indice de chaque variable libre à l'entrée dans l'atome, -1 pour une constante ou une variable liée
+        int[] free = new int[3];
+        for (int i = 0; i < 3; i++) {
+            pattern[i] = atom[i] > 0 ? atom[i] : binding[-atom[i] - 1];
+            free[i] = pattern[i] == 0 ? -atom[i] - 1 : -1;
+        }
+        forEachTriple(pattern[0], pattern[1], pattern[2], epoch, (s, p, o) -> {
+            if (bind(free[0], s, binding) && bind(free[1], p, binding) && bind(free[2], o, binding)) {
+                join(atoms, depth + 1, binding, epoch, answer);
+            }
+            for (int slot : free) {
+                if (slot >= 0) binding[slot] = 0;
+            }
+        });
+    }
 
-            while (matchIterator.hasNext()) {
-                Substitution substitution = matchIterator.next();
-                if (substitutions.contains(substitution) || q.getRdfAtoms().getFirst().equals(atom)) {
-                    intersectedSubstitutions.add(substitution);
+    /**
+     * Lie une variable libre. Une variable répétée dans l'atome doit recevoir la même valeur à chaque position.
+     *
+     * @return false si la variable est déjà liée à une autre valeur
+     */
+    private static boolean bind(int slot, int value, int[] binding) {
+        if (slot < 0) return true;
+        if (binding[slot] != 0 && binding[slot] != value) return false;
+        binding[slot] = value;
+        return true;
+    }
+
+    /**
+     * Visiteur de triplets encodés.
+     */
+    @FunctionalInterface
+    private interface TripleVisitor {
+        void visit(int subject, int predicate, int object);
+    }
+
+    /**
+     * Parcourt les triplets visibles correspondant à un motif encodé, dans l'index dont le préfixe
+     * correspond aux positions fixées.
+     *
+     * @param s       l'identifiant du sujet, ou 0 s'il est libre
+     * @param p       l'identifiant du prédicat, ou 0 s'il est libre
+     * @param o       l'identifiant de l'objet, ou 0 s'il est libre
+     * @param epoch   l'époque de la version lue
+     * @param visitor le visiteur des triplets
+     */
+    private void forEachTriple(int s, int p, int o, long epoch, TripleVisitor visitor) {
+        if (s != 0 && p != 0) {
+            Set<Integer> objects = atomIndexesSPO.getOrDefault(s, Map.of()).get(p);
+            if (objects == null) return;
+            if (o != 0) {
+                if (objects.contains(o) && visible(s, p, o, epoch)) visitor.visit(s, p, o);
+                return;
+            }
+            for (int object : objects) {
+                if (visible(s, p, object, epoch)) visitor.visit(s, p, object);
+            }
+        } else if (s != 0 && o != 0) {
+            for (int predicate : atomIndexesSOP.getOrDefault(s, Map.of()).getOrDefault(o, Set.of())) {
+                if (visible(s, predicate, o, epoch)) visitor.visit(s, predicate, o);
+            }
+        } else if (p != 0 && o != 0) {
+            for (int subject : atomIndexesPOS.getOrDefault(p, Map.of()).getOrDefault(o, Set.of())) {
+                if (visible(subject, p, o, epoch)) visitor.visit(subject, p, o);
+            }
+        } else if (s != 0) {
+            for (Map.Entry<Integer, Set<Integer>> entry : atomIndexesSPO.getOrDefault(s, Map.of()).entrySet()) {
+                for (int object : entry.getValue()) {
+                    if (visible(s, entry.getKey(), object, epoch)) visitor.visit(s, entry.getKey(), object);
+                }
+            }
+        } else if (p != 0) {
+            for (Map.Entry<Integer, Set<Integer>> entry : atomIndexesPSO.getOrDefault(p, Map.of()).entrySet()) {
+                for (int object : entry.getValue()) {
+                    if (visible(entry.getKey(), p, object, epoch)) visitor.visit(entry.getKey(), p, object);
+                }
+            }
+        } else if (o != 0) {
+            for (Map.Entry<Integer, Set<Integer>> entry : atomIndexesOSP.getOrDefault(o, Map.of()).entrySet()) {
+                for (int predicate : entry.getValue()) {
+                    if (visible(entry.getKey(), predicate, o, epoch)) visitor.visit(entry.getKey(), predicate, o);
+                }
+            }
+        } else {
+            for (Map.Entry<Integer, Map<Integer, Set<Integer>>> subjectEntry : atomIndexesSPO.entrySet()) {
+                for (Map.Entry<Integer, Set<Integer>> entry : subjectEntry.getValue().entrySet()) {
+                    for (int object : entry.getValue()) {
+                        if (visible(subjectEntry.getKey(), entry.getKey(), object, epoch)) {
+                            visitor.visit(subjectEntry.getKey(), entry.getKey(), object);
+                        }
+                    }
                 }
             }
-            substitutions = intersectedSubstitutions;
         }
+    }
 
-        return substitutions.iterator();
+    /**
+     * Retourne l'identifiant d'un terme dans le dictionnaire.
+     *
+     * @param term le terme
+     * @return l'identifiant du terme, ou null s'il est absent
+     */
+    Integer idOf(Term term) {
+        return inverseDict.get(term);
+    }
+
+    /**
+     * Estime le nombre de triplets correspondant à un atome encodé en ne tenant compte que de ses constantes.
+     *
+     * @param atom l'atome encodé, dont les variables ont un code négatif
+     * @return le nombre estimé de triplets
+     */
+    long estimate(int[] atom) {
+        int s = Math.max(atom[0], 0);
+        int p = Math.max(atom[1], 0);
+        int o = Math.max(atom[2], 0);
+        if (s != 0 && p != 0 && o != 0) return 1;
+        if (s != 0 && p != 0) return atomIndexesSPO.getOrDefault(s, Map.of()).getOrDefault(p, Set.of()).size();
+        if (s != 0 && o != 0) return atomIndexesSOP.getOrDefault(s, Map.of()).getOrDefault(o, Set.of()).size();
+        if (p != 0 && o != 0) return atomIndexesPOS.getOrDefault(p, Map.of()).getOrDefault(o, Set.of()).size();
+        // Une seule constante : le nombre de valeurs du deuxième niveau minore le nombre de triplets
+        if (s != 0) return atomIndexesSPO.getOrDefault(s, Map.of()).size();
+        if (p != 0) return atomIndexesPSO.getOrDefault(p, Map.of()).size();
+        if (o != 0) return atomIndexesOSP.getOrDefault(o, Map.of()).size();
+        return published.size();
     }
 
     @Override
     public List<Atom> getAtoms() {
+        try (Snapshot snapshot = snapshot()) {
+            return snapshot.getAtoms();
+        }
+    }
+
+    private List<Atom> getAtoms(long epoch) {
         List<Atom> atoms = new ArrayList<>();
 
         for (Map.Entry<Integer, Map<Integer, Set<Integer>>> subjectEntry : atomIndexesSPO.entrySet()) {
@@ -282,6 +707,7 @@ public class RDFHexaStore implements RDFStorage {
                 Term predicate = dict.get(predicateIndex);
 
                 for (Integer objectIndex : predicateEntry.getValue()) {
+                    if (!visible(subjectIndex, predicateIndex, objectIndex, epoch)) continue;
                     Term object = dict.get(objectIndex);
 
                     // Créer un nouvel atome RDF avec le sujet, prédicat et objet récupérés
@@ -343,18 +769,9 @@ public class RDFHexaStore implements RDFStorage {
     }
 
     private void addIndex(Map<Integer, Map<Integer, Set<Integer>>> atomIndexes, int x, int y, int z) {
-        if (atomIndexes.containsKey(x)) {
-            if (atomIndexes.get(x).containsKey(y)) {
-                atomIndexes.get(x).get(y).add(z);
-            } else {
-                atomIndexes.get(x).put(y, new HashSet<>());
-                atomIndexes.get(x).get(y).add(z);
-            }
-        } else {
-            atomIndexes.put(x, new HashMap<>());
-            atomIndexes.get(x).put(y, new HashSet<>());
-            atomIndexes.get(x).get(y).add(z);
-        }
+        atomIndexes.computeIfAbsent(x, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(y, k -> ConcurrentHashMap.newKeySet())
+                .add(z);
     }
 
 }
@@ -104,7 +104,7 @@ class RDFHexaStoreBenchmarkTest {
     }
     @Test
     void testPreprocessing() throws IOException {
-        HashMap<String, List<StarQuery>> datasetQueries = Utils.getQueriesFromDir("data/queries");
+        SortedMap<String, List<StarQuery>> datasetQueries = Utils.getQueriesFromDir("data/queries");
         HashMap<String, List<RDFAtom>> datasetRdf = Utils.getRDFFromDir("data/rdf");
 
 
@@ -162,7 +162,7 @@ class RDFHexaStoreBenchmarkTest {
 
     @Test
     void benchmark() throws IOException {
-        HashMap<String, List<StarQuery>> datasetQueries = Utils.getQueriesFromDir(QUERIES_DIR);
+        SortedMap<String, List<StarQuery>> datasetQueries = Utils.getQueriesFromDir(QUERIES_DIR);
         HashMap<String, List<RDFAtom>> datasetRdf = Utils.getRDFFromDir(DATA_DIR);
 
         for (Map.Entry<String, List<StarQuery>> entryQuery: datasetQueries.entrySet()) {
@@ -0,0 +1,252 @@
+package qengine.distributed;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+import qengine.parser.RDFAtomParser;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.ShardedRDFStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du mode distribué : trois {@link WorkerNode} servent chacun une partition sur l'interface de bouclage,
+ * et les réponses du {@link Coordinator} doivent être celles d'un HexaStore unique.
+ */
+class CoordinatorTest {
+    private static final int WORKERS = 3;
+    private static final Literal<String> KNOWS = SameObjectTermFactory.instance().createOrGetLiteral("knows");
+    private static final Literal<String> AGE = SameObjectTermFactory.instance().createOrGetLiteral("age");
+    private static final Literal<String> PERSON_3 = SameObjectTermFactory.instance().createOrGetLiteral("person3");
+    private static final Literal<String> AGE_2 = SameObjectTermFactory.instance().createOrGetLiteral("age2");
+    private static final Variable VAR_X = SameObjectTermFactory.instance().createOrGetVariable("?x");
+    private static final Variable VAR_Y = SameObjectTermFactory.instance().createOrGetVariable("?y");
+    private static final Variable VAR_Z = SameObjectTermFactory.instance().createOrGetVariable("?z");
+
+    private final RDFHexaStore single = new RDFHexaStore();
+    private final List<WorkerNode> nodes = new ArrayList<>();
+    private Coordinator coordinator;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        List<RDFHexaStore> partitions = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            partitions.add(new RDFHexaStore());
+        }
+        for (int i = 0; i < 60; i++) {
+            Literal<String> person = SameObjectTermFactory.instance().createOrGetLiteral("person" + i);
+            List<RDFAtom> atoms = new ArrayList<>();
+            atoms.add(new RDFAtom(person, AGE, SameObjectTermFactory.instance().createOrGetLiteral("age" + i % 7)));
+            for (int j = 1; j <= i % 5; j++) {
+                atoms.add(new RDFAtom(person, KNOWS,
+                        SameObjectTermFactory.instance().createOrGetLiteral("person" + (i * j + 3) % 60)));
+            }
+            single.addAll(atoms);
+            partitions.get(ShardedRDFStorage.partitionOf(person, WORKERS)).addAll(atoms);
+        }
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (RDFHexaStore partition : partitions) {
+            WorkerNode node = new WorkerNode(partition, new InetSocketAddress("127.0.0.1", 0));
+            nodes.add(node);
+            addresses.add(node.getAddress());
+        }
+        coordinator = new Coordinator(addresses);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.close();
+        nodes.forEach(WorkerNode::close);
+    }
+
+    private static Set<Substitution> answers(Iterator<Substitution> results) {
+        Set<Substitution> set = new HashSet<>();
+        results.forEachRemaining(set::add);
+        return set;
+    }
+
+    private static int count(Iterator<Substitution> results) {
+        int count = 0;
+        for (; results.hasNext(); results.next()) count++;
+        return count;
+    }
+
+    @Test
+    void testScatterGather() {
+        assertEquals(single.size(), coordinator.size());
+
+        List<StarQuery> queries = List.of(
+                new StarQuery("Q1", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_X, AGE, VAR_Z)),
+                        List.of(VAR_X, VAR_Y, VAR_Z)),
+                // Sans le sujet parmi les réponses, des réponses se répètent d'un nœud à l'autre
+                new StarQuery("Q2", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_X, AGE, VAR_Z)),
+                        List.of(VAR_Z)),
+                new StarQuery("Q3", List.of(new RDFAtom(PERSON_3, KNOWS, VAR_Y)), List.of(VAR_Y)),
+                new StarQuery("Q4", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_X, AGE, VAR_Z)),
+                        List.of(VAR_X, VAR_Y),
+                        List.of(new ComparisonFilter(VAR_Z, ComparisonFilter.Operator.EQ, AGE_2))),
+                // Étoiles centrées sur un objet : chaque atome est diffusé, puis joint par le coordinateur
+                new StarQuery("O", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Z, KNOWS, VAR_Y)),
+                        List.of(VAR_X, VAR_Z)),
+                new StarQuery("O2", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, AGE, VAR_Z)),
+                        List.of(VAR_X, VAR_Z),
+                        List.of(new ComparisonFilter(VAR_Z, ComparisonFilter.Operator.EQ, AGE_2))),
+                new StarQuery("O3", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, AGE, AGE_2),
+                        new RDFAtom(VAR_Z, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Z)),
+                new StarQuery("O4", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, KNOWS, VAR_X)),
+                        List.of(VAR_X, VAR_Y)));
+        for (StarQuery query : queries) {
+            assertEquals(answers(single.match(query)), answers(coordinator.match(query)), query.getLabel());
+            assertEquals(count(single.match(query)), count(coordinator.match(query)), query.getLabel());
+        }
+
+        StarQuery limited = new StarQuery("L", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Y),
+                List.of(), new SolutionModifiers(5, 10, false));
+        Set<Substitution> all = answers(single.match(new StarQuery("L", limited.getRdfAtoms(), List.of(VAR_X, VAR_Y))));
+        Set<Substitution> page = answers(coordinator.match(limited));
+        assertEquals(10, page.size());
+        assertTrue(all.containsAll(page));
+
+        StarQuery ask = new StarQuery("A", List.of(new RDFAtom(VAR_X, AGE, AGE_2)), List.of(), List.of(),
+                SolutionModifiers.askQuery());
+        assertEquals(1, count(coordinator.match(ask)));
+        StarQuery absent = new StarQuery("N", List.of(new RDFAtom(VAR_X, AGE, PERSON_3)), List.of(), List.of(),
+                SolutionModifiers.askQuery());
+        assertEquals(0, count(coordinator.match(absent)));
+
+        StarQuery objectPage = new StarQuery("OL", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y),
+                new RDFAtom(VAR_Z, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Z), List.of(), new SolutionModifiers(3, 4, false));
+        Set<Substitution> objectAll = answers(single.match(new StarQuery("OL", objectPage.getRdfAtoms(),
+                List.of(VAR_X, VAR_Z))));
+        Set<Substitution> objectAnswers = answers(coordinator.match(objectPage));
+        assertEquals(4, objectAnswers.size());
+        assertTrue(objectAll.containsAll(objectAnswers));
+        StarQuery objectAsk = new StarQuery("OA", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y),
+                new RDFAtom(VAR_Y, AGE, AGE_2)), List.of(), List.of(), SolutionModifiers.askQuery());
+        assertEquals(count(single.match(objectAsk)), count(coordinator.match(objectAsk)));
+    }
+
+    @Test
+    void testConcurrentClientsShareConnections() throws Exception {
+        StarQuery query = new StarQuery("Q", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Y));
+        Set<Substitution> expected = answers(single.match(query));
+        try (ExecutorService clients = Executors.newFixedThreadPool(8)) {
+            List<Future<Set<Substitution>>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(clients.submit(() -> answers(coordinator.match(query))));
+            }
+            for (Future<Set<Substitution>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        }
+        long served = nodes.stream().mapToLong(WorkerNode::servedCount).sum();
+        assertEquals(40L * WORKERS, served);
+    }
+
+    @Test
+    void testUnreachableWorker() {
+        nodes.get(1).close();
+        StarQuery query = new StarQuery("Q", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Y));
+        assertThrows(UncheckedIOException.class, () -> coordinator.match(query));
+    }
+
+    @Test
+    void testLongLiteral() {
+        // Un libellé de plus de 64 Kio, au-delà de ce qu'accepte writeUTF
+        Literal<String> text = SameObjectTermFactory.instance().createOrGetLiteral("é".repeat(40_000));
+        Literal<String> person = SameObjectTermFactory.instance().createOrGetLiteral("person0");
+        RDFHexaStore partition = new RDFHexaStore();
+        partition.add(new RDFAtom(person, KNOWS, text));
+        try (WorkerNode node = new WorkerNode(partition, new InetSocketAddress("127.0.0.1", 0));
+             Coordinator remote = new Coordinator(List.of(node.getAddress()))) {
+            StarQuery byObject = new StarQuery("T", List.of(new RDFAtom(VAR_X, KNOWS, text)), List.of(VAR_X));
+            Set<Substitution> results = answers(remote.match(byObject));
+            assertEquals(answers(partition.match(byObject)), results);
+            assertEquals(1, results.size());
+            StarQuery bySubject = new StarQuery("S", List.of(new RDFAtom(person, KNOWS, VAR_Y)), List.of(VAR_Y));
+            assertEquals(text, answers(remote.match(bySubject)).iterator().next().toMap().get(VAR_Y));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void testMessageFraming() throws IOException {
+        byte[] payload = new byte[2 * Protocol.MAX_FRAME + 17];
+        new Random(42).nextBytes(payload);
+        for (byte[] message : List.of(payload, Arrays.copyOf(payload, Protocol.MAX_FRAME), new byte[0])) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Protocol.writeMessage(new DataOutputStream(buffer), message);
+            assertArrayEquals(message, Protocol.readMessage(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()))));
+        }
+
+        // Une longueur corrompue est refusée sans allouer de tampon démesuré
+        ByteArrayOutputStream corrupt = new ByteArrayOutputStream();
+        new DataOutputStream(corrupt).writeInt(Integer.MAX_VALUE - 8);
+        IOException e = assertThrows(IOException.class,
+                () -> Protocol.readMessage(new DataInputStream(new ByteArrayInputStream(corrupt.toByteArray()))));
+        assertTrue(e.getMessage().contains("Trame refusée"), e.getMessage());
+    }
+
+    @Test
+    void testWorkerProcesses() throws IOException {
+        Path data = directory.resolve("data.nt");
+        StringBuilder triples = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            triples.append("<http://example.org/person").append(i).append("> <http://example.org/knows> ")
+                    .append("<http://example.org/person").append((i * 7 + 3) % 40).append("> .\n");
+            triples.append("<http://example.org/person").append(i).append("> <http://example.org/age> \"")
+                    .append(i % 5).append("\" .\n");
+        }
+        Files.writeString(data, triples);
+
+        RDFHexaStore expected = new RDFHexaStore();
+        List<RDFAtom> atoms = new ArrayList<>();
+        try (RDFAtomParser parser = new RDFAtomParser(data.toFile())) {
+            while (parser.hasNext()) {
+                atoms.add(parser.next());
+            }
+        }
+        expected.addAll(atoms);
+        assertEquals(80, expected.size());
+
+        // Deux nœuds dans leur propre JVM, lancés comme le ferait le banc d'essai distribué
+        try (LocalCluster cluster = LocalCluster.start(data.toString(), 2);
+             Coordinator remote = new Coordinator(cluster.addresses())) {
+            assertEquals(expected.size(), remote.size());
+            RDFAtom first = atoms.get(0);
+            StarQuery query = new StarQuery("P", List.of(new RDFAtom(VAR_X, first.getTriplePredicate(), VAR_Y)),
+                    List.of(VAR_X, VAR_Y));
+            assertEquals(answers(expected.match(query)), answers(remote.match(query)));
+            StarQuery star = new StarQuery("S", List.of(new RDFAtom(first.getTripleSubject(), first.getTriplePredicate(), VAR_Y)),
+                    List.of(VAR_Y));
+            assertEquals(answers(expected.match(star)), answers(remote.match(star)));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package qengine.io;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+import qengine.storage.RDFHexaStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires des écrivains de résultats en flux.
+ */
+class ResultWriterTest {
+    private static final Literal<String> ALICE = SameObjectTermFactory.instance().createOrGetLiteral("http://example.org/alice");
+    private static final Literal<String> NAME = SameObjectTermFactory.instance().createOrGetLiteral("http://example.org/name");
+    private static final Literal<String> ALICE_NAME = SameObjectTermFactory.instance().createOrGetLiteral("Alice, \"A\"");
+    private static final Variable VAR_X = SameObjectTermFactory.instance().createOrGetVariable("?x");
+    private static final Variable VAR_N = SameObjectTermFactory.instance().createOrGetVariable("?n");
+
+    private static RDFHexaStore sampleStore() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(ALICE, NAME, ALICE_NAME));
+        return store;
+    }
+
+    private static String write(ResultWriter writer, ByteArrayOutputStream out, RDFHexaStore store, StarQuery query)
+            throws IOException {
+        try (writer) {
+            writer.write(List.copyOf(query.getAnswerVariables()), store.matchEncoded(query), store::termOf);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testTextFormats() throws IOException {
+        RDFHexaStore store = sampleStore();
+        StarQuery query = new StarQuery("Q", List.of(new RDFAtom(VAR_X, NAME, VAR_N)), List.of(VAR_X, VAR_N));
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        assertEquals("{\"head\":{\"vars\":[\"x\",\"n\"]},\"results\":{\"bindings\":[\n"
+                        + "{\"x\":{\"type\":\"uri\",\"value\":\"http://example.org/alice\"},"
+                        + "\"n\":{\"type\":\"literal\",\"value\":\"Alice, \\\"A\\\"\"}}\n]}}\n",
+                write(new SparqlJsonWriter(json), json, store, query));
+
+        ByteArrayOutputStream tsv = new ByteArrayOutputStream();
+        assertEquals("?x\t?n\n<http://example.org/alice>\t\"Alice, \\\"A\\\"\"\n",
+                write(SeparatedValuesWriter.tsv(tsv), tsv, store, query));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals("x,n\r\nhttp://example.org/alice,\"Alice, \"\"A\"\"\"\r\n",
+                write(SeparatedValuesWriter.csv(csv), csv, store, query));
+    }
+
+    @Test
+    void testBinaryRoundTripOverChannel() throws IOException {
+        // Plus de réponses qu'un lot et que le cache, avec des termes répétés d'une ligne à l'autre
+        RDFHexaStore store = new RDFHexaStore();
+        int subjects = 3 * ResultWriter.BATCH_SIZE + 7;
+        for (int i = 0; i < subjects; i++) {
+            store.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("http://example.org/s" + i), NAME,
+                    SameObjectTermFactory.instance().createOrGetLiteral("name" + i % 10)));
+        }
+        StarQuery query = new StarQuery("Q", List.of(new RDFAtom(VAR_X, NAME, VAR_N)), List.of(VAR_N, VAR_X));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written;
+        try (BinaryRowWriter writer = new BinaryRowWriter(Channels.newChannel(out))) {
+            written = writer.write(List.copyOf(query.getAnswerVariables()), store.matchEncoded(query), store::termOf);
+        }
+        assertEquals(subjects, written);
+
+        Set<Substitution> expected = new HashSet<>();
+        store.match(query).forEachRemaining(expected::add);
+        try (BinaryRowReader reader = new BinaryRowReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(List.of(VAR_N, VAR_X), reader.variables());
+            List<Substitution> read = new ArrayList<>();
+            reader.forEachRemaining(read::add);
+            assertEquals(subjects, read.size());
+            assertEquals(expected, new HashSet<>(read));
+            assertEquals(subjects, reader.count());
+            assertNull(reader.booleanResult());
+        }
+    }
+
+    @Test
+    void testBooleanAndSubstitutions() throws IOException {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        try (BinaryRowWriter writer = new BinaryRowWriter(binary)) {
+            writer.writeBoolean(true);
+        }
+        try (BinaryRowReader reader = new BinaryRowReader(new ByteArrayInputStream(binary.toByteArray()))) {
+            assertEquals(Boolean.TRUE, reader.booleanResult());
+            assertFalse(reader.hasNext());
+        }
+
+        ByteArrayOutputStream tsv = new ByteArrayOutputStream();
+        assertThrows(UnsupportedOperationException.class, () -> SeparatedValuesWriter.tsv(tsv).writeBoolean(true));
+
+        // Substitutions d'un store quelconque : les termes reçoivent des identifiants locaux
+        RDFHexaStore store = sampleStore();
+        StarQuery query = new StarQuery("Q", List.of(new RDFAtom(VAR_X, NAME, VAR_N)), List.of(VAR_N));
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        try (ResultWriter writer = SeparatedValuesWriter.csv(csv)) {
+            assertEquals(1, writer.writeSubstitutions(List.of(VAR_N), store.match(query)));
+        }
+        assertEquals("n\r\n\"Alice, \"\"A\"\"\"\r\n", csv.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package qengine.model;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe BGPQuery.
+ */
+class BGPQueryTest {
+
+    private final TermFactory termFactory = SameObjectTermFactory.instance();
+    private final Variable x = termFactory.createOrGetVariable("?x");
+    private final Variable y = termFactory.createOrGetVariable("?y");
+    private final Variable z = termFactory.createOrGetVariable("?z");
+    private final Variable w = termFactory.createOrGetVariable("?w");
+    private final Term predicate1 = termFactory.createOrGetLiteral("http://example.org/predicate1");
+    private final Term predicate2 = termFactory.createOrGetLiteral("http://example.org/predicate2");
+    private final Term predicate3 = termFactory.createOrGetLiteral("http://example.org/predicate3");
+    private final Term object1 = termFactory.createOrGetLiteral("http://example.org/object1");
+
+    @Test
+    void testDecomposeSnowflake() {
+        // Deux étoiles (?x et ?y) reliées par ?y
+        List<RDFAtom> atoms = List.of(
+                new RDFAtom(x, predicate1, y),
+                new RDFAtom(x, predicate2, object1),
+                new RDFAtom(y, predicate2, z),
+                new RDFAtom(y, predicate3, w));
+        BGPQuery query = new BGPQuery("Flocon", atoms, List.of(x, z), List.of(), SolutionModifiers.NONE);
+
+        List<StarQuery> stars = query.decompose();
+        assertEquals(2, stars.size(), "La requête devrait être décomposée en deux étoiles.");
+        assertEquals(y, stars.get(0).getCentralVariable());
+        assertEquals(List.of(new RDFAtom(x, predicate1, y), new RDFAtom(y, predicate2, z), new RDFAtom(y, predicate3, w)),
+                stars.get(0).getRdfAtoms());
+        // ?y et ?w ne sont ni réponses ni variables de liaison : elles restent existentielles dans leur étoile
+        assertEquals(List.of(x, z), stars.get(0).getAnswerVariables());
+        assertEquals(List.of(x), stars.get(1).getAnswerVariables());
+    }
+
+    @Test
+    void testDecomposeDistributesFilters() {
+        ComparisonFilter filter = new ComparisonFilter(z, ComparisonFilter.Operator.GT, termFactory.createOrGetLiteral("3"));
+        List<RDFAtom> atoms = List.of(new RDFAtom(x, predicate1, y), new RDFAtom(y, predicate2, z),
+                new RDFAtom(z, predicate3, w));
+        BGPQuery chain = new BGPQuery("Chaîne", atoms, List.of(x), List.of(filter), SolutionModifiers.NONE);
+
+        List<StarQuery> stars = chain.decompose();
+        assertEquals(2, stars.size());
+        for (StarQuery star : stars) {
+            boolean containsZ = star.getRdfAtoms().stream().anyMatch(atom -> List.of(atom.getTerms()).contains(z));
+            assertEquals(containsZ ? List.of(filter) : List.of(), star.getFilters());
+        }
+    }
+
+    @Test
+    void testBGPQueryConstructorInvalidDisconnected() {
+        List<RDFAtom> atoms = List.of(new RDFAtom(x, predicate1, object1), new RDFAtom(y, predicate2, object1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new BGPQuery("Non connexe", atoms, List.of(x), List.of(), SolutionModifiers.NONE),
+                "Des triplets sans variable partagée ne forment pas une requête conjonctive.");
+    }
+
+    @Test
+    void testBGPQueryConstructorInvalidAnswerVariable() {
+        List<RDFAtom> atoms = List.of(new RDFAtom(x, predicate1, y), new RDFAtom(y, predicate2, z));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new BGPQuery("Réponse invalide", atoms, List.of(w), List.of(), SolutionModifiers.NONE),
+                "Une variable réponse absente des triplets devrait lever une exception.");
+    }
+}
@@ -0,0 +1,82 @@
+package qengine.model;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+import qengine.parser.StarQuerySparQLParser;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe QueryTemplate.
+ */
+class QueryTemplateTest {
+
+    private final TermFactory termFactory = SameObjectTermFactory.instance();
+    private final Variable x = termFactory.createOrGetVariable("?x");
+    private final Variable y = termFactory.createOrGetVariable("?y");
+    private final Variable p = termFactory.createOrGetVariable("?p");
+    private final Term predicate1 = termFactory.createOrGetLiteral("http://example.org/predicate1");
+    private final Term predicate2 = termFactory.createOrGetLiteral("http://example.org/predicate2");
+    private final Term object1 = termFactory.createOrGetLiteral("http://example.org/object1");
+
+    @Test
+    void testInstantiate() {
+        StarQuery query = new StarQuery("Modèle",
+                List.of(new RDFAtom(x, predicate1, p), new RDFAtom(x, predicate2, y)), List.of(x, y));
+        QueryTemplate template = new QueryTemplate(query, List.of(p));
+
+        StarQuery instance = template.instantiate(List.of(object1));
+        assertEquals(List.of(new RDFAtom(x, predicate1, object1), new RDFAtom(x, predicate2, y)), instance.getRdfAtoms());
+        assertEquals(List.of(x, y), instance.getAnswerVariables());
+        // Le modèle n'est pas modifié par l'instanciation
+        assertEquals(new RDFAtom(x, predicate1, p), template.query().getRdfAtoms().getFirst());
+
+        assertThrows(IllegalArgumentException.class, () -> template.instantiate(List.of()),
+                "Le nombre de valeurs devrait correspondre au nombre de paramètres.");
+        assertThrows(IllegalArgumentException.class, () -> template.instantiate(List.of(y)),
+                "Un paramètre ne devrait pas pouvoir être remplacé par une variable.");
+    }
+
+    @Test
+    void testSingleAtomTemplate() {
+        // Les deux variables de l'unique atome peuvent être choisies comme variable centrale du modèle :
+        // l'une ou l'autre peut être un paramètre
+        StarQuery query = new StarQuery("Modèle", List.of(new RDFAtom(x, predicate1, p)), List.of(x));
+        QueryTemplate template = new QueryTemplate(query, List.of(p));
+        StarQuery instance = template.instantiate(List.of(object1));
+        assertEquals(List.of(new RDFAtom(x, predicate1, object1)), instance.getRdfAtoms());
+        assertEquals(x, instance.getCentralVariable());
+
+        QueryTemplate reversed = new QueryTemplate(new StarQuery("Modèle",
+                List.of(new RDFAtom(x, predicate1, p)), List.of(p)), List.of(x));
+        assertEquals(p, reversed.instantiate(List.of(object1)).getCentralVariable());
+
+        QueryTemplate parsed = StarQuerySparQLParser.parseTemplate(
+                "SELECT ?v0 WHERE { ?v0 <http://example.org/predicate1> %v1% . }");
+        assertEquals(1, parsed.parameters().size());
+        assertEquals(1, parsed.instantiate(List.of(object1)).getRdfAtoms().size());
+    }
+
+    @Test
+    void testInvalidParameters() {
+        StarQuery query = new StarQuery("Modèle",
+                List.of(new RDFAtom(x, predicate1, p), new RDFAtom(x, predicate2, y)), List.of(x, y));
+
+        assertThrows(IllegalArgumentException.class, () -> new QueryTemplate(query, List.of(x)),
+                "La variable centrale ne devrait pas pouvoir être un paramètre.");
+        StarQuery hidden = new StarQuery("Modèle",
+                List.of(new RDFAtom(x, predicate1, p), new RDFAtom(x, predicate2, y)), List.of(y));
+        assertThrows(IllegalArgumentException.class, () -> new QueryTemplate(hidden, List.of(x)),
+                "Les instances doivent garder une variable partagée par tous les triplets.");
+        assertThrows(IllegalArgumentException.class, () -> new QueryTemplate(query, List.of(y)),
+                "Une variable réponse ne devrait pas pouvoir être un paramètre.");
+        assertThrows(IllegalArgumentException.class,
+                () -> new QueryTemplate(query, List.of(termFactory.createOrGetVariable("?absent"))),
+                "Un paramètre absent des triplets devrait être refusé.");
+    }
+}
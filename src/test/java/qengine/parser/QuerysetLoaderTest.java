@@ -0,0 +1,91 @@
+package qengine.parser;
+
+import fr.boreal.model.query.api.Query;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link QuerysetLoader} : le chargement parallèle doit rendre les mêmes requêtes,
+ * dans le même ordre, que l'analyse séquentielle des fichiers.
+ */
+class QuerysetLoaderTest {
+    private static final String SAMPLE_QUERIES = "src/test/resources/sample_query.queryset";
+    private static final String MODIFIERS_QUERIES = "src/test/resources/modifiers_query.queryset";
+
+    @TempDir
+    Path directory;
+
+    private static List<Query> parseSequentially(Path file) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(file.toString())) {
+            while (parser.hasNext()) {
+                queries.add(parser.next());
+            }
+        }
+        return queries;
+    }
+
+    @Test
+    void testSplitAtQueryBoundaries() throws IOException {
+        // Les LIMIT / OFFSET placés sur la ligne suivante restent rattachés à leur requête
+        String text = Files.readString(Path.of(MODIFIERS_QUERIES)).repeat(20);
+        List<String> chunks = QuerysetLoader.split(text, 150);
+        assertTrue(chunks.size() > 10);
+        assertEquals(text, String.join("", chunks));
+        for (String chunk : chunks.subList(1, chunks.size())) {
+            assertFalse(StarQuerySparQLParser.isModifiersLine(chunk.lines().findFirst().orElseThrow()));
+        }
+        assertEquals(List.of(text), QuerysetLoader.split(text, text.length()));
+
+        Path file = Files.writeString(directory.resolve("modifiers.queryset"), text);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Query> queries = QuerysetLoader.load(file, 150, executor);
+            assertEquals(parseSequentially(file), queries);
+            assertEquals(queries, QuerysetLoader.load(file, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testLoadDirectoryByCategory() throws IOException {
+        String sample = Files.readString(Path.of(SAMPLE_QUERIES));
+        String modifiers = Files.readString(Path.of(MODIFIERS_QUERIES));
+        Files.writeString(directory.resolve("Q_2_b.queryset"), modifiers);
+        Files.writeString(directory.resolve("Q_2_a.queryset"), sample);
+        Files.writeString(directory.resolve("Q_1_a.queryset"), sample.repeat(50));
+        Files.writeString(directory.resolve("notes.txt"), "SELECT");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Map<String, List<Query>> categories = QuerysetLoader.loadDirectory(directory,
+                    name -> name.substring(0, name.indexOf('_', 2)), executor);
+            assertEquals(List.of("Q_1", "Q_2"), new ArrayList<>(categories.keySet()));
+            assertEquals(parseSequentially(directory.resolve("Q_1_a.queryset")), categories.get("Q_1"));
+
+            // Les fichiers d'une catégorie sont concaténés dans l'ordre de leurs noms
+            List<Query> expected = new ArrayList<>(parseSequentially(directory.resolve("Q_2_a.queryset")));
+            expected.addAll(parseSequentially(directory.resolve("Q_2_b.queryset")));
+            assertEquals(expected, categories.get("Q_2"));
+
+            // Une requête invalide fait échouer le chargement avec l'erreur d'analyse
+            Files.writeString(directory.resolve("Q_3_invalid.queryset"), "SELECT ?v0 WHERE { ?v0 ?v1\n}\n");
+            assertThrows(RuntimeException.class, () -> QuerysetLoader.loadDirectory(directory, name -> name, executor));
+            assertThrows(IOException.class, () -> QuerysetLoader.loadDirectory(directory.resolve("missing"), name -> name, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,13 +2,24 @@ package qengine.parser;
 
 import fr.boreal.model.logicalElements.api.Term;
 import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
 import fr.boreal.model.query.api.Query;
 import org.junit.jupiter.api.Test;
+import qengine.model.BGPQuery;
+import qengine.model.ComparisonFilter;
+import qengine.model.QueryTemplate;
 import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
 import qengine.model.StarQuery;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -126,4 +137,142 @@ class StarQuerySparQLParserTest {
         }
     }
 
+    @Test
+    void testParseQueryWithFilter() throws IOException {
+        String filterQueryFile = "src/test/resources/filter_query.queryset";
+
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(filterQueryFile)) {
+            StarQuery starQuery = (StarQuery) parser.next();
+            List<ComparisonFilter> filters = starQuery.getFilters();
+
+            assertEquals(2, filters.size(), "La conjonction devrait être décomposée en deux filtres.");
+            assertEquals("?v1", filters.get(0).getVariable().label());
+            assertEquals(ComparisonFilter.Operator.GE, filters.get(0).getOperator());
+            assertEquals("20", filters.get(0).getValue().label());
+            // 40 > ?v1 est réécrit en ?v1 < 40
+            assertEquals(ComparisonFilter.Operator.LT, filters.get(1).getOperator());
+            assertEquals("40", filters.get(1).getValue().label());
+        }
+    }
+
+    @Test
+    void testParseQueryWithUnsupportedFilter() throws IOException {
+        String filterQueryFile = "src/test/resources/unsupported_filter_query.queryset";
+
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(filterQueryFile)) {
+            assertThrows(RuntimeException.class, parser::next,
+                    "Un FILTER non supporté devrait lever une exception au lieu d'être ignoré.");
+        }
+    }
+
+    @Test
+    void testParseQueryWithSolutionModifiers() throws IOException {
+        String modifiersQueryFile = "src/test/resources/modifiers_query.queryset";
+
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(modifiersQueryFile)) {
+            StarQuery limited = (StarQuery) parser.next();
+            assertEquals(new SolutionModifiers(5, 10, false), limited.getModifiers(),
+                    "LIMIT et OFFSET sur la ligne de l'accolade fermante devraient être pris en compte.");
+
+            StarQuery nextLines = (StarQuery) parser.next();
+            assertEquals(new SolutionModifiers(0, 3, false), nextLines.getModifiers(),
+                    "Un LIMIT sur la ligne suivante devrait être rattaché à la requête.");
+
+            StarQuery ask = (StarQuery) parser.next();
+            assertTrue(ask.getModifiers().ask(), "La requête ASK devrait être reconnue.");
+            assertTrue(ask.getAnswerVariables().isEmpty(), "Une requête ASK n'a pas de variable réponse.");
+
+            StarQuery plain = (StarQuery) parser.next();
+            assertEquals(SolutionModifiers.NONE, plain.getModifiers());
+            assertFalse(parser.hasNext());
+        }
+    }
+
+    @Test
+    void testParseTemplate() {
+        String template = """
+                #mapping v1 wsdbm:Topic uniform
+                SELECT ?v0 ?v2 WHERE {
+                	?v0	<http://ogp.me/ns#tag>	%v1% .
+                	?v0	<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>	?v2 .
+                }
+                """;
+        QueryTemplate parsed = StarQuerySparQLParser.parseTemplate(template);
+
+        assertEquals(List.of("?v1"), parsed.parameters().stream().map(Term::label).toList());
+        assertEquals(List.of("?v0", "?v2"), parsed.query().getAnswerVariables().stream().map(Term::label).toList());
+
+        StarQuery instance = parsed.instantiate(List.of(SameObjectTermFactory.instance()
+                .createOrGetLiteral("http://db.uwaterloo.ca/~galuc/wsdbm/Topic7")));
+        assertEquals("http://db.uwaterloo.ca/~galuc/wsdbm/Topic7",
+                instance.getRdfAtoms().getFirst().getTripleObject().label());
+    }
+
+    @Test
+    void testParseString() {
+        Query query = StarQuerySparQLParser.parse("SELECT ?v0 WHERE {\n ?v0 <http://schema.org/eligibleRegion> ?v1 .\n} LIMIT 3");
+        StarQuery starQuery = assertInstanceOf(StarQuery.class, query);
+        assertEquals(3, starQuery.getModifiers().limit());
+
+        assertThrows(IllegalArgumentException.class, () -> StarQuerySparQLParser.parse("SELECT ?v0 WHERE { ?v0 ?v1"));
+        assertThrows(IllegalArgumentException.class, () -> StarQuerySparQLParser.parse("   "));
+        assertThrows(IllegalArgumentException.class, () -> StarQuerySparQLParser.parse(
+                "SELECT ?x WHERE { ?x <p> <o> }\nSELECT ?y WHERE { ?y <p> <o> }"));
+    }
+
+    @Test
+    void testFastParserMatchesRdf4j() throws IOException {
+        for (String file : List.of(sampleQueryFile, "src/test/resources/snowflake_query.queryset",
+                "src/test/resources/modifiers_query.queryset", "src/test/resources/filter_query.queryset")) {
+            assertEquals(parseAll(new FileReader(file), false), parseAll(new FileReader(file), true), file);
+        }
+
+        // Requêtes du sous-ensemble reconnu, puis requêtes laissées à RDF4J
+        String queries = """
+                select $v0 ?v1 where { ?v0 <http://schema.org/eligibleRegion> ?v1 . ?v0 <http://schema.org/name> "Bob" }
+                SELECT ?v0 WHERE {
+                	?v0 <http://schema.org/tag> ?v1.
+                	?v1 <http://schema.org/name> "Topic" .
+                }
+                OFFSET 5 LIMIT 0
+                PREFIX sorg: <http://schema.org/>
+                SELECT ?v0 WHERE { ?v0 sorg:eligibleRegion <http://db.uwaterloo.ca/~galuc/wsdbm/Country1> . }
+                SELECT ?v0 WHERE { ?v0 a <http://db.uwaterloo.ca/~galuc/wsdbm/ProductCategory2> ; <http://schema.org/name> ?n . }
+                SELECT ?v0 WHERE { ?v0 <http://schema.org/name> "Bob"@en . } LIMIT 2
+                ASK { ?v0 <http://schema.org/name> "Bob" . }
+                """;
+        List<Query> expected = parseAll(new StringReader(queries), false);
+        assertEquals(6, expected.size());
+        assertEquals(expected, parseAll(new StringReader(queries), true));
+        StarQuery starQuery = assertInstanceOf(StarQuery.class, expected.get(1));
+        assertEquals("?v1", starQuery.getCentralVariable().label());
+        assertEquals(new SolutionModifiers(5, 0, false), starQuery.getModifiers());
+    }
+
+    private static List<Query> parseAll(Reader reader, boolean fastPath) {
+        List<Query> queries = new ArrayList<>();
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(new BufferedReader(reader), fastPath)) {
+            while (parser.hasNext()) {
+                queries.add(parser.next());
+            }
+        }
+        return queries;
+    }
+
+    @Test
+    void testParseSnowflakeQuery() throws IOException {
+        String snowflakeQueryFile = "src/test/resources/snowflake_query.queryset";
+
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(snowflakeQueryFile)) {
+            Query query = parser.next();
+            assertInstanceOf(BGPQuery.class, query, "Plusieurs étoiles reliées devraient donner une BGPQuery.");
+
+            BGPQuery bgpQuery = (BGPQuery) query;
+            assertEquals(6, bgpQuery.getRdfAtoms().size());
+            assertEquals(List.of("?v0", "?v3", "?v4"),
+                    bgpQuery.getAnswerVariables().stream().map(Term::label).toList());
+            assertEquals(3, bgpQuery.decompose().size(), "Les étoiles ?v3, ?v4 et ?v0 devraient être séparées.");
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package qengine.server;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFAtom;
+import qengine.storage.RDFHexaStore;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du point d'accès HTTP {@link SparqlEndpoint}, sur un port libre de l'interface locale.
+ */
+class SparqlEndpointTest {
+    private static final Literal<String> ALICE = SameObjectTermFactory.instance().createOrGetLiteral("http://example.org/alice");
+    private static final Literal<String> BOB = SameObjectTermFactory.instance().createOrGetLiteral("http://example.org/bob");
+    private static final Literal<String> KNOWS = SameObjectTermFactory.instance().createOrGetLiteral("http://example.org/knows");
+    private static final Literal<String> NAME = SameObjectTermFactory.instance().createOrGetLiteral("http://example.org/name");
+    private static final Literal<String> BOB_NAME = SameObjectTermFactory.instance().createOrGetLiteral("Bob \"B\"");
+
+    private SparqlEndpoint endpoint;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        RDFHexaStore store = new RDFHexaStore();
+        store.addAll(List.of(
+                new RDFAtom(ALICE, KNOWS, BOB),
+                new RDFAtom(BOB, NAME, BOB_NAME)));
+        endpoint = new SparqlEndpoint(store, new InetSocketAddress("localhost", 0), 16, 4);
+        endpoint.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        endpoint.close();
+    }
+
+    private URI uri(String query) {
+        return URI.create("http://localhost:" + endpoint.getAddress().getPort() + SparqlEndpoint.PATH
+                + (query == null ? "" : "?query=" + URLEncoder.encode(query, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testGetJson() throws Exception {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri("SELECT ?x WHERE { ?x <http://example.org/knows> <http://example.org/bob> }")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("application/sparql-results+json"));
+        assertEquals("{\"head\":{\"vars\":[\"x\"]},\"results\":{\"bindings\":[\n"
+                + "{\"x\":{\"type\":\"uri\",\"value\":\"http://example.org/alice\"}}\n]}}\n", response.body());
+        assertEquals(1, endpoint.servedCount());
+    }
+
+    @Test
+    void testPostTsv() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(null))
+                .header("Content-Type", "application/sparql-query")
+                .header("Accept", "text/tab-separated-values")
+                .POST(HttpRequest.BodyPublishers.ofString("SELECT ?x ?n WHERE { ?x <http://example.org/name> ?n }"))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("?x\t?n\n<http://example.org/bob>\t\"Bob \\\"B\\\"\"\n", response.body());
+    }
+
+    @Test
+    void testAskAndErrors() throws Exception {
+        HttpResponse<String> ask = client.send(
+                HttpRequest.newBuilder(uri("ASK { ?x <http://example.org/knows> <http://example.org/alice> }")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("{\"head\":{},\"boolean\":false}\n", ask.body());
+
+        HttpResponse<String> invalid = client.send(HttpRequest.newBuilder(uri("SELECT ?x WHERE {")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, invalid.statusCode());
+
+        HttpResponse<String> missing = client.send(HttpRequest.newBuilder(uri(null)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, missing.statusCode());
+
+        HttpResponse<String> method = client.send(HttpRequest.newBuilder(uri(null))
+                .DELETE().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, method.statusCode());
+    }
+}
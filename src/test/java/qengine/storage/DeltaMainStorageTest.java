@@ -0,0 +1,253 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+import qengine.model.BGPQuery;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link DeltaMainStorage} : les réponses doivent être celles d'un HexaStore unique,
+ * avant, pendant et après la fusion du delta dans la partie principale.
+ */
+class DeltaMainStorageTest {
+    private static final Literal<String> KNOWS = SameObjectTermFactory.instance().createOrGetLiteral("knows");
+    private static final Literal<String> AGE = SameObjectTermFactory.instance().createOrGetLiteral("age");
+    private static final Variable VAR_X = SameObjectTermFactory.instance().createOrGetVariable("?x");
+    private static final Variable VAR_Y = SameObjectTermFactory.instance().createOrGetVariable("?y");
+    private static final Variable VAR_Z = SameObjectTermFactory.instance().createOrGetVariable("?z");
+
+    private static final StarQuery STAR = new StarQuery("Star",
+            List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_X, AGE, VAR_Z)), List.of(VAR_X, VAR_Y, VAR_Z));
+    private static final StarQuery FILTERED = new StarQuery("Filtered", List.of(new RDFAtom(VAR_X, AGE, VAR_Z)),
+            List.of(VAR_X, VAR_Z), List.of(
+            new ComparisonFilter(VAR_Z, ComparisonFilter.Operator.GE, SameObjectTermFactory.instance().createOrGetLiteral("20")),
+            new ComparisonFilter(VAR_Z, ComparisonFilter.Operator.LT, SameObjectTermFactory.instance().createOrGetLiteral("40"))));
+    private static final BGPQuery CHAIN = new BGPQuery("Chain",
+            List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, AGE, VAR_Z)),
+            List.of(VAR_X, VAR_Z), List.of(), SolutionModifiers.NONE);
+
+    private static List<RDFAtom> data(int from, int to) {
+        List<RDFAtom> atoms = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Literal<String> person = SameObjectTermFactory.instance().createOrGetLiteral("person" + i);
+            atoms.add(new RDFAtom(person, AGE, SameObjectTermFactory.instance().createOrGetLiteral(String.valueOf(i % 60))));
+            for (int j = 1; j <= i % 4; j++) {
+                atoms.add(new RDFAtom(person, KNOWS,
+                        SameObjectTermFactory.instance().createOrGetLiteral("person" + (i * j + 3) % to)));
+            }
+        }
+        return atoms;
+    }
+
+    private static Set<Substitution> answers(Iterator<Substitution> results) {
+        Set<Substitution> set = new HashSet<>();
+        results.forEachRemaining(set::add);
+        return set;
+    }
+
+    private static void assertSameAnswers(RDFHexaStore expected, DeltaMainStorage storage) {
+        assertEquals(expected.size(), storage.size());
+        assertEquals(answers(expected.match(STAR)), answers(storage.match(STAR)));
+        assertEquals(answers(expected.match(FILTERED)), answers(storage.match(FILTERED)));
+        assertEquals(answers(expected.match(CHAIN)), answers(storage.match(CHAIN)));
+        assertEquals(answers(expected.matchTriejoin(CHAIN)), answers(storage.matchTriejoin(CHAIN)));
+        RDFAtom everything = new RDFAtom(VAR_X, VAR_Y, VAR_Z);
+        assertEquals(answers(expected.match(everything)), answers(storage.match(everything)));
+        assertEquals(new HashSet<>(expected.getAtoms()), new HashSet<>(storage.getAtoms()));
+    }
+
+    @Test
+    void testAnswersAcrossCompactions() {
+        RDFHexaStore expected = new RDFHexaStore();
+        try (DeltaMainStorage storage = new DeltaMainStorage(1 << 20, 1 << 20)) {
+            expected.addAll(data(0, 100));
+            assertTrue(storage.addAll(data(0, 100)));
+            assertFalse(storage.addAll(data(0, 100)));
+            assertEquals(expected.size(), storage.deltaSize());
+            assertSameAnswers(expected, storage);
+
+            storage.compact();
+            assertEquals(1, storage.compactionCount());
+            assertEquals(0, storage.deltaSize());
+            assertSameAnswers(expected, storage);
+
+            // Une partie des triplets est déjà dans la partie principale : seuls les nouveaux vont dans le delta
+            expected.addAll(data(50, 150));
+            storage.addAll(data(50, 150));
+            assertFalse(storage.add(data(0, 100).get(0)));
+            assertEquals(expected.size(), storage.size());
+            assertTrue(storage.deltaSize() > 0);
+            assertSameAnswers(expected, storage);
+
+            storage.compact();
+            assertEquals(2, storage.compactionCount());
+            assertSameAnswers(expected, storage);
+
+            // Un compactage sans delta ne crée pas de nouvelle version
+            storage.compact();
+            assertEquals(2, storage.compactionCount());
+        }
+    }
+
+    @Test
+    void testRemovalsAcrossParts() {
+        List<RDFAtom> atoms = data(0, 600);
+        RDFHexaStore expected = new RDFHexaStore();
+        try (DeltaMainStorage storage = new DeltaMainStorage(1 << 20, 1 << 20)) {
+            // Plusieurs parties triées dans la partie principale
+            for (int from = 0; from < 400; from += 100) {
+                expected.addAll(atoms.subList(from, from + 100));
+                storage.addAll(atoms.subList(from, from + 100));
+                storage.compact();
+            }
+            expected.addAll(atoms.subList(400, atoms.size()));
+            storage.addAll(atoms.subList(400, atoms.size()));
+
+            // Des suppressions dans la partie principale, dans un segment scellé et dans le segment en cours
+            Random random = new Random(7);
+            for (int round = 0; round < 6; round++) {
+                for (int i = 0; i < 40; i++) {
+                    RDFAtom atom = atoms.get(random.nextInt(atoms.size()));
+                    assertEquals(expected.remove(atom), storage.remove(atom), atom::toString);
+                }
+                assertSameAnswers(expected, storage);
+                // Un triplet supprimé peut être ajouté de nouveau, puis supprimé encore
+                for (int i = 0; i < 10; i++) {
+                    RDFAtom atom = atoms.get(random.nextInt(atoms.size()));
+                    assertEquals(expected.add(atom), storage.add(atom), atom::toString);
+                    if (i % 3 == 0) {
+                        assertEquals(expected.remove(atom), storage.remove(atom), atom::toString);
+                    }
+                }
+                assertSameAnswers(expected, storage);
+                if (round % 2 == 1) {
+                    storage.compact();
+                    assertSameAnswers(expected, storage);
+                }
+            }
+            assertFalse(storage.remove(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("nobody"),
+                    KNOWS, SameObjectTermFactory.instance().createOrGetLiteral("person1"))));
+
+            // Les pierres tombales sont appliquées par le compactage complet
+            storage.compact();
+            assertEquals(0, storage.deltaSize());
+            assertSameAnswers(expected, storage);
+            assertTrue(storage.removeAll(atoms));
+            assertEquals(0, storage.size());
+            storage.compact();
+            assertEquals(0, storage.size());
+            assertTrue(storage.getAtoms().isEmpty());
+        }
+    }
+
+    @Test
+    void testBackgroundCompaction() {
+        RDFHexaStore expected = new RDFHexaStore();
+        List<RDFAtom> atoms = data(0, 2000);
+        expected.addAll(atoms);
+        try (DeltaMainStorage storage = new DeltaMainStorage(500, 1000)) {
+            storage.addAll(atoms);
+            assertEquals(expected.size(), storage.size());
+            assertTrue(storage.deltaSize() <= 2 * 1000);
+            storage.compact();
+            assertTrue(storage.compactionCount() >= 2);
+            assertSameAnswers(expected, storage);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new DeltaMainStorage(100, 10));
+    }
+
+    @Test
+    void testConcurrentReadsDuringWrites() throws InterruptedException {
+        List<RDFAtom> atoms = data(0, 3000);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        try (DeltaMainStorage storage = new DeltaMainStorage(256, 2048)) {
+            Thread writer = Thread.ofPlatform().start(() -> {
+                for (RDFAtom atom : atoms) {
+                    storage.add(atom);
+                }
+            });
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        long previous = 0;
+                        while (writer.isAlive()) {
+                            // Chaque lecture voit une version cohérente, qui ne recule jamais
+                            long size = storage.size();
+                            assertTrue(size >= previous);
+                            previous = size;
+                            for (Substitution answer : answers(storage.match(STAR))) {
+                                assertEquals(3, answer.toMap().size());
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+            writer.join();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertTrue(errors.isEmpty(), () -> errors.peek().toString());
+
+            RDFHexaStore expected = new RDFHexaStore();
+            expected.addAll(atoms);
+            assertSameAnswers(expected, storage);
+        }
+    }
+
+    @Test
+    void testReadsSealDeltaSegments() {
+        List<RDFAtom> atoms = data(0, 400);
+        RDFHexaStore expected = new RDFHexaStore();
+        try (DeltaMainStorage storage = new DeltaMainStorage(1 << 20, 1 << 20)) {
+            RDFHexaStore previous = storage.view();
+            long previousSize = 0;
+            for (RDFAtom atom : atoms) {
+                expected.add(atom);
+                storage.add(atom);
+                // Une vue déjà publiée n'est jamais modifiée par les ajouts suivants
+                assertEquals(previousSize, previous.size());
+                previous = storage.view();
+                previousSize = previous.size();
+                assertEquals(expected.size(), previousSize);
+            }
+            // Les segments scellés par les lectures sont regroupés par tailles voisines, ou les ajouts attendent
+            int segments = storage.sealedSegmentCount();
+            assertTrue(segments <= DeltaMainStorage.MAX_SEALED_SEGMENTS, segments + " segments");
+            assertEquals(expected.size(), storage.deltaSize());
+            assertSameAnswers(expected, storage);
+        }
+    }
+
+    @Test
+    void testMainLayersStayLogarithmic() {
+        List<RDFAtom> atoms = data(0, 4000);
+        RDFHexaStore expected = new RDFHexaStore();
+        try (DeltaMainStorage storage = new DeltaMainStorage(1 << 20, 1 << 20)) {
+            for (int from = 0; from < atoms.size(); from += 100) {
+                List<RDFAtom> batch = atoms.subList(from, Math.min(from + 100, atoms.size()));
+                expected.addAll(batch);
+                storage.addAll(batch);
+                storage.compact();
+                // Les parties triées sont de tailles décroissantes de facteur deux au moins
+                int bound = 64 - Long.numberOfLeadingZeros(storage.size()) + 1;
+                assertTrue(storage.mainLayerCount() <= bound, () -> storage.mainLayerCount() + " parties");
+            }
+            assertEquals(0, storage.deltaSize());
+            assertSameAnswers(expected, storage);
+        }
+    }
+}
@@ -52,6 +52,23 @@ class DictionnaryTest {
         assertEquals(term, dictionary.getKey(0), "The term should be retrieved by index 0.");
     }
 
+    @Test
+    void removedIndexIsReused() {
+        Dictionary dictionary = new Dictionary();
+        Term term1 = SameObjectTermFactory.instance().createOrGetLiteral("term1");
+        Term term2 = SameObjectTermFactory.instance().createOrGetLiteral("term2");
+        dictionary.add(term1);
+        dictionary.add(term2);
+        assertTrue(dictionary.remove(0), "The term should be removed.");
+        assertFalse(dictionary.remove(0), "The index should no longer be assigned.");
+        assertNull(dictionary.get(term1), "The removed term should not exist in the dictionary.");
+        assertNull(dictionary.getKey(0), "There should be no term for the removed index.");
+
+        Term term3 = SameObjectTermFactory.instance().createOrGetLiteral("term3");
+        assertEquals(0, dictionary.addAndGet(term3), "The removed index should be reused.");
+        assertEquals(2, dictionary.size());
+    }
+
     @Test
     void getKeyByNonExistingIndex() {
         Dictionary dictionary = new Dictionary();
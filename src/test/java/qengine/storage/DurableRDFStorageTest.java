@@ -0,0 +1,198 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link DurableRDFStorage} : journal d'écriture anticipée, instantanés et reprise.
+ */
+class DurableRDFStorageTest {
+    private static final Literal<String> KNOWS = SameObjectTermFactory.instance().createOrGetLiteral("knows");
+    private static final Variable VAR_X = SameObjectTermFactory.instance().createOrGetVariable("?x");
+    private static final Variable VAR_Y = SameObjectTermFactory.instance().createOrGetVariable("?y");
+    private static final StarQuery ALL = new StarQuery("All", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y)),
+            List.of(VAR_X, VAR_Y));
+
+    @TempDir
+    Path directory;
+
+    private static List<RDFAtom> data(int from, int to) {
+        List<RDFAtom> atoms = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            atoms.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("person" + i), KNOWS,
+                    SameObjectTermFactory.instance().createOrGetLiteral("person" + (i * 7 + 1) % to)));
+        }
+        return atoms;
+    }
+
+    private static Set<Substitution> answers(RDFStorage storage) {
+        Set<Substitution> set = new HashSet<>();
+        storage.match(ALL).forEachRemaining(set::add);
+        return set;
+    }
+
+    @Test
+    void testRecoveryFromLogAndSnapshot() throws IOException {
+        RDFHexaStore expected = new RDFHexaStore();
+        expected.addAll(data(0, 100));
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 16, true)) {
+            assertTrue(storage.addAll(data(0, 100)));
+            assertFalse(storage.add(data(0, 100).get(0)));
+            assertEquals(7, storage.committedBatches());
+        }
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 16, true)) {
+            assertEquals(7, storage.recoveredBatches());
+            assertEquals(100, storage.size());
+            assertEquals(answers(expected), answers(storage));
+
+            storage.checkpoint();
+            assertEquals(0, storage.logSize());
+            // Les ajouts suivants vont dans le journal vidé ; le dernier lot est validé à la fermeture
+            for (RDFAtom atom : data(100, 150)) {
+                storage.add(atom);
+            }
+        }
+        expected.addAll(data(100, 150));
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 16, false)) {
+            assertEquals(4, storage.recoveredBatches());
+            assertEquals(expected.size(), storage.size());
+            assertEquals(answers(expected), answers(storage));
+            for (int id = 0; id < expected.termCount(); id++) {
+                assertEquals(expected.termOf(id), storage.store().termOf(id));
+            }
+        }
+    }
+
+    @Test
+    void testRecoveryWithReusedIds() throws IOException {
+        List<RDFAtom> atoms = data(0, 20);
+        RDFAtom removed = new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("alone"), KNOWS,
+                SameObjectTermFactory.instance().createOrGetLiteral("nobody"));
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 4, false)) {
+            storage.addAll(atoms);
+            storage.add(removed);
+            // Une purge de l'HexaStore libère les identifiants de ses termes, réattribués aux termes suivants
+            assertTrue(storage.remove(removed));
+            assertEquals(1, storage.purge());
+            storage.checkpoint();
+            storage.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("late"), KNOWS,
+                    SameObjectTermFactory.instance().createOrGetLiteral("person3")));
+        }
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 4, false)) {
+            assertEquals(21, storage.size());
+            RDFHexaStore expected = new RDFHexaStore();
+            expected.addAll(atoms);
+            expected.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("late"), KNOWS,
+                    SameObjectTermFactory.instance().createOrGetLiteral("person3")));
+            assertEquals(answers(expected), answers(storage));
+            assertNull(storage.store().idOf(SameObjectTermFactory.instance().createOrGetLiteral("alone")));
+            storage.checkpoint();
+        }
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 4, false)) {
+            assertEquals(21, storage.size());
+        }
+    }
+
+    @Test
+    void testRecoveryOfRemovals() throws IOException {
+        // Assez de suppressions pour déclencher une purge automatique, puis des ajouts qui réutilisent les identifiants
+        List<RDFAtom> atoms = data(0, 3000);
+        List<RDFAtom> removed = atoms.subList(0, 1500);
+        List<RDFAtom> late = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            late.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("late" + i), KNOWS,
+                    SameObjectTermFactory.instance().createOrGetLiteral("person" + i)));
+        }
+        RDFHexaStore expected = new RDFHexaStore();
+        expected.addAll(atoms);
+        expected.removeAll(removed);
+        expected.addAll(late);
+        assertTrue(expected.remove(late.get(0)));
+        assertFalse(expected.remove(late.get(0)));
+
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 64, false)) {
+            storage.addAll(atoms);
+            assertTrue(storage.removeAll(removed));
+            assertTrue(storage.store().tombstoneCount() < removed.size(),
+                    "Les suppressions doivent avoir déclenché une purge.");
+            storage.addAll(late);
+            assertTrue(storage.remove(late.get(0)));
+            assertFalse(storage.remove(late.get(0)));
+            assertFalse(storage.remove(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("unknown"),
+                    KNOWS, KNOWS)));
+        }
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 64, false)) {
+            assertEquals(expected.size(), storage.size());
+            assertEquals(answers(expected), answers(storage));
+            for (int id = 0; id < expected.termCount(); id++) {
+                assertEquals(expected.termOf(id), storage.store().termOf(id));
+            }
+            // Les suppressions sont reprises par l'instantané, sans triplet marqué
+            storage.removeAll(atoms.subList(1500, 1600));
+            storage.checkpoint();
+            assertEquals(0, storage.logSize());
+        }
+        expected.removeAll(atoms.subList(1500, 1600));
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 64, false)) {
+            assertEquals(0, storage.recoveredBatches());
+            assertEquals(expected.size(), storage.size());
+            assertEquals(answers(expected), answers(storage));
+        }
+    }
+
+    @Test
+    void testTornBatchIsDiscarded() throws IOException {
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 10, false)) {
+            storage.addAll(data(0, 30));
+        }
+        // Arrêt brutal au milieu de l'écriture du dernier lot
+        Path log = directory.resolve(DurableRDFStorage.LOG_FILE);
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 10, false)) {
+            assertEquals(2, storage.recoveredBatches());
+            assertEquals(20, storage.size());
+            assertTrue(Files.size(log) < size - 5, "Le lot incomplet doit être retiré du journal.");
+            storage.addAll(data(20, 30));
+        }
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 10, false)) {
+            assertEquals(30, storage.size());
+        }
+    }
+
+    @Test
+    void testReplayAfterSnapshotIsIdempotent() throws IOException {
+        Path log = directory.resolve(DurableRDFStorage.LOG_FILE);
+        Path copy = directory.resolve("copy.log");
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 8, false)) {
+            storage.addAll(data(0, 40));
+            Files.copy(log, copy);
+            storage.checkpoint();
+        }
+        // Arrêt entre l'écriture de l'instantané et la remise à zéro du journal
+        Files.move(copy, log, StandardCopyOption.REPLACE_EXISTING);
+        try (DurableRDFStorage storage = new DurableRDFStorage(directory, 8, false)) {
+            assertEquals(5, storage.recoveredBatches());
+            assertEquals(40, storage.size());
+        }
+    }
+}
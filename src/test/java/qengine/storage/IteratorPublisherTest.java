@@ -0,0 +1,160 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link IteratorPublisher} et la publication des réponses de l'HexaStore.
+ */
+class IteratorPublisherTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Abonné de test : enregistre les signaux reçus et laisse le test piloter la demande.
+     */
+    private static final class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+        final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch terminated = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+
+        void awaitItems(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (items.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    /**
+     * Itérateur comptant les éléments tirés, pour vérifier que le parcours suit la demande.
+     */
+    private static Iterator<Integer> counting(int size, AtomicInteger pulled) {
+        Iterator<Integer> values = IntStream.range(0, size).iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                pulled.incrementAndGet();
+                return values.next();
+            }
+        };
+    }
+
+    @Test
+    void testDemandIsHonoured() throws InterruptedException {
+        AtomicInteger pulled = new AtomicInteger();
+        IteratorPublisher<Integer> publisher = new IteratorPublisher<>(() -> counting(1000, pulled), executor);
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+        publisher.subscribe(subscriber);
+
+        // Sans demande, rien n'est parcouru
+        Thread.sleep(50);
+        assertEquals(0, pulled.get());
+
+        subscriber.subscription.request(3);
+        subscriber.awaitItems(3);
+        Thread.sleep(50);
+        assertEquals(List.of(0, 1, 2), subscriber.items);
+        assertEquals(3, pulled.get(), "Le parcours doit s'arrêter avec la demande.");
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.completed);
+        assertEquals(1000, subscriber.items.size());
+        assertEquals(IntStream.range(0, 1000).boxed().toList(), subscriber.items);
+    }
+
+    @Test
+    void testCancelAndInvalidRequest() throws InterruptedException {
+        AtomicInteger pulled = new AtomicInteger();
+        RecordingSubscriber<Integer> cancelled = new RecordingSubscriber<>();
+        new IteratorPublisher<>(() -> counting(1000, pulled), executor).subscribe(cancelled);
+        cancelled.subscription.request(2);
+        cancelled.awaitItems(2);
+        cancelled.subscription.cancel();
+        cancelled.subscription.request(10);
+        Thread.sleep(50);
+        assertEquals(2, cancelled.items.size());
+        assertFalse(cancelled.completed);
+
+        RecordingSubscriber<Integer> invalid = new RecordingSubscriber<>();
+        new IteratorPublisher<>(() -> counting(10, new AtomicInteger()), executor).subscribe(invalid);
+        invalid.subscription.request(0);
+        assertTrue(invalid.terminated.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, invalid.error);
+    }
+
+    @Test
+    void testPublishStarQuery() throws InterruptedException {
+        RDFHexaStore store = new RDFHexaStore();
+        Literal<String> predicate = SameObjectTermFactory.instance().createOrGetLiteral("predicate");
+        Literal<String> object = SameObjectTermFactory.instance().createOrGetLiteral("object");
+        for (int i = 0; i < 600; i++) {
+            store.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s" + i), predicate, object));
+        }
+        Variable x = SameObjectTermFactory.instance().createOrGetVariable("?x");
+        StarQuery query = new StarQuery("Q", List.of(new RDFAtom(x, predicate, object)), List.of(x));
+
+        RecordingSubscriber<Substitution> substitutions = new RecordingSubscriber<>();
+        store.publish(query, executor).subscribe(substitutions);
+        substitutions.subscription.request(Long.MAX_VALUE);
+        assertTrue(substitutions.terminated.await(5, TimeUnit.SECONDS));
+        Set<Substitution> expected = new HashSet<>();
+        store.match(query).forEachRemaining(expected::add);
+        assertEquals(expected, new HashSet<>(substitutions.items));
+
+        RecordingSubscriber<int[]> rows = new RecordingSubscriber<>();
+        store.publishEncoded(query, executor).subscribe(rows);
+        rows.subscription.request(10);
+        rows.awaitItems(10);
+        rows.subscription.request(1000);
+        assertTrue(rows.terminated.await(5, TimeUnit.SECONDS));
+        assertEquals(600, rows.items.size());
+    }
+}
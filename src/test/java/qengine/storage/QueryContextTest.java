@@ -0,0 +1,133 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import org.junit.jupiter.api.Test;
+import qengine.model.BGPQuery;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link QueryContext} : annulation, délai et budget mémoire des requêtes.
+ */
+class QueryContextTest {
+    private static final Literal<String> KNOWS = SameObjectTermFactory.instance().createOrGetLiteral("knows");
+    private static final Literal<String> LIKES = SameObjectTermFactory.instance().createOrGetLiteral("likes");
+    private static final Variable VAR_X = SameObjectTermFactory.instance().createOrGetVariable("?x");
+    private static final Variable VAR_Y = SameObjectTermFactory.instance().createOrGetVariable("?y");
+    private static final Variable VAR_Z = SameObjectTermFactory.instance().createOrGetVariable("?z");
+    private static final Variable VAR_P = SameObjectTermFactory.instance().createOrGetVariable("?p");
+
+    /**
+     * Chaque personne connaît et aime 20 autres personnes : 2 × 2000 triplets.
+     */
+    private static RDFHexaStore denseStore() {
+        RDFHexaStore store = new RDFHexaStore();
+        for (int i = 0; i < 100; i++) {
+            for (int j = 1; j <= 20; j++) {
+                Literal<String> subject = SameObjectTermFactory.instance().createOrGetLiteral("person" + i);
+                Literal<String> object = SameObjectTermFactory.instance().createOrGetLiteral("person" + (i + j) % 100);
+                store.add(new RDFAtom(subject, KNOWS, object));
+                store.add(new RDFAtom(subject, LIKES, object));
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Chaîne de trois atomes, décomposée en deux étoiles jointes par hachage.
+     */
+    private static BGPQuery longChain() {
+        return new BGPQuery("LongChain", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, LIKES, VAR_Z),
+                new RDFAtom(VAR_Z, KNOWS, VAR_P)), List.of(VAR_X, VAR_P), List.of(), SolutionModifiers.NONE);
+    }
+
+    private static BGPQuery chain() {
+        return new BGPQuery("Chain", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, LIKES, VAR_Z)),
+                List.of(VAR_X, VAR_Z), List.of(), SolutionModifiers.NONE);
+    }
+
+    @Test
+    void testCancellation() {
+        RDFHexaStore store = denseStore();
+        StarQuery all = new StarQuery("All", List.of(new RDFAtom(VAR_X, VAR_P, VAR_Y)), List.of(VAR_X, VAR_P, VAR_Y));
+        long before = QueryContext.abortedCount(QueryAbortedException.Reason.CANCELLED);
+
+        QueryContext context = new QueryContext();
+        Iterator<Substitution> results = store.match(all, context);
+        for (int i = 0; i < 10; i++) {
+            results.next();
+        }
+        context.cancel();
+        QueryAbortedException e = assertThrows(QueryAbortedException.class, () -> {
+            while (results.hasNext()) results.next();
+        });
+        assertEquals(QueryAbortedException.Reason.CANCELLED, e.reason());
+        // L'interruption n'est comptée qu'une fois, même si l'itérateur est de nouveau sollicité
+        assertSame(e, assertThrows(QueryAbortedException.class, results::hasNext));
+        assertEquals(before + 1, QueryContext.abortedCount(QueryAbortedException.Reason.CANCELLED));
+    }
+
+    @Test
+    void testTimeout() throws InterruptedException {
+        RDFHexaStore store = denseStore();
+        long before = QueryContext.abortedCount();
+
+        QueryContext expired = new QueryContext(Duration.ofMillis(1), Long.MAX_VALUE);
+        Thread.sleep(10);
+        QueryAbortedException e = assertThrows(QueryAbortedException.class, () -> store.matchTriejoin(chain(), expired));
+        assertEquals(QueryAbortedException.Reason.TIMEOUT, e.reason());
+        assertEquals(before + 1, QueryContext.abortedCount());
+
+        // Un délai suffisant ne change pas les réponses
+        Set<Substitution> expected = new HashSet<>();
+        store.match(chain()).forEachRemaining(expected::add);
+        Set<Substitution> actual = new HashSet<>();
+        store.matchTriejoin(chain(), new QueryContext(Duration.ofMinutes(1), Long.MAX_VALUE))
+                .forEachRemaining(actual::add);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testMemoryBudget() {
+        RDFHexaStore store = denseStore();
+        long before = QueryContext.abortedCount(QueryAbortedException.Reason.MEMORY);
+
+        // La table de jointure de la seconde étoile dépasse le budget dès sa construction
+        QueryAbortedException e = assertThrows(QueryAbortedException.class,
+                () -> store.match(longChain(), new QueryContext(null, 1024)));
+        assertEquals(QueryAbortedException.Reason.MEMORY, e.reason());
+
+        QueryContext generous = new QueryContext(null, 1 << 20);
+        Set<Substitution> expected = new HashSet<>();
+        store.match(longChain()).forEachRemaining(expected::add);
+        Set<Substitution> actual = new HashSet<>();
+        store.match(longChain(), generous).forEachRemaining(actual::add);
+        assertEquals(expected, actual);
+        assertTrue(generous.reservedBytes() > 0);
+
+        // Fusion naïve de substitutions : chaque substitution produite est réservée
+        List<Substitution> left = new ArrayList<>();
+        List<Substitution> right = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Substitution x = new SubstitutionImpl();
+            x.add(VAR_X, SameObjectTermFactory.instance().createOrGetLiteral("person" + i));
+            left.add(x);
+            Substitution y = new SubstitutionImpl();
+            y.add(VAR_Y, SameObjectTermFactory.instance().createOrGetLiteral("person" + i));
+            right.add(y);
+        }
+        assertThrows(QueryAbortedException.class, () -> store.mergeGeneral(left, right, new QueryContext(null, 4096)));
+        assertEquals(10000, store.mergeGeneral(left, right).size());
+        assertEquals(before + 2, QueryContext.abortedCount(QueryAbortedException.Reason.MEMORY));
+    }
+}
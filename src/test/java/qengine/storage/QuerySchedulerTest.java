@@ -0,0 +1,138 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFAtom;
+import qengine.model.StarQuery;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link QueryScheduler}.
+ */
+class QuerySchedulerTest {
+    private static final Literal<String> KNOWS = SameObjectTermFactory.instance().createOrGetLiteral("knows");
+    private static final Literal<String> PERSON_0 = SameObjectTermFactory.instance().createOrGetLiteral("person0");
+    private static final Variable VAR_X = SameObjectTermFactory.instance().createOrGetVariable("?x");
+    private static final Variable VAR_Y = SameObjectTermFactory.instance().createOrGetVariable("?y");
+
+    /**
+     * HexaStore dont l'évaluation des requêtes étiquetées "Blocking" attend une barrière, pour occuper une voie.
+     */
+    private static final class GatedStore extends RDFHexaStore {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<String> evaluated = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Iterator<Substitution> match(StarQuery query, QueryContext context) {
+            if (query.getLabel().equals("Blocking")) {
+                started.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            evaluated.add(query.getLabel());
+            return super.match(query, context);
+        }
+    }
+
+    private static GatedStore store() {
+        GatedStore store = new GatedStore();
+        for (int i = 0; i < 50; i++) {
+            for (int j = 1; j <= 10; j++) {
+                store.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("person" + i), KNOWS,
+                        SameObjectTermFactory.instance().createOrGetLiteral("person" + (i + j) % 50)));
+            }
+        }
+        return store;
+    }
+
+    private static StarQuery cheap(String label) {
+        return new StarQuery(label, List.of(new RDFAtom(PERSON_0, KNOWS, VAR_Y)), List.of(VAR_Y));
+    }
+
+    private static StarQuery expensive(String label) {
+        return new StarQuery(label, List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Y));
+    }
+
+    @Test
+    void testRoutingByCost() throws Exception {
+        GatedStore store = store();
+        assertEquals(10, store.estimateCost(cheap("Q")));
+        assertEquals(500, store.estimateCost(expensive("Q")));
+
+        try (QueryScheduler scheduler = new QueryScheduler(store, 100, 2, 1)) {
+            assertEquals(QueryScheduler.Lane.CHEAP, scheduler.laneOf(cheap("Q")));
+            assertEquals(QueryScheduler.Lane.EXPENSIVE, scheduler.laneOf(expensive("Q")));
+
+            // Une requête lourde bloquée n'empêche pas les requêtes légères de passer
+            CompletableFuture<QueryScheduler.Execution> blocked = scheduler.submit(expensive("Blocking"));
+            QueryScheduler.Execution light = scheduler.submit(cheap("Light")).get(5, TimeUnit.SECONDS);
+            assertEquals(QueryScheduler.Lane.CHEAP, light.lane());
+            assertEquals(10, light.answers().size());
+            assertFalse(blocked.isDone());
+
+            store.gate.countDown();
+            QueryScheduler.Execution heavy = blocked.get(5, TimeUnit.SECONDS);
+            assertEquals(QueryScheduler.Lane.EXPENSIVE, heavy.lane());
+            assertEquals(500, heavy.answers().size());
+            assertEquals(1, scheduler.statistics(QueryScheduler.Lane.CHEAP).completed());
+            assertEquals(1, scheduler.statistics(QueryScheduler.Lane.EXPENSIVE).completed());
+        }
+    }
+
+    @Test
+    void testPriorityAndQueueingDelay() throws Exception {
+        GatedStore store = store();
+        try (QueryScheduler scheduler = new QueryScheduler(store, 100, 1, 1)) {
+            CompletableFuture<QueryScheduler.Execution> blocking = scheduler.submit(expensive("Blocking"));
+            assertTrue(store.started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<QueryScheduler.Execution> low = scheduler.submit(expensive("Low"), -1);
+            CompletableFuture<QueryScheduler.Execution> normal = scheduler.submit(expensive("Normal"));
+            CompletableFuture<QueryScheduler.Execution> high = scheduler.submit(expensive("High"), 5);
+            Thread.sleep(20);
+            assertEquals(3, scheduler.statistics(QueryScheduler.Lane.EXPENSIVE).queued());
+
+            store.gate.countDown();
+            CompletableFuture.allOf(blocking, low, normal, high).get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("Blocking", "High", "Normal", "Low"), store.evaluated);
+
+            // Les requêtes en file ont attendu au moins la durée du blocage, indépendamment de leur évaluation
+            assertTrue(low.get().queueing().toMillis() >= 20);
+            assertTrue(low.get().queueing().compareTo(low.get().execution()) > 0);
+            QueryScheduler.LaneStatistics statistics = scheduler.statistics(QueryScheduler.Lane.EXPENSIVE);
+            assertEquals(4, statistics.completed());
+            assertEquals(0, statistics.queued());
+            assertTrue(statistics.meanQueueing().compareTo(statistics.queueing()) <= 0);
+        }
+    }
+
+    @Test
+    void testCancelAndClose() throws Exception {
+        GatedStore store = store();
+        QueryScheduler scheduler = new QueryScheduler(store, 100, 1, 1);
+        CompletableFuture<QueryScheduler.Execution> blocking = scheduler.submit(expensive("Blocking"));
+        assertTrue(store.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<QueryScheduler.Execution> cancelled = scheduler.submit(expensive("Cancelled"));
+        CompletableFuture<QueryScheduler.Execution> pending = scheduler.submit(expensive("Pending"));
+        cancelled.cancel(false);
+        Thread.sleep(20);
+        assertEquals(1, scheduler.statistics(QueryScheduler.Lane.EXPENSIVE).queued());
+
+        scheduler.close();
+        assertTrue(pending.isCancelled());
+        assertTrue(blocking.isCancelled());
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(cheap("Late")));
+        store.gate.countDown();
+        assertFalse(store.evaluated.contains("Cancelled"));
+    }
+}
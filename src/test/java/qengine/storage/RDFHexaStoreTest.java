@@ -10,11 +10,19 @@ import fr.boreal.model.query.api.FOQuery;
 import fr.boreal.model.queryEvaluation.api.FOQueryEvaluator;
 import fr.boreal.query_evaluation.generic.GenericFOQueryEvaluator;
 import fr.boreal.storage.natives.SimpleInMemoryGraphStore;
+import qengine.model.BGPQuery;
+import qengine.model.ComparisonFilter;
+import qengine.model.QueryTemplate;
 import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
 import qengine.model.StarQuery;
 import org.junit.jupiter.api.Test;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -413,6 +421,646 @@ class RDFHexaStoreTest {
         assertTrue(integraal.containsAll(res), "Integraal doesn't have the same result:"+ integraal);
     }
 
+    @Test
+    void testMatchStarQueryWithFilter() {
+        RDFHexaStore store = new RDFHexaStore();
+        Literal<String> age18 = SameObjectTermFactory.instance().createOrGetLiteral("18");
+        Literal<String> age25 = SameObjectTermFactory.instance().createOrGetLiteral("25");
+        Literal<String> age40 = SameObjectTermFactory.instance().createOrGetLiteral("40");
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, age18));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, age25));
+        store.add(new RDFAtom(OBJECT_1, PREDICATE_1, age40));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_2, OBJECT_3));
+        store.add(new RDFAtom(OBJECT_1, PREDICATE_2, OBJECT_3));
+
+        // ?x predicate1 ?y . ?x predicate2 object3 . FILTER(?y >= 20 && ?y < 40)
+        List<RDFAtom> atoms = List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y), new RDFAtom(VAR_X, PREDICATE_2, OBJECT_3));
+        List<ComparisonFilter> filters = List.of(
+                new ComparisonFilter(VAR_Y, ComparisonFilter.Operator.GE, SameObjectTermFactory.instance().createOrGetLiteral("20")),
+                new ComparisonFilter(VAR_Y, ComparisonFilter.Operator.LT, age40));
+        StarQuery q = new StarQuery("Filtered star query", atoms, List.of(VAR_X, VAR_Y), filters);
+
+        List<Substitution> matchedList = executeStarQueryHexaStore(q, store);
+        Substitution expected = new SubstitutionImpl();
+        expected.add(VAR_X, SUBJECT_2);
+        expected.add(VAR_Y, age25);
+        assertEquals(List.of(expected), matchedList, "Only subject2 satisfies the filter.");
+
+        // Un filtre != n'est pas traduit en intervalle et est vérifié lors de la liaison de la variable
+        StarQuery notEqual = new StarQuery("Filtered star query", atoms, List.of(VAR_X, VAR_Y),
+                List.of(new ComparisonFilter(VAR_Y, ComparisonFilter.Operator.NE, age25)));
+        List<Substitution> notEqualList = executeStarQueryHexaStore(notEqual, store);
+        assertEquals(1, notEqualList.size(), "Only object1 has an age different from 25.");
+        assertEquals(OBJECT_1, notEqualList.getFirst().toMap().get(VAR_X));
+    }
+
+    @Test
+    void testMatchStarQueryWithLimitOffsetAndAsk() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_2));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_3));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_3));
+
+        List<RDFAtom> atoms = List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y));
+        StarQuery all = new StarQuery("All", atoms, List.of(VAR_X, VAR_Y));
+        List<Substitution> allList = executeStarQueryHexaStore(all, store);
+        assertEquals(4, allList.size());
+
+        // LIMIT 2 OFFSET 1 : une fenêtre de l'ordre de parcours complet
+        StarQuery window = new StarQuery("Window", atoms, List.of(VAR_X, VAR_Y), List.of(),
+                SolutionModifiers.NONE.withOffset(1).withLimit(2));
+        assertEquals(allList.subList(1, 3), executeStarQueryHexaStore(window, store));
+
+        StarQuery beyond = new StarQuery("Beyond", atoms, List.of(VAR_X, VAR_Y), List.of(),
+                SolutionModifiers.NONE.withOffset(10));
+        assertTrue(executeStarQueryHexaStore(beyond, store).isEmpty(), "An offset beyond the answers yields nothing.");
+
+        StarQuery none = new StarQuery("None", atoms, List.of(VAR_X, VAR_Y), List.of(),
+                SolutionModifiers.NONE.withLimit(0));
+        assertTrue(executeStarQueryHexaStore(none, store).isEmpty(), "LIMIT 0 yields nothing.");
+
+        // ASK : une substitution vide si la requête est satisfaite, aucune sinon
+        StarQuery askTrue = new StarQuery("Ask", List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_3)), List.of(),
+                List.of(), SolutionModifiers.askQuery());
+        assertEquals(List.of(new SubstitutionImpl()), executeStarQueryHexaStore(askTrue, store));
+
+        StarQuery askFalse = new StarQuery("Ask", List.of(new RDFAtom(VAR_X, PREDICATE_2, OBJECT_3)), List.of(),
+                List.of(), SolutionModifiers.askQuery());
+        assertTrue(executeStarQueryHexaStore(askFalse, store).isEmpty(), "predicate2 has no triple.");
+    }
+
+    @Test
+    void testMatchStarQueryProjectsOnAnswerVariables() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_2));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_3));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_3));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_2, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_2, OBJECT_1));
+
+        // ?y est existentielle : subject1 n'apparaît qu'une fois malgré ses trois objets
+        StarQuery q = new StarQuery("Projection", List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y)), List.of(VAR_X));
+        List<Substitution> matchedList = executeStarQueryHexaStore(q, store);
+        assertEquals(2, matchedList.size(), "Each subject should be returned once.");
+        for (Substitution sub : matchedList) {
+            assertEquals(Set.of(VAR_X), sub.toMap().keySet(), "Only the answer variable should be bound.");
+        }
+
+        // Variable centrale existentielle : les doublons sur ?y sont éliminés
+        StarQuery leaves = new StarQuery("Projection", List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y),
+                new RDFAtom(VAR_X, PREDICATE_2, OBJECT_1)), List.of(VAR_Y));
+        List<Substitution> leavesList = executeStarQueryHexaStore(leaves, store);
+        assertEquals(3, leavesList.size(), "object3 is reached from both subjects but returned once.");
+        assertEquals(3, new HashSet<>(leavesList).size());
+    }
+
+    @Test
+    void testMatchBGPQuery() {
+        RDFHexaStore store = new RDFHexaStore();
+        FactBase factBase = new SimpleInMemoryGraphStore();
+        List<RDFAtom> rdfAtoms = List.of(
+                new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1),
+                new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_1),
+                new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_2),
+                new RDFAtom(OBJECT_1, PREDICATE_2, OBJECT_3),
+                new RDFAtom(OBJECT_2, PREDICATE_2, SUBJECT_1),
+                new RDFAtom(OBJECT_2, PREDICATE_1, OBJECT_3));
+        for (RDFAtom atom : rdfAtoms) {
+            factBase.add(atom);
+            store.add(atom);
+        }
+
+        // Chaîne ?x -predicate1-> ?y -predicate2-> ?z
+        List<RDFAtom> atoms = List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y), new RDFAtom(VAR_Y, PREDICATE_2, VAR_Z));
+        BGPQuery chain = new BGPQuery("Chain", atoms, List.of(VAR_X, VAR_Y, VAR_Z), List.of(), SolutionModifiers.NONE);
+        List<Substitution> expected = new ArrayList<>();
+        FOQueryEvaluator<FOFormula> evaluator = GenericFOQueryEvaluator.defaultInstance();
+        evaluator.evaluate(chain.asFOQuery(), factBase).forEachRemaining(expected::add);
+
+        List<Substitution> matchedList = new ArrayList<>();
+        store.match(chain).forEachRemaining(matchedList::add);
+        assertEquals(3, matchedList.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(matchedList));
+
+        // Projection sur ?x : subject2 atteint ?z par deux chemins mais n'apparaît qu'une fois
+        BGPQuery projected = new BGPQuery("Chain", atoms, List.of(VAR_X), List.of(), SolutionModifiers.NONE);
+        List<Substitution> projectedList = new ArrayList<>();
+        store.match(projected).forEachRemaining(projectedList::add);
+        assertEquals(2, projectedList.size(), "subject1 and subject2 should each be returned once.");
+
+        BGPQuery ask = new BGPQuery("Chain", atoms, List.of(), List.of(), SolutionModifiers.askQuery());
+        assertTrue(store.match(ask).hasNext());
+    }
+
+    @Test
+    void testMatchStarQueryOverSeveralBlocks() {
+        RDFHexaStore store = new RDFHexaStore();
+        FactBase factBase = new SimpleInMemoryGraphStore();
+        int subjects = 3 * StarQueryBlockIterator.BLOCK_SIZE;
+        for (int i = 0; i < subjects; i++) {
+            Literal<String> subject = SameObjectTermFactory.instance().createOrGetLiteral("s" + i);
+            List<RDFAtom> atoms = new ArrayList<>(List.of(
+                    new RDFAtom(subject, PREDICATE_2, SameObjectTermFactory.instance().createOrGetLiteral("v" + i % 7))));
+            if (i % 2 == 0) atoms.add(new RDFAtom(subject, PREDICATE_1, OBJECT_1));
+            if (i % 3 == 0) atoms.add(new RDFAtom(subject, PREDICATE_1, OBJECT_2));
+            for (RDFAtom atom : atoms) {
+                store.add(atom);
+                factBase.add(atom);
+            }
+        }
+
+        // Intersection des listes de sujets de (predicate1, object1) et (predicate1, object2), puis sondage de ?y
+        StarQuery query = new StarQuery("Blocs", List.of(
+                new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1),
+                new RDFAtom(VAR_X, PREDICATE_1, OBJECT_2),
+                new RDFAtom(VAR_X, PREDICATE_2, VAR_Y)), List.of(VAR_Y, VAR_X));
+        assertTrue(StarQueryBlockIterator.supports(query));
+        // Le store n'est plus modifié : après quelques lectures, les tries triés sont construits
+        for (int i = 0; i < RDFHexaStore.TRIE_BUILD_READS; i++) {
+            assertEquals(subjects / 6, count(store.match(query)));
+        }
+        assertTrue(StarQueryBlockIterator.hasTries(store, query));
+
+        List<Substitution> expected = new ArrayList<>();
+        FOQueryEvaluator<FOFormula> evaluator = GenericFOQueryEvaluator.defaultInstance();
+        evaluator.evaluate(query.asFOQuery(), factBase).forEachRemaining(expected::add);
+        List<Substitution> matchedList = new ArrayList<>();
+        store.match(query).forEachRemaining(matchedList::add);
+        assertEquals(subjects / 6, matchedList.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(matchedList));
+
+        // Sans ?x, les valeurs de ?y ne sont produites qu'une fois
+        StarQuery projected = new StarQuery("Blocs", query.getRdfAtoms(), List.of(VAR_Y));
+        matchedList.clear();
+        store.match(projected).forEachRemaining(matchedList::add);
+        assertEquals(7, new HashSet<>(matchedList).size());
+        assertEquals(7, matchedList.size());
+    }
+
+    @Test
+    void testSortedTriesFollowWrites() throws Exception {
+        RDFHexaStore store = new RDFHexaStore();
+        StarQuery query = new StarQuery("Étoile", List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1)), List.of(VAR_X));
+        assertTrue(StarQueryBlockIterator.supports(query));
+
+        // Écritures et lectures alternées : les requêtes parcourent les index sans construire de trie
+        for (int i = 0; i < 2 * RDFHexaStore.TRIE_BUILD_READS; i++) {
+            store.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s" + i), PREDICATE_1,
+                    i % 2 == 0 ? OBJECT_1 : OBJECT_2));
+            assertEquals(i / 2 + 1, count(store.match(query)));
+            assertFalse(StarQueryBlockIterator.hasTries(store, query));
+        }
+
+        // Lectures seules : les tries sont construits puis réutilisés, et invalidés par la suppression suivante
+        int expected = RDFHexaStore.TRIE_BUILD_READS;
+        for (int i = 0; i < RDFHexaStore.TRIE_BUILD_READS; i++) {
+            assertEquals(expected, count(store.match(query)));
+        }
+        assertTrue(StarQueryBlockIterator.hasTries(store, query));
+        assertTrue(store.remove(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s0"), PREDICATE_1, OBJECT_1)));
+        assertFalse(StarQueryBlockIterator.hasTries(store, query));
+        assertEquals(expected - 1, count(store.match(query)));
+
+        // Des lectures concurrentes partagent un même trie, construit une seule fois
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SortedTrie>> tries = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tries.add(executor.submit(() -> {
+                    start.await();
+                    return store.trie(1, 2);
+                }));
+            }
+            start.countDown();
+            for (Future<SortedTrie> trie : tries) {
+                assertSame(tries.getFirst().get(), trie.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testMatchStarQueryBatch() {
+        Literal<String> subject3 = SameObjectTermFactory.instance().createOrGetLiteral("subject3");
+        Literal<String> unknown = SameObjectTermFactory.instance().createOrGetLiteral("unknown");
+        RDFHexaStore store = new RDFHexaStore();
+        store.addAll(List.of(
+                new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1),
+                new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_2),
+                new RDFAtom(SUBJECT_1, PREDICATE_2, OBJECT_3),
+                new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_1),
+                new RDFAtom(SUBJECT_2, PREDICATE_2, OBJECT_3),
+                new RDFAtom(subject3, PREDICATE_1, OBJECT_2)));
+
+        // (predicate1, object1) est partagé par les trois premières requêtes, sous des noms de variable différents
+        List<StarQuery> queries = List.of(
+                new StarQuery("Q1", List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1)), List.of(VAR_X)),
+                new StarQuery("Q2", List.of(
+                        new RDFAtom(VAR_Y, PREDICATE_1, OBJECT_1),
+                        new RDFAtom(VAR_Y, PREDICATE_1, OBJECT_2)), List.of(VAR_Y)),
+                new StarQuery("Q3", List.of(
+                        new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1),
+                        new RDFAtom(VAR_X, PREDICATE_2, VAR_Z)), List.of(VAR_X, VAR_Z)),
+                new StarQuery("Q4", List.of(
+                        new RDFAtom(VAR_X, PREDICATE_1, OBJECT_2),
+                        new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1)), List.of(VAR_X)),
+                new StarQuery("Q5", List.of(new RDFAtom(VAR_X, PREDICATE_1, unknown)), List.of(VAR_X)));
+
+        StarQueryBatch batch = new StarQueryBatch(store, queries);
+        assertEquals(5, batch.size());
+        // 7 occurrences d'atomes partageables pour 3 atomes distincts
+        assertEquals(4, batch.sharedAtoms());
+        assertEquals(4.0 / 7, batch.sharingRatio(), 1e-9);
+
+        List<Iterator<Substitution>> results = batch.matchAll();
+        for (int i = 0; i < queries.size(); i++) {
+            List<Substitution> expected = new ArrayList<>();
+            store.match(queries.get(i)).forEachRemaining(expected::add);
+            List<Substitution> matchedList = new ArrayList<>();
+            results.get(i).forEachRemaining(matchedList::add);
+            assertEquals(expected.size(), matchedList.size(), "Requête " + queries.get(i).getLabel());
+            assertEquals(new HashSet<>(expected), new HashSet<>(matchedList));
+        }
+        assertFalse(batch.match(4).hasNext());
+    }
+
+    @Test
+    void testPrepareStarQuery() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_2, OBJECT_3));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_2));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_2, OBJECT_1));
+
+        // Modèle : ?x predicate1 ?y . ?x predicate2 ?z, où ?y est un paramètre
+        StarQuery query = new StarQuery("Modèle",
+                List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y), new RDFAtom(VAR_X, PREDICATE_2, VAR_Z)),
+                List.of(VAR_X, VAR_Z));
+        QueryTemplate template = new QueryTemplate(query, List.of(VAR_Y));
+        PreparedQuery prepared = store.prepare(template);
+
+        for (Term value : List.of(OBJECT_1, OBJECT_2, OBJECT_3, SUBJECT_1)) {
+            List<Substitution> expected = new ArrayList<>();
+            store.match(template.instantiate(List.of(value))).forEachRemaining(expected::add);
+            List<Substitution> executed = new ArrayList<>();
+            prepared.execute(List.of(value)).forEachRemaining(executed::add);
+            assertEquals(expected, executed, "La requête préparée devrait donner les réponses du modèle instancié.");
+        }
+
+        // Une constante inconnue du dictionnaire ne donne aucune réponse
+        assertFalse(prepared.execute(List.of(SameObjectTermFactory.instance().createOrGetLiteral("unknown"))).hasNext());
+
+        // Le plan préparé voit les triplets ajoutés après la préparation
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_3));
+        List<Substitution> executed = new ArrayList<>();
+        prepared.execute(List.of(OBJECT_3)).forEachRemaining(executed::add);
+        assertEquals(1, executed.size());
+        assertEquals(SUBJECT_2, executed.getFirst().toMap().get(VAR_X));
+    }
+
+    @Test
+    void testEncodedStarQuery() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_2, OBJECT_2));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_1));
+
+        StarQuery query = new StarQuery("Encodée",
+                List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1), new RDFAtom(VAR_X, PREDICATE_2, VAR_Y)),
+                List.of(VAR_X, VAR_Y));
+        EncodedStarQuery encoded = store.encode(query);
+        assertFalse(encoded.isEmpty());
+        assertEquals(List.of(VAR_X, VAR_Y), encoded.variables());
+        for (int run = 0; run < 2; run++) {
+            assertEquals(answers(store.match(query)), answers(store.match(encoded)));
+        }
+
+        // Une constante inconnue rend la requête vide, jusqu'à ce qu'elle soit ajoutée au store
+        StarQuery unknown = new StarQuery("Inconnue",
+                List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1), new RDFAtom(VAR_X, PREDICATE_2, OBJECT_3)),
+                List.of(VAR_X));
+        EncodedStarQuery encodedUnknown = store.encode(unknown);
+        assertTrue(encodedUnknown.isEmpty());
+        assertFalse(store.match(encodedUnknown).hasNext());
+        assertFalse(store.match(new RDFAtom(VAR_X, PREDICATE_2, OBJECT_3)).hasNext());
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_2, OBJECT_3));
+        assertFalse(encodedUnknown.isEmpty());
+        assertEquals(List.of(SUBJECT_2), store.match(encodedUnknown).next().toMap().values().stream().toList());
+
+        assertThrows(IllegalArgumentException.class, () -> new RDFHexaStore().match(encoded));
+    }
+
+    @Test
+    void testMatchTriejoinCyclicQuery() {
+        RDFHexaStore store = new RDFHexaStore();
+        FactBase factBase = new SimpleInMemoryGraphStore();
+        List<RDFAtom> rdfAtoms = List.of(
+                new RDFAtom(SUBJECT_1, PREDICATE_1, SUBJECT_2),
+                new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_1),
+                new RDFAtom(OBJECT_1, PREDICATE_1, SUBJECT_1),
+                new RDFAtom(OBJECT_1, PREDICATE_1, OBJECT_2),
+                new RDFAtom(OBJECT_2, PREDICATE_1, SUBJECT_2),
+                new RDFAtom(SUBJECT_2, PREDICATE_2, OBJECT_3));
+        for (RDFAtom atom : rdfAtoms) {
+            factBase.add(atom);
+            store.add(atom);
+        }
+
+        // Triangle ?x -> ?y -> ?z -> ?x : deux cycles, chacun trouvé à partir de ses trois sommets
+        List<RDFAtom> atoms = List.of(
+                new RDFAtom(VAR_X, PREDICATE_1, VAR_Y),
+                new RDFAtom(VAR_Y, PREDICATE_1, VAR_Z),
+                new RDFAtom(VAR_Z, PREDICATE_1, VAR_X));
+        BGPQuery triangle = new BGPQuery("Triangle", atoms, List.of(VAR_X, VAR_Y, VAR_Z), List.of(), SolutionModifiers.NONE);
+        List<Substitution> expected = new ArrayList<>();
+        FOQueryEvaluator<FOFormula> evaluator = GenericFOQueryEvaluator.defaultInstance();
+        evaluator.evaluate(triangle.asFOQuery(), factBase).forEachRemaining(expected::add);
+
+        List<Substitution> matchedList = new ArrayList<>();
+        store.matchTriejoin(triangle).forEachRemaining(matchedList::add);
+        assertEquals(6, matchedList.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(matchedList));
+
+        // Projection sur ?x : chaque sommet d'un triangle n'apparaît qu'une fois
+        BGPQuery projected = new BGPQuery("Triangle", atoms, List.of(VAR_X), List.of(), SolutionModifiers.NONE);
+        List<Substitution> projectedList = new ArrayList<>();
+        store.matchTriejoin(projected).forEachRemaining(projectedList::add);
+        assertEquals(4, projectedList.size(), "subject1, subject2, object1 and object2 should each be returned once.");
+
+        // Les instantanés triés sont reconstruits après un ajout
+        store.add(new RDFAtom(OBJECT_3, PREDICATE_1, OBJECT_3));
+        matchedList.clear();
+        store.matchTriejoin(triangle).forEachRemaining(matchedList::add);
+        assertEquals(7, matchedList.size());
+
+        BGPQuery limited = new BGPQuery("Triangle", atoms, List.of(VAR_X, VAR_Y, VAR_Z), List.of(),
+                new SolutionModifiers(2, 3, false));
+        matchedList.clear();
+        store.matchTriejoin(limited).forEachRemaining(matchedList::add);
+        assertEquals(3, matchedList.size());
+    }
+
+    @Test
+    void testMatchStarQueryIsLazy() {
+        RDFHexaStore store = new RDFHexaStore();
+        for (int i = 0; i < 1000; i++) {
+            store.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s" + i), PREDICATE_1, OBJECT_1));
+        }
+
+        // Les réponses sont produites une à une : la première est disponible sans parcourir les suivantes
+        StarQuery q = new StarQuery("Lazy", List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1)), List.of(VAR_X));
+        Iterator<Substitution> it = store.match(q);
+        assertTrue(it.hasNext());
+        assertNotNull(it.next().toMap().get(VAR_X));
+        int count = 1;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(1000, count);
+    }
+
+    @Test
+    void testRemoveBeforeAndAfterPurge() {
+        RDFHexaStore store = new RDFHexaStore();
+        RDFAtom removed = new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1);
+        store.add(removed);
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_2, OBJECT_3));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_2));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_2, OBJECT_3));
+
+        assertTrue(store.remove(removed), "Le RDFAtom devrait être supprimé.");
+        assertFalse(store.remove(removed), "Le RDFAtom ne devrait pas être supprimé deux fois.");
+        assertFalse(store.remove(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_3)));
+        assertEquals(3, store.size());
+        assertEquals(1, store.tombstoneCount());
+
+        // Tant qu'il n'est pas purgé, le triplet est ignoré par toutes les lectures
+        StarQuery star = new StarQuery("Star", List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y),
+                new RDFAtom(VAR_X, PREDICATE_2, OBJECT_3)), List.of(VAR_X, VAR_Y));
+        BGPQuery chain = new BGPQuery("Chain", star.getRdfAtoms(), List.of(VAR_X, VAR_Y), List.of(), SolutionModifiers.NONE);
+        for (int purge = 0; purge < 2; purge++) {
+            assertFalse(store.getAtoms().contains(removed));
+            assertFalse(store.match(removed).hasNext());
+            assertFalse(store.match(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1)).hasNext());
+            assertEquals(1, count(store.match(new RDFAtom(VAR_X, VAR_Y, OBJECT_3)))
+                    - count(store.match(new RDFAtom(SUBJECT_2, VAR_Y, OBJECT_3))));
+            List<Substitution> answers = new ArrayList<>();
+            store.match(star).forEachRemaining(answers::add);
+            assertEquals(1, answers.size());
+            assertEquals(SUBJECT_2, answers.getFirst().toMap().get(VAR_X));
+            assertEquals(1, count(store.matchTriejoin(chain)));
+            assertEquals(1, count(store.match(chain)));
+
+            assertEquals(purge == 0 ? 1 : 0, store.purge());
+            assertEquals(0, store.tombstoneCount());
+        }
+
+        // Un triplet supprimé puis ajouté de nouveau avant la purge est à nouveau visible
+        RDFAtom other = new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_2);
+        assertTrue(store.remove(other));
+        assertTrue(store.add(other));
+        assertFalse(store.add(other));
+        assertEquals(0, store.tombstoneCount());
+        assertEquals(1, count(store.match(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y))));
+        assertTrue(store.add(removed));
+        assertEquals(4, store.size());
+    }
+
+    @Test
+    void testPurgeReleasesDictionaryIds() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_2));
+        QueryTemplate template = new QueryTemplate(new StarQuery("Modèle",
+                List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y)), List.of(VAR_X)), List.of(VAR_Y));
+        PreparedQuery prepared = store.prepare(template);
+        assertEquals(1, count(prepared.execute(List.of(OBJECT_1))));
+
+        // object1 et subject1 ne sont plus utilisés : leurs identifiants sont réattribués aux nouveaux termes
+        int termCount = store.termCount();
+        assertTrue(store.removeAll(List.of(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1))));
+        store.purge();
+        store.add(new RDFAtom(OBJECT_3, PREDICATE_2, SUBJECT_2));
+        assertEquals(termCount, store.termCount(), "Les identifiants libérés devraient être réattribués.");
+        assertNull(store.idOf(SUBJECT_1));
+        assertNull(store.idOf(OBJECT_1));
+
+        assertFalse(prepared.execute(List.of(OBJECT_1)).hasNext());
+        assertEquals(1, count(prepared.execute(List.of(OBJECT_2))));
+        assertEquals(2, store.size());
+        assertEquals(Set.of(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_2), new RDFAtom(OBJECT_3, PREDICATE_2, SUBJECT_2)),
+                new HashSet<>(store.getAtoms()));
+
+        // La purge automatique se déclenche lorsque les triplets supprimés représentent une part suffisante du store
+        for (int i = 0; i < 4000; i++) {
+            store.add(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s" + i), PREDICATE_1, OBJECT_1));
+        }
+        for (int i = 0; i < 2000; i++) {
+            store.remove(new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s" + i), PREDICATE_1, OBJECT_1));
+        }
+        assertTrue(store.tombstoneCount() < 1024);
+        assertEquals(2002, store.size());
+        assertEquals(2001, count(store.match(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y))));
+    }
+
+    @Test
+    void testDeferredSecondaryIndexes() {
+        List<RDFAtom> atoms = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Literal<String> subject = SameObjectTermFactory.instance().createOrGetLiteral("s" + i);
+            atoms.add(new RDFAtom(subject, PREDICATE_1, SameObjectTermFactory.instance().createOrGetLiteral(String.valueOf(i % 50))));
+            atoms.add(new RDFAtom(subject, i % 3 == 0 ? PREDICATE_1 : PREDICATE_2, OBJECT_1));
+            atoms.add(new RDFAtom(subject, PREDICATE_2, SameObjectTermFactory.instance().createOrGetLiteral("s" + (i * 7 % 200))));
+        }
+        RDFHexaStore expected = new RDFHexaStore();
+        expected.addAll(atoms);
+
+        // Les constructions sont retenues jusqu'à leur exécution explicite
+        List<Runnable> builds = new ArrayList<>();
+        RDFHexaStore store = new RDFHexaStore(builds::add);
+        assertTrue(store.addAll(atoms.stream()));
+        assertEquals(5, builds.size());
+        assertFalse(store.secondaryIndexes().isDone());
+
+        StarQuery star = new StarQuery("Star", List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y),
+                new RDFAtom(VAR_X, PREDICATE_2, OBJECT_1)), List.of(VAR_X, VAR_Y));
+        StarQuery filtered = new StarQuery("Filtered", List.of(new RDFAtom(VAR_X, PREDICATE_1, VAR_Y)), List.of(VAR_X, VAR_Y),
+                List.of(new ComparisonFilter(VAR_Y, ComparisonFilter.Operator.LT, SameObjectTermFactory.instance().createOrGetLiteral("10"))));
+        BGPQuery chain = new BGPQuery("Chain", List.of(new RDFAtom(VAR_X, PREDICATE_2, VAR_Y),
+                new RDFAtom(VAR_Y, PREDICATE_1, VAR_Z)), List.of(VAR_X, VAR_Z), List.of(), SolutionModifiers.NONE);
+        List<RDFAtom> patterns = List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1), new RDFAtom(VAR_X, PREDICATE_2, VAR_Y),
+                new RDFAtom(VAR_X, VAR_Y, OBJECT_1), new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s3"), VAR_Y, OBJECT_1),
+                new RDFAtom(VAR_X, VAR_Y, VAR_Z));
+        for (int built = 0; built < 2; built++) {
+            assertEquals(expected.size(), store.size());
+            assertEquals(answers(expected.match(star)), answers(store.match(star)));
+            assertEquals(answers(expected.match(filtered)), answers(store.match(filtered)));
+            assertEquals(answers(expected.match(chain)), answers(store.match(chain)));
+            assertEquals(answers(expected.matchTriejoin(chain)), answers(store.matchTriejoin(chain)));
+            for (RDFAtom pattern : patterns) {
+                assertEquals(answers(expected.match(pattern)), answers(store.match(pattern)));
+            }
+            builds.forEach(Runnable::run);
+        }
+        assertTrue(store.secondaryIndexes().isDone());
+
+        // Les écritures suivantes remplissent de nouveau les six index
+        assertTrue(store.add(new RDFAtom(OBJECT_2, PREDICATE_1, OBJECT_1)));
+        assertEquals(1, count(store.match(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1))) - count(expected.match(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1))));
+    }
+
+    @Test
+    void testAdaptiveIndexSelection() {
+        List<RDFAtom> atoms = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Literal<String> subject = SameObjectTermFactory.instance().createOrGetLiteral("s" + i);
+            atoms.add(new RDFAtom(subject, i % 2 == 0 ? PREDICATE_1 : PREDICATE_2, SameObjectTermFactory.instance().createOrGetLiteral("o" + i % 20)));
+            atoms.add(new RDFAtom(subject, PREDICATE_2, SameObjectTermFactory.instance().createOrGetLiteral("s" + (i * 7 % 300))));
+        }
+        RDFHexaStore expected = new RDFHexaStore();
+        expected.addAll(atoms);
+        RDFHexaStore store = new RDFHexaStore();
+        store.addAll(atoms);
+        assertEquals(Set.of("spo", "sop", "pso", "pos", "osp", "ops"), store.indexes());
+
+        RDFAtom byObject = new RDFAtom(VAR_X, PREDICATE_1, SameObjectTermFactory.instance().createOrGetLiteral("o4"));
+        RDFAtom byObjectOnly = new RDFAtom(VAR_X, VAR_Y, SameObjectTermFactory.instance().createOrGetLiteral("o4"));
+        for (int i = 0; i < 100; i++) {
+            store.match(byObject);
+        }
+        assertEquals(100, store.shapeHits().get("VAR_CONST_CONST"));
+        assertEquals(100, store.indexHits().get("pos"));
+
+        // Le budget ne permet de maintenir qu'un index secondaire en plus de l'index SPO : le plus utilisé est retenu
+        Map<String, Long> memory = store.indexMemory();
+        long largest = memory.values().stream().mapToLong(Long::longValue).max().orElseThrow();
+        store.setIndexBudget(memory.get("spo") + largest);
+        assertEquals(Set.of("spo", "pos"), store.indexes());
+        assertFalse(store.indexMemory().containsKey("ops"));
+
+        // Les lectures qui ont besoin d'un index retiré parcourent l'index SPO
+        List<RDFAtom> patterns = List.of(byObject, byObjectOnly, new RDFAtom(VAR_X, PREDICATE_2, VAR_Y),
+                new RDFAtom(SameObjectTermFactory.instance().createOrGetLiteral("s3"), VAR_Y, VAR_Z), new RDFAtom(VAR_X, VAR_Y, VAR_Z));
+        for (RDFAtom pattern : patterns) {
+            assertEquals(answers(expected.match(pattern)), answers(store.match(pattern)));
+        }
+
+        // Les ajouts et les suppressions ne maintiennent que les index retenus
+        RDFAtom added = new RDFAtom(SUBJECT_1, PREDICATE_1, SameObjectTermFactory.instance().createOrGetLiteral("o4"));
+        assertTrue(store.add(added));
+        assertTrue(expected.add(added));
+        assertEquals(answers(expected.match(byObjectOnly)), answers(store.match(byObjectOnly)));
+        assertTrue(store.remove(added));
+        assertTrue(expected.remove(added));
+        store.purge();
+        assertNull(store.idOf(SUBJECT_1));
+
+        // La charge change : les accès manqués à l'index OPS le font reconstruire à la place de l'index POS,
+        // non par les lectures, qui ne modifient jamais les index, mais par l'écriture suivante
+        for (int i = 0; i < 1000; i++) {
+            store.match(byObjectOnly);
+        }
+        assertEquals(Set.of("spo", "pos"), store.indexes());
+        assertTrue(store.add(added));
+        assertTrue(expected.add(added));
+        assertEquals(Set.of("spo", "ops"), store.indexes());
+        assertEquals(answers(expected.match(byObject)), answers(store.match(byObject)));
+        assertEquals(answers(expected.match(byObjectOnly)), answers(store.match(byObjectOnly)));
+        // Une requête en étoile parcourt elle aussi l'index SPO à la place des index retirés
+        StarQuery star = new StarQuery("Star", List.of(new RDFAtom(VAR_X, PREDICATE_2, VAR_Y),
+                new RDFAtom(VAR_X, VAR_Z, SameObjectTermFactory.instance().createOrGetLiteral("o5"))), List.of(VAR_X, VAR_Y));
+        assertEquals(answers(expected.match(star)), answers(store.match(star)));
+
+        store.setIndexBudget(Long.MAX_VALUE);
+        assertEquals(6, store.indexes().size());
+        assertThrows(IllegalArgumentException.class, () -> store.setIndexBudget(-1));
+        for (RDFAtom pattern : patterns) {
+            assertEquals(answers(expected.match(pattern)), answers(store.match(pattern)));
+        }
+
+        // Avec un exécuteur, la sélection demandée par les lectures y est exécutée
+        List<Runnable> tasks = new ArrayList<>();
+        RDFHexaStore deferred = new RDFHexaStore(tasks::add);
+        deferred.addAll(atoms.stream());
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+        for (int i = 0; i < 100; i++) {
+            deferred.match(byObject);
+        }
+        deferred.setIndexBudget(memory.get("spo") + largest);
+        assertEquals(Set.of("spo", "pos"), deferred.indexes());
+        for (int i = 0; i < 1000; i++) {
+            deferred.match(byObjectOnly);
+        }
+        assertEquals(Set.of("spo", "pos"), deferred.indexes());
+        assertFalse(tasks.isEmpty());
+        assertFalse(deferred.secondaryIndexes().isDone());
+        while (!tasks.isEmpty()) {
+            tasks.removeFirst().run();
+        }
+        assertTrue(deferred.secondaryIndexes().isDone());
+        assertEquals(Set.of("spo", "ops"), deferred.indexes());
+        assertTrue(expected.remove(added));
+        assertEquals(answers(expected.match(byObjectOnly)), answers(deferred.match(byObjectOnly)));
+    }
+
+    private static Set<Substitution> answers(Iterator<Substitution> results) {
+        Set<Substitution> set = new HashSet<>();
+        results.forEachRemaining(set::add);
+        return set;
+    }
+
+    private static int count(Iterator<Substitution> results) {
+        int count = 0;
+        for (; results.hasNext(); results.next()) count++;
+        return count;
+    }
+
     public void testMatchStarQueryMultipleVars1(RDFHexaStore store, FactBase factBase){
         RDFAtom firstMatchingAtom = new RDFAtom(VAR_X, PREDICATE_1, VAR_Y);
         RDFAtom secondMatchingAtom = new RDFAtom(VAR_X, PREDICATE_2, OBJECT_3);
@@ -0,0 +1,181 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.BGPQuery;
+import qengine.model.ComparisonFilter;
+import qengine.model.RDFAtom;
+import qengine.model.SolutionModifiers;
+import qengine.model.StarQuery;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link ShardedRDFStorage} : les réponses doivent être celles d'un HexaStore unique.
+ */
+class ShardedRDFStorageTest {
+    private static final Literal<String> KNOWS = SameObjectTermFactory.instance().createOrGetLiteral("knows");
+    private static final Literal<String> AGE = SameObjectTermFactory.instance().createOrGetLiteral("age");
+    private static final Literal<String> PERSON_3 = SameObjectTermFactory.instance().createOrGetLiteral("person3");
+    private static final Variable VAR_X = SameObjectTermFactory.instance().createOrGetVariable("?x");
+    private static final Variable VAR_Y = SameObjectTermFactory.instance().createOrGetVariable("?y");
+    private static final Variable VAR_Z = SameObjectTermFactory.instance().createOrGetVariable("?z");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static List<RDFAtom> data() {
+        List<RDFAtom> atoms = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Literal<String> person = SameObjectTermFactory.instance().createOrGetLiteral("person" + i);
+            atoms.add(new RDFAtom(person, AGE, SameObjectTermFactory.instance().createOrGetLiteral("age" + i % 7)));
+            for (int j = 1; j <= i % 5; j++) {
+                atoms.add(new RDFAtom(person, KNOWS,
+                        SameObjectTermFactory.instance().createOrGetLiteral("person" + (i * j + 3) % 60)));
+            }
+        }
+        return atoms;
+    }
+
+    private static Set<Substitution> answers(Iterator<Substitution> results) {
+        Set<Substitution> set = new HashSet<>();
+        results.forEachRemaining(set::add);
+        return set;
+    }
+
+    private static int count(Iterator<Substitution> results) {
+        int count = 0;
+        for (; results.hasNext(); results.next()) count++;
+        return count;
+    }
+
+    @Test
+    void testSubjectStarsAreBroadcast() {
+        RDFHexaStore single = new RDFHexaStore();
+        ShardedRDFStorage sharded = new ShardedRDFStorage(4, executor);
+        assertTrue(single.addAll(data()));
+        assertTrue(sharded.addAll(data()));
+        assertFalse(sharded.addAll(data()));
+        assertEquals(single.size(), sharded.size());
+        assertEquals(single.getAtoms().size(), sharded.getAtoms().size());
+        for (int i = 0; i < sharded.shardCount(); i++) {
+            assertTrue(sharded.shard(i).size() > 0, "Chaque partition devrait recevoir des triplets.");
+        }
+
+        List<StarQuery> queries = List.of(
+                new StarQuery("Q1", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_X, AGE, VAR_Z)),
+                        List.of(VAR_X, VAR_Y, VAR_Z)),
+                // Sans le sujet parmi les réponses, des réponses se répètent d'une partition à l'autre
+                new StarQuery("Q2", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_X, AGE, VAR_Z)),
+                        List.of(VAR_Z)),
+                new StarQuery("Q3", List.of(new RDFAtom(PERSON_3, KNOWS, VAR_Y)), List.of(VAR_Y)));
+        for (StarQuery query : queries) {
+            assertEquals(answers(single.match(query)), answers(sharded.match(query)), query.getLabel());
+            assertEquals(count(single.match(query)), count(sharded.match(query)), query.getLabel());
+        }
+
+        StarQuery limited = new StarQuery("Q4", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Y),
+                List.of(), new SolutionModifiers(5, 10, false));
+        Set<Substitution> all = answers(single.match(new StarQuery("Q4", limited.getRdfAtoms(), List.of(VAR_X, VAR_Y))));
+        Set<Substitution> page = answers(sharded.match(limited));
+        assertEquals(10, page.size());
+        assertTrue(all.containsAll(page));
+
+        StarQuery ask = new StarQuery("Q5", List.of(new RDFAtom(VAR_X, AGE, VAR_Z)), List.of(), List.of(),
+                SolutionModifiers.askQuery());
+        assertEquals(1, count(sharded.match(ask)));
+    }
+
+    @Test
+    void testCrossShardQueries() {
+        RDFHexaStore single = new RDFHexaStore();
+        ShardedRDFStorage sharded = new ShardedRDFStorage(3, executor);
+        single.addAll(data());
+        sharded.addAll(data());
+
+        // Étoile centrée sur un objet : ses sujets sont répartis entre les partitions
+        StarQuery objectStar = new StarQuery("O", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Z, KNOWS, VAR_Y)),
+                List.of(VAR_X, VAR_Z));
+        assertEquals(answers(single.match(objectStar)), answers(sharded.match(objectStar)));
+        assertEquals(count(single.match(objectStar)), count(sharded.match(objectStar)));
+        BGPQuery constantObject = new BGPQuery("C", List.of(new RDFAtom(VAR_X, KNOWS, PERSON_3),
+                new RDFAtom(VAR_Z, KNOWS, VAR_X)), List.of(VAR_Z), List.of(), SolutionModifiers.NONE);
+        assertEquals(answers(single.match(constantObject)), answers(sharded.match(constantObject)));
+        assertEquals(count(single.match(constantObject)), count(sharded.match(constantObject)));
+
+        BGPQuery chain = new BGPQuery("Chain", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, AGE, VAR_Z)),
+                List.of(VAR_X, VAR_Z), List.of(), SolutionModifiers.NONE);
+        assertEquals(answers(single.match(chain)), answers(sharded.match(chain)));
+        assertEquals(answers(single.matchTriejoin(chain)), answers(sharded.matchTriejoin(chain)));
+        assertEquals(count(single.match(chain)), count(sharded.match(chain)));
+
+        Literal<String> age2 = SameObjectTermFactory.instance().createOrGetLiteral("age2");
+        BGPQuery filtered = new BGPQuery("Filtered", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Y, AGE, VAR_Z)),
+                List.of(VAR_X, VAR_Y), List.of(new ComparisonFilter(VAR_Z, ComparisonFilter.Operator.EQ, age2)),
+                SolutionModifiers.NONE);
+        assertEquals(answers(single.match(filtered)), answers(sharded.match(filtered)));
+        BGPQuery page = new BGPQuery("Page", chain.getRdfAtoms(), List.of(VAR_X, VAR_Z), List.of(),
+                new SolutionModifiers(3, 7, false));
+        Set<Substitution> paged = answers(sharded.match(page));
+        assertEquals(7, paged.size());
+        assertTrue(answers(single.match(chain)).containsAll(paged));
+        BGPQuery ask = new BGPQuery("Ask", chain.getRdfAtoms(), List.of(), List.of(), SolutionModifiers.askQuery());
+        assertEquals(1, count(sharded.match(ask)));
+
+        RDFAtom everything = new RDFAtom(VAR_X, VAR_Y, VAR_Z);
+        assertEquals(answers(single.match(everything)), answers(sharded.match(everything)));
+        RDFAtom fromPerson = new RDFAtom(PERSON_3, VAR_Y, VAR_Z);
+        assertEquals(answers(single.match(fromPerson)), answers(sharded.match(fromPerson)));
+    }
+
+    @Test
+    void testQueryContext() {
+        RDFHexaStore single = new RDFHexaStore();
+        ShardedRDFStorage sharded = new ShardedRDFStorage(4, executor);
+        single.addAll(data());
+        sharded.addAll(data());
+
+        StarQuery subjectStar = new StarQuery("Q", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_X, AGE, VAR_Z)),
+                List.of(VAR_Z));
+        StarQuery objectStar = new StarQuery("O", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y), new RDFAtom(VAR_Z, KNOWS, VAR_Y)),
+                List.of(VAR_Y));
+        for (StarQuery query : List.of(subjectStar, objectStar)) {
+            QueryContext context = new QueryContext();
+            assertEquals(answers(single.match(query)), answers(sharded.match(query, context)), query.getLabel());
+            // Les réponses dédupliquées sont réservées dans le budget de la requête
+            assertTrue(context.reservedBytes() > 0, query.getLabel());
+
+            QueryContext small = new QueryContext(null, 100);
+            QueryAbortedException e = assertThrows(QueryAbortedException.class,
+                    () -> count(sharded.match(query, small)), query.getLabel());
+            assertEquals(QueryAbortedException.Reason.MEMORY, e.reason());
+
+            // L'annulation est vérifiée avant d'interroger la partition suivante
+            QueryContext cancelled = new QueryContext();
+            Iterator<Substitution> results = sharded.match(query, cancelled);
+            assertTrue(results.hasNext());
+            cancelled.cancel();
+            e = assertThrows(QueryAbortedException.class, () -> count(results), query.getLabel());
+            assertEquals(QueryAbortedException.Reason.CANCELLED, e.reason());
+        }
+
+        StarQuery ask = new StarQuery("A", List.of(new RDFAtom(VAR_X, AGE, VAR_Z)), List.of(), List.of(),
+                SolutionModifiers.askQuery());
+        assertEquals(1, count(sharded.match(ask, new QueryContext())));
+        StarQuery limited = new StarQuery("L", List.of(new RDFAtom(VAR_X, KNOWS, VAR_Y)), List.of(VAR_X, VAR_Y),
+                List.of(), new SolutionModifiers(5, 10, false));
+        assertEquals(10, answers(sharded.match(limited, new QueryContext())).size());
+    }
+}
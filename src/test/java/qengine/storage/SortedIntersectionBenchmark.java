@@ -0,0 +1,99 @@
+package qengine.storage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import qengine.benchmark.Utils;
+import qengine.model.RDFAtom;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH des noyaux d'intersection sur de vraies listes de sujets de l'index POS du jeu de données 2M.
+ * Pour chaque rapport de tailles, la plus courte liste (p, o) d'au moins {@code minSize} sujets est intersectée
+ * avec la liste dont la taille est la plus proche de {@code ratio} fois la sienne.
+ * <p>
+ * Lancement : {@code java --add-modules jdk.incubator.vector -cp <classpath de test> qengine.storage.SortedIntersectionBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SortedIntersectionBenchmark {
+
+    @Param({"1", "8", "32", "256"})
+    public int ratio;
+
+    @Param({"256"})
+    public int minSize;
+
+    private int[] small;
+    private int[] large;
+    private int[] block;
+
+    @Setup(Level.Trial)
+    public void loadPostingLists() throws IOException {
+        RDFHexaStore store = new RDFHexaStore();
+        for (RDFAtom atom : Utils.parseRDFData(Utils.DATA_2M)) {
+            store.add(atom);
+        }
+
+        // Listes de sujets de chaque couple (prédicat, objet), triées par taille
+        SortedTrie pos = store.trie(1, 2);
+        List<int[]> lists = new ArrayList<>();
+        for (int i = 0; i < pos.keys1.length; i++) {
+            int from = pos.starts2[i];
+            int to = pos.starts2[i + 1];
+            if (to - from >= minSize) lists.add(Arrays.copyOfRange(pos.keys2, from, to));
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        if (lists.isEmpty()) {
+            throw new IllegalStateException("Aucune liste d'au moins " + minSize + " sujets");
+        }
+
+        small = lists.getFirst();
+        large = lists.getLast();
+        long target = (long) small.length * ratio;
+        for (int[] list : lists) {
+            if (Math.abs(list.length - target) < Math.abs(large.length - target)) large = list;
+        }
+        block = new int[small.length];
+    }
+
+    private int[] freshBlock() {
+        System.arraycopy(small, 0, block, 0, small.length);
+        return block;
+    }
+
+    @Benchmark
+    public void merge(Blackhole blackhole) {
+        blackhole.consume(SortedIntersection.merge(freshBlock(), small.length, large, 0, large.length));
+    }
+
+    @Benchmark
+    public void gallop(Blackhole blackhole) {
+        blackhole.consume(SortedIntersection.gallop(freshBlock(), small.length, large, 0, large.length));
+    }
+
+    @Benchmark
+    public void vector(Blackhole blackhole) {
+        blackhole.consume(VectorIntersection.retain(freshBlock(), small.length, large, 0, large.length));
+    }
+
+    @Benchmark
+    public void adaptive(Blackhole blackhole) {
+        blackhole.consume(SortedIntersection.retain(freshBlock(), small.length, large, 0, large.length));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SortedIntersectionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
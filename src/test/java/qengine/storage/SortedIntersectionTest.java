@@ -0,0 +1,62 @@
+package qengine.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour les noyaux d'intersection de {@link SortedIntersection} et {@link VectorIntersection}.
+ */
+class SortedIntersectionTest {
+
+    private static int[] sortedSample(Random random, int size, int bound) {
+        return random.ints(size, 0, bound).distinct().sorted().toArray();
+    }
+
+    private static int[] expected(int[] block, int[] keys, int from, int to) {
+        Set<Integer> present = new HashSet<>();
+        for (int i = from; i < to; i++) present.add(keys[i]);
+        return Arrays.stream(block).filter(present::contains).toArray();
+    }
+
+    @Test
+    void testAllStrategiesAgree() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            int[] block = sortedSample(random, 1 + random.nextInt(200), 1000);
+            int[] keys = sortedSample(random, random.nextInt(3000), 1000 + random.nextInt(5000));
+            int from = keys.length == 0 ? 0 : random.nextInt(keys.length);
+            int to = from + random.nextInt(keys.length - from + 1);
+            int[] reference = expected(block, keys, from, to);
+
+            List<int[]> results = new ArrayList<>();
+            int[] copy = block.clone();
+            results.add(Arrays.copyOf(copy, SortedIntersection.merge(copy, copy.length, keys, from, to)));
+            copy = block.clone();
+            results.add(Arrays.copyOf(copy, SortedIntersection.gallop(copy, copy.length, keys, from, to)));
+            copy = block.clone();
+            results.add(Arrays.copyOf(copy, SortedIntersection.retain(copy, copy.length, keys, from, to)));
+            if (SortedIntersection.VECTOR_AVAILABLE) {
+                copy = block.clone();
+                results.add(Arrays.copyOf(copy, VectorIntersection.retain(copy, copy.length, keys, from, to)));
+            }
+            for (int[] result : results) {
+                assertArrayEquals(reference, result);
+            }
+        }
+    }
+
+    @Test
+    void testLowerBound() {
+        int[] keys = IntStream.range(0, 100).map(i -> 2 * i).toArray();
+        assertEquals(0, SortedIntersection.lowerBound(keys, 0, keys.length, -1));
+        assertEquals(5, SortedIntersection.lowerBound(keys, 0, keys.length, 10));
+        assertEquals(6, SortedIntersection.lowerBound(keys, 3, keys.length, 11));
+        assertEquals(keys.length, SortedIntersection.lowerBound(keys, 0, keys.length, 1000));
+        // La recherche ne revient jamais avant la position de départ
+        assertEquals(50, SortedIntersection.lowerBound(keys, 50, keys.length, 0));
+    }
+}
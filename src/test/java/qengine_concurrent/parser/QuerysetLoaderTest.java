@@ -0,0 +1,87 @@
+package qengine_concurrent.parser;
+
+import fr.boreal.model.query.api.Query;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour la classe {@link QuerysetLoader} : le chargement parallèle doit rendre les mêmes requêtes,
+ * dans le même ordre, que l'analyse séquentielle des fichiers.
+ */
+class QuerysetLoaderTest {
+    private static final String SAMPLE_QUERIES = "src/test/resources/sample_query.queryset";
+
+    @TempDir
+    Path directory;
+
+    private static List<Query> parseSequentially(Path file) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(file.toString())) {
+            while (parser.hasNext()) {
+                queries.add(parser.next());
+            }
+        }
+        return queries;
+    }
+
+    @Test
+    void testSplitAtQueryBoundaries() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.addAll(Files.readAllLines(Path.of(SAMPLE_QUERIES)));
+        }
+        List<List<String>> chunks = QuerysetLoader.split(lines, 150);
+        assertTrue(chunks.size() > 10);
+        assertEquals(lines, chunks.stream().flatMap(List::stream).toList());
+        for (List<String> chunk : chunks.subList(0, chunks.size() - 1)) {
+            assertTrue(StarQuerySparQLParser.endsQuery(chunk.get(chunk.size() - 1)));
+        }
+        assertEquals(List.of(lines), QuerysetLoader.split(lines, Integer.MAX_VALUE));
+        assertEquals(List.of(Collections.emptyList()), QuerysetLoader.split(List.of(), 150));
+
+        Path file = Files.write(directory.resolve("sample.queryset"), lines);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Query> queries = QuerysetLoader.load(file, 150, executor);
+            assertEquals(parseSequentially(file), queries);
+            assertEquals(queries, QuerysetLoader.load(file, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testLoadDirectory() throws IOException {
+        String sample = Files.readString(Path.of(SAMPLE_QUERIES));
+        Files.writeString(directory.resolve("b.queryset"), sample);
+        Files.writeString(directory.resolve("a.queryset"), sample.repeat(50));
+        Files.writeString(directory.resolve("notes.txt"), "SELECT");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Map<String, List<Query>> files = QuerysetLoader.loadDirectory(directory, name -> name, executor);
+            assertEquals(List.of("a.queryset", "b.queryset"), new ArrayList<>(files.keySet()));
+            assertEquals(parseSequentially(directory.resolve("a.queryset")), files.get("a.queryset"));
+            assertEquals(parseSequentially(directory.resolve("b.queryset")), files.get("b.queryset"));
+
+            // Une requête invalide fait échouer le chargement avec l'erreur d'analyse
+            Files.writeString(directory.resolve("c.queryset"), "SELECT ?v0 WHERE { ?v0 ?v1\n}\n");
+            assertThrows(RuntimeException.class, () -> QuerysetLoader.loadDirectory(directory, name -> name, executor));
+            assertThrows(IOException.class, () -> QuerysetLoader.loadDirectory(directory.resolve("missing"), name -> name, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
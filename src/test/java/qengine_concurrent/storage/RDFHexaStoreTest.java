@@ -351,6 +351,128 @@ public class RDFHexaStoreTest {
         assertTrue(store.toString().startsWith("HexaStore"), "HexaStore toString should start with 'HexaStore'");
     }
 
+    @Test
+    public void testSnapshotIsolation() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1));
+        RDFAtom pattern = new RDFAtom(VAR_X, PREDICATE_1, VAR_Y);
+
+        try (RDFHexaStore.Snapshot snapshot = store.snapshot()) {
+            store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_2));
+            store.addAll(List.of(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_3), new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_3)));
+
+            // L'instantané ne voit que la version épinglée, les nouvelles lectures voient les ajouts
+            assertEquals(1, snapshot.size());
+            assertEquals(1, snapshot.getAtoms().size());
+            Set<Substitution> pinned = new HashSet<>();
+            snapshot.match(pattern).forEachRemaining(pinned::add);
+            assertEquals(1, pinned.size(), "The snapshot should not see atoms added after it was taken.");
+            assertEquals(4, store.size());
+            assertEquals(4, store.getAtoms().size());
+            assertEquals(3, store.markedCount(), "Epochs are kept while an older snapshot is open.");
+        }
+
+        // Plus aucune lecture n'est épinglée sur une version antérieure : les marques sont oubliées
+        assertEquals(0, store.markedCount());
+        StarQuery starQuery = new StarQuery("StarQuery", List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_3),
+                new RDFAtom(VAR_X, PREDICATE_1, OBJECT_2)), List.of(VAR_X));
+        Set<Substitution> matchedList = new HashSet<>();
+        store.match(starQuery).forEachRemaining(matchedList::add);
+        Substitution expected = new SubstitutionImpl();
+        expected.add(VAR_X, SUBJECT_2);
+        assertEquals(Set.of(expected), matchedList);
+    }
+
+    @Test
+    public void testConcurrentReadersSeeConsistentVersions() throws InterruptedException {
+        RDFHexaStore store = new RDFHexaStore();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                Literal<String> subject = SameObjectTermFactory.instance().createOrGetLiteral("s" + i);
+                // Chaque sujet reçoit ses deux triplets dans la même version
+                store.addAll(List.of(new RDFAtom(subject, PREDICATE_1, OBJECT_1), new RDFAtom(subject, PREDICATE_2, OBJECT_2)));
+            }
+        });
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while (writer.isAlive()) {
+                        try (RDFHexaStore.Snapshot snapshot = store.snapshot()) {
+                            Set<Substitution> first = new HashSet<>();
+                            snapshot.match(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1)).forEachRemaining(first::add);
+                            Set<Substitution> second = new HashSet<>();
+                            snapshot.match(new RDFAtom(VAR_X, PREDICATE_2, OBJECT_2)).forEachRemaining(second::add);
+                            assertEquals(first, second);
+                            assertEquals(snapshot.size(), 2L * first.size());
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        writer.start();
+        readers.forEach(Thread::start);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertTrue(errors.isEmpty(), () -> errors.getFirst().toString());
+        assertEquals(4000, store.size());
+        assertEquals(0, store.markedCount());
+    }
+
+    @Test
+    public void testEncodedStarQuery() {
+        RDFHexaStore store = new RDFHexaStore();
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_1, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_1, PREDICATE_2, OBJECT_2));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_1, OBJECT_1));
+        store.add(new RDFAtom(SUBJECT_2, PREDICATE_2, SUBJECT_2));
+
+        // Les atomes sont joints sur leurs variables communes
+        StarQuery starQuery = new StarQuery("StarQuery", List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1),
+                new RDFAtom(VAR_X, PREDICATE_2, VAR_Y)), List.of(VAR_X, VAR_Y));
+        EncodedStarQuery encoded = store.encode(starQuery);
+        assertFalse(encoded.isEmpty());
+        assertEquals(List.of(VAR_X, VAR_Y), encoded.variables());
+        Substitution first = new SubstitutionImpl();
+        first.add(VAR_X, SUBJECT_1);
+        first.add(VAR_Y, OBJECT_2);
+        Substitution second = new SubstitutionImpl();
+        second.add(VAR_X, SUBJECT_2);
+        second.add(VAR_Y, SUBJECT_2);
+        Set<Substitution> matchedList = new HashSet<>();
+        store.match(encoded).forEachRemaining(matchedList::add);
+        assertEquals(Set.of(first, second), matchedList);
+
+        // Une variable répétée dans un atome reçoit la même valeur à chaque position
+        StarQuery loop = new StarQuery("Loop", List.of(new RDFAtom(VAR_X, PREDICATE_2, VAR_X)), List.of(VAR_X));
+        Substitution looping = new SubstitutionImpl();
+        looping.add(VAR_X, SUBJECT_2);
+        matchedList.clear();
+        store.match(loop).forEachRemaining(matchedList::add);
+        assertEquals(Set.of(looping), matchedList);
+
+        // Une constante inconnue rend la requête vide, jusqu'à ce qu'elle soit ajoutée au store
+        StarQuery unknown = new StarQuery("Unknown", List.of(new RDFAtom(VAR_X, PREDICATE_1, OBJECT_1),
+                new RDFAtom(VAR_X, PREDICATE_5, OBJECT_5)), List.of(VAR_X));
+        EncodedStarQuery encodedUnknown = store.encode(unknown);
+        assertTrue(encodedUnknown.isEmpty());
+        assertFalse(store.match(encodedUnknown).hasNext());
+        try (RDFHexaStore.Snapshot snapshot = store.snapshot()) {
+            store.add(new RDFAtom(SUBJECT_1, PREDICATE_5, OBJECT_5));
+            assertFalse(snapshot.match(encodedUnknown).hasNext(), "The snapshot should not see atoms added after it was taken.");
+        }
+        Substitution found = new SubstitutionImpl();
+        found.add(VAR_X, SUBJECT_1);
+        assertEquals(found, store.match(encodedUnknown).next());
+
+        assertThrows(IllegalArgumentException.class, () -> new RDFHexaStore().match(encoded));
+    }
+
     // Vos autres tests d'HexaStore ici
 
 }